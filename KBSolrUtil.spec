@@ -26,10 +26,32 @@ module KBSolrUtil {
         
         string solr_core - the name of the solr core to index to
         list<docdata> doc_data - the doc to be indexed, a list of hashes 
+        string commit_policy - when the indexed docs become visible to searches, one of
+                'commit' - a hard commit as part of the update
+                'soft' - a soft commit as part of the update, visible at once but flushed to disk by SOLR's next hard commit
+                'commitWithin=<ms>' - SOLR commits within <ms> milliseconds, merging the commits of concurrent updates
+                'none' - no commit, left to SOLR's autoCommit or to a later commit
+            default to 'commit', or to 'none' when the service is set to rely on SOLR's autocommit.
+            With an empty doc_data and a commit_policy of 'commit' or 'soft', only the commit is made, e.g. at the end
+            of a bulk job whose batches were sent with 'none'.
+        bool skip_unchanged - 1 to send only the docs that are new or have changed since they were last indexed with
+            skip_unchanged: the content hash of each doc (the MD5 of its fields) is compared with the hash stored for
+            its unique key, and the docs with the same hash are left out. Default to 0, all the docs are sent.
+        string hash_store - where the hashes are kept with skip_unchanged, one of
+                'solr' - in the hash_field of the docs themselves, fetched from SOLR in bulk before the update;
+                    the core's schema must have the field (a stored string)
+                'local' - in a store of the service (hash-store-dir in the deployment config), for cores without
+                    the field; it only knows the docs indexed through the service
+            default to 'solr'.
+        string hash_field - the field of the hashes with hash_store 'solr', default to 'content_hash'
     */
     typedef structure {
        string solr_core;
        list<docdata> doc_data;
+       string commit_policy;
+       bool skip_unchanged;
+       string hash_store;
+       string hash_field;
     } IndexInSolrParams;
 
     /*
@@ -118,6 +140,18 @@ module KBSolrUtil {
     */
     funcdef get_total_count(TotalCountParams params) returns (int output) authentication required;
 
+    /*
+        The exists_in_solr_batch function - the batch form of exists_in_solr. Returns a list of 0 or 1, one for each of the
+        ExistsInputParams in the order given. The queries are answered with a single SOLR request per search_core.
+    */
+    funcdef exists_in_solr_batch(list<ExistsInputParams> params) returns (list<int> output) authentication required;
+
+    /*
+        The get_total_count_batch function - the batch form of get_total_count. Returns a list of counts (or -1 if error), one for each
+        of the TotalCountParams in the order given. The queries are answered with a single SOLR request per search_core.
+    */
+    funcdef get_total_count_batch(list<TotalCountParams> params) returns (list<int> output) authentication required;
+
     /*
         Arguments for the search_solr function - search solr according to the parameters passed and return a string
         
@@ -149,6 +183,10 @@ module KBSolrUtil {
 
         string result_format - the format of the search result, 'xml' as the default, can be 'json', 'csv', etc.
         string group_option - the name of the field to be grouped for the result
+        list<string> filter_queries - SOLR queries that restrict the result without affecting its scores, each sent
+                                as a separate fq parameter, e.g. ['domain:"Bacteria"', 'rank:("species" OR "strain")'];
+                                SOLR caches the matching docs of each one in its filterCache, so exact-match restrictions
+                                that recur across searches are better put here than in search_query
     */
     typedef structure {
        string search_core;
@@ -156,6 +194,7 @@ module KBSolrUtil {
        searchdata search_query;
        string result_format;
        string group_option;      
+       list<string> filter_queries;
     } SearchSolrParams;
 
     /*
@@ -174,6 +213,7 @@ module KBSolrUtil {
         
         string solr_core - the name of the solr core to index to
         string json_data - the doc to be indexed, a JSON string 
+        string commit_policy - when the indexed docs become visible to searches, see IndexInSolrParams
 =for example:
      $json_data = '[
      {
@@ -224,10 +264,36 @@ module KBSolrUtil {
     typedef structure {
        string solr_core;
        string json_data;
+       string commit_policy;
     } IndexJsonParams;
 
     /*
         The add_json_2solr function that returns 1 if succeeded otherwise 0
     */
     funcdef add_json_2solr(IndexJsonParams params) returns (int output) authentication required;
+
+    /*
+        Arguments for the delete_in_solr function - delete docs from solr by unique key and/or by query
+
+        string solr_core - the name of the solr core to delete from
+        list<string> ids - the unique key values of the docs to delete, e.g. the genome_feature_ids of a genome
+        list<string> queries - SOLR queries whose matching docs are deleted, e.g. 'genome_id:"GCF_000005845.2"'
+            to remove a whole genome assembly
+        string commit_policy - when the deletions become visible to searches, see IndexInSolrParams; a 'commit'
+            or 'soft' commit is made once, with the last chunk
+        The ids and the queries are POSTed as JSON delete commands, up to 1000 ids or 100 queries per request, so
+        that a call may delete any number of them. A failed request ends the call with an error; the chunks sent
+        before it are not rolled back.
+    */
+    typedef structure {
+       string solr_core;
+       list<string> ids;
+       list<string> queries;
+       string commit_policy;
+    } DeleteInSolrParams;
+
+    /*
+        The delete_in_solr function that returns 1 if succeeded otherwise 0
+    */
+    funcdef delete_in_solr(DeleteInSolrParams params) returns (int output) authentication required;
 };
@@ -0,0 +1,110 @@
+package KBSolrUtil::BloomFilter;
+use strict;
+use Digest::MD5;
+use Encode ();
+use POSIX ();
+
+=head1 NAME
+
+KBSolrUtil::BloomFilter
+
+=head1 DESCRIPTION
+
+A Bloom filter over the string values of a SOLR field, used by the KBSolrUtil service to answer
+"certainly not in the core" for genome_id, taxonomy_id and ws_ref lookups without a SOLR query.
+maybe_contains never returns false for a value that was added; it returns true for a value that
+was not added with a probability of about the false positive rate the filter was sized for, as
+long as no more than its capacity of distinct values were added.
+
+The bits are kept in one Perl string (see vec) and the k bit positions of a value are derived
+from its MD5 by double hashing, so a filter of n values at a 1% rate takes about 1.2 * n bytes
+and an add or a lookup costs one MD5.  Values cannot be removed; the filter is rebuilt instead.
+
+=cut
+
+#
+# method name: new
+# params :
+#     capacity : the number of distinct values the filter is sized for
+#     fp_rate  : the false positive rate wanted at that capacity, e.g. 0.01
+#     max_bits : an optional upper bound of the size of the filter, in bits
+#
+sub new
+{
+    my ($class, %args) = @_;
+    my $capacity = $args{capacity} && $args{capacity} > 0 ? $args{capacity} : 1;
+    my $fpRate = $args{fp_rate} && $args{fp_rate} > 0 && $args{fp_rate} < 1 ? $args{fp_rate} : 0.01;
+    my $bits = POSIX::ceil(-$capacity * log($fpRate) / (log(2) ** 2));
+    $bits = $args{max_bits} if $args{max_bits} && $bits > $args{max_bits};
+    $bits = 64 if $bits < 64;
+    my $hashes = int($bits / $capacity * log(2) + 0.5);
+    $hashes = 1 if $hashes < 1;
+    $hashes = 16 if $hashes > 16;
+    my $self = {
+        bits => $bits,
+        hashes => $hashes,
+        vector => "\0" x POSIX::ceil($bits / 8),
+        count => 0    # values added that were not (seemingly) in the filter yet
+    };
+    return bless $self, $class;
+}
+
+#
+# method name: add
+# params :
+#     $value : the value to add
+#
+sub add
+{
+    my ($self, $value) = @_;
+    my $new = 0;
+    foreach my $bit ($self->_bits($value)) {
+        next if vec($self->{vector}, $bit, 1);
+        vec($self->{vector}, $bit, 1) = 1;
+        $new = 1;
+    }
+    $self->{count}++ if $new;
+}
+
+#
+# method name: maybe_contains
+# returns : 0 if the value was certainly not added, 1 if it may have been
+#
+sub maybe_contains
+{
+    my ($self, $value) = @_;
+    foreach my $bit ($self->_bits($value)) {
+        return 0 unless vec($self->{vector}, $bit, 1);
+    }
+    return 1;
+}
+
+#
+# method name: stats
+# returns : a hash of the size of the filter and of its expected false positive rate for the
+#           number of distinct values added (slightly undercounted, as a value that collides with
+#           earlier ones is not counted)
+#
+sub stats
+{
+    my ($self) = @_;
+    my ($m, $k, $n) = ($self->{bits}, $self->{hashes}, $self->{count});
+    return {
+        entries => $n,
+        bits => $m,
+        hashes => $k,
+        bytes => length($self->{vector}),
+        expected_fp_rate => sprintf("%.6f", (1 - exp(-$k * $n / $m)) ** $k) + 0
+    };
+}
+
+sub _bits
+{
+    my ($self, $value) = @_;
+    my ($h1, $h2) = unpack("N2", Digest::MD5::md5(utf8::is_utf8($value) ? Encode::encode_utf8($value) : $value));
+    $h2 |= 1;
+    my $m = $self->{bits};
+    return map { ($h1 + $_ * $h2) % $m } 0 .. $self->{hashes} - 1;
+}
+
+1;
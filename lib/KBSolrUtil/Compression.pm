@@ -0,0 +1,131 @@
+package KBSolrUtil::Compression;
+use strict;
+use parent qw(Plack::Middleware);
+use Plack::Util;
+use Plack::Util::Accessor qw(min_bytes max_inflated_bytes);
+use IO::Compress::Gzip qw(gzip $GzipError);
+use Compress::Raw::Zlib qw(Z_OK Z_STREAM_END Z_BUF_ERROR WANT_GZIP MAX_WBITS);
+
+=head1 NAME
+
+KBSolrUtil::Compression
+
+=head1 DESCRIPTION
+
+A PSGI middleware that compresses the traffic of the KBSolrUtil service, set up in
+KBSolrUtil.psgi:
+
+    $handler = KBSolrUtil::Compression->wrap($handler, min_bytes => 1024,
+        max_inflated_bytes => 16*1024*1024);
+
+Request bodies sent with a Content-Encoding of gzip or deflate (e.g. large index_in_solr
+calls from a client that compresses its requests) are inflated before they reach the
+JSON-RPC server.  The inflation runs ahead of any authentication, so it is done a piece at a
+time and stops with a 413 as soon as the body grows past max_inflated_bytes: a small
+compressed body cannot make the worker inflate gigabytes into memory.  Responses of at least min_bytes bytes are gzipped for the clients that
+send Accept-Encoding: gzip; smaller ones gain too little to be worth the CPU.
+
+=cut
+
+#
+# method name: prepare_app
+# Defaults min_bytes to 1024 and max_inflated_bytes to 16 MB.
+#
+sub prepare_app
+{
+    my ($self) = @_;
+    $self->min_bytes(1024) unless defined($self->min_bytes);
+    $self->max_inflated_bytes(16*1024*1024) unless $self->max_inflated_bytes;
+}
+
+sub call
+{
+    my ($self, $env) = @_;
+
+    my $encoding = lc($env->{HTTP_CONTENT_ENCODING} || "identity");
+    if ($encoding ne "identity") {
+        my $error = $self->_inflateRequest($env, $encoding);
+        return [$error =~ /^Unsupported/ ? 415 : $error =~ /^Request body larger/ ? 413 : 400,
+                ['Content-Type' => 'text/plain'], [$error]] if $error;
+    }
+
+    my $res = $self->app->($env);
+    return $self->response_cb($res, sub {
+        my ($res) = @_;
+        $self->_compressResponse($env, $res);
+        return;
+    });
+}
+
+#
+# method name: _inflateRequest
+# Replaces psgi.input by the inflated request body, inflating it as it is read, with at most
+# one output buffer of zlib at a time (LimitOutput), up to max_inflated_bytes.
+# returns : an error message, or undef on success
+#
+sub _inflateRequest
+{
+    my ($self, $env, $encoding) = @_;
+    my $windowBits;
+    if ($encoding eq "gzip" || $encoding eq "x-gzip") {
+        $windowBits = WANT_GZIP;
+    } elsif ($encoding eq "deflate") {
+        $windowBits = MAX_WBITS;
+    } else {
+        return "Unsupported Content-Encoding $encoding";
+    }
+    my ($inflater, $status) = Compress::Raw::Zlib::Inflate->new(
+        -WindowBits => $windowBits, -LimitOutput => 1, -ConsumeInput => 1, -AppendOutput => 1);
+    return "Could not inflate the request body: $status" unless $inflater;
+
+    my $input = $env->{'psgi.input'};
+    my $max = $self->max_inflated_bytes;
+    my ($chunk, $inflated, $eof) = ("", "", 0);
+    while (1) {
+        if (!length($chunk) && !$eof) {
+            my $read = $input->read($chunk, 65536);
+            return "Could not read the request body: $!" unless defined($read);
+            $eof = 1 if $read == 0;
+        }
+        my $before = length($inflated);
+        $status = $inflater->inflate($chunk, $inflated);
+        return "Request body larger than $max bytes once inflated" if length($inflated) > $max;
+        last if $status == Z_STREAM_END;
+        return "Could not inflate the request body: $status" if $status != Z_OK && $status != Z_BUF_ERROR;
+        return "Could not inflate the request body: unexpected end of data"
+            if $eof && !length($chunk) && length($inflated) == $before;
+    }
+
+    open(my $fh, '<', \$inflated) or return "Could not read the inflated request body: $!";
+    $env->{'psgi.input'} = $fh;
+    $env->{CONTENT_LENGTH} = length($inflated);
+    delete $env->{HTTP_CONTENT_ENCODING};
+    return undef;
+}
+
+#
+# method name: _compressResponse
+# Gzips a response body held in memory if the client accepts gzip and the body is at least
+# min_bytes long; streamed bodies and already encoded responses are left alone.
+#
+sub _compressResponse
+{
+    my ($self, $env, $res) = @_;
+    my $accept = $env->{HTTP_ACCEPT_ENCODING} || "";
+    return unless $accept =~ /\bgzip\b(?!\s*;\s*q=0(?:\.0*)?\b)/i;
+    return unless ref($res->[2]) eq 'ARRAY';
+    my $headers = Plack::Util::headers($res->[1]);
+    return if $headers->exists('Content-Encoding');
+
+    my $body = join("", @{$res->[2]});
+    $headers->push('Vary' => 'Accept-Encoding');
+    return if length($body) < $self->min_bytes;
+
+    my $gzipped;
+    gzip(\$body => \$gzipped) or return;
+    $res->[2] = [$gzipped];
+    $headers->set('Content-Encoding' => 'gzip');
+    $headers->set('Content-Length' => length($gzipped));
+}
+
+1;
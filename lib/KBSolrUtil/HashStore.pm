@@ -0,0 +1,159 @@
+package KBSolrUtil::HashStore;
+use strict;
+use Fcntl qw(:flock SEEK_SET);
+use File::Spec;
+
+=head1 NAME
+
+KBSolrUtil::HashStore
+
+=head1 DESCRIPTION
+
+The local store of the content hashes of the docs indexed by index_in_solr with skip_unchanged
+and hash_store 'local', for SOLR cores whose schema has no field to keep the hashes in.
+
+The hashes of a core are held in memory, keyed on the docs' unique key.  With a directory
+(hash-store-dir in deploy.cfg) every update is also appended to the core's log file,
+<dir>/<core>.hashes, one "<id>\t<md5>" line per doc, or "<id>\t-" for a doc deleted with
+delete_in_solr, the last line of an id winning.  The log
+is read when a core is first used and its new lines are read again before each lookup, so the
+service processes sharing the directory see each other's updates.  The log is never compacted;
+delete a core's file to have all of its docs sent again by the next skip_unchanged indexing,
+e.g. after the core was emptied by other means than this service.
+
+The hashes are kept as 16 byte binary MD5s, so a core of N docs takes roughly N times the size
+of its ids plus 100 bytes of memory; for the largest cores keep the hashes in SOLR instead.
+
+=cut
+
+#
+# method name: new
+# params :
+#     dir : the directory of the log files; without one the hashes only live in memory
+#
+sub new
+{
+    my ($class, %args) = @_;
+    my $self = {
+        dir => $args{dir},
+        cores => {}        # core => {hashes => {id => binary md5}, offset => bytes of the log read}
+    };
+    return bless $self, $class;
+}
+
+#
+# method name: get_many
+# params :
+#     $core : the name of the SOLR core
+#     $ids  : a reference to a list of unique key values
+# returns : a reference to a hash of id => hex MD5 of the ids that have a hash
+#
+sub get_many
+{
+    my ($self, $core, $ids) = @_;
+    my $hashes = $self->_load($core)->{hashes};
+    my %found;
+    foreach my $id (@{$ids}) {
+        $found{$id} = unpack("H*", $hashes->{$id}) if exists($hashes->{$id});
+    }
+    return \%found;
+}
+
+#
+# method name: put_many
+# Stores the hashes of docs that were indexed.
+# params :
+#     $core   : the name of the SOLR core
+#     $hashes : a reference to a hash of id => hex MD5
+#
+sub put_many
+{
+    my ($self, $core, $hashes) = @_;
+    my $c = $self->_load($core);
+    #ids with a tab or a newline would break the log lines; they are not stored and so always sent
+    my @ids = grep { !/[\t\n]/ } keys %{$hashes};
+    return unless @ids;
+    if (defined($self->{dir})) {
+        my $file = $self->_file($core);
+        open(my $fh, '>>', $file) or die "\nError--cannot append to the hash store $file: $!\n";
+        binmode($fh, ':utf8');
+        flock($fh, LOCK_EX) or die "\nError--cannot lock the hash store $file: $!\n";
+        print $fh join("", map { "$_\t$hashes->{$_}\n" } @ids);
+        close($fh) or die "\nError--cannot write the hash store $file: $!\n";
+    }
+    $c->{hashes}->{$_} = pack("H*", $hashes->{$_}) foreach @ids;
+}
+
+#
+# method name: delete_many
+# Drops the hashes of docs that were deleted, so that they are sent again when indexed again.
+# params :
+#     $core : the name of the SOLR core
+#     $ids  : a reference to a list of unique key values
+#
+sub delete_many
+{
+    my ($self, $core, $ids) = @_;
+    my $c = $self->_load($core);
+    my @ids = grep { exists($c->{hashes}->{$_}) } @{$ids};
+    return unless @ids;
+    if (defined($self->{dir})) {
+        my $file = $self->_file($core);
+        open(my $fh, '>>', $file) or die "\nError--cannot append to the hash store $file: $!\n";
+        binmode($fh, ':utf8');
+        flock($fh, LOCK_EX) or die "\nError--cannot lock the hash store $file: $!\n";
+        print $fh join("", map { "$_\t-\n" } @ids);
+        close($fh) or die "\nError--cannot write the hash store $file: $!\n";
+    }
+    delete $c->{hashes}->{$_} foreach @ids;
+}
+
+#
+# method name: size
+# returns : the number of docs of a core with a hash
+#
+sub size
+{
+    my ($self, $core) = @_;
+    return scalar(keys %{$self->_load($core)->{hashes}});
+}
+
+#
+# method name: _load
+# returns : the in-memory state of a core, after reading the lines appended to its log since the last read
+#
+sub _load
+{
+    my ($self, $core) = @_;
+    my $c = $self->{cores}->{$core} ||= { hashes => {}, offset => 0 };
+    return $c unless defined($self->{dir});
+    my $file = $self->_file($core);
+    return $c unless -e $file && -s _ > $c->{offset};
+
+    open(my $fh, '<', $file) or die "\nError--cannot read the hash store $file: $!\n";
+    binmode($fh, ':utf8');
+    flock($fh, LOCK_SH) or die "\nError--cannot lock the hash store $file: $!\n";
+    seek($fh, $c->{offset}, SEEK_SET);
+    while (my $line = <$fh>) {
+        #a line still being written by another process is read next time
+        last unless $line =~ /\n$/;
+        $c->{offset} = tell($fh);
+        my ($id, $hash) = $line =~ /^(.*)\t([0-9a-f]{32}|-)$/ or next;
+        if ($hash eq "-") {
+            delete $c->{hashes}->{$id};
+        } else {
+            $c->{hashes}->{$id} = pack("H*", $hash);
+        }
+    }
+    close($fh);
+    return $c;
+}
+
+sub _file
+{
+    my ($self, $core) = @_;
+    (my $name = $core) =~ s/[^\w.-]/_/g;
+    return File::Spec->catfile($self->{dir}, "$name.hashes");
+}
+
+1;
@@ -106,6 +106,23 @@ sub new
     return $self;
 }
 
+=head2 gzip_min_bytes
+
+  $obj->gzip_min_bytes($bytes)
+
+Sets the size from which the bodies of the calls are sent gzipped, e.g. for
+bandwidth-bound bulk loads with index_in_solr.  An undefined $bytes (the
+default) sends all calls uncompressed.  Responses are always requested with
+Accept-Encoding: gzip and inflated.
+
+=cut
+
+sub gzip_min_bytes
+{
+    my ($self, $bytes) = @_;
+    $self->{client}->{gzip_min_bytes} = $bytes;
+}
+
 
 
 
@@ -125,7 +142,12 @@ $output is an int
 IndexInSolrParams is a reference to a hash where the following keys are defined:
 	solr_core has a value which is a string
 	doc_data has a value which is a reference to a list where each element is a KBSolrUtil.docdata
+	commit_policy has a value which is a string
+	skip_unchanged has a value which is a KBSolrUtil.bool
+	hash_store has a value which is a string
+	hash_field has a value which is a string
 docdata is a reference to a hash where the key is a string and the value is a string
+bool is an int
 
 </pre>
 
@@ -138,7 +160,12 @@ $output is an int
 IndexInSolrParams is a reference to a hash where the following keys are defined:
 	solr_core has a value which is a string
 	doc_data has a value which is a reference to a list where each element is a KBSolrUtil.docdata
+	commit_policy has a value which is a string
+	skip_unchanged has a value which is a KBSolrUtil.bool
+	hash_store has a value which is a string
+	hash_field has a value which is a string
 docdata is a reference to a hash where the key is a string and the value is a string
+bool is an int
 
 
 =end text
@@ -199,6 +226,98 @@ The index_in_solr function that returns 1 if succeeded otherwise 0
  
 
 
+=head2 new_or_updated
+
+  $return = $obj->new_or_updated($params)
+
+=over 4
+
+=item Parameter and return types
+
+=begin html
+
+<pre>
+$params is a KBSolrUtil.NewOrUpdatedParams
+$return is a reference to a list where each element is a KBSolrUtil.searchdata
+NewOrUpdatedParams is a reference to a hash where the following keys are defined:
+	search_core has a value which is a string
+	search_docs has a value which is a reference to a list where each element is a KBSolrUtil.searchdata
+	search_type has a value which is a string
+searchdata is a reference to a hash where the key is a string and the value is a string
+
+</pre>
+
+=end html
+
+=begin text
+
+$params is a KBSolrUtil.NewOrUpdatedParams
+$return is a reference to a list where each element is a KBSolrUtil.searchdata
+NewOrUpdatedParams is a reference to a hash where the following keys are defined:
+	search_core has a value which is a string
+	search_docs has a value which is a reference to a list where each element is a KBSolrUtil.searchdata
+	search_type has a value which is a string
+searchdata is a reference to a hash where the key is a string and the value is a string
+
+
+=end text
+
+=item Description
+
+The new_or_updated function that returns a list of docs
+
+=back
+
+=cut
+
+ sub new_or_updated
+{
+    my($self, @args) = @_;
+
+# Authentication: required
+
+    if ((my $n = @args) != 1)
+    {
+	Bio::KBase::Exceptions::ArgumentValidationError->throw(error =>
+							       "Invalid argument count for function new_or_updated (received $n, expecting 1)");
+    }
+    {
+	my($params) = @args;
+
+	my @_bad_arguments;
+        (ref($params) eq 'HASH') or push(@_bad_arguments, "Invalid type for argument 1 \"params\" (value was \"$params\")");
+        if (@_bad_arguments) {
+	    my $msg = "Invalid arguments passed to new_or_updated:\n" . join("", map { "\t$_\n" } @_bad_arguments);
+	    Bio::KBase::Exceptions::ArgumentValidationError->throw(error => $msg,
+								   method_name => 'new_or_updated');
+	}
+    }
+
+    my $url = $self->{url};
+    my $result = $self->{client}->call($url, $self->{headers}, {
+	    method => "KBSolrUtil.new_or_updated",
+	    params => \@args,
+    });
+    if ($result) {
+	if ($result->is_error) {
+	    Bio::KBase::Exceptions::JSONRPC->throw(error => $result->error_message,
+					       code => $result->content->{error}->{code},
+					       method_name => 'new_or_updated',
+					       data => $result->content->{error}->{error} # JSON::RPC::ReturnObject only supports JSONRPC 1.1 or 1.O
+					      );
+	} else {
+	    return wantarray ? @{$result->result} : $result->result->[0];
+	}
+    } else {
+        Bio::KBase::Exceptions::HTTP->throw(error => "Error invoking method new_or_updated",
+					    status_line => $self->{client}->status_line,
+					    method_name => 'new_or_updated',
+				       );
+    }
+}
+ 
+
+
 =head2 exists_in_solr
 
   $output = $obj->exists_in_solr($params)
@@ -379,6 +498,188 @@ The get_total_count function that returns a positive integer (including 0) or -1
  
 
 
+=head2 exists_in_solr_batch
+
+  $output = $obj->exists_in_solr_batch($params)
+
+=over 4
+
+=item Parameter and return types
+
+=begin html
+
+<pre>
+$params is a reference to a list where each element is a KBSolrUtil.ExistsInputParams
+$output is a reference to a list where each element is an int
+ExistsInputParams is a reference to a hash where the following keys are defined:
+	search_core has a value which is a string
+	search_query has a value which is a KBSolrUtil.searchdata
+searchdata is a reference to a hash where the key is a string and the value is a string
+
+</pre>
+
+=end html
+
+=begin text
+
+$params is a reference to a list where each element is a KBSolrUtil.ExistsInputParams
+$output is a reference to a list where each element is an int
+ExistsInputParams is a reference to a hash where the following keys are defined:
+	search_core has a value which is a string
+	search_query has a value which is a KBSolrUtil.searchdata
+searchdata is a reference to a hash where the key is a string and the value is a string
+
+
+=end text
+
+=item Description
+
+The exists_in_solr_batch function - the batch form of exists_in_solr. Returns a list of 0 or 1, one for each of the
+ExistsInputParams in the order given. The queries are answered with a single SOLR request per search_core.
+
+=back
+
+=cut
+
+ sub exists_in_solr_batch
+{
+    my($self, @args) = @_;
+
+# Authentication: required
+
+    if ((my $n = @args) != 1)
+    {
+	Bio::KBase::Exceptions::ArgumentValidationError->throw(error =>
+							       "Invalid argument count for function exists_in_solr_batch (received $n, expecting 1)");
+    }
+    {
+	my($params) = @args;
+
+	my @_bad_arguments;
+        (ref($params) eq 'ARRAY') or push(@_bad_arguments, "Invalid type for argument 1 \"params\" (value was \"$params\")");
+        if (@_bad_arguments) {
+	    my $msg = "Invalid arguments passed to exists_in_solr_batch:\n" . join("", map { "\t$_\n" } @_bad_arguments);
+	    Bio::KBase::Exceptions::ArgumentValidationError->throw(error => $msg,
+								   method_name => 'exists_in_solr_batch');
+	}
+    }
+
+    my $url = $self->{url};
+    my $result = $self->{client}->call($url, $self->{headers}, {
+	    method => "KBSolrUtil.exists_in_solr_batch",
+	    params => \@args,
+    });
+    if ($result) {
+	if ($result->is_error) {
+	    Bio::KBase::Exceptions::JSONRPC->throw(error => $result->error_message,
+					       code => $result->content->{error}->{code},
+					       method_name => 'exists_in_solr_batch',
+					       data => $result->content->{error}->{error} # JSON::RPC::ReturnObject only supports JSONRPC 1.1 or 1.O
+					      );
+	} else {
+	    return wantarray ? @{$result->result} : $result->result->[0];
+	}
+    } else {
+        Bio::KBase::Exceptions::HTTP->throw(error => "Error invoking method exists_in_solr_batch",
+					    status_line => $self->{client}->status_line,
+					    method_name => 'exists_in_solr_batch',
+				       );
+    }
+}
+ 
+
+
+=head2 get_total_count_batch
+
+  $output = $obj->get_total_count_batch($params)
+
+=over 4
+
+=item Parameter and return types
+
+=begin html
+
+<pre>
+$params is a reference to a list where each element is a KBSolrUtil.TotalCountParams
+$output is a reference to a list where each element is an int
+TotalCountParams is a reference to a hash where the following keys are defined:
+	search_core has a value which is a string
+	search_query has a value which is a KBSolrUtil.searchdata
+searchdata is a reference to a hash where the key is a string and the value is a string
+
+</pre>
+
+=end html
+
+=begin text
+
+$params is a reference to a list where each element is a KBSolrUtil.TotalCountParams
+$output is a reference to a list where each element is an int
+TotalCountParams is a reference to a hash where the following keys are defined:
+	search_core has a value which is a string
+	search_query has a value which is a KBSolrUtil.searchdata
+searchdata is a reference to a hash where the key is a string and the value is a string
+
+
+=end text
+
+=item Description
+
+The get_total_count_batch function - the batch form of get_total_count. Returns a list of counts (or -1 if error), one for each
+of the TotalCountParams in the order given. The queries are answered with a single SOLR request per search_core.
+
+=back
+
+=cut
+
+ sub get_total_count_batch
+{
+    my($self, @args) = @_;
+
+# Authentication: required
+
+    if ((my $n = @args) != 1)
+    {
+	Bio::KBase::Exceptions::ArgumentValidationError->throw(error =>
+							       "Invalid argument count for function get_total_count_batch (received $n, expecting 1)");
+    }
+    {
+	my($params) = @args;
+
+	my @_bad_arguments;
+        (ref($params) eq 'ARRAY') or push(@_bad_arguments, "Invalid type for argument 1 \"params\" (value was \"$params\")");
+        if (@_bad_arguments) {
+	    my $msg = "Invalid arguments passed to get_total_count_batch:\n" . join("", map { "\t$_\n" } @_bad_arguments);
+	    Bio::KBase::Exceptions::ArgumentValidationError->throw(error => $msg,
+								   method_name => 'get_total_count_batch');
+	}
+    }
+
+    my $url = $self->{url};
+    my $result = $self->{client}->call($url, $self->{headers}, {
+	    method => "KBSolrUtil.get_total_count_batch",
+	    params => \@args,
+    });
+    if ($result) {
+	if ($result->is_error) {
+	    Bio::KBase::Exceptions::JSONRPC->throw(error => $result->error_message,
+					       code => $result->content->{error}->{code},
+					       method_name => 'get_total_count_batch',
+					       data => $result->content->{error}->{error} # JSON::RPC::ReturnObject only supports JSONRPC 1.1 or 1.O
+					      );
+	} else {
+	    return wantarray ? @{$result->result} : $result->result->[0];
+	}
+    } else {
+        Bio::KBase::Exceptions::HTTP->throw(error => "Error invoking method get_total_count_batch",
+					    status_line => $self->{client}->status_line,
+					    method_name => 'get_total_count_batch',
+				       );
+    }
+}
+ 
+
+
 =head2 search_solr
 
   $output = $obj->search_solr($params)
@@ -398,6 +699,7 @@ SearchSolrParams is a reference to a hash where the following keys are defined:
 	search_query has a value which is a KBSolrUtil.searchdata
 	result_format has a value which is a string
 	group_option has a value which is a string
+	filter_queries has a value which is a reference to a list where each element is a string
 searchdata is a reference to a hash where the key is a string and the value is a string
 solrresponse is a reference to a hash where the key is a string and the value is a string
 
@@ -415,6 +717,7 @@ SearchSolrParams is a reference to a hash where the following keys are defined:
 	search_query has a value which is a KBSolrUtil.searchdata
 	result_format has a value which is a string
 	group_option has a value which is a string
+	filter_queries has a value which is a reference to a list where each element is a string
 searchdata is a reference to a hash where the key is a string and the value is a string
 solrresponse is a reference to a hash where the key is a string and the value is a string
 
@@ -496,6 +799,7 @@ SearchSolrParams is a reference to a hash where the following keys are defined:
 	search_query has a value which is a KBSolrUtil.searchdata
 	result_format has a value which is a string
 	group_option has a value which is a string
+	filter_queries has a value which is a reference to a list where each element is a string
 searchdata is a reference to a hash where the key is a string and the value is a string
 solrresponse is a reference to a hash where the key is a string and the value is a string
 
@@ -513,6 +817,7 @@ SearchSolrParams is a reference to a hash where the following keys are defined:
 	search_query has a value which is a KBSolrUtil.searchdata
 	result_format has a value which is a string
 	group_option has a value which is a string
+	filter_queries has a value which is a reference to a list where each element is a string
 searchdata is a reference to a hash where the key is a string and the value is a string
 solrresponse is a reference to a hash where the key is a string and the value is a string
 
@@ -592,6 +897,7 @@ $output is an int
 IndexJsonParams is a reference to a hash where the following keys are defined:
 	solr_core has a value which is a string
 	json_data has a value which is a string
+	commit_policy has a value which is a string
 
 </pre>
 
@@ -604,6 +910,7 @@ $output is an int
 IndexJsonParams is a reference to a hash where the following keys are defined:
 	solr_core has a value which is a string
 	json_data has a value which is a string
+	commit_policy has a value which is a string
 
 
 =end text
@@ -662,6 +969,98 @@ The add_json_2solr function that returns 1 if succeeded otherwise 0
     }
 }
  
+
+
+=head2 delete_in_solr
+
+  $output = $obj->delete_in_solr($params)
+
+=over 4
+
+=item Parameter and return types
+
+=begin html
+
+<pre>
+$params is a KBSolrUtil.DeleteInSolrParams
+$output is an int
+DeleteInSolrParams is a reference to a hash where the following keys are defined:
+	solr_core has a value which is a string
+	ids has a value which is a reference to a list where each element is a string
+	queries has a value which is a reference to a list where each element is a string
+	commit_policy has a value which is a string
+
+</pre>
+
+=end html
+
+=begin text
+
+$params is a KBSolrUtil.DeleteInSolrParams
+$output is an int
+DeleteInSolrParams is a reference to a hash where the following keys are defined:
+	solr_core has a value which is a string
+	ids has a value which is a reference to a list where each element is a string
+	queries has a value which is a reference to a list where each element is a string
+	commit_policy has a value which is a string
+
+
+=end text
+
+=item Description
+
+The delete_in_solr function that returns 1 if succeeded otherwise 0
+
+=back
+
+=cut
+
+ sub delete_in_solr
+{
+    my($self, @args) = @_;
+
+# Authentication: required
+
+    if ((my $n = @args) != 1)
+    {
+	Bio::KBase::Exceptions::ArgumentValidationError->throw(error =>
+							       "Invalid argument count for function delete_in_solr (received $n, expecting 1)");
+    }
+    {
+	my($params) = @args;
+
+	my @_bad_arguments;
+        (ref($params) eq 'HASH') or push(@_bad_arguments, "Invalid type for argument 1 \"params\" (value was \"$params\")");
+        if (@_bad_arguments) {
+	    my $msg = "Invalid arguments passed to delete_in_solr:\n" . join("", map { "\t$_\n" } @_bad_arguments);
+	    Bio::KBase::Exceptions::ArgumentValidationError->throw(error => $msg,
+								   method_name => 'delete_in_solr');
+	}
+    }
+
+    my $url = $self->{url};
+    my $result = $self->{client}->call($url, $self->{headers}, {
+	    method => "KBSolrUtil.delete_in_solr",
+	    params => \@args,
+    });
+    if ($result) {
+	if ($result->is_error) {
+	    Bio::KBase::Exceptions::JSONRPC->throw(error => $result->error_message,
+					       code => $result->content->{error}->{code},
+					       method_name => 'delete_in_solr',
+					       data => $result->content->{error}->{error} # JSON::RPC::ReturnObject only supports JSONRPC 1.1 or 1.O
+					      );
+	} else {
+	    return wantarray ? @{$result->result} : $result->result->[0];
+	}
+    } else {
+        Bio::KBase::Exceptions::HTTP->throw(error => "Error invoking method delete_in_solr",
+					    status_line => $self->{client}->status_line,
+					    method_name => 'delete_in_solr',
+				       );
+    }
+}
+ 
   
 sub status
 {
@@ -705,16 +1104,16 @@ sub version {
             Bio::KBase::Exceptions::JSONRPC->throw(
                 error => $result->error_message,
                 code => $result->content->{code},
-                method_name => 'add_json_2solr',
+                method_name => 'delete_in_solr',
             );
         } else {
             return wantarray ? @{$result->result} : $result->result->[0];
         }
     } else {
         Bio::KBase::Exceptions::HTTP->throw(
-            error => "Error invoking method add_json_2solr",
+            error => "Error invoking method delete_in_solr",
             status_line => $self->{client}->status_line,
-            method_name => 'add_json_2solr',
+            method_name => 'delete_in_solr',
         );
     }
 }
@@ -894,6 +1293,10 @@ list<docdata> doc_data - the doc to be indexed, a list of hashes
 a reference to a hash where the following keys are defined:
 solr_core has a value which is a string
 doc_data has a value which is a reference to a list where each element is a KBSolrUtil.docdata
+commit_policy has a value which is a string
+skip_unchanged has a value which is a KBSolrUtil.bool
+hash_store has a value which is a string
+hash_field has a value which is a string
 
 </pre>
 
@@ -904,6 +1307,10 @@ doc_data has a value which is a reference to a list where each element is a KBSo
 a reference to a hash where the following keys are defined:
 solr_core has a value which is a string
 doc_data has a value which is a reference to a list where each element is a KBSolrUtil.docdata
+commit_policy has a value which is a string
+skip_unchanged has a value which is a KBSolrUtil.bool
+hash_store has a value which is a string
+hash_field has a value which is a string
 
 
 =end text
@@ -1048,6 +1455,10 @@ OR, simply:
 
 string result_format - the format of the search result, 'xml' as the default, can be 'json', 'csv', etc.
 string group_option - the name of the field to be grouped for the result
+list<string> filter_queries - SOLR queries that restrict the result without affecting its scores, each sent
+                        as a separate fq parameter, e.g. ['domain:"Bacteria"', 'rank:("species" OR "strain")'];
+                        SOLR caches the matching docs of each one in its filterCache, so exact-match restrictions
+                        that recur across searches are better put here than in search_query
 
 
 =item Definition
@@ -1061,6 +1472,7 @@ search_param has a value which is a KBSolrUtil.searchdata
 search_query has a value which is a KBSolrUtil.searchdata
 result_format has a value which is a string
 group_option has a value which is a string
+filter_queries has a value which is a reference to a list where each element is a string
 
 </pre>
 
@@ -1074,6 +1486,7 @@ search_param has a value which is a KBSolrUtil.searchdata
 search_query has a value which is a KBSolrUtil.searchdata
 result_format has a value which is a string
 group_option has a value which is a string
+filter_queries has a value which is a reference to a list where each element is a string
 
 
 =end text
@@ -1149,6 +1562,7 @@ string json_data - the doc to be indexed, a JSON string
 a reference to a hash where the following keys are defined:
 solr_core has a value which is a string
 json_data has a value which is a string
+commit_policy has a value which is a string
 
 </pre>
 
@@ -1159,6 +1573,58 @@ json_data has a value which is a string
 a reference to a hash where the following keys are defined:
 solr_core has a value which is a string
 json_data has a value which is a string
+commit_policy has a value which is a string
+
+
+=end text
+
+=back
+
+
+
+=head2 DeleteInSolrParams
+
+=over 4
+
+
+
+=item Description
+
+Arguments for the delete_in_solr function - delete docs from solr by unique key and/or by query
+
+string solr_core - the name of the solr core to delete from
+list<string> ids - the unique key values of the docs to delete, e.g. the genome_feature_ids of a genome
+list<string> queries - SOLR queries whose matching docs are deleted, e.g. 'genome_id:"GCF_000005845.2"'
+    to remove a whole genome assembly
+string commit_policy - when the deletions become visible to searches, see IndexInSolrParams; a 'commit'
+    or 'soft' commit is made once, with the last chunk
+The ids and the queries are POSTed as JSON delete commands, up to 1000 ids or 100 queries per request, so
+that a call may delete any number of them. A failed request ends the call with an error; the chunks sent
+before it are not rolled back.
+
+
+=item Definition
+
+=begin html
+
+<pre>
+a reference to a hash where the following keys are defined:
+solr_core has a value which is a string
+ids has a value which is a reference to a list where each element is a string
+queries has a value which is a reference to a list where each element is a string
+commit_policy has a value which is a string
+
+</pre>
+
+=end html
+
+=begin text
+
+a reference to a hash where the following keys are defined:
+solr_core has a value which is a string
+ids has a value which is a reference to a list where each element is a string
+queries has a value which is a reference to a list where each element is a string
+commit_policy has a value which is a string
 
 
 =end text
@@ -1167,11 +1633,13 @@ json_data has a value which is a string
 
 
 
+
 =cut
 
 package KBSolrUtil::KBSolrUtilClient::RpcClient;
 use base 'JSON::RPC::Client';
 use POSIX;
+use IO::Compress::Gzip;
 use strict;
 
 #
@@ -1240,15 +1708,34 @@ sub _post {
     }
 
     my $content = $json->encode($obj);
+    my @encoding;
+    if (defined($self->{gzip_min_bytes}) && length($content) >= $self->{gzip_min_bytes}) {
+        my $gzipped;
+        if (IO::Compress::Gzip::gzip(\$content => \$gzipped)) {
+            $content = $gzipped;
+            @encoding = ('Content-Encoding' => 'gzip');
+        }
+    }
 
-    $self->ua->post(
+    my $result = $self->ua->post(
         $uri,
         Content_Type   => $self->{content_type},
         Content        => $content,
         Accept         => 'application/json',
+        'Accept-Encoding' => 'gzip',
+        @encoding,
 	@$headers,
 	($self->{token} ? (Authorization => $self->{token}) : ()),
     );
+    # JSON::RPC::ReturnObject decodes the raw content, so inflate it first
+    if ($result->header('Content-Encoding')) {
+        my $inflated = $result->decoded_content(charset => 'none');
+        if (defined($inflated)) {
+            $result->content($inflated);
+            $result->remove_header('Content-Encoding', 'Content-Length');
+        }
+    }
+    return $result;
 }
 
 
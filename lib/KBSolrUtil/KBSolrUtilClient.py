@@ -39,16 +39,67 @@ class KBSolrUtil(object):
         :param params: instance of type "IndexInSolrParams" (Arguments for
            the index_in_solr function - send doc data to solr for indexing
            string solr_core - the name of the solr core to index to
-           list<docdata> doc_data - the doc to be indexed, a list of hashes)
-           -> structure: parameter "solr_core" of String, parameter
-           "doc_data" of list of type "docdata" -> mapping from String to
-           String
+           list<docdata> doc_data - the doc to be indexed, a list of hashes
+           string commit_policy - when the indexed docs become visible to
+           searches, one of 'commit' - a hard commit as part of the update
+           'soft' - a soft commit as part of the update, visible at once but
+           flushed to disk by SOLR's next hard commit 'commitWithin=<ms>' -
+           SOLR commits within <ms> milliseconds, merging the commits of
+           concurrent updates 'none' - no commit, left to SOLR's autoCommit
+           or to a later commit default to 'commit', or to 'none' when the
+           service is set to rely on SOLR's autocommit. With an empty
+           doc_data and a commit_policy of 'commit' or 'soft', only the
+           commit is made, e.g. at the end of a bulk job whose batches were
+           sent with 'none'. bool skip_unchanged - 1 to send only the docs
+           that are new or have changed since they were last indexed with
+           skip_unchanged: the content hash of each doc (the MD5 of its
+           fields) is compared with the hash stored for its unique key, and
+           the docs with the same hash are left out. Default to 0, all the
+           docs are sent. string hash_store - where the hashes are kept with
+           skip_unchanged, one of 'solr' - in the hash_field of the docs
+           themselves, fetched from SOLR in bulk before the update; the
+           core's schema must have the field (a stored string) 'local' - in a
+           store of the service (hash-store-dir in the deployment config),
+           for cores without the field; it only knows the docs indexed
+           through the service default to 'solr'. string hash_field - the
+           field of the hashes with hash_store 'solr', default to
+           'content_hash') -> structure: parameter "solr_core" of String,
+           parameter "doc_data" of list of type "docdata" -> mapping from
+           String to String, parameter "commit_policy" of String, parameter
+           "skip_unchanged" of type "bool" (a bool defined as int), parameter
+           "hash_store" of String, parameter "hash_field" of String
         :returns: instance of Long
         """
         return self._client.call_method(
             'KBSolrUtil.index_in_solr',
             [params], self._service_ver, context)
 
+    def new_or_updated(self, params, context=None):
+        """
+        The new_or_updated function that returns a list of docs
+        :param params: instance of type "NewOrUpdatedParams" (Arguments for
+           the new_or_updated function - search solr according to the
+           parameters passed and return the ones not found in solr. string
+           search_core - the name of the solr core to be searched
+           list<searchdata> search_docs - a list of arbitrary user-supplied
+           key-value pairs specifying the definitions of docs to be searched,
+           a hash for each doc, see the example below: search_docs=[ { field1
+           => 'val1', field2 => 'val2', domain => 'Bacteria' }, { field1 =>
+           'val3', field2 => 'val4', domain => 'Bacteria' } ]; string
+           search_type - the object (genome) type to be searched) ->
+           structure: parameter "search_core" of String, parameter
+           "search_docs" of list of type "searchdata" (User provided
+           parameter data. Arbitrary key-value pairs provided by the user.)
+           -> mapping from String to String, parameter "search_type" of
+           String
+        :returns: instance of list of type "searchdata" (User provided
+           parameter data. Arbitrary key-value pairs provided by the user.)
+           -> mapping from String to String
+        """
+        return self._client.call_method(
+            'KBSolrUtil.new_or_updated',
+            [params], self._service_ver, context)
+
     def exists_in_solr(self, params, context=None):
         """
         The exists_in_solr function that returns 0 or 1
@@ -100,6 +151,60 @@ class KBSolrUtil(object):
             'KBSolrUtil.get_total_count',
             [params], self._service_ver, context)
 
+    def exists_in_solr_batch(self, params, context=None):
+        """
+        The exists_in_solr_batch function - the batch form of exists_in_solr. Returns a list of 0 or 1, one for each of the
+        ExistsInputParams in the order given. The queries are answered with a single SOLR request per search_core.
+        :param params: instance of list of type "ExistsInputParams"
+           (Arguments for the exists_in_solr function - search solr according
+           to the parameters passed and return 1 if found at least one doc 0
+           if nothing found. A shorter version of search_solr. string
+           search_core - the name of the solr core to be searched searchdata
+           search_query - arbitrary user-supplied key-value pairs specifying
+           the fields to be searched and their values to be matched, a hash
+           which specifies how the documents will be searched, see the
+           example below: search_query={ parent_taxon_ref => '1779/116411/1',
+           rank => 'species', scientific_lineage => 'cellular organisms;
+           Bacteria; Proteobacteria; Alphaproteobacteria; Rhizobiales;
+           Bradyrhizobiaceae; Bradyrhizobium', scientific_name =>
+           'Bradyrhizobium sp.*', domain => 'Bacteria' } OR, simply:
+           search_query= { q => "*" };) -> structure: parameter "search_core"
+           of String, parameter "search_query" of type "searchdata" (User
+           provided parameter data. Arbitrary key-value pairs provided by the
+           user.) -> mapping from String to String
+        :returns: instance of list of Long
+        """
+        return self._client.call_method(
+            'KBSolrUtil.exists_in_solr_batch',
+            [params], self._service_ver, context)
+
+    def get_total_count_batch(self, params, context=None):
+        """
+        The get_total_count_batch function - the batch form of get_total_count. Returns a list of counts (or -1 if error), one for each
+        of the TotalCountParams in the order given. The queries are answered with a single SOLR request per search_core.
+        :param params: instance of list of type "TotalCountParams" (Arguments
+           for the get_total_count function - search solr according to the
+           parameters passed and return the count of docs found, or -1 if
+           error. string search_core - the name of the solr core to be
+           searched searchdata search_query - arbitrary user-supplied
+           key-value pairs specifying the fields to be searched and their
+           values to be matched, a hash which specifies how the documents
+           will be searched, see the example below: search_query={
+           parent_taxon_ref => '1779/116411/1', rank => 'species',
+           scientific_lineage => 'cellular organisms; Bacteria;
+           Proteobacteria; Alphaproteobacteria; Rhizobiales;
+           Bradyrhizobiaceae; Bradyrhizobium', scientific_name =>
+           'Bradyrhizobium sp.*', domain => 'Bacteria' } OR, simply:
+           search_query= { q => "*" };) -> structure: parameter "search_core"
+           of String, parameter "search_query" of type "searchdata" (User
+           provided parameter data. Arbitrary key-value pairs provided by the
+           user.) -> mapping from String to String
+        :returns: instance of list of Long
+        """
+        return self._client.call_method(
+            'KBSolrUtil.get_total_count_batch',
+            [params], self._service_ver, context)
+
     def search_solr(self, params, context=None):
         """
         The search_solr function that returns a solrresponse consisting of a string in the format of the Perl structure (hash)
@@ -124,14 +229,20 @@ class KBSolrUtil(object):
            => 'Bacteria' } OR, simply: search_query= { q => "*" }; string
            result_format - the format of the search result, 'xml' as the
            default, can be 'json', 'csv', etc. string group_option - the name
-           of the field to be grouped for the result) -> structure: parameter
-           "search_core" of String, parameter "search_param" of type
+           of the field to be grouped for the result list<string>
+           filter_queries - SOLR queries that restrict the result without
+           affecting its scores, each sent as a separate fq parameter, e.g.
+           ['domain:"Bacteria"', 'rank:("species" OR "strain")']; SOLR caches
+           the matching docs of each one in its filterCache, so exact-match
+           restrictions that recur across searches are better put here than
+           in search_query) -> structure: parameter "search_core" of String,
+           parameter "search_param" of type "searchdata" (User provided
+           parameter data. Arbitrary key-value pairs provided by the user.)
+           -> mapping from String to String, parameter "search_query" of type
            "searchdata" (User provided parameter data. Arbitrary key-value
            pairs provided by the user.) -> mapping from String to String,
-           parameter "search_query" of type "searchdata" (User provided
-           parameter data. Arbitrary key-value pairs provided by the user.)
-           -> mapping from String to String, parameter "result_format" of
-           String, parameter "group_option" of String
+           parameter "result_format" of String, parameter "group_option" of
+           String, parameter "filter_queries" of list of String
         :returns: instance of type "solrresponse" (Solr response data for
            search requests. Arbitrary key-value pairs returned by the solr.)
            -> mapping from String to String
@@ -165,14 +276,20 @@ class KBSolrUtil(object):
            => 'Bacteria' } OR, simply: search_query= { q => "*" }; string
            result_format - the format of the search result, 'xml' as the
            default, can be 'json', 'csv', etc. string group_option - the name
-           of the field to be grouped for the result) -> structure: parameter
-           "search_core" of String, parameter "search_param" of type
+           of the field to be grouped for the result list<string>
+           filter_queries - SOLR queries that restrict the result without
+           affecting its scores, each sent as a separate fq parameter, e.g.
+           ['domain:"Bacteria"', 'rank:("species" OR "strain")']; SOLR caches
+           the matching docs of each one in its filterCache, so exact-match
+           restrictions that recur across searches are better put here than
+           in search_query) -> structure: parameter "search_core" of String,
+           parameter "search_param" of type "searchdata" (User provided
+           parameter data. Arbitrary key-value pairs provided by the user.)
+           -> mapping from String to String, parameter "search_query" of type
            "searchdata" (User provided parameter data. Arbitrary key-value
            pairs provided by the user.) -> mapping from String to String,
-           parameter "search_query" of type "searchdata" (User provided
-           parameter data. Arbitrary key-value pairs provided by the user.)
-           -> mapping from String to String, parameter "result_format" of
-           String, parameter "group_option" of String
+           parameter "result_format" of String, parameter "group_option" of
+           String, parameter "filter_queries" of list of String
         :returns: instance of type "solrresponse" (Solr response data for
            search requests. Arbitrary key-value pairs returned by the solr.)
            -> mapping from String to String
@@ -187,11 +304,12 @@ class KBSolrUtil(object):
         :param params: instance of type "IndexJsonParams" (Arguments for the
            add_json_2solr function - send a JSON doc data to solr for
            indexing string solr_core - the name of the solr core to index to
-           string json_data - the doc to be indexed, a JSON string =for
-           example: $json_data = '[ { "taxonomy_id":1297193,
-           "domain":"Eukaryota", "genetic_code":1, "embl_code":"CS",
-           "division_id":1, "inherited_div_flag":1, "inherited_MGC_flag":1,
-           "parent_taxon_ref":"12570/1217907/1",
+           string json_data - the doc to be indexed, a JSON string string
+           commit_policy - when the indexed docs become visible to searches,
+           see IndexInSolrParams =for example: $json_data = '[ {
+           "taxonomy_id":1297193, "domain":"Eukaryota", "genetic_code":1,
+           "embl_code":"CS", "division_id":1, "inherited_div_flag":1,
+           "inherited_MGC_flag":1, "parent_taxon_ref":"12570/1217907/1",
            "scientific_name":"Camponotus sp. MAS010",
            "mitochondrial_genetic_code":5, "hidden_subtree_flag":0,
            "scientific_lineage":"cellular organisms; Eukaryota; Opisthokonta;
@@ -216,13 +334,39 @@ class KBSolrUtil(object):
            "rank":"species", "scientific_name":"Camponotus sp. MAS003",
            "hidden_subtree_flag":0, "mitochondrial_genetic_code":5,
            "deleted":0 }, ... ]'; =cut end of example) -> structure:
-           parameter "solr_core" of String, parameter "json_data" of String
+           parameter "solr_core" of String, parameter "json_data" of String,
+           parameter "commit_policy" of String
         :returns: instance of Long
         """
         return self._client.call_method(
             'KBSolrUtil.add_json_2solr',
             [params], self._service_ver, context)
 
+    def delete_in_solr(self, params, context=None):
+        """
+        The delete_in_solr function that returns 1 if succeeded otherwise 0
+        :param params: instance of type "DeleteInSolrParams" (Arguments for
+           the delete_in_solr function - delete docs from solr by unique key
+           and/or by query string solr_core - the name of the solr core to
+           delete from list<string> ids - the unique key values of the docs
+           to delete, e.g. the genome_feature_ids of a genome list<string>
+           queries - SOLR queries whose matching docs are deleted, e.g.
+           'genome_id:"GCF_000005845.2"' to remove a whole genome assembly
+           string commit_policy - when the deletions become visible to
+           searches, see IndexInSolrParams; a 'commit' or 'soft' commit is
+           made once, with the last chunk The ids and the queries are POSTed
+           as JSON delete commands, up to 1000 ids or 100 queries per
+           request, so that a call may delete any number of them. A failed
+           request ends the call with an error; the chunks sent before it are
+           not rolled back.) -> structure: parameter "solr_core" of String,
+           parameter "ids" of list of String, parameter "queries" of list of
+           String, parameter "commit_policy" of String
+        :returns: instance of Long
+        """
+        return self._client.call_method(
+            'KBSolrUtil.delete_in_solr',
+            [params], self._service_ver, context)
+
     def status(self, context=None):
         return self._client.call_method('KBSolrUtil.status',
                                         [], self._service_ver, context)
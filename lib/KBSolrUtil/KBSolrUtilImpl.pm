@@ -34,6 +34,15 @@ use XML::Simple;
 use XML::LibXML;
 use Try::Tiny;
 use DateTime;
+use KBSolrUtil::ResultCache;
+use KBSolrUtil::Metrics;
+use KBSolrUtil::HashStore;
+use KBSolrUtil::BloomFilter;
+use Storable ();
+use File::Temp ();
+use Digest::MD5;
+use Time::HiRes ();
+use IO::Compress::Gzip;
 
 #The first thing every function should do is call this function
 sub util_initialize_call {
@@ -137,10 +146,12 @@ sub util_timestamp {
 #
 # $resultFormat is a string indicating what format you want SOLR to return the search results, json, csv, xml, etc.  It overrides the value for 'wt' set in the $searchParams
 #
+# $filterQueries is an optional list of SOLR queries, each sent as a separate fq parameter (see _filterQueries)
+#
 # returns a string
 #
 sub _buildQueryString {
-    my ($self, $searchQuery, $searchParams, $groupOption, $resultFormat, $skipEscape) = @_;
+    my ($self, $searchQuery, $searchParams, $groupOption, $resultFormat, $skipEscape, $filterQueries) = @_;
     $skipEscape = {} unless $skipEscape;
     $resultFormat = "xml" unless $resultFormat;
     
@@ -201,11 +212,33 @@ sub _buildQueryString {
         $qStr =~ s/ AND $//g;
     }
     my $solrGroup = $groupOption ? "&group=true&group.ngroups=true&group.field=$groupOption" : "";
-    my $retStr = $paramFields . $qStr . $solrGroup;
+    my $fqStr = join("", map { "&fq=" . URI::Escape::uri_escape_utf8($_) } @{$filterQueries || []});
+    my $retStr = $paramFields . $qStr . $fqStr . $solrGroup;
     #print "Query string:\n$retStr\n";
     return $retStr;
 }
 
+#
+# method name: _filterQueries
+# Internal Method: to normalize the filter_queries of a search_solr call into a sorted list of distinct, non-empty
+# SOLR queries.  SOLR caches the doc set of each fq in its filterCache, keyed by the parsed query, and does not
+# score it, so a filter that recurs across searches (domain, object_type, workspace_name, a taxonomy subtree...) is
+# only evaluated once; sorting here also gives equal filter sets in a different order the same search_solr cache key.
+# parameters:
+# $filterQueries is a list of SOLR queries, e.g. ['domain:"Bacteria"', '{!terms f=object_type}KBaseGenomes.Genome'],
+#     or a single query string
+#
+# returns an array ref
+#
+sub _filterQueries
+{
+    my ($self, $filterQueries) = @_;
+    return [] unless defined($filterQueries);
+    $filterQueries = [$filterQueries] unless ref($filterQueries) eq "ARRAY";
+    my %seen;
+    return [sort grep { defined($_) && /\S/ && !$seen{$_}++ } @$filterQueries];
+}
+
 #
 # method name: _deleteRecords
 # Internal Method: to delete record(s) in SOLR that matches the given id(s) in the query
@@ -215,14 +248,15 @@ sub _buildQueryString {
 #   'object_id' => 'kb|ws.2869.obj.72243',
 #   'workspace_name' => 'KBasePublicRichGenomesV5'
 #}
+# $commitPolicy is the commit policy of the deletion, see _commitParams
 #
 
 sub _deleteRecords
 {
-    my ($self, $searchCore, $criteria) = @_;
+    my ($self, $searchCore, $criteria, $commitPolicy) = @_;
     my $solrCore = "/$searchCore";
 
-    if (!$self->_ping()) {
+    if (!$self->_checkSolr()) {
         die "\nError--Solr server not responding:\n" . $self->_error->{response};
     }
 
@@ -237,16 +271,167 @@ sub _deleteRecords
         $queryCriteria .= "<query>$key:". URI::Escape::uri_escape($criteria->{$key}) . "</query>";
     }
 
-    $queryCriteria .= "</delete>&commit=true";
+    $queryCriteria .= "</delete>";
+    my $commit = $self->_commitParams($commitPolicy);
+    $queryCriteria .= "&$commit" if $commit;
     #print "The deletion query string is: \n" . "$queryCriteria \n";
 
-    my $solrQuery = $self->{_SOLR_URL}.$solrCore."/update?stream.body=".$queryCriteria;
+    my $solrQuery = $self->{_SOLR_URL}.$solrCore."/update?wt=json&stream.body=".$queryCriteria;
     #print "The final deletion query string is: \n" . "$solrQuery \n";
 
     my $solr_response = $self->_sendRequest("$solrQuery", "GET");
+    $self->_invalidateCache($searchCore);
     return $solr_response;
 }
 
+#
+# method name: _deleteDocs
+# Internal Method: to delete docs of a core by unique key and by query, with JSON delete commands POSTed to
+# /update, up to _DELETE_MAX_IDS ids or _DELETE_MAX_QUERIES queries per request, instead of _deleteRecords'
+# one stream.body GET (bounded by the URL length) and one commit per criteria hash.
+# A 'commit' or 'soft' commit policy is sent with the last request only, so that the whole deletion is
+# committed once; 'commitWithin=<ms>' is sent with every request.
+# params :
+#    $solrCore : the name of the SOLR core
+#    $ids : a reference to a list of unique key values
+#    $queries : a reference to a list of SOLR queries
+#    $commitPolicy : the commit policy of the deletion, see _commitParams
+# returns :
+#    the number of requests sent; dies with the SOLR error of the first failed request
+#
+sub _deleteDocs
+{
+    my ($self, $solrCore, $ids, $queries, $commitPolicy) = @_;
+    my $commit = $self->_commitParams($commitPolicy);
+    my @bodies;
+    my @pending = @{$ids};
+    while (my @chunk = splice(@pending, 0, $self->{_DELETE_MAX_IDS})) {
+        push @bodies, '{"delete":' . JSON::to_json([map { "$_" } @chunk]) . '}';
+    }
+    @pending = @{$queries};
+    while (my @chunk = splice(@pending, 0, $self->{_DELETE_MAX_QUERIES})) {
+        #one delete key per query, repeated in the object as SOLR's JSON update syntax allows
+        push @bodies, '{' . join(",", map { '"delete":' . JSON::to_json({query => "$_"}) } @chunk) . '}';
+    }
+    return 0 unless @bodies;
+
+    if (!$self->_checkSolr()) {
+        die "\nError--Solr server not responding:\n" . $self->_error->{response};
+    }
+    for (my $i = 0; $i < @bodies; $i++) {
+        my $params = ($commit =~ /^commitWithin/ || $i == $#bodies) ? $commit : "";
+        my $url = "$self->{_SOLR_URL}/$solrCore/update?wt=json" . ($params ? "&$params" : "");
+        my $response = $self->_sendRequest($url, 'POST', 'binary', $self->{_CT_JSON}, $bodies[$i]);
+        if (!$self->_parseResponse($response, "json")) {
+            die "\nError--SOLR deletion from $solrCore failed at request " . ($i + 1) . " of " .
+                scalar(@bodies) . ":\n" . $response->{response};
+        }
+    }
+    return scalar(@bodies);
+}
+
+#
+# method name: _matchingIds
+# Internal Method: to list the unique key values of the docs of a core matching any of a list of queries, with
+# cursorMark deep paging and only the unique key fetched
+# returns :
+#    a reference to the list of the ids
+#
+sub _matchingIds
+{
+    my ($self, $solrCore, $queries) = @_;
+    my $uniqueKey = $self->_uniqueKey($solrCore);
+    my $url = $self->{_SOLR_URL}."/$solrCore/select";
+    my @ids;
+    foreach my $query (@{$queries}) {
+        my $cursorMark = "*";
+        while (1) {
+            my $body = "q=" . URI::Escape::uri_escape($query) . "&wt=json&rows=$self->{_EXISTENCE_FILTER_PAGE}" .
+                       "&fl=$uniqueKey&sort=" . URI::Escape::uri_escape("$uniqueKey asc") .
+                       "&cursorMark=" . URI::Escape::uri_escape($cursorMark);
+            my $response = $self->_sendRequest($url, 'POST', undef, $self->{_CT_FORM}, $body);
+            if (!$self->_parseResponse($response, "json")) {
+                die "\nError--SOLR search of $solrCore for '$query' failed:\n" . $response->{response};
+            }
+            my $result = JSON::from_json($response->{response});
+            push @ids, map { $_->{$uniqueKey} } @{$result->{response}->{docs}};
+            my $next = $result->{nextCursorMark};
+            last if !defined($next) || $next eq $cursorMark;
+            $cursorMark = $next;
+        }
+    }
+    return \@ids;
+}
+
+#
+# method name: _countQueries
+# Internal Method: counts the docs matching each of a list of queries, sending all the queries
+# of a core as the facet.query parameters of one rows=0 search (per _BATCH_MAX_QUERIES queries)
+# instead of one search per query.
+# params :
+# $queries is a list of hashes, each holding a search_core and a search_query (see _buildQueryString)
+# returns :
+#    a reference to a list of the counts in the order of $queries, -1 for the queries whose
+#    SOLR request failed
+#
+sub _countQueries
+{
+    my ($self, $queries) = @_;
+    my @counts = (-1) x scalar(@{$queries});
+    my %indexes;    # core => {facet query => [indexes into $queries]}
+    my %facetQueries;    # core => [distinct facet queries, in the order first seen]
+    for (my $i = 0; $i < @{$queries}; $i++) {
+        my $core = $queries->[$i]->{search_core};
+        my $facetQuery = $self->_buildQueryString($queries->[$i]->{search_query});
+        $facetQuery =~ s/^q=//;
+        push @{$facetQueries{$core}}, $facetQuery unless exists $indexes{$core}->{$facetQuery};
+        push @{$indexes{$core}->{$facetQuery}}, $i;
+    }
+    return \@counts unless %facetQueries;
+
+    if (!$self->_checkSolr()) {
+        die "\nError--Solr server not responding:\n" . $self->_error->{response};
+    }
+    foreach my $core (keys %facetQueries) {
+        my @pending = @{$facetQueries{$core}};
+        while (my @chunk = splice(@pending, 0, $self->{_BATCH_MAX_QUERIES})) {
+            #POSTed as a form so that the number of queries is not limited by the URL length;
+            #SOLR returns facet_queries as an object keyed by the decoded query; json.nl=arrarr asks for
+            #[query, count] pairs in the order sent, which older SOLR versions honour
+            my $body = "q=*:*&rows=0&wt=json&json.nl=arrarr&facet=true";
+            $body .= "&facet.query=$_" foreach @chunk;
+            $body =~ s/ /%20/g;
+            my $url = $self->{_SOLR_URL}."/$core/select";
+            my $response = $self->_sendRequest($url, 'POST', undef, $self->{_CT_FORM}, $body);
+            next unless $self->_parseResponse($response, "json");
+            my $facets = JSON::from_json($response->{response})->{facet_counts}->{facet_queries};
+            for (my $j = 0; $j < @chunk; $j++) {
+                my $count;
+                if (ref($facets) eq 'HASH') {
+                    (my $key = $chunk[$j]) =~ s/\+/ /g;
+                    $count = $facets->{URI::Escape::uri_unescape($key)};
+                } elsif (ref($facets) eq 'ARRAY' && ref($facets->[$j]) eq 'ARRAY') {
+                    $count = $facets->[$j]->[1];
+                }
+                next unless defined($count);
+                $counts[$_] = $count foreach @{$indexes{$core}->{$chunk[$j]}};
+            }
+        }
+    }
+    return \@counts;
+}
+
+#
+# method name: _invalidateCache
+# Internal Method: drops the cached search_solr, exists_in_solr and get_total_count results
+# of a SOLR core, to be called whenever documents of that core are added, updated or deleted.
+#
+sub _invalidateCache
+{
+    my ($self, $solrCore) = @_;
+    $self->{_cache}->invalidate_core($solrCore) if $self->{_cache};
+}
+
 #
 # method name: _sendRequest
 # Internal Method used for sending HTTP
@@ -270,7 +455,7 @@ sub _sendRequest
     my $out = {};
 
     # create a HTTP request
-    my $ua = LWP::UserAgent->new;
+    my $ua = $self->_userAgent();
     my $request = HTTP::Request->new;
     $request->method($method);
     $request->uri($url);
@@ -280,27 +465,119 @@ sub _sendRequest
         $request->header($header=>$headers->{$header});
     }
 
-    # set data for posting
+    # responses are compressed by SOLR (or the proxy in front of it) when it is set up to
+    $request->header('Accept-Encoding' => 'gzip, deflate');
+
+    # the operation is told from the body as sent, before it is compressed
+    my $operation = $self->_solrOperation($url, $data);
+
+    # set data for posting, gzipped when it is large and SOLR takes compressed request bodies
+    if ($self->{_SOLR_GZIP_REQUESTS} && length($data) >= $self->{_SOLR_GZIP_MIN_BYTES}) {
+        my $gzipped;
+        if (IO::Compress::Gzip::gzip(\$data => \$gzipped)) {
+            $request->header('Content-Encoding' => 'gzip');
+            $data = $gzipped;
+        }
+    }
     $request->content($data);
     #print "\nThe HTTP request: \n" . Dumper($request) . "\n";
     
     # Send request and receive the response
+    my $timer = $self->{_metrics}->start('solr', $operation);
     my $response = $ua->request($request);
+    $timer->stop(error => $response->code() >= 400, bytes_out => length($data),
+                 bytes_in => length($response->content));
+    $self->_recordOutcome($response);
     $out->{responsecode} = $response->code();
-    $out->{response} = $response->content;
+    # undo the Content-Encoding only; the callers decode the JSON bytes themselves
+    my $content = $response->header('Content-Encoding') ?
+        $response->decoded_content(charset => 'none') : undef;
+    $out->{response} = defined($content) ? $content : $response->content;
     $out->{url} = $url;
     return $out;
 }
 
+#
+# method name: _solrOperation
+# returns : the name a SOLR request is counted under in the metrics: ping, select, schema,
+#           commit, rollback, delete, update (XML adds) or update_json
+#
+sub _solrOperation
+{
+    my ($self, $url, $data) = @_;
+    return "ping" if $url eq $self->{_SOLR_PING_URL};
+    return "select" if $url =~ m{/select(?:\?|$)};
+    return "schema" if $url =~ m{/schema/};
+    return "update_json" if $url =~ m{/update/json};
+    my $body = ($url =~ /stream\.body=(.{0,16})/) ? URI::Escape::uri_unescape($1) : substr($data, 0, 64);
+    return $1 if $body =~ /^\s*<(commit|rollback|delete)\b/ || $body =~ /^\s*\{\s*"(delete)"/;
+    return "update";
+}
+
+#
+# method name: _userAgent
+# Internal Method: returns the long-lived LWP::UserAgent shared by all the SOLR requests
+# (search_solr, _addJSON2Solr, _commit, _ping, _deleteRecords, etc.), so that its keep-alive
+# connections are reused instead of paying the TCP (and TLS) setup on every call.
+#
+# LWP pools connections per scheme; since all the requests go to the host of _SOLR_URL,
+# _SOLR_MAX_CONNS_PER_HOST effectively caps the idle connections kept open to that host.
+# Connections left unused for longer than _SOLR_CONN_IDLE_TIMEOUT seconds are evicted
+# before each request, so that connections the server has already dropped are not reused.
+#
+sub _userAgent
+{
+    my ($self) = @_;
+    if (!defined($self->{_ua})) {
+        my $ua = LWP::UserAgent->new(keep_alive => $self->{_SOLR_MAX_CONNS});
+        $ua->conn_cache->capacity('http', $self->{_SOLR_MAX_CONNS_PER_HOST});
+        $ua->conn_cache->capacity('https', $self->{_SOLR_MAX_CONNS_PER_HOST});
+        $self->{_ua} = $ua;
+    }
+    my $connCache = $self->{_ua}->conn_cache;
+    $connCache->prune();
+    $connCache->drop($self->{_SOLR_CONN_IDLE_TIMEOUT}, "idle timeout");
+    return $self->{_ua};
+}
+
+#
+# Internal Method
+# Name: _newUserAgentAfterFork
+# Purpose: to give a forked process an LWP::UserAgent of its own, created by _userAgent on the process's first
+# request.  The keep-alive connections of the agent inherited from the parent are the parent's sockets: the TLS ones
+# are closed without the close_notify that IO::Socket::SSL sends when it is destroyed, which would end the parent's
+# sessions, before the inherited agent is dropped.
+#
+sub _newUserAgentAfterFork
+{
+    my ($self) = @_;
+    my $inherited = $self->{_ua};
+    if (defined($inherited)) {
+        foreach my $conn ($inherited->conn_cache->get_connections()) {
+            $conn->close(SSL_no_shutdown => 1) if $conn->isa('IO::Socket::SSL');
+        }
+    }
+    $self->{_ua} = undef;
+}
+
 #
 # Internal Method: to parse solr server response
-# Responses from Solr take the form shown here:
+# Responses from Solr take the form shown here (wt=json, the format of the internal requests):
+#{
+#  "responseHeader":{
+#    "status":0,
+#    "QTime":127},
+#  "response":{"numFound":12,"start":0,"docs":[...]}
+#}
+# or, with wt=xml:
 #<response>
 #  <lst name="responseHeader">
 #    <int name="status">0</int>
 #    <int name="QTime">127</int>
 #  </lst>
 #</response>
+# Only the status is read, see _responseValue; the response text is left for the caller to decode.
+# Responses without a header (e.g. wt=csv) are successful if the HTTP request was.
 #
 sub _parseResponse
 {
@@ -314,21 +591,12 @@ sub _parseResponse
 
     # Check for successfull request/response
     if ($response->{responsecode} eq "200") {
-           if ($responseType eq "json") {
-                my $resRef = JSON::from_json($response->{response});
-                if ($resRef->{responseHeader}->{status} eq 0) {
-                        return 1;
-                }
-           } else {
-                my $xs = new XML::Simple();
-                my $xmlRef;
-                eval {
-                        $xmlRef = $xs->XMLin($response->{response});
-                };
-                if ($xmlRef->{lst}->{'int'}->{status}->{content} == 0){
-                        return 1;
-                }
-           }
+        my $status = $self->_responseValue($response->{response}, "status");
+        if (defined($status)) {
+            return 1 if ($status == 0);
+        } elsif ($responseType ne "json" && $responseType ne "xml") {
+            return 1;
+        }
     }
     $self->{is_error} = 1;
     $self->{error} = $response;
@@ -336,6 +604,31 @@ sub _parseResponse
     return 0;
 }
 
+#
+# Internal Method: _responseValue
+# Extracts an integer of the Solr response header or result, i.e. status, QTime or numFound, without
+# decoding the response.  Solr writes the responseHeader and the numFound of the result ahead of the
+# docs, so the scan stops at the first match, a few hundred bytes into the text, however many docs
+# follow.  Both the wt=json and the wt=xml forms are understood:
+#    "status":0                      <int name="status">0</int>
+#    "numFound":12                   <result name="response" numFound="12" start="0">
+# params :
+#     $text : the response text
+#     $name : status, QTime or numFound
+# returns : the value, or undef if the response does not have it
+#
+sub _responseValue
+{
+    my ($self, $text, $name) = @_;
+    return undef unless defined($text);
+    if ($name eq "numFound") {
+        return $1 if ($text =~ /(?:"numFound"\s*:\s*|\bnumFound=")(\d+)/);
+    } elsif ($text =~ /(?:"\Q$name\E"\s*:\s*|<int name="\Q$name\E">)(-?\d+)/) {
+        return $1;
+    }
+    return undef;
+}
+
 #
 # internal method: _toJSON, converts a given array of references (Perl scalars) to an array of JSON documents
 # input format:
@@ -456,9 +749,9 @@ sub _toJSON
 #
 sub _addJSON2Solr
 {
-    my ($self, $solrCore, $inputObjs, $jsonString) = @_;
+    my ($self, $solrCore, $inputObjs, $jsonString, $commitPolicy) = @_;
 #=begin    
-    if (!$self->_ping()) {
+    if (!$self->_checkSolr()) {
         die "\nError--Solr server not responding:\n" . $self->_error->{response};
     }
 #=cut
@@ -473,12 +766,12 @@ sub _addJSON2Solr
         #print "\nConverted Perl scalars to json:\n " . Dumper($docs);
     }
     
-    my $commit = $self->{_AUTOCOMMIT} ? 'true' : 'false';
-    my $url = "$self->{_SOLR_URL}/$solrCore/update/json?commit=true";# . $commit; 
+    my $commit = $self->_commitParams($commitPolicy);
+    my $url = "$self->{_SOLR_URL}/$solrCore/update/json?wt=json" . ($commit ? "&$commit" : "");
 #=begin
     my $response = $self->_sendRequest($url, 'POST', 'binary', $self->{_CT_JSON}, $docs);
 
-    if ($self->_parseResponse($response) == 0) {
+    if ($self->_parseResponse($response, "json") == 0) {
             $self->{error} = $response;
             $self->{error}->{errmsg} = $@;
             print "\nSolr indexing error:\n" . $self->_error->{response}; 
@@ -486,13 +779,7 @@ sub _addJSON2Solr
             return 0;
     }
 #=cut
-    if (!$self->_commit($solrCore)) {
-        die $self->_error->{response};
-        return 0;
-    }
-    else {
-        return 1;
-    }
+    return 1;
 }
 
 #
@@ -500,9 +787,10 @@ sub _addJSON2Solr
 # Internal method: to add XML documents to solr for indexing.
 # First it will convert the raw datastructure to required ds then it will convert
 # this ds to xml. This xml will be posted to Apache solr for indexing.
-# Depending on the flag AUTOCOMMIT the documents will be indexed immediatly or on commit is issued.
+# Depending on the commit policy (see _commitParams) the documents will be visible immediatly or once a commit is issued.
 # parameters:   
 #     $params: This parameter specifies set of list of document fields and values.
+#     $commitPolicy: the commit policy of the update, see _commitParams.
 # return
 #    1 for successful posting of the xml document
 #    0 for any failure
@@ -510,19 +798,19 @@ sub _addJSON2Solr
 #
 sub _addXML2Solr
 {
-    my ($self, $solrCore, $params) = @_;
+    my ($self, $solrCore, $params, $commitPolicy) = @_;
     
-    if (!$self->_ping()) {
+    if (!$self->_checkSolr()) {
         die "\nError--Solr server not responding:\n" . $self->_error->{response};
     }
     
     my $ds = $self->_rawDsToSolrDs($params);
     my $doc = $self->_toXML($ds, 'add');
-    my $commit = $self->{_AUTOCOMMIT} ? 'true' : 'false';
-    my $url = "$self->{_SOLR_URL}/$solrCore/update?commit=true";# . $commit;
+    my $commit = $self->_commitParams($commitPolicy);
+    my $url = "$self->{_SOLR_URL}/$solrCore/update?wt=json" . ($commit ? "&$commit" : "");
     my $response = $self->_sendRequest($url, 'POST', undef, $self->{_CT_XML}, $doc);
     
-    if ($self->_parseResponse($response) == 0) {
+    if ($self->_parseResponse($response, "json") == 0) {
             $self->{error} = $response;
             $self->{error}->{errmsg} = $@;
             print "\nSolr indexing error:\n" . $self->_error->{response}; 
@@ -682,16 +970,49 @@ sub _error
 sub _autocommit
 {
     my ($self, $flag) = @_;
-    $self->{_AUTOCOMMIT} = $flag | 1;
+    $self->{_AUTOCOMMIT} = $flag ? 1 : 0;
     return 1;
 }
 
+#
+# method name: _commitParams
+#    This method turns a commit policy into the parameters of a SOLR update request, so that the
+#    commit is made by the update itself instead of a separate request.
+# params:
+#     $commitPolicy: one of
+#         'commit'            - a hard commit: the update is visible and flushed to disk when the request returns
+#         'soft'              - a soft commit: the update is visible when the request returns, but is only
+#                               flushed to disk by SOLR's next hard (auto)commit
+#         'commitWithin=<ms>' - SOLR commits within <ms> milliseconds, merging the commits of the
+#                               updates that arrive meanwhile
+#         'none'              - no commit: the update becomes visible with SOLR's autoCommit/autoSoftCommit
+#                               or a later commit, e.g. the one made at the end of a bulk job
+#     An empty policy defaults to 'none' when _AUTOCOMMIT is on (SOLR is configured to commit by itself)
+#     and to 'commit' otherwise.
+# returns
+#    the query string of the parameters, empty for 'none'; dies for an unknown policy
+#
+sub _commitParams
+{
+    my ($self, $commitPolicy) = @_;
+    if (!defined($commitPolicy) || $commitPolicy eq "") {
+        $commitPolicy = $self->{_AUTOCOMMIT} ? "none" : "commit";
+    }
+    return "commit=true" if ($commitPolicy eq "commit");
+    return "softCommit=true" if ($commitPolicy eq "soft");
+    return "" if ($commitPolicy eq "none");
+    return "commitWithin=$1" if ($commitPolicy =~ /^commitWithin=(\d+)$/);
+    die "Invalid commit_policy '$commitPolicy', expecting 'none', 'soft', 'commit' or 'commitWithin=<ms>'";
+}
+
 #
 # method name: _commit
 #    This method is used for commiting the transaction that was initiated.
 #     Request XML format:
 #         true
-# params : -
+# params :
+#     $solrCore: the name of the SOLR core
+#     $soft: 1 for a soft commit, which makes the changes visible without flushing them to disk
 # returns :
 #    1 for success
 #    0 for any failure
@@ -699,17 +1020,17 @@ sub _autocommit
 #
 sub _commit
 {
-    my ($self, $solrCore) = @_;
+    my ($self, $solrCore, $soft) = @_;
     
-    if (!$self->_ping()) {
+    if (!$self->_checkSolr()) {
         die "\nError--Solr server not responding:\n" . $self->_error->{response};
     }
     
-    my $url = $self->{_SOLR_POST_URL} . "/$solrCore/update";
-    my $cmd = $self->_toXML('true', 'commit');
+    my $url = $self->{_SOLR_POST_URL} . "/$solrCore/update?wt=json";
+    my $cmd = $soft ? '<commit softCommit="true"/>' : $self->_toXML('true', 'commit');
     my $response = $self->_sendRequest($url, 'POST', undef, $self->{_CT_XML}, $cmd);
 
-    return 1 if ($self->_parseResponse($response));
+    return 1 if ($self->_parseResponse($response, "json"));
     return 0;
 }
 #
@@ -727,15 +1048,15 @@ sub _rollback
 {
     my ($self, $solrCore) = @_;
 
-    if (!$self->_ping()) {
+    if (!$self->_checkSolr()) {
         die "\nError--Solr server not responding:\n" . $self->_error->{response};
     }
 
-    my $url = $self->{_SOLR_POST_URL} . "/$solrCore/update";
+    my $url = $self->{_SOLR_POST_URL} . "/$solrCore/update?wt=json";
     my $cmd = $self->_toXML('', 'rollback');
     my $response = $self->_sendRequest($url, 'POST', undef, $self->{_CT_XML}, $cmd);
 
-    return 1 if ($self->_parseResponse($response));
+    return 1 if ($self->_parseResponse($response, "json"));
     return 0;
 }
 
@@ -762,27 +1083,18 @@ sub _exists
 {
     my ($self, $solrCore, $searchCriteria) = @_;
 
-    if (!$self->_ping()) {
+    if (!$self->_checkSolr()) {
         die "\nError--Solr server not responding:\n" . $self->_error->{response};
     }
-    my $queryString = $self->_buildQueryString($searchCriteria);
+    # only the count is needed, so no docs are fetched
+    my $queryString = $self->_buildQueryString($searchCriteria, {rows => 0}, "", "json");
     my $url = $self->{_SOLR_URL}."/$solrCore/select?";
     $url = $url. $queryString;
     #print "Exists checking query:" . $queryString;
     my $response = $self->_sendRequest($url, 'GET');
-    my $status = $self->_parseResponse($response);
-    if ($status == 1) {
-        my $xs = new XML::Simple();
-        my $xmlRef;
-        eval {
-            $xmlRef = $xs->XMLin($response->{response});
-        };
-        #print "\n$url result:\n" . Dumper($xmlRef->{result}) . "\n";
-        if ($xmlRef->{lst}->{'int'}->{status}->{content} eq 0){
-            if ($xmlRef->{result}->{numFound} gt 0) {
-            return 1;
-        }
-     }   
+    if ($self->_parseResponse($response, "json")) {
+        my $numFound = $self->_responseValue($response->{response}, "numFound");
+        return 1 if ($numFound && $numFound > 0);
     }
     return 0;
 }
@@ -802,10 +1114,82 @@ sub _ping
     my $response = $self->_sendRequest($self->{_SOLR_PING_URL}, 'GET');
     #print "Ping's response:\n" . Dumper($response) . "\n";
     
-    return 1 if ($self->_parseResponse($response));
+    return 1 if ($self->_parseResponse($response, "json"));
+    return 0;
+}
+
+#
+# method name: _checkSolr
+#    The cached health check made before the SOLR operations, in place of a _ping per operation.
+#    The up/down state is kept from the outcome of the requests themselves (see _recordOutcome):
+#    - while SOLR is up, no request is made, unless nothing has been heard from SOLR for
+#      _SOLR_HEALTH_INTERVAL seconds, in which case it is pinged;
+#    - SOLR is marked down by a failed ping or by _SOLR_FAILURE_THRESHOLD consecutive failed requests;
+#    - while SOLR is down, the check fails at once without any request, except for one ping per
+#      _SOLR_RETRY_INTERVAL seconds to find out whether it is back.
+#    A PSGI worker has no background thread to ping on a timer, so the interval pings are made
+#    lazily by the first operation that finds the state stale.
+# params : -
+# returns :
+#     1 if SOLR is up
+#     0 if not, with the error method holding the details
+#
+sub _checkSolr
+{
+    my ($self) = @_;
+    my $health = $self->{_health};
+    my $elapsed = time() - $health->{checked};
+    if ($health->{up}) {
+        return 1 if $elapsed < $self->{_SOLR_HEALTH_INTERVAL};
+    } elsif ($elapsed < $self->{_SOLR_RETRY_INTERVAL}) {
+        $self->{is_error} = 1;
+        $self->{error} = {
+            responsecode => 503,
+            response => "SOLR at $self->{_SOLR_URL} marked down since " . localtime($health->{down_since}) .
+                        " ($health->{last_error}), retrying in " . ($self->{_SOLR_RETRY_INTERVAL} - $elapsed) . "s",
+            url => $self->{_SOLR_PING_URL}
+        };
+        return 0;
+    }
+    return 1 if ($self->_ping());
+    $self->_markDown("ping failed with HTTP status " . $self->_error->{responsecode});
     return 0;
 }
 
+#
+# method name: _recordOutcome
+#    Updates the cached health state from the response to a SOLR request: a response other than a
+#    server error (5xx, which LWP also returns when the connection fails) means SOLR is up.
+#
+sub _recordOutcome
+{
+    my ($self, $response) = @_;
+    my $health = $self->{_health};
+    return unless $health;
+    if ($response->code() >= 500) {
+        $health->{failures}++;
+        $health->{last_error} = $response->status_line();
+        if ($health->{failures} >= $self->{_SOLR_FAILURE_THRESHOLD}) {
+            $self->_markDown($health->{failures} . " consecutive failed requests, last: " . $response->status_line());
+        }
+    } else {
+        $health->{up} = 1;
+        $health->{failures} = 0;
+        $health->{down_since} = undef;
+        $health->{checked} = time();
+    }
+}
+
+sub _markDown
+{
+    my ($self, $reason) = @_;
+    my $health = $self->{_health};
+    $health->{down_since} = time() if $health->{up} || !defined($health->{down_since});
+    $health->{up} = 0;
+    $health->{checked} = time();
+    $health->{last_error} = $reason;
+}
+
 sub _clear_error
 {
     my ($self) = @_;
@@ -815,109 +1199,619 @@ sub _clear_error
 
 
 #
-# Internal Method: to check if a given genome has been indexed by KBase in SOLR.  Returns a string stating the status
+# Internal Method
+# Name: _escapeTerm
+# Purpose: to backslash-escape the characters of a term that have a special meaning in the SOLR (Lucene) query syntax
+#
+sub _escapeTerm
+{
+    my ($self, $term) = @_;
+    $term =~ s/([+\-&|!(){}\[\]^"~*?:\\\/\s])/\\$1/g;
+    return $term;
+}
+
+#
+# Internal Method
+# Name: _facetValues
+# Purpose: to find which of a list of terms of a field occur in a SOLR core, with a single request.
+# The terms are ORed into one query and the distinct values of the matched docs are read from a facet
+# on the field, so that no documents are returned.
 #
 # Input parameters :
-# $current_genome is a genome object whose KBase status is to be checked.
-# $solr_core is the name of the SOLR core
+#       $solrCore is the name of the SOLR core
+#       $field is the name of the field, which must be indexed
+#       $terms is a list of query terms for the field, already escaped (they may end with a '*' for a prefix query)
+#       $filter is an optional filter query applied to the docs, e.g. 'object_type:"KBaseGenomes.Genome-8.2"'
+#
+# returns : a reference to a hash whose keys are the values of the field found
 #
-# returns : a string stating the status
-#    
-sub _checkTaxonStatus
+sub _facetValues
 {
-    my ($self, $current_genome, $solr_core) = @_;
-    #print "\nChecking taxon status for genome:\n " . Dumper($current_genome) . "\n";
-    
-    my $status = "";
-    my $query = { taxonomy_id => $current_genome->{tax_id} };
-    
-    if($self->exists_in_solr({search_core=>$solr_core,search_query=>$query})==1) {
-        $status = "Taxon in KBase";
-    }    
-    else {
-        $status = "Taxon not found";
+    my ($self, $solrCore, $field, $terms, $filter) = @_;
+    my %values;
+    return \%values unless @{$terms};
+
+    my $query = "$field:(" . join(" OR ", @{$terms}) . ")";
+    my $body = "q=" . URI::Escape::uri_escape($query) .
+               "&rows=0&wt=json&json.nl=map&facet=true&facet.field=$field&facet.limit=-1&facet.mincount=1";
+    $body .= "&fq=" . URI::Escape::uri_escape($filter) if $filter;
+    my $url = $self->{_SOLR_URL}."/$solrCore/select";
+    my $response = $self->_sendRequest($url, 'POST', undef, $self->{_CT_FORM}, $body);
+    if (!$self->_parseResponse($response, "json")) {
+        die "\nError--SOLR search of $field in $solrCore failed:\n" . $response->{response};
     }
-    #print "\nStatus:$status\n";
-    return $status;
+    my $counts = JSON::from_json($response->{response})->{facet_counts}->{facet_fields}->{$field};
+    $values{$_} = 1 foreach keys %{$counts};
+    return \%values;
 }
 
+#
+# Internal Method
+# Name: _uniqueKey
+# Purpose: to find the uniqueKey field of a SOLR core, read from the core's schema once and then cached
+#
+# returns : the name of the field
+#
+sub _uniqueKey
+{
+    my ($self, $solrCore) = @_;
+    return $self->{_uniqueKeys}->{$solrCore} if defined($self->{_uniqueKeys}->{$solrCore});
+
+    my $url = $self->{_SOLR_URL}."/$solrCore/schema/uniquekey?wt=json";
+    my $response = $self->_sendRequest($url, 'GET');
+    if (!$self->_parseResponse($response, "json")) {
+        die "\nError--reading the uniqueKey of $solrCore failed:\n" . $response->{response};
+    }
+    my $uniqueKey = JSON::from_json($response->{response})->{uniqueKey};
+    die "\nError--SOLR core $solrCore has no uniqueKey\n" unless $uniqueKey;
+    $self->{_uniqueKeys}->{$solrCore} = $uniqueKey;
+    return $uniqueKey;
+}
 
 #
-# Internal Method 
-# Name: _checkEntryStatus
-# Purpose: to check for a given genome's status against genomes in SOLR.  
+# Internal Method
+# Name: _contentHash
+# Purpose: to compute the content hash of a doc, the hex MD5 of the canonical JSON (sorted keys) of its fields,
+# leaving out the hash field itself and SOLR's _version_.  Values are hashed as strings, so that a field sent
+# as 5 one time and as "5" the next does not count as a change.
+#
+sub _contentHash
+{
+    my ($self, $doc, $hashField) = @_;
+    my %fields;
+    foreach my $field (keys %{$doc}) {
+        next if $field eq $hashField || $field eq "_version_";
+        my $value = $doc->{$field};
+        if (ref($value) eq 'ARRAY') {
+            $fields{$field} = [map { defined($_) ? "$_" : undef } @{$value}];
+        } else {
+            $fields{$field} = (defined($value) && !ref($value)) ? "$value" : $value;
+        }
+    }
+    return Digest::MD5::md5_hex($self->{_canonicalJSON}->encode(\%fields));
+}
+
+#
+# Internal Method
+# Name: _storedHashes
+# Purpose: to fetch the content hashes stored in SOLR for a list of docs, with one request per
+# _BATCH_MAX_QUERIES docs that returns only the unique key and the hash field of the docs found.
+#
+# Input parameters :
+#       $solrCore is the name of the SOLR core
+#       $uniqueKey is the uniqueKey field of the core
+#       $hashField is the field of the hashes
+#       $ids is a reference to a list of uniqueKey values
+#
+# returns : a reference to a hash of id => hash of the docs found with a hash
+#
+sub _storedHashes
+{
+    my ($self, $solrCore, $uniqueKey, $hashField, $ids) = @_;
+    my %hashes;
+    my $url = $self->{_SOLR_URL}."/$solrCore/select";
+    my @pending = @{$ids};
+    while (my @chunk = splice(@pending, 0, $self->{_BATCH_MAX_QUERIES})) {
+        my $query = "$uniqueKey:(" . join(" OR ", map { $self->_escapeTerm($_) } @chunk) . ")";
+        my $body = "q=" . URI::Escape::uri_escape_utf8($query) .
+                   "&fl=" . URI::Escape::uri_escape("$uniqueKey,$hashField") .
+                   "&rows=" . scalar(@chunk) . "&wt=json";
+        my $response = $self->_sendRequest($url, 'POST', undef, $self->{_CT_FORM}, $body);
+        if (!$self->_parseResponse($response, "json")) {
+            die "\nError--SOLR search of the $hashField of $solrCore failed:\n" . $response->{response};
+        }
+        foreach my $doc (@{JSON::from_json($response->{response})->{response}->{docs}}) {
+            my $hash = $doc->{$hashField};
+            $hash = $hash->[0] if ref($hash) eq 'ARRAY';
+            $hashes{$doc->{$uniqueKey}} = $hash if defined($hash);
+        }
+    }
+    return \%hashes;
+}
+
+#
+# Internal Method
+# Name: _changedDocs
+# Purpose: to leave out of a list of docs those whose content has not changed since they were last indexed,
+# for index_in_solr with skip_unchanged.  The content hash of each doc is compared with the one stored in SOLR
+# (hash_store 'solr', fetched in bulk by _storedHashes) or in the local KBSolrUtil::HashStore (hash_store
+# 'local').  With hash_store 'solr' the hash is added to the docs, in $hashField, to be indexed with them.
+# Docs without a uniqueKey value, and repeated docs of the list, are always kept.
+#
+# returns : a reference to the list of the docs to send, and a reference to a hash of id => hash of those of them
+#           that have a uniqueKey value
+#
+sub _changedDocs
+{
+    my ($self, $solrCore, $docs, $hashStore, $hashField) = @_;
+    my $uniqueKey = $self->_uniqueKey($solrCore);
+
+    my (@ids, %hashes, %seen);
+    foreach my $doc (@{$docs}) {
+        my $id = $doc->{$uniqueKey};
+        next unless defined($id) && !ref($id) && $id ne "";
+        $hashes{$id} = $self->_contentHash($doc, $hashField);
+        push @ids, $id unless $seen{$id}++;
+    }
+    my $stored = $hashStore eq "local" ?
+        $self->{_hashStore}->get_many($solrCore, \@ids) :
+        $self->_storedHashes($solrCore, $uniqueKey, $hashField, \@ids);
+
+    my (@changed, %changedHashes);
+    foreach my $doc (@{$docs}) {
+        my $id = $doc->{$uniqueKey};
+        my $hash = (defined($id) && !ref($id)) ? $hashes{$id} : undef;
+        if (defined($hash)) {
+            next if $seen{$id} == 1 && defined($stored->{$id}) && $stored->{$id} eq $hash;
+            $doc = { %{$doc}, $hashField => $hash } if $hashStore ne "local";
+            $changedHashes{$id} = $hash;
+        }
+        push @changed, $doc;
+    }
+    return (\@changed, \%changedHashes);
+}
+
+#
+# Internal Method
+# Name: _classifyEntries
+# Purpose: to check the KBase status of a list of genomes against the genomes and the taxa in SOLR, with
+# one search on the genome_id prefixes and one search on the taxonomy_ids of the whole list.
 #
 # Input parameters :
-#       $current_entry is a genome object whose KBase status is to be checked.
-#       $solr_core is the name of the SOLR core
+#       $entries is a list of genome objects (with id, accession and tax_id) whose KBase status is to be checked.
+#       $solr_core is the name of the SOLR core of the genomes
+#       $tx_solr_core is the name of the SOLR core of the taxa
+#       $en_type is the object type of the genomes
 #
-# returns : a string stating the status
-#    
-sub _checkEntryStatus 
+# returns : a reference to a list, in the order of $entries, of hashes of
+#       en_status - "New entry", "Existing entry: current" or "Existing entry: updated "
+#       genome_id - the genome_id found in SOLR for an existing entry
+#       tx_status - "Taxon in KBase" or "Taxon not found"
+#
+sub _classifyEntries
 {
-    my ($self, $current_entry, $solr_core, $en_type) = @_;
-    #print "\nChecking status for genome:\n " . Dumper($current_entry) . "\n";
+    my ($self, $entries, $solr_core, $tx_solr_core, $en_type) = @_;
     $en_type = "KBaseGenomes.Genome-8.2" unless $en_type;
 
-    my $status = "";
-    my $query = { 
-        genome_id => $current_entry->{id} . "*", 
-        object_type => $en_type
-    };
-    my $params = {
-        fl => "genome_id",
-        wt => "json",
-        start => 0
+    #the genomes and taxa the existence filters of the cores rule out are left out of the searches; a genome
+    #is ruled out when neither its id nor its accession is in the core
+    my (%ids, %taxa);
+    foreach my $entry (@{$entries}) {
+        $ids{$entry->{id}} = 1 if defined($entry->{id}) && $entry->{id} ne "" &&
+            !($self->_certainlyAbsent($solr_core, "genome_id", $entry->{id}) &&
+              (!$entry->{accession} || $self->_certainlyAbsent($solr_core, "genome_id", $entry->{accession})));
+        $taxa{$entry->{tax_id}} = 1 if defined($entry->{tax_id}) && $entry->{tax_id} ne "" &&
+            !$self->_certainlyAbsent($tx_solr_core, "taxonomy_id", $entry->{tax_id});
+    }
+    my $genomeIds = $self->_facetValues($solr_core, "genome_id",
+                        [map { $self->_escapeTerm($_) . "*" } keys %ids],
+                        "object_type:\"" . $self->_escapeTerm($en_type) . "\"");
+    my $taxonIds = $self->_facetValues($tx_solr_core, "taxonomy_id",
+                        [map { $self->_escapeTerm($_) } keys %taxa]);
+
+    #index the genome_ids found both as they are and by the id without the version suffix
+    my (%found, %foundById);
+    foreach my $gm_id (map { uc } keys %{$genomeIds}) {
+        $found{$gm_id} = 1;
+        (my $id = $gm_id) =~ s/\.\d+$//;
+        $foundById{$id} = $gm_id unless defined($foundById{$id});
+    }
+
+    my @statuses;
+    foreach my $entry (@{$entries}) {
+        my $status = { en_status => "New entry" };
+        my $accession = uc($entry->{accession} || "");
+        my $id = uc($entry->{id} || "");
+        if ($accession ne "" && $found{$accession}) {
+            $status->{en_status} = "Existing entry: current";
+            $status->{genome_id} = $accession;
+        } elsif ($id ne "" && defined($foundById{$id})) {
+            $status->{en_status} = "Existing entry: updated ";
+            $status->{genome_id} = $foundById{$id};
+        }
+        my $tax_id = $entry->{tax_id};
+        $status->{tx_status} = (defined($tax_id) && $taxonIds->{$tax_id}) ? "Taxon in KBase" : "Taxon not found";
+        push @statuses, $status;
+    }
+    return \@statuses;
+}
+
+#
+# Internal Method
+# Name: _checkEntriesStatus
+# Purpose: to classify a list of genomes with _classifyEntries in chunks of _NEW_OR_UPDATED_CHUNK genomes,
+# running up to _NEW_OR_UPDATED_WORKERS chunks at a time in forked worker processes.  Each worker stores its
+# statuses (or error) in a temporary file and is waited for by its pid, never with waitpid(-1), which would also
+# reap the existence filter builds of _startFilterBuild.
+#
+# returns : a reference to a list of the statuses (see _classifyEntries) in the order of $entries
+#
+sub _checkEntriesStatus
+{
+    my ($self, $entries, $solr_core, $tx_solr_core, $en_type) = @_;
+
+    #the existence filters are brought up to date (a build started when due, a finished one swapped in) before
+    #forking, for the workers to share
+    $self->_existenceFilter($_) foreach ($solr_core, $tx_solr_core);
+
+    my @pending = @{$entries};
+    my @chunks;
+    while (my @chunk = splice(@pending, 0, $self->{_NEW_OR_UPDATED_CHUNK})) {
+        push @chunks, \@chunk;
+    }
+    #a single chunk is classified in this process, as are all the chunks when forking is turned off
+    my $workers = @chunks > 1 ? $self->{_NEW_OR_UPDATED_WORKERS} : 0;
+    $workers = scalar(@chunks) if $workers > @chunks;
+
+    my @results;
+    if (!$workers) {
+        @results = map { $self->_classifyEntries($_, $solr_core, $tx_solr_core, $en_type) } @chunks;
+        return [map { @{$_} } @results];
+    }
+
+    my @errors;
+    my %running;    # pid => [chunk index, result file]
+    my $next = 0;
+    while ($next < @chunks || %running) {
+        if ($next < @chunks && keys(%running) < $workers) {
+            my $i = $next++;
+            my ($fh, $file) = File::Temp::tempfile("new_or_updated_XXXXXX", TMPDIR => 1, UNLINK => 0);
+            close($fh);
+            my $pid = fork();
+            if (!defined($pid)) {
+                unlink($file);
+                push @errors, "could not fork the worker for chunk $i: $!";
+                next;
+            }
+            if ($pid == 0) {
+                #a forked worker must not share the parent's keep-alive connections
+                $self->_newUserAgentAfterFork();
+                my $data = eval { { statuses => $self->_classifyEntries($chunks[$i], $solr_core, $tx_solr_core, $en_type) } }
+                    || { error => $@ || "unknown error" };
+                my $exit = eval { Storable::nstore($data, $file); 1 } ? 0 : 1;
+                #no END blocks or destructors of the parent's objects in the child
+                POSIX::_exit($exit);
+            }
+            $running{$pid} = [$i, $file];
+            next;
+        }
+        my @done = grep { waitpid($_, POSIX::WNOHANG()) != 0 } keys %running;
+        if (!@done) {
+            Time::HiRes::sleep(0.01);
+            next;
+        }
+        foreach my $pid (@done) {
+            my ($i, $file) = @{delete $running{$pid}};
+            my $data = -s $file ? eval { Storable::retrieve($file) } : undef;
+            unlink($file);
+            if (ref($data) eq 'HASH' && defined($data->{statuses})) {
+                $results[$i] = $data->{statuses};
+            } else {
+                push @errors, (ref($data) eq 'HASH' && $data->{error}) ?
+                    $data->{error} : "worker for chunk $i exited without a result";
+            }
+        }
+    }
+    die join("\n", @errors) if @errors;
+
+    return [map { @{$_} } @results];
+}
+
+#
+# Internal Method
+# Name: _existenceFilter
+# Purpose: to get the existence filter of a SOLR core listed in _EXISTENCE_FILTER_CORES.  The filter is built on first
+# use and rebuilt once it is _EXISTENCE_FILTER_INTERVAL seconds old, as docs added by other processes (or other
+# workers of this service) are only seen by a rebuild.  A build runs in a forked process (see _startFilterBuild), so
+# that no request waits for it: the request that finds the filter due only starts it, the old filter (or, before the
+# first build, SOLR) keeps answering the lookups meanwhile, and the first request after the build is done swaps the
+# new filter in.  A failed build leaves the old filter in use until the next interval.
+#
+# returns : the state of the core's filter, or undef if the core has no usable filter
+#
+sub _existenceFilter
+{
+    my ($self, $solrCore) = @_;
+    return undef unless grep { $_ eq $solrCore } @{$self->{_EXISTENCE_FILTER_CORES}};
+    my $state = $self->{_existence}->{$solrCore} ||= {
+        filters => undef, built_at => 0, build_seconds => undef, build_requests => 0, docs => 0, builds => 0,
+        last_error => undef, checks => 0, negatives => 0, passed => 0, false_positives => 0, build => undef
     };
-    
-    my $solrgnm;
-    my $gnms;
-    my $gcnt;
-    eval {
-        $solrgnm = $self->search_solr({
-          search_core => $solr_core,
-          search_param => $params,
-          search_query => $query,
-          result_format => "json",
-          group_option => "",
-          skip_escape => {}
-        });  
-    };   
-    if ($@) {
-         print "ERROR:".$@;
-         $status = "";
-    } else {
-        #print "Search results:" . Dumper($solrgnm->{response}) . "\n";
-        $gnms = $solrgnm->{response}->{response}->{docs};
-        $gcnt = $solrgnm->{response}->{response}->{numFound};
+    #the finished builds of all the cores are reaped, so that none is left a zombie until its own core is looked up
+    foreach my $core (keys %{$self->{_existence}}) {
+        my $coreState = $self->{_existence}->{$core};
+        $self->_finishFilterBuild($core, $coreState) if $coreState->{build};
     }
-    if( $gcnt == 0 ) {
-        $status = "New entry";
+    if (!$state->{build} &&
+        (time() - $state->{built_at} >= $self->{_EXISTENCE_FILTER_INTERVAL} || $state->{stale})) {
+        $state->{built_at} = time();
+        $state->{stale} = 0;
+        $self->_startFilterBuild($solrCore, $state);
     }
-    else {
-        for (my $i = 0; $i < @{$gnms}; $i++ ) {
-            my $record = $gnms->[$i];
-            my $gm_id = uc $record->{genome_id};
-
-            if ($gm_id eq uc $current_entry->{accession}){
-                $status = "Existing entry: current";
-                $current_entry->{genome_id} = $gm_id;
-                last;
-            }elsif ($gm_id =~/uc $current_entry->{id}/){
-                $status = "Existing entry: updated ";
-                $current_entry->{genome_id} = $gm_id;
-                last;
+    return $state->{filters} ? $state : undef;
+}
+
+#
+# Internal Method
+# Name: _startFilterBuild
+# Purpose: to fork a process that builds the filters of a core with _buildExistenceFilter and stores them (or the
+# error) in a temporary file for _finishFilterBuild.  The docs this process adds to the core meanwhile are kept in
+# the build's pending list, as the new filters may have been read before they were written.
+#
+sub _startFilterBuild
+{
+    my ($self, $solrCore, $state) = @_;
+    my ($fh, $file) = File::Temp::tempfile("existence_filter_XXXXXX", TMPDIR => 1, UNLINK => 0);
+    close($fh);
+    my $pid = fork();
+    if (!defined($pid)) {
+        unlink($file);
+        $state->{last_error} = "\nError--could not fork the existence filter build of $solrCore: $!\n";
+        return;
+    }
+    if ($pid == 0) {
+        #the build must not share the parent's keep-alive connections
+        $self->_newUserAgentAfterFork();
+        my $result = eval { $self->_buildExistenceFilter($solrCore) } || { error => $@ || "unknown error" };
+        my $exit = eval { Storable::nstore($result, $file); 1 } ? 0 : 1;
+        #no END blocks or destructors of the parent's objects in the child
+        POSIX::_exit($exit);
+    }
+    $state->{build} = { pid => $pid, file => $file, started => time(), pending => [] };
+}
+
+#
+# Internal Method
+# Name: _finishFilterBuild
+# Purpose: to swap in the filters of a core's build once its process has exited, with the docs added meanwhile
+#
+sub _finishFilterBuild
+{
+    my ($self, $solrCore, $state) = @_;
+    my $build = $state->{build};
+    #waited for by its own pid only; -1 if it was reaped elsewhere all the same, the result file then tells
+    my $done = waitpid($build->{pid}, POSIX::WNOHANG());
+    return if $done == 0;
+    $state->{build} = undef;
+    my $result = -s $build->{file} ? eval { Storable::retrieve($build->{file}) } : undef;
+    unlink($build->{file});
+    if (ref($result) ne 'HASH' || !$result->{filters}) {
+        $state->{last_error} = (ref($result) eq 'HASH' && $result->{error}) ?
+            $result->{error} : "\nError--the existence filter build of $solrCore exited without a result\n";
+        return;
+    }
+    $self->_addToFilters($result->{filters}, $_) foreach @{$build->{pending}};
+    $state->{$_} = $result->{$_} foreach qw(filters docs build_requests build_seconds);
+    $state->{built_at} = $build->{started};
+    $state->{last_error} = undef;
+    $state->{builds}++;
+}
+
+#
+# Internal Method
+# Name: _buildExistenceFilter
+# Purpose: to read the distinct _EXISTENCE_FILTER_FIELDS values of a core into one KBSolrUtil::BloomFilter per field,
+# sized for the number of values.  The values are read from facets on the fields, _EXISTENCE_FILTER_FACET_PAGE
+# values per request, rather than from the docs, so that a core of millions of docs sharing a few thousand genome_ids
+# costs a few requests and a small filter.  Fields without any value in the core, or not in its schema, get no
+# filter, so their lookups always go to SOLR.
+#
+# Input parameters :
+#       $solrCore is the name of the SOLR core
+#
+# returns : a hash of the filters by field, and the build cost (build_seconds, build_requests, docs)
+#
+sub _buildExistenceFilter
+{
+    my ($self, $solrCore) = @_;
+    my $start = Time::HiRes::time();
+    my $url = $self->{_SOLR_URL}."/$solrCore/select";
+    my $page = $self->{_EXISTENCE_FILTER_FACET_PAGE};
+    my ($requests, $docs, %filters) = (0, 0);
+    FIELD: foreach my $field (@{$self->{_EXISTENCE_FILTER_FIELDS}}) {
+        my @values;
+        for (my $offset = 0; ; $offset += $page) {
+            my $body = "q=*:*&wt=json&rows=0&facet=true&facet.field=$field&facet.mincount=1&facet.sort=index" .
+                       "&facet.limit=$page&facet.offset=$offset&json.nl=flat";
+            my $response = $self->_sendRequest($url, 'POST', undef, $self->{_CT_FORM}, $body);
+            $requests++;
+            if (!$self->_parseResponse($response, "json")) {
+                next FIELD if $response->{response} =~ /undefined field/i;
+                die "\nError--reading the existence filter values of $solrCore failed:\n" . $response->{response};
             }
+            my $result = JSON::from_json($response->{response});
+            $docs = $result->{response}->{numFound} || 0;
+            #a flat list of value, count pairs
+            my $counts = $result->{facet_counts}->{facet_fields}->{$field} || [];
+            push @values, $counts->[2 * $_] for 0 .. int(@{$counts} / 2) - 1;
+            last if @{$counts} < 2 * $page;
         }
+        next unless @values;
+        #room for the values added by this process until the next rebuild; the genome_ids take up to two
+        #values each, see _addToFilters
+        my $capacity = int(@values * 1.1) + 1000;
+        $filters{$field} = KBSolrUtil::BloomFilter->new(
+            capacity => $field eq "genome_id" ? 2 * $capacity : $capacity,
+            fp_rate => $self->{_EXISTENCE_FILTER_FP_RATE},
+            max_bits => $self->{_EXISTENCE_FILTER_MAX_BITS}
+        );
+        $self->_addToFilters(\%filters, { $field => \@values });
     }
-        
-    if( $status eq "" )
-    {
-        $status = "New entry";#or "Existing entry: status unknown";
+    return {
+        filters => \%filters,
+        docs => $docs,
+        build_requests => $requests,
+        build_seconds => sprintf("%.3f", Time::HiRes::time() - $start) + 0
+    };
+}
+
+#
+# Internal Method
+# Name: _addToFilters
+# Purpose: to add the values of the filtered fields of a doc to the filters of a core.  The genome_ids are added
+# upper-cased and also without their version suffix, as _classifyEntries matches the genomes by either.
+#
+# returns : the names of the fields the doc had values of
+#
+sub _addToFilters
+{
+    my ($self, $filters, $doc) = @_;
+    my @found;
+    foreach my $field (keys %{$filters}) {
+        my $value = $doc->{$field};
+        next unless defined($value);
+        push @found, $field;
+        foreach my $v (ref($value) eq 'ARRAY' ? @{$value} : ($value)) {
+            next if !defined($v) || ref($v);
+            my $key = $self->_filterKey($field, $v);
+            $filters->{$field}->add($key);
+            $filters->{$field}->add($1) if $field eq "genome_id" && $key =~ /^(.+)\.\d+$/;
+        }
+    }
+    return @found;
+}
+
+sub _filterKey
+{
+    my ($self, $field, $value) = @_;
+    return $field eq "genome_id" ? uc($value) : "$value";
+}
+
+#
+# Internal Method
+# Name: _addToExistenceFilter
+# Purpose: to add the docs written to a core by this process to its filter, so that they are found before the next
+# rebuild.  Docs given as a JSON string are decoded; a body that is not a doc or a list of docs (e.g. an update
+# command) has the filter rebuilt on its next use instead.
+#
+sub _addToExistenceFilter
+{
+    my ($self, $solrCore, $docs) = @_;
+    my $state = $self->{_existence}->{$solrCore};
+    return unless $state && $state->{filters};
+    if (defined($docs) && !ref($docs)) {
+        $docs = eval { JSON::from_json($docs) };
+    }
+    $docs = [$docs] if ref($docs) eq 'HASH';
+    if (ref($docs) ne 'ARRAY' || grep { ref($_) ne 'HASH' || exists($_->{add}) } @{$docs}) {
+        $state->{stale} = 1;
+        return;
+    }
+    my @fields = @{$self->{_EXISTENCE_FILTER_FIELDS}};
+    foreach my $doc (@{$docs}) {
+        $self->_addToFilters($state->{filters}, $doc);
+        #only the filtered fields are kept for the build running, if any
+        push @{$state->{build}->{pending}}, { map { ($_ => $doc->{$_}) } grep { defined($doc->{$_}) } @fields }
+            if $state->{build};
+    }
+}
+
+#
+# Internal Method
+# Name: _certainlyAbsent
+# Purpose: to check a value of a field against the filter of a core
+#
+# returns : 1 if no doc of the core has the value, 0 if one may have it or the core or the field has no filter
+#
+sub _certainlyAbsent
+{
+    my ($self, $solrCore, $field, $value) = @_;
+    return 0 unless defined($value) && $value ne "";
+    my $state = $self->_existenceFilter($solrCore) or return 0;
+    my $filter = $state->{filters}->{$field} or return 0;
+    $state->{checks}++;
+    if ($filter->maybe_contains($self->_filterKey($field, $value))) {
+        $state->{passed}++;
+        return 0;
+    }
+    $state->{negatives}++;
+    return 1;
+}
+
+#
+# Internal Method
+# Name: _filterQuery
+# Purpose: to check the exact values of the filtered fields in a search_query (see _buildQueryString) against the
+# filter of the core, as all the fields of such a query must match.  Queries given as q, or with a wildcard, are
+# not checked.
+#
+# returns :
+#       -1 if no doc of the core can match the query
+#        1 if the query is a single filtered field whose value passed the filter, so that a search finding no doc
+#          means a false positive of the filter (see _noteFalsePositive)
+#        0 otherwise
+#
+sub _filterQuery
+{
+    my ($self, $solrCore, $searchQuery) = @_;
+    return 0 if ref($searchQuery) ne 'HASH' || defined($searchQuery->{q});
+    my $checked = 0;
+    foreach my $field (@{$self->{_EXISTENCE_FILTER_FIELDS}}) {
+        my $value = $searchQuery->{$field};
+        next if !defined($value) || ref($value) || $value =~ /\*/;
+        return -1 if $self->_certainlyAbsent($solrCore, $field, $value);
+        $checked++ if $self->{_existence}->{$solrCore} && $self->{_existence}->{$solrCore}->{filters}->{$field};
+    }
+    return ($checked == 1 && keys %{$searchQuery} == 1) ? 1 : 0;
+}
+
+sub _noteFalsePositive
+{
+    my ($self, $solrCore) = @_;
+    $self->{_existence}->{$solrCore}->{false_positives}++ if $self->{_existence}->{$solrCore};
+}
+
+#
+# Internal Method
+# Name: _existenceFilterStats
+# Purpose: to report the filters of the cores in status: the size and expected false positive rate of each field's
+# filter, the cost of the last build, and the lookups answered since the service started, with the observed false
+# positive rate, the share of the single-field lookups of absent values that the filter let through to SOLR.
+#
+sub _existenceFilterStats
+{
+    my ($self) = @_;
+    my %stats;
+    foreach my $solrCore (keys %{$self->{_existence}}) {
+        my $state = $self->{_existence}->{$solrCore};
+        my $absent = $state->{negatives} + $state->{false_positives};
+        $stats{$solrCore} = {
+            fields => { map { ($_ => $state->{filters}->{$_}->stats()) } keys %{$state->{filters} || {}} },
+            built_at => $state->{builds} ? DateTime->from_epoch(epoch => $state->{built_at})->datetime() : undef,
+            builds => $state->{builds},
+            building => $state->{build} ? 1 : 0,
+            build_seconds => $state->{build_seconds},
+            build_requests => $state->{build_requests},
+            docs => $state->{docs},
+            last_error => $state->{last_error},
+            checks => $state->{checks},
+            certainly_absent => $state->{negatives},
+            passed => $state->{passed},
+            false_positives => $state->{false_positives},
+            observed_fp_rate => $absent ? sprintf("%.6f", $state->{false_positives} / $absent) + 0 : undef
+        };
     }
-    
-    #print "\nStatus:$status\n";
-    return $status;
+    return \%stats;
 }
 
 #################### End subs for accessing SOLR #######################
@@ -932,16 +1826,113 @@ sub new
     bless $self, $class;
     #BEGIN_CONSTRUCTOR
     
-    #SOLR specific parameters
+    #SOLR specific parameters; solr-url in the deployment config points the service at another
+    #SOLR server, e.g. the local stand-in of test/perf/load
+    if ($ENV{KB_DEPLOYMENT_CONFIG} && -e $ENV{KB_DEPLOYMENT_CONFIG}) {
+        my $cfg = Config::IniFiles->new(-file=>$ENV{KB_DEPLOYMENT_CONFIG});
+        if ($cfg) {
+            $self->{_SOLR_URL} = $cfg->val('KBSolrUtil','solr-url') unless $self->{_SOLR_URL};
+            $self->{_HASH_STORE_DIR} = $cfg->val('KBSolrUtil','hash-store-dir')
+                unless defined($self->{_HASH_STORE_DIR});
+            my $filterCores = $cfg->val('KBSolrUtil','existence-filter-cores');
+            $self->{_EXISTENCE_FILTER_CORES} = [grep { $_ ne "" } split(/\s*,\s*/, $filterCores)]
+                if defined($filterCores) && !defined($self->{_EXISTENCE_FILTER_CORES});
+            $self->{_CACHE_TTL} = $cfg->val('KBSolrUtil','cache-ttl') unless defined($self->{_CACHE_TTL});
+            $self->{_CACHE_MAX_ENTRIES} = $cfg->val('KBSolrUtil','cache-max-entries')
+                unless defined($self->{_CACHE_MAX_ENTRIES});
+            $self->{_CACHE_MAX_WEIGHT} = $cfg->val('KBSolrUtil','cache-max-weight')
+                unless defined($self->{_CACHE_MAX_WEIGHT});
+            $self->{_MAX_INFLATED_REQUEST_BYTES} = $cfg->val('KBSolrUtil','max-inflated-request-bytes')
+                unless defined($self->{_MAX_INFLATED_REQUEST_BYTES});
+            $self->{_SOLR_GZIP_REQUESTS} = $cfg->val('KBSolrUtil','solr-gzip-requests')
+                unless defined($self->{_SOLR_GZIP_REQUESTS});
+            $self->{_SOLR_GZIP_MIN_BYTES} = $cfg->val('KBSolrUtil','solr-gzip-min-bytes')
+                unless defined($self->{_SOLR_GZIP_MIN_BYTES});
+            $self->{_AUTOCOMMIT} = $cfg->val('KBSolrUtil','solr-autocommit') unless defined($self->{_AUTOCOMMIT});
+            $self->{_NEW_OR_UPDATED_WORKERS} = $cfg->val('KBSolrUtil','new-or-updated-workers')
+                unless defined($self->{_NEW_OR_UPDATED_WORKERS});
+            $self->{_EXISTENCE_FILTER_INTERVAL} = $cfg->val('KBSolrUtil','existence-filter-interval')
+                unless defined($self->{_EXISTENCE_FILTER_INTERVAL});
+            $self->{_METRICS_ENDPOINT} = $cfg->val('KBSolrUtil','metrics-endpoint')
+                unless defined($self->{_METRICS_ENDPOINT});
+        }
+    }
     if (! $self->{_SOLR_URL}) {
         $self->{_SOLR_URL} = "http://kbase.us/internal/solr-ci/search";
     }
     $self->{_SOLR_POST_URL} = $self->{_SOLR_URL};
-    $self->{_SOLR_PING_URL} = "$self->{_SOLR_URL}/select";
-    $self->{_AUTOCOMMIT} = 0;
+    $self->{_SOLR_PING_URL} = "$self->{_SOLR_URL}/select?rows=0&wt=json";
+    #solr-autocommit in deploy.cfg is true when the cores have an autoCommit (or autoSoftCommit) in their
+    #solrconfig.xml, and the updates sent without a commit_policy are then left to it, see _commitParams
+    $self->_autocommit(($self->{_AUTOCOMMIT} || "") =~ /^(1|true|yes|on)$/i);
+    #HTTP keep-alive connection pool shared by all the SOLR requests, see _userAgent
+    $self->{_SOLR_MAX_CONNS} = 10;
+    $self->{_SOLR_MAX_CONNS_PER_HOST} = 4;
+    $self->{_SOLR_CONN_IDLE_TIMEOUT} = 60;
+    #gzip the bodies of the SOLR requests of at least _SOLR_GZIP_MIN_BYTES bytes (index_in_solr payloads)
+    #when solr-gzip-requests is true in deploy.cfg; off by default, as SOLR's own Jetty does not inflate
+    #request bodies unless set up to (e.g. with a GzipHandler, or a proxy in front of SOLR that does)
+    $self->{_SOLR_GZIP_REQUESTS} = ($self->{_SOLR_GZIP_REQUESTS} || "") =~ /^(1|true|yes|on)$/i ? 1 : 0;
+    $self->{_SOLR_GZIP_MIN_BYTES} = 8192 unless defined($self->{_SOLR_GZIP_MIN_BYTES});
+    #the largest request body KBSolrUtil::Compression inflates from a gzip or deflate Content-Encoding
+    $self->{_MAX_INFLATED_REQUEST_BYTES} = 16*1024*1024 unless $self->{_MAX_INFLATED_REQUEST_BYTES};
+    #cache of search_solr, exists_in_solr and get_total_count results, see KBSolrUtil::ResultCache;
+    #off unless cache-ttl (seconds) is set in deploy.cfg.  Each server process keeps its own cache and
+    #only drops the entries of a core on the writes it makes itself, so with several workers, or with
+    #other writers to the cores, a result may be up to cache-ttl seconds stale
+    $self->{_CACHE_TTL} = 0 unless defined($self->{_CACHE_TTL}) && $self->{_CACHE_TTL} =~ /^\d+$/;
+    $self->{_CACHE_MAX_ENTRIES} = 1000 unless defined($self->{_CACHE_MAX_ENTRIES});
+    $self->{_CACHE_MAX_WEIGHT} = 64*1024*1024 unless defined($self->{_CACHE_MAX_WEIGHT});
+    $self->{_cache} = KBSolrUtil::ResultCache->new(
+        ttl => $self->{_CACHE_TTL},
+        max_entries => $self->{_CACHE_MAX_ENTRIES},
+        max_weight => $self->{_CACHE_MAX_WEIGHT}
+    );
+    #content hashes of index_in_solr with skip_unchanged: the default field of the hashes in SOLR, and
+    #the local store for hash_store 'local', kept in _HASH_STORE_DIR when set (see KBSolrUtil::HashStore)
+    $self->{_CONTENT_HASH_FIELD} = "content_hash" unless defined($self->{_CONTENT_HASH_FIELD});
+    $self->{_hashStore} = KBSolrUtil::HashStore->new(dir => $self->{_HASH_STORE_DIR});
+    $self->{_canonicalJSON} = JSON->new->utf8->canonical(1);
+    #uniqueKey fields of the cores, read from their schema, see _uniqueKey
+    $self->{_uniqueKeys} = {};
+    #Bloom filters of the genome_id, taxonomy_id and ws_ref values of the cores in _EXISTENCE_FILTER_CORES
+    #(existence-filter-cores in deploy.cfg, none by default), rebuilt every _EXISTENCE_FILTER_INTERVAL
+    #seconds (existence-filter-interval, an hour by default), which answer the lookups of values certainly
+    #not in a core without SOLR, see _existenceFilter
+    $self->{_EXISTENCE_FILTER_CORES} = [] unless defined($self->{_EXISTENCE_FILTER_CORES});
+    $self->{_EXISTENCE_FILTER_FIELDS} = ["genome_id", "taxonomy_id", "ws_ref"];
+    $self->{_EXISTENCE_FILTER_INTERVAL} = 3600
+        unless defined($self->{_EXISTENCE_FILTER_INTERVAL}) && $self->{_EXISTENCE_FILTER_INTERVAL} =~ /^\d+$/;
+    $self->{_EXISTENCE_FILTER_FP_RATE} = 0.01 unless defined($self->{_EXISTENCE_FILTER_FP_RATE});
+    $self->{_EXISTENCE_FILTER_MAX_BITS} = 256*1024*1024 unless defined($self->{_EXISTENCE_FILTER_MAX_BITS});
+    $self->{_EXISTENCE_FILTER_PAGE} = 10000;
+    $self->{_EXISTENCE_FILTER_FACET_PAGE} = 100000;
+    $self->{_existence} = {};
+    #per method and per SOLR operation counters and latency histograms, reported by status and, when
+    #metrics-endpoint is true in deploy.cfg, without authentication at /metrics; the methods are timed by
+    #KBSolrUtilServer::call_method as they are dispatched
+    $self->{_metrics} = KBSolrUtil::Metrics->new();
+    $self->{_METRICS_ENDPOINT} = ($self->{_METRICS_ENDPOINT} || "") =~ /^(1|true|yes|on)$/i ? 1 : 0;
+    #cached SOLR health state, see _checkSolr
+    $self->{_SOLR_HEALTH_INTERVAL} = 30;
+    $self->{_SOLR_FAILURE_THRESHOLD} = 3;
+    $self->{_SOLR_RETRY_INTERVAL} = 5;
+    $self->{_health} = { up => 1, failures => 0, checked => 0, down_since => undef, last_error => undef };
+    #the maximum number of queries sent in one SOLR request by exists_in_solr_batch and get_total_count_batch
+    $self->{_BATCH_MAX_QUERIES} = 500;
+    #new_or_updated checks the genomes in chunks of _NEW_OR_UPDATED_CHUNK (kept below SOLR's default
+    #maxBooleanClauses of 1024), up to _NEW_OR_UPDATED_WORKERS chunks at a time in forked processes
+    #(new-or-updated-workers in deploy.cfg); 0, the default, checks them one after the other in this process
+    $self->{_NEW_OR_UPDATED_CHUNK} = 500;
+    $self->{_NEW_OR_UPDATED_WORKERS} = 0
+        unless defined($self->{_NEW_OR_UPDATED_WORKERS}) && $self->{_NEW_OR_UPDATED_WORKERS} =~ /^\d+$/;
+    #delete_in_solr sends up to _DELETE_MAX_IDS ids or _DELETE_MAX_QUERIES queries per request
+    $self->{_DELETE_MAX_IDS} = 1000;
+    $self->{_DELETE_MAX_QUERIES} = 100;
     $self->{_CT_XML} = { Content_Type => 'text/xml; charset=utf-8' };
     #$self->{_CT_JSON} = { Content_Type => 'text/json'};
     $self->{_CT_JSON} = { Content_Type => 'application/json'};
+    $self->{_CT_FORM} = { Content_Type => 'application/x-www-form-urlencoded' };
 
     #END_CONSTRUCTOR
 
@@ -972,7 +1963,12 @@ $output is an int
 IndexInSolrParams is a reference to a hash where the following keys are defined:
 	solr_core has a value which is a string
 	doc_data has a value which is a reference to a list where each element is a KBSolrUtil.docdata
+	commit_policy has a value which is a string
+	skip_unchanged has a value which is a KBSolrUtil.bool
+	hash_store has a value which is a string
+	hash_field has a value which is a string
 docdata is a reference to a hash where the key is a string and the value is a string
+bool is an int
 
 </pre>
 
@@ -985,7 +1981,12 @@ $output is an int
 IndexInSolrParams is a reference to a hash where the following keys are defined:
 	solr_core has a value which is a string
 	doc_data has a value which is a reference to a list where each element is a KBSolrUtil.docdata
+	commit_policy has a value which is a string
+	skip_unchanged has a value which is a KBSolrUtil.bool
+	hash_store has a value which is a string
+	hash_field has a value which is a string
 docdata is a reference to a hash where the key is a string and the value is a string
+bool is an int
 
 
 =end text
@@ -1019,27 +2020,52 @@ sub index_in_solr
     $params = $self->util_initialize_call($params,$ctx);
     $params = $self->util_args($params,[],{
         solr_core => "",
-        doc_data => []
+        doc_data => [],
+        commit_policy => "",
+        skip_unchanged => 0,
+        hash_store => "solr",
+        hash_field => $self->{_CONTENT_HASH_FIELD}
     });  
  
     my $docData = $params->{doc_data};
     my $solrCore = $params->{solr_core};
+    my $commitPolicy = $params->{commit_policy};
+    my $hashStore = $params->{hash_store} || "solr";
+    if ($hashStore ne "solr" && $hashStore ne "local") {
+        die "\nError--hash_store must be 'solr' or 'local', not '$hashStore'\n";
+    }
+
+    my $changedHashes;
+    my $sendCount = scalar(@{$docData});
+    if ($params->{skip_unchanged} && @{$docData} >= 1) {
+       #only the new docs and the docs whose content hash changed are sent
+       ($docData, $changedHashes) = $self->_changedDocs($solrCore, $docData, $hashStore,
+                                                        $params->{hash_field} || $self->{_CONTENT_HASH_FIELD});
+       $sendCount = scalar(@{$docData});
+       $output = 1 unless @{$docData};
+    }
 
     if( @{$docData} >= 1) {
-       if( $self->_addXML2Solr($solrCore, $docData) == 1 ) {
-           #if( $self->_addJSON2Solr($solrCore, $docData) == 1 ) {
-           #commit the additions
-           if (!$self->_commit($solrCore)) {
-               die $self->_error->{response};
-               $output= 0;
-           }
-       }
-       else {
+       #the additions are committed according to the commit policy by the update request itself
+       my $added = $self->_addXML2Solr($solrCore, $docData, $commitPolicy);
+       $self->_invalidateCache($solrCore);
+       if( $added != 1 ) {
           die $self->{error};
           $output = 0;
        }
+       $self->{_hashStore}->put_many($solrCore, $changedHashes) if $changedHashes && $hashStore eq "local";
+       $self->_addToExistenceFilter($solrCore, $docData);
+       $output = 1;
+    }
+    elsif( $commitPolicy eq "commit" || $commitPolicy eq "soft" ) {
+       #no docs, only the commit, e.g. at the end of a bulk job whose batches were sent with 'none'
+       if (!$self->_commit($solrCore, $commitPolicy eq "soft")) {
+           die $self->_error->{response};
+       }
+       $self->_invalidateCache($solrCore);
        $output = 1;
     }
+    $self->{_metrics}->add('method', 'index_in_solr', docs => $sendCount);
     #END index_in_solr
     my @_bad_returns;
     (!ref($output)) or push(@_bad_returns, "Invalid type for return variable \"output\" (value was \"$output\")");
@@ -1118,23 +2144,29 @@ sub new_or_updated
     #BEGIN new_or_updated
     $params = $self->util_initialize_call($params,$ctx);
     $params = $self->util_args($params,[],{
-        solr_core => "GenomeFeatures_ci",
+        search_core => "GenomeFeatures_ci",
         search_docs => undef,
         search_type => "KBaseGenomes.Genome-12.3"
     });
     
     $return = [];
-    my $solr_core = $params->{solr_core};
+    #search_core as in the spec, solr_core is still accepted from the earlier callers
+    my $solr_core = defined($params->{solr_core}) ? $params->{solr_core} : $params->{search_core};
     my $tx_solr_core = ($solr_core =~ /prod$/i) ? "taxonomy_prod" : "taxonomy_ci";
 
-    if (defined($params->{search_docs})) {
+    if (defined($params->{search_docs}) && @{$params->{search_docs}}) {
         my $src_docs = $params->{search_docs};
         
-        foreach my $current_doc (@{$src_docs}){
-            my $en_status = $self->_checkEntryStatus( $current_doc, $solr_core, $params->{search_type} );
-	    my $tx_status = $self->_checkTaxonStatus($current_doc, $tx_solr_core);
-            if( $en_status=~/(new|updated)/i && $tx_status=~/in KBase/i ) {
-                $current_doc->{gn_status} = $en_status;
+        if (!$self->_checkSolr()) {
+            die "\nError--Solr server not responding:\n" . $self->_error->{response};
+        }
+        my $statuses = $self->_checkEntriesStatus($src_docs, $solr_core, $tx_solr_core, $params->{search_type});
+        for (my $i = 0; $i < @{$src_docs}; $i++) {
+            my $current_doc = $src_docs->[$i];
+            my $status = $statuses->[$i];
+            $current_doc->{genome_id} = $status->{genome_id} if defined($status->{genome_id});
+            if( $status->{en_status}=~/(new|updated)/i && $status->{tx_status}=~/in KBase/i ) {
+                $current_doc->{gn_status} = $status->{en_status};
                 push @{$return},$current_doc;
             }
         }
@@ -1222,7 +2254,18 @@ sub exists_in_solr
     my $solrCore = $params->{search_core}; 
     my $searchQuery = $params->{search_query};
     
-    $output = $self->_exists($solrCore, $searchQuery);
+    my $cacheKey = $self->{_cache}->key('exists_in_solr', $params);
+    $output = $self->{_cache}->get($cacheKey);
+    my $filtered = defined($output) ? 0 : $self->_filterQuery($solrCore, $searchQuery);
+    if ($filtered < 0) {
+        #a value the core's existence filter rules out
+        $output = 0;
+    } elsif (!defined($output)) {
+        $output = $self->_exists($solrCore, $searchQuery);
+        #_exists also returns 0 on a failed request, which must not be cached
+        $self->{_cache}->set($solrCore, $cacheKey, $output) unless $self->{is_error};
+        $self->_noteFalsePositive($solrCore) if $filtered > 0 && $output == 0 && !$self->{is_error};
+    }
 
     if($output == 1) {
         #print "Found record in solr database";
@@ -1314,21 +2357,32 @@ sub get_total_count
     
     my $solrout;
     my $output;
-    eval {
-        $solrout = $self->search_solr({
-                search_core => $solrCore, 
-                search_param => {fl=>"*",wt=>"json",rows=>0}, 
-                search_query => $query, 
-                result_format => "json", 
-                group_option => "",
-                skip_escape => {}
-            });
-    };
-    if ($@) {
-        #print "ERROR:".$@;
-        $output = -1;
-    } else {
-        $output = $solrout->{response}->{response}->{numFound};
+    my $cacheKey = $self->{_cache}->key('get_total_count', $params);
+    $output = $self->{_cache}->get($cacheKey);
+    if (!defined($output)) {
+        eval {
+            $solrout = $self->search_solr({
+                    search_core => $solrCore, 
+                    search_param => {fl=>"*",wt=>"json",rows=>0}, 
+                    search_query => $query, 
+                    result_format => "json", 
+                    group_option => "",
+                    skip_escape => {}
+                });
+        };
+        if ($@) {
+            #print "ERROR:".$@;
+            $output = -1;
+        } else {
+            #no numFound (and the response left undecoded) when SOLR answered with an error, a failed
+            #count that must not be cached
+            $output = ref($solrout->{response}) eq 'HASH' ? $solrout->{response}->{response}->{numFound} : undef;
+            if (defined($output)) {
+                $self->{_cache}->set($solrCore, $cacheKey, $output);
+            } else {
+                $output = -1;
+            }
+        }
     }
     
     print "The total count of documents found= ". $output;
@@ -1345,6 +2399,182 @@ sub get_total_count
 
 
 
+=head2 exists_in_solr_batch
+
+  $output = $obj->exists_in_solr_batch($params)
+
+=over 4
+
+=item Parameter and return types
+
+=begin html
+
+<pre>
+$params is a reference to a list where each element is a KBSolrUtil.ExistsInputParams
+$output is a reference to a list where each element is an int
+ExistsInputParams is a reference to a hash where the following keys are defined:
+	search_core has a value which is a string
+	search_query has a value which is a KBSolrUtil.searchdata
+searchdata is a reference to a hash where the key is a string and the value is a string
+
+</pre>
+
+=end html
+
+=begin text
+
+$params is a reference to a list where each element is a KBSolrUtil.ExistsInputParams
+$output is a reference to a list where each element is an int
+ExistsInputParams is a reference to a hash where the following keys are defined:
+	search_core has a value which is a string
+	search_query has a value which is a KBSolrUtil.searchdata
+searchdata is a reference to a hash where the key is a string and the value is a string
+
+
+=end text
+
+
+
+=item Description
+
+The exists_in_solr_batch function - the batch form of exists_in_solr. Returns a list of 0 or 1, one for each of the
+ExistsInputParams in the order given. The queries are answered with a single SOLR request per search_core.
+
+=back
+
+=cut
+
+sub exists_in_solr_batch
+{
+    my $self = shift;
+    my($params) = @_;
+
+    my @_bad_arguments;
+    (ref($params) eq 'ARRAY') or push(@_bad_arguments, "Invalid type for argument \"params\" (value was \"$params\")");
+    if (@_bad_arguments) {
+	my $msg = "Invalid arguments passed to exists_in_solr_batch:\n" . join("", map { "\t$_\n" } @_bad_arguments);
+	Bio::KBase::Exceptions::ArgumentValidationError->throw(error => $msg,
+							       method_name => 'exists_in_solr_batch');
+    }
+
+    my $ctx = $KBSolrUtil::KBSolrUtilServer::CallContext;
+    my($output);
+    #BEGIN exists_in_solr_batch
+    $params = $self->util_initialize_call($params,$ctx);
+    my @queries;
+    foreach my $query (@{$params}) {
+        $query = $self->util_args($query,[],{
+            search_core => "Genomes_ci",
+            search_query => {q=>"*"}
+        });
+        push @queries, $query;
+    }
+    #the queries the existence filters rule out are not sent
+    my @filtered = map { $self->_filterQuery($_->{search_core}, $_->{search_query}) } @queries;
+    my @sent = grep { $filtered[$_] >= 0 } 0 .. $#queries;
+    my $counts = $self->_countQueries([@queries[@sent]]);
+    $output = [(0) x scalar(@queries)];
+    for (my $i = 0; $i < @sent; $i++) {
+        $output->[$sent[$i]] = $counts->[$i] > 0 ? 1 : 0;
+        $self->_noteFalsePositive($queries[$sent[$i]]->{search_core}) if $filtered[$sent[$i]] > 0 && $counts->[$i] == 0;
+    }
+    #END exists_in_solr_batch
+    my @_bad_returns;
+    (ref($output) eq 'ARRAY') or push(@_bad_returns, "Invalid type for return variable \"output\" (value was \"$output\")");
+    if (@_bad_returns) {
+	my $msg = "Invalid returns passed to exists_in_solr_batch:\n" . join("", map { "\t$_\n" } @_bad_returns);
+	Bio::KBase::Exceptions::ArgumentValidationError->throw(error => $msg,
+							       method_name => 'exists_in_solr_batch');
+    }
+    return($output);
+}
+
+
+
+=head2 get_total_count_batch
+
+  $output = $obj->get_total_count_batch($params)
+
+=over 4
+
+=item Parameter and return types
+
+=begin html
+
+<pre>
+$params is a reference to a list where each element is a KBSolrUtil.TotalCountParams
+$output is a reference to a list where each element is an int
+TotalCountParams is a reference to a hash where the following keys are defined:
+	search_core has a value which is a string
+	search_query has a value which is a KBSolrUtil.searchdata
+searchdata is a reference to a hash where the key is a string and the value is a string
+
+</pre>
+
+=end html
+
+=begin text
+
+$params is a reference to a list where each element is a KBSolrUtil.TotalCountParams
+$output is a reference to a list where each element is an int
+TotalCountParams is a reference to a hash where the following keys are defined:
+	search_core has a value which is a string
+	search_query has a value which is a KBSolrUtil.searchdata
+searchdata is a reference to a hash where the key is a string and the value is a string
+
+
+=end text
+
+
+
+=item Description
+
+The get_total_count_batch function - the batch form of get_total_count. Returns a list of counts (or -1 if error), one for each
+of the TotalCountParams in the order given. The queries are answered with a single SOLR request per search_core.
+
+=back
+
+=cut
+
+sub get_total_count_batch
+{
+    my $self = shift;
+    my($params) = @_;
+
+    my @_bad_arguments;
+    (ref($params) eq 'ARRAY') or push(@_bad_arguments, "Invalid type for argument \"params\" (value was \"$params\")");
+    if (@_bad_arguments) {
+	my $msg = "Invalid arguments passed to get_total_count_batch:\n" . join("", map { "\t$_\n" } @_bad_arguments);
+	Bio::KBase::Exceptions::ArgumentValidationError->throw(error => $msg,
+							       method_name => 'get_total_count_batch');
+    }
+
+    my $ctx = $KBSolrUtil::KBSolrUtilServer::CallContext;
+    my($output);
+    #BEGIN get_total_count_batch
+    $params = $self->util_initialize_call($params,$ctx);
+    my @queries;
+    foreach my $query (@{$params}) {
+        $query = $self->util_args($query,[],{
+            search_core => "Genomes_ci",
+            search_query => {q=>"*"}
+        });
+        push @queries, $query;
+    }
+    my $counts = $self->_countQueries(\@queries);
+    $output = $counts;
+    #END get_total_count_batch
+    my @_bad_returns;
+    (ref($output) eq 'ARRAY') or push(@_bad_returns, "Invalid type for return variable \"output\" (value was \"$output\")");
+    if (@_bad_returns) {
+	my $msg = "Invalid returns passed to get_total_count_batch:\n" . join("", map { "\t$_\n" } @_bad_returns);
+	Bio::KBase::Exceptions::ArgumentValidationError->throw(error => $msg,
+							       method_name => 'get_total_count_batch');
+    }
+    return($output);
+}
+
+
 
 =head2 search_solr
 
@@ -1365,6 +2595,7 @@ SearchSolrParams is a reference to a hash where the following keys are defined:
 	search_query has a value which is a KBSolrUtil.searchdata
 	result_format has a value which is a string
 	group_option has a value which is a string
+	filter_queries has a value which is a reference to a list where each element is a string
 searchdata is a reference to a hash where the key is a string and the value is a string
 solrresponse is a reference to a hash where the key is a string and the value is a string
 
@@ -1382,6 +2613,7 @@ SearchSolrParams is a reference to a hash where the following keys are defined:
 	search_query has a value which is a KBSolrUtil.searchdata
 	result_format has a value which is a string
 	group_option has a value which is a string
+	filter_queries has a value which is a reference to a list where each element is a string
 searchdata is a reference to a hash where the key is a string and the value is a string
 solrresponse is a reference to a hash where the key is a string and the value is a string
 
@@ -1421,39 +2653,51 @@ sub search_solr
         search_query => {q=>"*"},
         result_format => "xml",
         group_option => "",
-        skip_escape => {}
+        skip_escape => {},
+        filter_queries => []
     });  
+    $params->{filter_queries} = $self->_filterQueries($params->{filter_queries});
     my $solrCore = $params->{search_core}; 
     my $searchParam = $params->{search_param};
     my $searchQuery = $params->{search_query};
     my $resultFormat = $params->{result_format};
     my $groupOption = $params->{group_option};
     my $skipEscape = $params->{skip_escape};
+    my $filterQueries = $params->{filter_queries};
     
-    if (!$self->_ping()) {
-        die "\nError--Solr server not responding:\n" . $self->_error->{response};
-    }
+    my $cacheKey = $self->{_cache}->key('search_solr', $params);
+    $output = $self->{_cache}->get($cacheKey);
+    #the cache holds its own copy of the response, which the callers may change
+    $output = Storable::dclone($output) if defined($output);
+    if (!defined($output)) {
+        if (!$self->_checkSolr()) {
+            die "\nError--Solr server not responding:\n" . $self->_error->{response};
+        }
 
-    my $queryString = $self->_buildQueryString($searchQuery, $searchParam, $groupOption, $resultFormat, $skipEscape);
-    #print "Search query string:\n$queryString\n";
-    my $solrQuery = $self->{_SOLR_URL}."/".$solrCore."/select?".$queryString;
-    #print "Search query string:\n$solrQuery\n";
+        my $queryString = $self->_buildQueryString($searchQuery, $searchParam, $groupOption, $resultFormat, $skipEscape, $filterQueries);
+        #print "Search query string:\n$queryString\n";
+        my $solrQuery = $self->{_SOLR_URL}."/".$solrCore."/select?".$queryString;
+        #print "Search query string:\n$solrQuery\n";
     
-    my $solr_response = $self->_sendRequest("$solrQuery", "GET");
-    my $responseCode = $self->_parseResponse($solr_response, $resultFormat);
+        my $solr_response = $self->_sendRequest("$solrQuery", "GET");
+        my $responseCode = $self->_parseResponse($solr_response, $resultFormat);
+        my $weight = length($solr_response->{response});
         
-    if ($responseCode) {
-        if ($resultFormat eq "json") {
-            my $out = JSON::from_json($solr_response->{response});
-            $solr_response->{response}= $out;
+        if ($responseCode) {
+            if ($resultFormat eq "json") {
+                my $out = JSON::from_json($solr_response->{response});
+                $solr_response->{response}= $out;
+            }
         }
+        if($groupOption){
+            my @solr_records = @{$solr_response->{response}->{grouped}->{$groupOption}->{groups}};
+            #print "\nFound unique $groupOption groups of:" . scalar @solr_records . "\n";
+            #print @solr_records[0]->{doclist}->{numFound} ."\n";
+        }
+        $output = $solr_response;
+        $self->{_cache}->set($solrCore, $cacheKey, Storable::dclone($output), $weight)
+            if $responseCode && $self->{_cache}->enabled();
     }
-    if($groupOption){
-        my @solr_records = @{$solr_response->{response}->{grouped}->{$groupOption}->{groups}};
-        #print "\nFound unique $groupOption groups of:" . scalar @solr_records . "\n";
-        #print @solr_records[0]->{doclist}->{numFound} ."\n";
-    }
-    $output = $solr_response;
 
     #END search_solr
     my @_bad_returns;
@@ -1488,6 +2732,7 @@ SearchSolrParams is a reference to a hash where the following keys are defined:
 	search_query has a value which is a KBSolrUtil.searchdata
 	result_format has a value which is a string
 	group_option has a value which is a string
+	filter_queries has a value which is a reference to a list where each element is a string
 searchdata is a reference to a hash where the key is a string and the value is a string
 solrresponse is a reference to a hash where the key is a string and the value is a string
 
@@ -1505,6 +2750,7 @@ SearchSolrParams is a reference to a hash where the following keys are defined:
 	search_query has a value which is a KBSolrUtil.searchdata
 	result_format has a value which is a string
 	group_option has a value which is a string
+	filter_queries has a value which is a reference to a list where each element is a string
 searchdata is a reference to a hash where the key is a string and the value is a string
 solrresponse is a reference to a hash where the key is a string and the value is a string
 
@@ -1545,20 +2791,23 @@ sub search_kbase_solr
         search_query => {q=>"*"},
         result_format => "xml",
         group_option => "",
-        skip_escape => {}
+        skip_escape => {},
+        filter_queries => []
     });  
+    $params->{filter_queries} = $self->_filterQueries($params->{filter_queries});
     my $solrCore = $params->{search_core}; 
     my $searchParam = $params->{search_param};
     my $searchQuery = $params->{search_query};
     my $resultFormat = $params->{result_format};
     my $groupOption = $params->{group_option};
     my $skipEscape = $params->{skip_escape};
+    my $filterQueries = $params->{filter_queries};
     
-    if (!$self->_ping()) {
+    if (!$self->_checkSolr()) {
         die "\nError--Solr server not responding:\n" . $self->_error->{response};
     }
 
-    my $queryString = $self->_buildQueryString($searchQuery, $searchParam, $groupOption, $resultFormat, $skipEscape);
+    my $queryString = $self->_buildQueryString($searchQuery, $searchParam, $groupOption, $resultFormat, $skipEscape, $filterQueries);
     #print "Search query string:\n$queryString\n";
     my $solrQuery = $self->{_SOLR_URL}."/".$solrCore."/select?".$queryString;
     
@@ -1596,6 +2845,7 @@ $output is an int
 IndexJsonParams is a reference to a hash where the following keys are defined:
 	solr_core has a value which is a string
 	json_data has a value which is a string
+	commit_policy has a value which is a string
 
 </pre>
 
@@ -1608,6 +2858,7 @@ $output is an int
 IndexJsonParams is a reference to a hash where the following keys are defined:
 	solr_core has a value which is a string
 	json_data has a value which is a string
+	commit_policy has a value which is a string
 
 
 =end text
@@ -1642,7 +2893,8 @@ sub add_json_2solr
     $params = $self->util_args($params,[],{
         solr_core => "Genomes_ci",
         json_data => "",
-        is_json_string => undef
+        is_json_string => undef,
+        commit_policy => ""
     });  
     my $solrCore = $params->{solr_core};
     my $docs = $params->{json_data}; 
@@ -1656,9 +2908,13 @@ sub add_json_2solr
     if( $isJson != 1 ) {
         $isJson = 0;
     }
+    # json_data is a string in the spec, so a plain (non-reference) value is already JSON
+    $isJson = 1 if (defined($docs) && !ref($docs));
 
     my $output;
-    $output = $self->_addJSON2Solr($solrCore, $docs, $isJson);    
+    $output = $self->_addJSON2Solr($solrCore, $docs, $isJson, $params->{commit_policy});    
+    $self->_invalidateCache($solrCore);
+    $self->_addToExistenceFilter($solrCore, $docs) if $output;
 
 
     #END add_json_2solr
@@ -1675,6 +2931,113 @@ sub add_json_2solr
 
 
 
+=head2 delete_in_solr
+
+  $output = $obj->delete_in_solr($params)
+
+=over 4
+
+=item Parameter and return types
+
+=begin html
+
+<pre>
+$params is a KBSolrUtil.DeleteInSolrParams
+$output is an int
+DeleteInSolrParams is a reference to a hash where the following keys are defined:
+	solr_core has a value which is a string
+	ids has a value which is a reference to a list where each element is a string
+	queries has a value which is a reference to a list where each element is a string
+	commit_policy has a value which is a string
+
+</pre>
+
+=end html
+
+=begin text
+
+$params is a KBSolrUtil.DeleteInSolrParams
+$output is an int
+DeleteInSolrParams is a reference to a hash where the following keys are defined:
+	solr_core has a value which is a string
+	ids has a value which is a reference to a list where each element is a string
+	queries has a value which is a reference to a list where each element is a string
+	commit_policy has a value which is a string
+
+
+=end text
+
+
+
+=item Description
+
+The delete_in_solr function that returns 1 if succeeded otherwise 0
+
+=back
+
+=cut
+
+sub delete_in_solr
+{
+    my $self = shift;
+    my($params) = @_;
+
+    my @_bad_arguments;
+    (ref($params) eq 'HASH') or push(@_bad_arguments, "Invalid type for argument \"params\" (value was \"$params\")");
+    if (@_bad_arguments) {
+	my $msg = "Invalid arguments passed to delete_in_solr:\n" . join("", map { "\t$_\n" } @_bad_arguments);
+	Bio::KBase::Exceptions::ArgumentValidationError->throw(error => $msg,
+							       method_name => 'delete_in_solr');
+    }
+
+    my $ctx = $KBSolrUtil::KBSolrUtilServer::CallContext;
+    my($output);
+    #BEGIN delete_in_solr
+    $params = $self->util_initialize_call($params,$ctx);
+    $params = $self->util_args($params,[],{
+        solr_core => "",
+        ids => [],
+        queries => [],
+        commit_policy => ""
+    });
+    my $solrCore = $params->{solr_core};
+    die "\nError--solr_core must be specified\n" unless $solrCore;
+    my $ids = $params->{ids} || [];
+    my $queries = [grep { defined($_) && /\S/ } @{$params->{queries} || []}];
+
+    #the local content hashes of the docs are dropped first, or index_in_solr with skip_unchanged would take the
+    #docs deleted by the chunks sent before a failed one for unchanged when they are indexed again; dropping a hash
+    #at worst makes the doc be sent once more
+    if ($self->{_hashStore}->size($solrCore)) {
+        $self->{_hashStore}->delete_many($solrCore, [@{$ids}, @{$self->_matchingIds($solrCore, $queries)}]);
+    }
+
+    my $requests = eval { $self->_deleteDocs($solrCore, $ids, $queries, $params->{commit_policy}) };
+    my $err = $@;
+    $self->_invalidateCache($solrCore);
+    die $err if $err;
+    if (!$requests && ($params->{commit_policy} eq "commit" || $params->{commit_policy} eq "soft")) {
+        #nothing to delete, only the commit, as with index_in_solr
+        if (!$self->_commit($solrCore, $params->{commit_policy} eq "soft")) {
+            die $self->_error->{response};
+        }
+    }
+    $output = 1;
+    $self->{_metrics}->add('method', 'delete_in_solr', docs => scalar(@{$ids}) + scalar(@{$queries}));
+    #END delete_in_solr
+    my @_bad_returns;
+    (!ref($output)) or push(@_bad_returns, "Invalid type for return variable \"output\" (value was \"$output\")");
+    if (@_bad_returns) {
+	my $msg = "Invalid returns passed to delete_in_solr:\n" . join("", map { "\t$_\n" } @_bad_returns);
+	Bio::KBase::Exceptions::ArgumentValidationError->throw(error => $msg,
+							       method_name => 'delete_in_solr');
+    }
+    return($output);
+}
+
+
+
+
 =head2 status 
 
   $return = $obj->status()
@@ -1708,8 +3071,28 @@ Return the module status. This is a structure including Semantic Versioning numb
 sub status {
     my($return);
     #BEGIN_STATUS
+    my $self = $_[0];
     $return = {"state" => "OK", "message" => "", "version" => $VERSION,
                "git_url" => $GIT_URL, "git_commit_hash" => $GIT_COMMIT_HASH};
+    if (ref($self) && $self->{_cache}) {
+        $return->{result_cache} = $self->{_cache}->stats();
+    }
+    if (ref($self) && $self->{_metrics}) {
+        $return->{metrics} = $self->{_metrics}->stats();
+    }
+    if (ref($self) && $self->{_existence} && %{$self->{_existence}}) {
+        $return->{existence_filters} = $self->_existenceFilterStats();
+    }
+    if (ref($self) && $self->{_health}) {
+        my $health = $self->{_health};
+        $return->{solr_health} = {
+            up => $health->{up},
+            consecutive_failures => $health->{failures},
+            last_checked => $health->{checked} ? DateTime->from_epoch(epoch => $health->{checked})->datetime() : undef,
+            down_since => defined($health->{down_since}) ? DateTime->from_epoch(epoch => $health->{down_since})->datetime() : undef,
+            last_error => $health->{last_error}
+        };
+    }
     #END_STATUS
     return($return);
 }
@@ -1861,6 +3244,10 @@ list<docdata> doc_data - the doc to be indexed, a list of hashes
 a reference to a hash where the following keys are defined:
 solr_core has a value which is a string
 doc_data has a value which is a reference to a list where each element is a KBSolrUtil.docdata
+commit_policy has a value which is a string
+skip_unchanged has a value which is a KBSolrUtil.bool
+hash_store has a value which is a string
+hash_field has a value which is a string
 
 </pre>
 
@@ -1871,6 +3258,10 @@ doc_data has a value which is a reference to a list where each element is a KBSo
 a reference to a hash where the following keys are defined:
 solr_core has a value which is a string
 doc_data has a value which is a reference to a list where each element is a KBSolrUtil.docdata
+commit_policy has a value which is a string
+skip_unchanged has a value which is a KBSolrUtil.bool
+hash_store has a value which is a string
+hash_field has a value which is a string
 
 
 =end text
@@ -2071,6 +3462,10 @@ OR, simply:
 
 string result_format - the format of the search result, 'xml' as the default, can be 'json', 'csv', etc.
 string group_option - the name of the field to be grouped for the result
+list<string> filter_queries - SOLR queries that restrict the result without affecting its scores, each sent
+                        as a separate fq parameter, e.g. ['domain:"Bacteria"', 'rank:("species" OR "strain")'];
+                        SOLR caches the matching docs of each one in its filterCache, so exact-match restrictions
+                        that recur across searches are better put here than in search_query
 
 
 =item Definition
@@ -2084,6 +3479,7 @@ search_param has a value which is a KBSolrUtil.searchdata
 search_query has a value which is a KBSolrUtil.searchdata
 result_format has a value which is a string
 group_option has a value which is a string
+filter_queries has a value which is a reference to a list where each element is a string
 
 </pre>
 
@@ -2097,6 +3493,7 @@ search_param has a value which is a KBSolrUtil.searchdata
 search_query has a value which is a KBSolrUtil.searchdata
 result_format has a value which is a string
 group_option has a value which is a string
+filter_queries has a value which is a reference to a list where each element is a string
 
 
 =end text
@@ -2172,6 +3569,7 @@ string json_data - the doc to be indexed, a JSON string
 a reference to a hash where the following keys are defined:
 solr_core has a value which is a string
 json_data has a value which is a string
+commit_policy has a value which is a string
 
 </pre>
 
@@ -2182,6 +3580,58 @@ json_data has a value which is a string
 a reference to a hash where the following keys are defined:
 solr_core has a value which is a string
 json_data has a value which is a string
+commit_policy has a value which is a string
+
+
+=end text
+
+=back
+
+
+
+=head2 DeleteInSolrParams
+
+=over 4
+
+
+
+=item Description
+
+Arguments for the delete_in_solr function - delete docs from solr by unique key and/or by query
+
+string solr_core - the name of the solr core to delete from
+list<string> ids - the unique key values of the docs to delete, e.g. the genome_feature_ids of a genome
+list<string> queries - SOLR queries whose matching docs are deleted, e.g. 'genome_id:"GCF_000005845.2"'
+    to remove a whole genome assembly
+string commit_policy - when the deletions become visible to searches, see IndexInSolrParams; a 'commit'
+    or 'soft' commit is made once, with the last chunk
+The ids and the queries are POSTed as JSON delete commands, up to 1000 ids or 100 queries per request, so
+that a call may delete any number of them. A failed request ends the call with an error; the chunks sent
+before it are not rolled back.
+
+
+=item Definition
+
+=begin html
+
+<pre>
+a reference to a hash where the following keys are defined:
+solr_core has a value which is a string
+ids has a value which is a reference to a list where each element is a string
+queries has a value which is a reference to a list where each element is a string
+commit_policy has a value which is a string
+
+</pre>
+
+=end html
+
+=begin text
+
+a reference to a hash where the following keys are defined:
+solr_core has a value which is a string
+ids has a value which is a reference to a list where each element is a string
+queries has a value which is a reference to a list where each element is a string
+commit_policy has a value which is a string
 
 
 =end text
@@ -29,21 +29,29 @@ our $CallContext;
 
 our %return_counts = (
         'index_in_solr' => 1,
+        'new_or_updated' => 1,
         'exists_in_solr' => 1,
         'get_total_count' => 1,
+        'exists_in_solr_batch' => 1,
+        'get_total_count_batch' => 1,
         'search_solr' => 1,
         'search_kbase_solr' => 1,
         'add_json_2solr' => 1,
+        'delete_in_solr' => 1,
         'status' => 1,
 );
 
 our %method_authentication = (
         'index_in_solr' => 'required',
+        'new_or_updated' => 'required',
         'exists_in_solr' => 'required',
         'get_total_count' => 'required',
+        'exists_in_solr_batch' => 'required',
+        'get_total_count_batch' => 'required',
         'search_solr' => 'required',
         'search_kbase_solr' => 'required',
         'add_json_2solr' => 'required',
+        'delete_in_solr' => 'required',
 );
 
 sub _build_valid_methods
@@ -51,11 +59,15 @@ sub _build_valid_methods
     my($self) = @_;
     my $methods = {
         'index_in_solr' => 1,
+        'new_or_updated' => 1,
         'exists_in_solr' => 1,
         'get_total_count' => 1,
+        'exists_in_solr_batch' => 1,
+        'get_total_count_batch' => 1,
         'search_solr' => 1,
         'search_kbase_solr' => 1,
         'add_json_2solr' => 1,
+        'delete_in_solr' => 1,
         'status' => 1,
     };
     return $methods;
@@ -227,6 +239,9 @@ sub call_method {
     $ctx->method($method);
     $ctx->call_id($self->{_last_call}->{id});
     
+    # KBSolrUtil::MetricsEndpoint adds the request and response sizes to the method named here
+    $self->_plack_req->env->{'kbsolrutil.method'} = $method if defined($self->_plack_req);
+
     my $args = $data->{arguments};
     my $prov_action = {'service' => $modname, 'method' => $method, 'method_params' => $args};
     $ctx->provenance([$prov_action]);
@@ -300,6 +315,11 @@ sub call_method {
                 "X-Forwarded-For: " . $xFF, $tag);
         }
 	
+        # the call is timed as dispatched, a method that dies being recorded as an error, so a
+        # method calling another (get_total_count calling search_solr) is counted once
+        my $metrics = ref($module) ? $module->{_metrics} : undef;
+        my $timer = $metrics ? $metrics->start('method', $method) : undef;
+
         my $err;
         eval {
             $self->log($Bio::KBase::Log::INFO, $ctx, "start method", $tag);
@@ -316,6 +336,7 @@ sub call_method {
         if ($@)
         {
             my $err = $@;
+            $timer->stop(error => 1) if $timer;
             $stderr->log($err);
             $ctx->stderr(undef);
             undef $stderr;
@@ -340,6 +361,7 @@ sub call_method {
             }
             die $nicerr;
         }
+        $timer->stop() if $timer;
         $ctx->stderr(undef);
         undef $stderr;
     }
@@ -0,0 +1,280 @@
+package KBSolrUtil::Metrics;
+use strict;
+use Time::HiRes qw(time);
+
+=head1 NAME
+
+KBSolrUtil::Metrics
+
+=head1 DESCRIPTION
+
+In-process counters and latency histograms of the KBSolrUtil service, reported by the
+status method and, in the Prometheus text format, by the /metrics endpoint of
+KBSolrUtil::MetricsEndpoint.  The RPC methods are timed by KBSolrUtilServer::call_method as
+they are dispatched, the SOLR requests by KBSolrUtilImpl::_sendRequest.
+
+Every series belongs to a group and has a name: the group 'method' holds the RPC methods
+(index_in_solr, search_solr, ...), the group 'solr' the requests made to SOLR by operation
+(select, update, commit, ping, ...).  A series counts calls, errors, bytes in and out and docs
+indexed, and keeps an HDR-style histogram of the call latencies: each power of two of
+microseconds is split into SUB_BUCKETS linear buckets, so a percentile is reported within
+1/SUB_BUCKETS (6.25%) of the recorded value, whatever the magnitude, in a few hundred counters.
+
+The counts are per process; with a forking server each worker reports its own.
+
+=cut
+
+our $SUB_BITS = 4;
+our $SUB_BUCKETS = 1 << $SUB_BITS;
+our @QUANTILES = (0.5, 0.9, 0.99, 0.999);
+
+#
+# method name: new
+#
+sub new
+{
+    my ($class) = @_;
+    my $self = {
+        series => {},   # group => {name => series}
+        running => {},  # group => true while a call of the group is being timed
+        started => time()
+    };
+    return bless $self, $class;
+}
+
+#
+# method name: start
+# Starts timing a call; the call is recorded when the returned timer is stopped, or as an error
+# if the timer goes out of scope without being stopped (e.g. the method died).
+# params :
+#     $group : 'method' or 'solr'
+#     $name  : the method or operation name
+# returns : a KBSolrUtil::Metrics::Timer
+#
+sub start
+{
+    my ($self, $group, $name) = @_;
+    # a call made from within another of its group (e.g. get_total_count calling search_solr)
+    # is part of the outer one and not recorded on its own
+    return KBSolrUtil::Metrics::Timer->new(undef) if $self->{running}->{$group};
+    $self->{running}->{$group} = 1;
+    return KBSolrUtil::Metrics::Timer->new($self, $group, $name);
+}
+
+#
+# method name: record
+# Records one call.
+# params :
+#     $seconds : the latency of the call
+#     %args    : error => true if the call failed, docs, bytes_in, bytes_out => counts to add
+#
+sub record
+{
+    my ($self, $group, $name, $seconds, %args) = @_;
+    my $s = $self->_series($group, $name);
+    $s->{calls}++;
+    $s->{errors}++ if $args{error};
+    $self->add($group, $name, %args);
+
+    my $us = int($seconds * 1e6 + 0.5);
+    $us = 0 if $us < 0;
+    $s->{buckets}->{_bucketIndex($us)}++;
+    $s->{sum} += $seconds;
+    $s->{max} = $seconds if $seconds > $s->{max};
+}
+
+#
+# method name: add
+# Adds to the docs, bytes_in and bytes_out counters of a series without recording a call.
+#
+sub add
+{
+    my ($self, $group, $name, %args) = @_;
+    my $s = $self->_series($group, $name);
+    foreach my $counter (qw(docs bytes_in bytes_out)) {
+        $s->{$counter} += $args{$counter} if $args{$counter};
+    }
+}
+
+#
+# method name: percentile
+# returns : the latency in seconds below which $q (0 to 1) of the calls of a series fall
+#
+sub percentile
+{
+    my ($self, $group, $name, $q) = @_;
+    my $s = $self->{series}->{$group}->{$name};
+    return 0 unless $s && $s->{calls};
+    my $rank = $q * $s->{calls};
+    my $seen = 0;
+    foreach my $index (sort { $a <=> $b } keys %{$s->{buckets}}) {
+        $seen += $s->{buckets}->{$index};
+        if ($seen >= $rank) {
+            my $seconds = _bucketValue($index) / 1e6;
+            return $seconds < $s->{max} ? $seconds : $s->{max};
+        }
+    }
+    return $s->{max};
+}
+
+#
+# method name: stats
+# returns : a hash of the series, as reported by the status method:
+#     {uptime_seconds => N, method => {index_in_solr => {calls, errors, docs, bytes_in, bytes_out,
+#      latency_ms => {mean, p50, p90, p99, p999, max}}, ...}, solr => {...}}
+#
+sub stats
+{
+    my ($self) = @_;
+    my $out = { uptime_seconds => int(time() - $self->{started}) };
+    foreach my $group (keys %{$self->{series}}) {
+        foreach my $name (keys %{$self->{series}->{$group}}) {
+            my $s = $self->{series}->{$group}->{$name};
+            my $latency = {
+                mean => $s->{calls} ? _ms($s->{sum} / $s->{calls}) : 0,
+                max => _ms($s->{max})
+            };
+            foreach my $q (@QUANTILES) {
+                (my $key = "p" . ($q * 100)) =~ s/\.//;
+                $latency->{$key} = _ms($self->percentile($group, $name, $q));
+            }
+            $out->{$group}->{$name} = {
+                calls => $s->{calls},
+                errors => $s->{errors},
+                docs => $s->{docs},
+                bytes_in => $s->{bytes_in},
+                bytes_out => $s->{bytes_out},
+                latency_ms => $latency
+            };
+        }
+    }
+    return $out;
+}
+
+#
+# method name: prometheus
+# returns : the series in the Prometheus text exposition format, the latencies as summaries:
+#     kbsolrutil_method_seconds{method="search_solr",quantile="0.99"} 0.0123
+#     kbsolrutil_method_seconds_count{method="search_solr"} 1045
+#     kbsolrutil_method_errors_total{method="search_solr"} 2
+#     kbsolrutil_solr_bytes_out_total{operation="update"} 10485760
+#
+sub prometheus
+{
+    my ($self) = @_;
+    my %label = (method => 'method', solr => 'operation');
+    my $text = "# TYPE kbsolrutil_uptime_seconds gauge\n" .
+               "kbsolrutil_uptime_seconds " . int(time() - $self->{started}) . "\n";
+    foreach my $group (sort keys %{$self->{series}}) {
+        my $series = $self->{series}->{$group};
+        my @names = sort keys %$series;
+        my $metric = "kbsolrutil_${group}";
+        my $l = $label{$group} || 'name';
+
+        $text .= "# TYPE ${metric}_seconds summary\n";
+        foreach my $name (@names) {
+            my $s = $series->{$name};
+            foreach my $q (@QUANTILES) {
+                $text .= "${metric}_seconds{$l=\"$name\",quantile=\"$q\"} " .
+                         _num($self->percentile($group, $name, $q)) . "\n";
+            }
+            $text .= "${metric}_seconds_sum{$l=\"$name\"} " . _num($s->{sum}) . "\n";
+            $text .= "${metric}_seconds_count{$l=\"$name\"} $s->{calls}\n";
+        }
+        foreach my $counter (qw(errors docs bytes_in bytes_out)) {
+            $text .= "# TYPE ${metric}_${counter}_total counter\n";
+            $text .= "${metric}_${counter}_total{$l=\"$_\"} $series->{$_}->{$counter}\n" foreach @names;
+        }
+    }
+    return $text;
+}
+
+sub _series
+{
+    my ($self, $group, $name) = @_;
+    return $self->{series}->{$group}->{$name} ||= {
+        calls => 0, errors => 0, docs => 0, bytes_in => 0, bytes_out => 0,
+        sum => 0, max => 0, buckets => {}
+    };
+}
+
+#
+# method name: _bucketIndex
+# The histogram bucket of a latency in microseconds: values below SUB_BUCKETS have a bucket
+# each, then every power of two is split into SUB_BUCKETS buckets of equal width.
+#
+sub _bucketIndex
+{
+    my ($us) = @_;
+    return $us if $us < $SUB_BUCKETS;
+    my $exponent = int(log($us) / log(2));
+    # correct the floating point log at the exact powers of two
+    $exponent-- if (1 << $exponent) > $us;
+    $exponent++ if (1 << ($exponent + 1)) <= $us;
+    my $shift = $exponent - $SUB_BITS;
+    return ($shift + 1) * $SUB_BUCKETS + (($us >> $shift) - $SUB_BUCKETS);
+}
+
+#
+# method name: _bucketValue
+# returns : the highest latency in microseconds of a histogram bucket
+#
+sub _bucketValue
+{
+    my ($index) = @_;
+    return $index if $index < $SUB_BUCKETS;
+    my $shift = int($index / $SUB_BUCKETS) - 1;
+    my $sub = $index % $SUB_BUCKETS + $SUB_BUCKETS;
+    return (($sub + 1) << $shift) - 1;
+}
+
+sub _ms
+{
+    my ($seconds) = @_;
+    return sprintf("%.3f", $seconds * 1000) + 0;
+}
+
+sub _num
+{
+    my ($value) = @_;
+    return sprintf("%.6g", $value);
+}
+
+package KBSolrUtil::Metrics::Timer;
+use strict;
+use Time::HiRes qw(time);
+
+#
+# A running call of KBSolrUtil::Metrics::start; without metrics, a nested call that records nothing.
+#
+sub new
+{
+    my ($class, $metrics, $group, $name) = @_;
+    return bless { metrics => $metrics, group => $group, name => $name, start => time() }, $class;
+}
+
+#
+# method name: stop
+# Records the call as succeeded, or as failed with error => 1.
+# params :
+#     %args : error, docs, bytes_in, bytes_out, see KBSolrUtil::Metrics::record
+# returns : the latency in seconds
+#
+sub stop
+{
+    my ($self, %args) = @_;
+    return 0 if $self->{stopped}++;
+    my $seconds = time() - $self->{start};
+    return $seconds unless $self->{metrics};
+    $self->{metrics}->{running}->{$self->{group}} = 0;
+    $self->{metrics}->record($self->{group}, $self->{name}, $seconds, %args);
+    return $seconds;
+}
+
+sub DESTROY
+{
+    my ($self) = @_;
+    $self->stop(error => 1) unless $self->{stopped};
+}
+
+1;
@@ -0,0 +1,64 @@
+package KBSolrUtil::MetricsEndpoint;
+use strict;
+use parent qw(Plack::Middleware);
+use Plack::Util;
+use Plack::Util::Accessor qw(metrics path endpoint);
+
+=head1 NAME
+
+KBSolrUtil::MetricsEndpoint
+
+=head1 DESCRIPTION
+
+A PSGI middleware that serves the KBSolrUtil::Metrics of the service in the Prometheus text
+format, set up in KBSolrUtil.psgi:
+
+    $handler = KBSolrUtil::MetricsEndpoint->wrap($handler, metrics => $impl->{_metrics},
+        endpoint => $impl->{_METRICS_ENDPOINT});
+
+When endpoint is true (metrics-endpoint in deploy.cfg), a GET of path (/metrics by default)
+returns the metrics.  The endpoint takes no token, unlike the RPC methods, so it is off by
+default and meant for deployments where only the monitoring network can reach that path.
+Any other request goes on to the JSON-RPC server, and the sizes of its request and response
+bodies are added to the bytes_in and bytes_out counters of the method that
+KBSolrUtilServer::call_method dispatched it to, named in the kbsolrutil.method key of the PSGI
+env.  Set up inside KBSolrUtil::Compression, the sizes are those of the uncompressed bodies.
+
+=cut
+
+#
+# method name: prepare_app
+# Defaults path to /metrics.
+#
+sub prepare_app
+{
+    my ($self) = @_;
+    $self->path('/metrics') unless defined($self->path);
+}
+
+sub call
+{
+    my ($self, $env) = @_;
+    my $metrics = $self->metrics;
+
+    if ($self->endpoint && $env->{PATH_INFO} eq $self->path && $env->{REQUEST_METHOD} eq 'GET') {
+        return [200, ['Content-Type' => 'text/plain; version=0.0.4; charset=utf-8'],
+                [$metrics->prometheus()]];
+    }
+
+    my $bytesIn = $env->{CONTENT_LENGTH} || 0;
+    my $res = $self->app->($env);
+    return $self->response_cb($res, sub {
+        my ($res) = @_;
+        my $method = $env->{'kbsolrutil.method'};
+        return unless defined($method);
+        my $bytesOut = 0;
+        if (ref($res->[2]) eq 'ARRAY') {
+            $bytesOut += length($_) foreach @{$res->[2]};
+        }
+        $metrics->add('method', $method, bytes_in => $bytesIn, bytes_out => $bytesOut);
+        return;
+    });
+}
+
+1;
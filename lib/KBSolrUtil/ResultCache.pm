@@ -0,0 +1,244 @@
+package KBSolrUtil::ResultCache;
+use strict;
+use JSON;
+use Time::HiRes qw(time);
+
+=head1 NAME
+
+KBSolrUtil::ResultCache
+
+=head1 DESCRIPTION
+
+An in-process cache of SOLR read results (search_solr, exists_in_solr and get_total_count)
+for the KBSolrUtil service.
+
+Entries are keyed on the method name and a canonical JSON form of its parameters (sorted
+hash keys), so requests with the same core, query, fl, sort, rows, etc. share one entry
+regardless of the order the client sent the keys in.  An entry expires ttl seconds after it
+was stored.  When the cache holds more than max_entries entries, or the sum of the entries'
+weights exceeds max_weight, the least recently used entries are evicted.
+
+Every entry belongs to a SOLR core; invalidate_core drops all the entries of a core and is
+called whenever the service writes to that core.
+
+The cache lives in one process and knows only of the writes made through that process: with a
+forking server each worker has its own cache, and a write through one worker (or by another
+client of SOLR) leaves the entries of the other workers in place until they expire.  A cached
+result can therefore be up to ttl seconds stale, which is why the service only caches when
+cache-ttl is set in its deployment config.
+
+=cut
+
+#
+# method name: new
+# params :
+#     ttl         : seconds an entry stays valid; 0 (the default) disables the cache
+#     max_entries : the maximum number of entries held
+#     max_weight  : the maximum total weight of the entries held (e.g. bytes of response text)
+#
+sub new
+{
+    my ($class, %args) = @_;
+    my $self = {
+        ttl => ($args{ttl} || 0) + 0,
+        max_entries => ($args{max_entries} || 1000) + 0,
+        max_weight => ($args{max_weight} || 64*1024*1024) + 0,
+        json => JSON->new->canonical(1)->allow_nonref(1),
+        entries => {},     # key => node
+        cores => {},       # core => {key => 1}
+        head => undef,     # most recently used node
+        tail => undef,     # least recently used node
+        weight => 0,
+        hits => 0,
+        misses => 0,
+        evictions => 0,
+        expirations => 0,
+        invalidations => 0
+    };
+    return bless $self, $class;
+}
+
+#
+# method name: enabled
+# returns : true if entries are cached at all
+#
+sub enabled
+{
+    my ($self) = @_;
+    return $self->{ttl} > 0;
+}
+
+#
+# method name: key
+# Builds the canonical cache key of a method call.
+# params :
+#     $method : the method name, e.g. 'search_solr'
+#     $params : the (defaulted) parameters of the call
+#
+sub key
+{
+    my ($self, $method, $params) = @_;
+    return $method . ":" . $self->{json}->encode($params);
+}
+
+#
+# method name: get
+# returns : the cached value of $key, or undef on a miss (including an expired entry)
+#
+sub get
+{
+    my ($self, $key) = @_;
+    my $node = $self->{entries}->{$key};
+    if (!defined($node)) {
+        $self->{misses}++;
+        return undef;
+    }
+    if ($node->{expires} <= time()) {
+        $self->_remove($node);
+        $self->{expirations}++;
+        $self->{misses}++;
+        return undef;
+    }
+    $self->_unlink($node);
+    $self->_push_front($node);
+    $self->{hits}++;
+    return $node->{value};
+}
+
+#
+# method name: set
+# Stores $value under $key for the solr core $core, then evicts the least recently used
+# entries until the cache is within max_entries and max_weight.
+# params :
+#     $weight : the weight of the entry, e.g. the length of the response text; defaults to 1
+#
+sub set
+{
+    my ($self, $core, $key, $value, $weight) = @_;
+    return unless $self->enabled();
+    $weight = 1 unless defined($weight) && $weight > 0;
+    # an entry that could never fit would only flush the rest of the cache
+    return if $weight > $self->{max_weight};
+
+    my $old = $self->{entries}->{$key};
+    $self->_remove($old) if defined($old);
+
+    my $node = {
+        key => $key,
+        core => $core,
+        value => $value,
+        weight => $weight,
+        expires => time() + $self->{ttl}
+    };
+    $self->{entries}->{$key} = $node;
+    $self->{cores}->{$core}->{$key} = 1;
+    $self->{weight} += $weight;
+    $self->_push_front($node);
+
+    while (defined($self->{tail}) &&
+           (keys(%{$self->{entries}}) > $self->{max_entries} ||
+            $self->{weight} > $self->{max_weight})) {
+        $self->_remove($self->{tail});
+        $self->{evictions}++;
+    }
+}
+
+#
+# method name: invalidate_core
+# Drops all the entries of the solr core $core.
+# returns : the number of entries dropped
+#
+sub invalidate_core
+{
+    my ($self, $core) = @_;
+    my $keys = delete $self->{cores}->{$core};
+    return 0 unless $keys;
+    my $count = 0;
+    foreach my $key (keys %$keys) {
+        my $node = $self->{entries}->{$key};
+        next unless defined($node);
+        $self->_remove($node);
+        $count++;
+    }
+    $self->{invalidations} += $count;
+    return $count;
+}
+
+#
+# method name: clear
+# Drops all the entries; the counters are kept.
+#
+sub clear
+{
+    my ($self) = @_;
+    # unlink node by node, the prev/next references would otherwise keep them alive
+    while (defined($self->{tail})) {
+        $self->_remove($self->{tail});
+    }
+}
+
+#
+# method name: stats
+# returns : a hash of the cache counters, as reported by the status method
+#
+sub stats
+{
+    my ($self) = @_;
+    my $lookups = $self->{hits} + $self->{misses};
+    return {
+        enabled => $self->enabled() ? 1 : 0,
+        ttl => $self->{ttl},
+        entries => scalar(keys %{$self->{entries}}),
+        max_entries => $self->{max_entries},
+        weight => $self->{weight},
+        max_weight => $self->{max_weight},
+        hits => $self->{hits},
+        misses => $self->{misses},
+        hit_ratio => $lookups ? $self->{hits} / $lookups : 0,
+        evictions => $self->{evictions},
+        expirations => $self->{expirations},
+        invalidations => $self->{invalidations}
+    };
+}
+
+sub _remove
+{
+    my ($self, $node) = @_;
+    $self->_unlink($node);
+    delete $self->{entries}->{$node->{key}};
+    my $coreKeys = $self->{cores}->{$node->{core}};
+    if ($coreKeys) {
+        delete $coreKeys->{$node->{key}};
+        delete $self->{cores}->{$node->{core}} unless %$coreKeys;
+    }
+    $self->{weight} -= $node->{weight};
+}
+
+sub _unlink
+{
+    my ($self, $node) = @_;
+    if (defined($node->{prev})) {
+        $node->{prev}->{next} = $node->{next};
+    } else {
+        $self->{head} = $node->{next};
+    }
+    if (defined($node->{next})) {
+        $node->{next}->{prev} = $node->{prev};
+    } else {
+        $self->{tail} = $node->{prev};
+    }
+    $node->{prev} = undef;
+    $node->{next} = undef;
+}
+
+sub _push_front
+{
+    my ($self, $node) = @_;
+    $node->{prev} = undef;
+    $node->{next} = $self->{head};
+    $self->{head}->{prev} = $node if defined($self->{head});
+    $self->{head} = $node;
+    $self->{tail} = $node unless defined($self->{tail});
+}
+
+1;
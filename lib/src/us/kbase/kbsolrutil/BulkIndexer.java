@@ -0,0 +1,550 @@
+package us.kbase.kbsolrutil;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import us.kbase.common.service.JsonClientException;
+
+/**
+ * <p>Streams documents into a Solr core through the index_in_solr function.</p>
+ * <pre>
+ * Documents are collected into batches that are sent when any of these limits is reached:
+ *     - the number of documents in the batch (maxBatchDocs)
+ *     - the approximate serialized size of the batch in bytes (maxBatchBytes)
+ *     - the time since the first document was added to the batch (flushIntervalMillis)
+ * Up to maxConcurrentBatches batches are sent at the same time through
+ * {@link KBSolrUtilClient#indexInSolrAsync(IndexInSolrParams, us.kbase.common.service.RpcContext...)};
+ * add() blocks while that many batches are in flight, so memory use stays bounded
+ * no matter how many documents are streamed in. It waits for a batch slot without holding
+ * the indexer's lock, so the flush timer and other adding threads are not held up meanwhile.
+ * The outcome and latency of every batch is reported to the {@link BatchListener}, if one is set.
+ * For large loads, send the batches with commit policy 'none' and let close() make a single
+ * commit once every batch has completed:
+ *     new BulkIndexer(client, core).withCommitPolicy("none").withFinalCommitPolicy("commit")
+ * </pre>
+ */
+public class BulkIndexer implements Closeable {
+
+    public static final int DEFAULT_MAX_BATCH_DOCS = 1000;
+    public static final long DEFAULT_MAX_BATCH_BYTES = 4L * 1024 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 5000;
+    public static final int DEFAULT_MAX_CONCURRENT_BATCHES = 4;
+
+    private static final TypeReference<Map<String, String>> DOC_TYPE =
+            new TypeReference<Map<String, String>>() {};
+
+    private final KBSolrUtilClient client;
+    private final String solrCore;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private int maxBatchDocs = DEFAULT_MAX_BATCH_DOCS;
+    private long maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+    private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+    private int maxConcurrentBatches = DEFAULT_MAX_CONCURRENT_BATCHES;
+    private BatchListener listener = null;
+    private String commitPolicy = null;
+    private String finalCommitPolicy = null;
+    private String hashStore = null;
+
+    private List<Map<String, String>> batch = new ArrayList<Map<String, String>>();
+    private long batchBytes = 0;
+    private long batchStarted = 0;
+    private long batchCount = 0;
+    private Semaphore batchSlots = null;
+    private ScheduledExecutorService flushTimer = null;
+    private boolean closed = false;
+
+    private final AtomicLong docsIndexed = new AtomicLong();
+    private final AtomicLong docsFailed = new AtomicLong();
+    private final AtomicLong batchesIndexed = new AtomicLong();
+    private final AtomicLong batchesFailed = new AtomicLong();
+
+    /** Receives the outcome of every batch sent by a BulkIndexer. Called on
+     * the client's async executor thread.
+     */
+    public interface BatchListener {
+        /** Called when a batch was indexed.
+         * @param result the batch that was indexed.
+         */
+        void batchIndexed(BatchResult result);
+
+        /** Called when a batch could not be indexed.
+         * @param result the batch that failed.
+         * @param error the cause of the failure.
+         */
+        void batchFailed(BatchResult result, Throwable error);
+    }
+
+    /** The size and latency of a single batch sent by a BulkIndexer. */
+    public static class BatchResult {
+        private final long batchNumber;
+        private final int docCount;
+        private final long byteSize;
+        private final long latencyMillis;
+
+        BatchResult(long batchNumber, int docCount, long byteSize, long latencyMillis) {
+            this.batchNumber = batchNumber;
+            this.docCount = docCount;
+            this.byteSize = byteSize;
+            this.latencyMillis = latencyMillis;
+        }
+
+        /** @return the sequence number of the batch, starting at 1. */
+        public long getBatchNumber() {
+            return batchNumber;
+        }
+
+        /** @return the number of documents in the batch. */
+        public int getDocCount() {
+            return docCount;
+        }
+
+        /** @return the approximate serialized size of the batch in bytes. */
+        public long getByteSize() {
+            return byteSize;
+        }
+
+        /** @return the time between sending the batch and receiving the response. */
+        public long getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        @Override
+        public String toString() {
+            return ((((((((("BatchResult"+" [batchNumber=")+ batchNumber)+", docCount=")+ docCount)+", byteSize=")+ byteSize)+", latencyMillis=")+ latencyMillis)+"]");
+        }
+    }
+
+    /** Constructs a bulk indexer for a Solr core.
+     * @param client the client used to send the batches.
+     * @param solrCore the name of the solr core to index to.
+     */
+    public BulkIndexer(KBSolrUtilClient client, String solrCore) {
+        if (client == null) {
+            throw new NullPointerException("client");
+        }
+        if (solrCore == null || solrCore.isEmpty()) {
+            throw new IllegalArgumentException("solrCore must be specified");
+        }
+        this.client = client;
+        this.solrCore = solrCore;
+    }
+
+    /** Set the maximum number of documents in a batch.
+     * @param maxBatchDocs the maximum number of documents. Default 1000.
+     * @return this indexer.
+     */
+    public synchronized BulkIndexer withMaxBatchDocs(int maxBatchDocs) {
+        if (maxBatchDocs < 1) {
+            throw new IllegalArgumentException("maxBatchDocs must be at least 1");
+        }
+        this.maxBatchDocs = maxBatchDocs;
+        return this;
+    }
+
+    /** Set the maximum approximate serialized size of a batch. A single
+     * document larger than this is sent in a batch of its own.
+     * @param maxBatchBytes the maximum size in bytes. Default 4 MB.
+     * @return this indexer.
+     */
+    public synchronized BulkIndexer withMaxBatchBytes(long maxBatchBytes) {
+        if (maxBatchBytes < 1) {
+            throw new IllegalArgumentException("maxBatchBytes must be at least 1");
+        }
+        this.maxBatchBytes = maxBatchBytes;
+        return this;
+    }
+
+    /** Set the longest time a partial batch waits for more documents before
+     * it is sent. A value of zero disables time-based flushing.
+     * @param flushIntervalMillis the flush interval in milliseconds. Default 5000.
+     * @return this indexer.
+     */
+    public synchronized BulkIndexer withFlushIntervalMillis(long flushIntervalMillis) {
+        if (flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("flushIntervalMillis cannot be negative");
+        }
+        checkNotStarted();
+        this.flushIntervalMillis = flushIntervalMillis;
+        return this;
+    }
+
+    /** Set the maximum number of batches sent at the same time.
+     * @param maxConcurrentBatches the maximum number of batches in flight. Default 4.
+     * @return this indexer.
+     */
+    public synchronized BulkIndexer withMaxConcurrentBatches(int maxConcurrentBatches) {
+        if (maxConcurrentBatches < 1) {
+            throw new IllegalArgumentException("maxConcurrentBatches must be at least 1");
+        }
+        checkNotStarted();
+        this.maxConcurrentBatches = maxConcurrentBatches;
+        return this;
+    }
+
+    /** Set the listener that receives the outcome of every batch.
+     * @param listener the batch listener.
+     * @return this indexer.
+     */
+    public synchronized BulkIndexer withListener(BatchListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /** Set the commit policy each batch is sent with, see IndexInSolrParams.commit_policy.
+     * @param commitPolicy 'commit', 'soft', 'commitWithin=&lt;ms&gt;' or 'none', or null
+     * for the service default.
+     * @return this indexer.
+     */
+    public synchronized BulkIndexer withCommitPolicy(String commitPolicy) {
+        this.commitPolicy = commitPolicy;
+        return this;
+    }
+
+    /** Set the commit made by close() once every batch has completed.
+     * @param finalCommitPolicy 'commit' or 'soft', or null for no final commit. Default null.
+     * @return this indexer.
+     */
+    public synchronized BulkIndexer withFinalCommitPolicy(String finalCommitPolicy) {
+        if (finalCommitPolicy != null && !finalCommitPolicy.equals("commit") &&
+                !finalCommitPolicy.equals("soft")) {
+            throw new IllegalArgumentException("finalCommitPolicy must be 'commit' or 'soft'");
+        }
+        this.finalCommitPolicy = finalCommitPolicy;
+        return this;
+    }
+
+    /** Send only the documents that are new or changed since they were last indexed, see
+     * IndexInSolrParams.skip_unchanged; the unchanged documents still count as sent in the
+     * BatchResults.
+     * @param hashStore where the service keeps the content hashes, 'solr' or 'local', or null
+     * to send every document. Default null.
+     * @return this indexer.
+     */
+    public synchronized BulkIndexer withSkipUnchanged(String hashStore) {
+        if (hashStore != null && !hashStore.equals("solr") && !hashStore.equals("local")) {
+            throw new IllegalArgumentException("hashStore must be 'solr' or 'local'");
+        }
+        this.hashStore = hashStore;
+        return this;
+    }
+
+    /** Add a genome feature document.
+     * @param doc the document to index.
+     * @throws InterruptedException if interrupted while waiting for a batch slot.
+     */
+    public void add(SolrGenomeFeatureData doc) throws InterruptedException {
+        Map<String, String> docData = mapper.convertValue(doc, DOC_TYPE);
+        add(docData);
+    }
+
+    /** Add a genome feature document held as a CompactGenomeFeatureData.
+     * @param doc the document to index.
+     * @throws InterruptedException if interrupted while waiting for a batch slot.
+     */
+    public void add(CompactGenomeFeatureData doc) throws InterruptedException {
+        add(doc.toDocData());
+    }
+
+    /** Add a document.
+     * @param doc the document to index, a mapping from field name to value.
+     * @throws InterruptedException if interrupted while waiting for a batch slot.
+     */
+    public void add(Map<String, String> doc) throws InterruptedException {
+        List<Batch> full = new ArrayList<Batch>(2);
+        Semaphore slots;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("BulkIndexer is closed");
+            }
+            start();
+            long docBytes = estimateSize(doc);
+            if (!batch.isEmpty() && batchBytes + docBytes > maxBatchBytes) {
+                full.add(takeBatch());
+            }
+            if (batch.isEmpty()) {
+                batchStarted = System.currentTimeMillis();
+            }
+            batch.add(doc);
+            batchBytes += docBytes;
+            if (batch.size() >= maxBatchDocs || batchBytes >= maxBatchBytes) {
+                full.add(takeBatch());
+            }
+            slots = batchSlots;
+        }
+        sendBatches(slots, full);
+    }
+
+    /** Add a stream of documents.
+     * @param docs the documents to index.
+     * @throws InterruptedException if interrupted while waiting for a batch slot.
+     */
+    public void addAll(Iterator<? extends SolrGenomeFeatureData> docs) throws InterruptedException {
+        while (docs.hasNext()) {
+            add(docs.next());
+        }
+    }
+
+    /** Send the current partial batch, if any, without waiting for it to complete.
+     * @throws InterruptedException if interrupted while waiting for a batch slot.
+     */
+    public void flush() throws InterruptedException {
+        Batch b;
+        Semaphore slots;
+        synchronized (this) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            b = takeBatch();
+            slots = batchSlots;
+        }
+        sendBatches(slots, Collections.singletonList(b));
+    }
+
+    /** Send the current partial batch and wait until every batch sent so far
+     * has completed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void awaitCompletion() throws InterruptedException {
+        flush();
+        Semaphore slots;
+        int permits;
+        synchronized (this) {
+            slots = batchSlots;
+            permits = maxConcurrentBatches;
+        }
+        if (slots != null) {
+            slots.acquire(permits);
+            slots.release(permits);
+        }
+    }
+
+    /** Wait until every batch sent so far has completed, then commit them in
+     * a single index_in_solr call without documents.
+     * @param policy 'commit' for a hard commit or 'soft' for a soft commit.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws IOException if an IO exception occurs.
+     * @throws JsonClientException if a JSON RPC exception occurs.
+     */
+    public void commit(String policy)
+            throws InterruptedException, IOException, JsonClientException {
+        awaitCompletion();
+        client.indexInSolr(new IndexInSolrParams()
+                .withSolrCore(solrCore)
+                .withDocData(Collections.<Map<String, String>>emptyList())
+                .withCommitPolicy(policy));
+    }
+
+    /** Send the remaining documents, wait for all batches to complete, make the
+     * final commit if one is set and stop the flush timer. The final commit is not
+     * made if any batch failed, so that a partial load is not made visible as if it
+     * were complete. The indexer cannot be used after it is closed.
+     * @throws UncheckedIOException if a batch failed while a final commit was set,
+     * or if the final commit fails.
+     */
+    @Override
+    public void close() {
+        String policy;
+        synchronized (this) {
+            policy = batchCount > 0 || !batch.isEmpty() ? finalCommitPolicy : null;
+        }
+        try {
+            awaitCompletion();
+            if (policy != null) {
+                if (batchesFailed.get() > 0) {
+                    throw new UncheckedIOException(new IOException(batchesFailed.get() + " of " +
+                            (batchesFailed.get() + batchesIndexed.get()) + " batches of core " +
+                            solrCore + " failed; the final commit was not made"));
+                }
+                commit(policy);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Final commit of core " + solrCore + " failed", e);
+        } catch (JsonClientException e) {
+            throw new UncheckedIOException("Final commit of core " + solrCore + " failed",
+                    new IOException(e));
+        } finally {
+            synchronized (this) {
+                closed = true;
+                if (flushTimer != null) {
+                    flushTimer.shutdownNow();
+                }
+            }
+        }
+    }
+
+    /** @return the number of documents in batches that were indexed. */
+    public long getDocsIndexed() {
+        return docsIndexed.get();
+    }
+
+    /** @return the number of documents in batches that failed. */
+    public long getDocsFailed() {
+        return docsFailed.get();
+    }
+
+    /** @return the number of batches that were indexed. */
+    public long getBatchesIndexed() {
+        return batchesIndexed.get();
+    }
+
+    /** @return the number of batches that failed. */
+    public long getBatchesFailed() {
+        return batchesFailed.get();
+    }
+
+    private void checkNotStarted() {
+        if (batchSlots != null) {
+            throw new IllegalStateException("BulkIndexer has already started sending documents");
+        }
+    }
+
+    private void start() {
+        if (batchSlots != null) {
+            return;
+        }
+        batchSlots = new Semaphore(maxConcurrentBatches);
+        if (flushIntervalMillis > 0) {
+            flushTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "BulkIndexer-flush-" + solrCore);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            long period = Math.max(1, flushIntervalMillis / 4);
+            flushTimer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flushIfStale();
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void flushIfStale() {
+        if (closed || batch.isEmpty()
+                || System.currentTimeMillis() - batchStarted < flushIntervalMillis) {
+            return;
+        }
+        // never block the timer thread waiting for a slot; add() or the next tick will send it
+        if (batchSlots.tryAcquire()) {
+            sendAcquired(takeBatch());
+        }
+    }
+
+    // a batch taken off the indexer, with the settings it is to be sent with
+    private static class Batch {
+        private final List<Map<String, String>> docs;
+        private final long bytes;
+        private final long number;
+        private final BatchListener listener;
+        private final String commitPolicy;
+        private final String hashStore;
+
+        private Batch(List<Map<String, String>> docs, long bytes, long number,
+                BatchListener listener, String commitPolicy, String hashStore) {
+            this.docs = docs;
+            this.bytes = bytes;
+            this.number = number;
+            this.listener = listener;
+            this.commitPolicy = commitPolicy;
+            this.hashStore = hashStore;
+        }
+    }
+
+    // must be called holding the lock
+    private Batch takeBatch() {
+        Batch b = new Batch(batch, batchBytes, ++batchCount, listener, commitPolicy, hashStore);
+        batch = new ArrayList<Map<String, String>>(Math.min(maxBatchDocs, 1024));
+        batchBytes = 0;
+        return b;
+    }
+
+    // must be called without the lock: waiting for a slot would stall the flush timer
+    private void sendBatches(Semaphore slots, List<Batch> batches) throws InterruptedException {
+        for (int i = 0; i < batches.size(); i++) {
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                // the batches are off the indexer already; report them rather than drop them
+                for (Batch b : batches.subList(i, batches.size())) {
+                    batchDone(b, 0, e);
+                }
+                throw e;
+            }
+            sendAcquired(batches.get(i));
+        }
+    }
+
+    private void sendAcquired(final Batch b) {
+        final long sent = System.nanoTime();
+        CompletableFuture<Long> result;
+        try {
+            result = client.indexInSolrAsync(new IndexInSolrParams()
+                    .withSolrCore(solrCore).withDocData(b.docs).withCommitPolicy(b.commitPolicy)
+                    .withSkipUnchanged(b.hashStore == null ? null : 1L).withHashStore(b.hashStore));
+        } catch (RuntimeException e) {
+            result = new CompletableFuture<Long>();
+            result.completeExceptionally(e);
+        }
+        result.whenComplete((output, error) -> {
+            try {
+                if (error == null && (output == null || output.longValue() != 1L)) {
+                    error = new IllegalStateException("index_in_solr returned " + output +
+                            " for batch " + b.number + " of core " + solrCore);
+                }
+                batchDone(b, System.nanoTime() - sent, error);
+            } finally {
+                batchSlots.release();
+            }
+        });
+    }
+
+    private void batchDone(Batch b, long latencyNanos, Throwable error) {
+        BatchResult br = new BatchResult(b.number, b.docs.size(), b.bytes,
+                TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        if (error == null) {
+            batchesIndexed.incrementAndGet();
+            docsIndexed.addAndGet(b.docs.size());
+            if (b.listener != null) {
+                b.listener.batchIndexed(br);
+            }
+        } else {
+            batchesFailed.incrementAndGet();
+            docsFailed.addAndGet(b.docs.size());
+            if (b.listener != null) {
+                b.listener.batchFailed(br, error);
+            }
+        }
+    }
+
+    // approximates the JSON encoding of the document: quotes, colon and comma per field
+    private static long estimateSize(Map<String, String> doc) {
+        long size = 2;
+        for (Map.Entry<String, String> e : doc.entrySet()) {
+            size += e.getKey().length() + 6;
+            if (e.getValue() != null) {
+                size += e.getValue().length();
+            }
+        }
+        return size;
+    }
+}
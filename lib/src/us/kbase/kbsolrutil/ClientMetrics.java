@@ -0,0 +1,161 @@
+package us.kbase.kbsolrutil;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Per-method call counters and latency histograms of a KBSolrUtilClient.</p>
+ * <pre>
+ * The client side of the service's status metrics and /metrics endpoint: for each method
+ * (index_in_solr, search_solr, ...) the calls, the errors (IOException, JsonClientException or
+ * runtime exception), the docs sent by index_in_solr, and a {@link LatencyHistogram} of the
+ * call latencies measured around the whole call, encoding and decoding included.
+ * Request and response bytes are only counted for calls made over pooled connections (see
+ * KBSolrUtilClient.usePooledConnections): the bytes sent, gzipped or not, and the bytes of the
+ * response after inflating it.
+ * Example:
+ *     ClientMetrics.Method search = client.getMetrics().getMethod("search_solr");
+ *     System.out.println(search.getCalls() + " calls, p99 " +
+ *             search.getLatency().getPercentileMillis(99) + " ms");
+ * </pre>
+ */
+public class ClientMetrics {
+
+    private static final String[] QUANTILES = {"0.5", "0.9", "0.99", "0.999"};
+
+    private final ConcurrentMap<String, Method> methods = new ConcurrentHashMap<String, Method>();
+
+    /** The counters of one method. */
+    public static class Method {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong docs = new AtomicLong();
+        private final AtomicLong bytesOut = new AtomicLong();
+        private final AtomicLong bytesIn = new AtomicLong();
+
+        /** @return the number of calls, failed ones included. */
+        public long getCalls() {
+            return latency.getCount();
+        }
+
+        /** @return the number of failed calls. */
+        public long getErrors() {
+            return errors.get();
+        }
+
+        /** @return the number of documents sent for indexing. */
+        public long getDocs() {
+            return docs.get();
+        }
+
+        /** @return the number of request bytes sent. */
+        public long getBytesOut() {
+            return bytesOut.get();
+        }
+
+        /** @return the number of response bytes received. */
+        public long getBytesIn() {
+            return bytesIn.get();
+        }
+
+        /** @return the histogram of the call latencies. */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+    }
+
+    /** Record one call.
+     * @param method the method name, with or without the KBSolrUtil. module prefix.
+     * @param nanos the latency of the call in nanoseconds.
+     * @param error true if the call failed.
+     */
+    public void recordCall(String method, long nanos, boolean error) {
+        Method m = method(method);
+        m.latency.record(nanos);
+        if (error) {
+            m.errors.incrementAndGet();
+        }
+    }
+
+    /** Add to the documents sent for indexing by a method. */
+    public void addDocs(String method, long docs) {
+        method(method).docs.addAndGet(docs);
+    }
+
+    /** Add to the request and response bytes of a method. */
+    public void addBytes(String method, long bytesOut, long bytesIn) {
+        Method m = method(method);
+        m.bytesOut.addAndGet(bytesOut);
+        m.bytesIn.addAndGet(bytesIn);
+    }
+
+    /** Get the counters of a method.
+     * @param method the method name, e.g. search_solr.
+     * @return the counters, or null if the method was never called.
+     */
+    public Method getMethod(String method) {
+        return methods.get(shortName(method));
+    }
+
+    /** @return the counters of all the methods called so far, by method name. */
+    public Map<String, Method> getMethods() {
+        return new TreeMap<String, Method>(methods);
+    }
+
+    /** Drop all the counters. */
+    public void reset() {
+        methods.clear();
+    }
+
+    /** Render the counters in the Prometheus text exposition format, with the same metric
+     * names as the service's /metrics endpoint but the prefix kbsolrutil_client_method.
+     * @return the text.
+     */
+    public String toPrometheus() {
+        Map<String, Method> all = getMethods();
+        StringBuilder text = new StringBuilder();
+        String metric = "kbsolrutil_client_method";
+        text.append("# TYPE ").append(metric).append("_seconds summary\n");
+        for (Map.Entry<String, Method> e : all.entrySet()) {
+            LatencyHistogram h = e.getValue().latency;
+            for (String q : QUANTILES) {
+                text.append(String.format(Locale.ROOT, "%s_seconds{method=\"%s\",quantile=\"%s\"} %.6g\n",
+                        metric, e.getKey(), q, h.getPercentileMillis(Double.parseDouble(q) * 100) / 1000));
+            }
+            text.append(String.format(Locale.ROOT, "%s_seconds_sum{method=\"%s\"} %.6g\n",
+                    metric, e.getKey(), h.getMeanMillis() * h.getCount() / 1000));
+            text.append(String.format(Locale.ROOT, "%s_seconds_count{method=\"%s\"} %d\n",
+                    metric, e.getKey(), h.getCount()));
+        }
+        String[] counters = {"errors", "docs", "bytes_out", "bytes_in"};
+        for (String counter : counters) {
+            text.append("# TYPE ").append(metric).append('_').append(counter).append("_total counter\n");
+            for (Map.Entry<String, Method> e : all.entrySet()) {
+                Method m = e.getValue();
+                long value = counter.equals("errors") ? m.getErrors() : counter.equals("docs") ?
+                        m.getDocs() : counter.equals("bytes_out") ? m.getBytesOut() : m.getBytesIn();
+                text.append(String.format(Locale.ROOT, "%s_%s_total{method=\"%s\"} %d\n",
+                        metric, counter, e.getKey(), value));
+            }
+        }
+        return text.toString();
+    }
+
+    private Method method(String method) {
+        String name = shortName(method);
+        Method m = methods.get(name);
+        if (m == null) {
+            methods.putIfAbsent(name, new Method());
+            m = methods.get(name);
+        }
+        return m;
+    }
+
+    private static String shortName(String method) {
+        return method.startsWith("KBSolrUtil.") ? method.substring("KBSolrUtil.".length()) : method;
+    }
+}
@@ -0,0 +1,1036 @@
+package us.kbase.kbsolrutil;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+
+/**
+ * <p>A memory-lean SolrGenomeFeatureData for bulk pipelines.</p>
+ * <pre>
+ * It reads and writes the same JSON as {@link SolrGenomeFeatureData}, so it can be used as
+ * the document type of a typed search (client.searchSolr(params, CompactGenomeFeatureData.class)
+ * or a SolrCursor) and added to a BulkIndexer, but holds a feature in about a third of the heap:
+ *     - the low-cardinality fields (domain, feature_type, genome_source, go_ontology_domain,
+ *       location_strand, genetic_code, refseq_category) are dictionary-encoded: the record
+ *       holds a short code into a JVM-wide {@link ValueDictionary} per field;
+ *     - the fields shared by all the features of a genome (genome_id, ws_ref, scientific_name,
+ *       taxonomy, workspace_name, ...) are interned, so a genome's features share one copy;
+ *     - the numeric fields are primitive long and double; a missing value is MISSING_LONG or
+ *       NaN rather than null, see the has* methods;
+ *     - the map of additional properties is only allocated for a document that has some.
+ * The numeric getters return the primitive value, e.g. getLocationBegin() returns a long that
+ * is MISSING_LONG if the document has no location_begin; the JSON leaves missing fields out,
+ * as SolrGenomeFeatureData does.
+ * </pre>
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.NONE,
+        getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE,
+        setterVisibility = JsonAutoDetect.Visibility.NONE)
+@JsonPropertyOrder({
+    "genome_feature_id",
+    "genome_id",
+    "feature_id",
+    "ws_ref",
+    "feature_type",
+    "aliases",
+    "scientific_name",
+    "domain",
+    "functions",
+    "genome_source",
+    "go_ontology_description",
+    "go_ontology_domain",
+    "gene_name",
+    "object_name",
+    "location_contig",
+    "location_strand",
+    "taxonomy",
+    "workspace_name",
+    "genetic_code",
+    "md5",
+    "tax_id",
+    "assembly_ref",
+    "taxonomy_ref",
+    "ontology_namespaces",
+    "ontology_ids",
+    "ontology_names",
+    "ontology_lineages",
+    "dna_sequence_length",
+    "genome_dna_size",
+    "location_begin",
+    "location_end",
+    "num_cds",
+    "num_contigs",
+    "protein_translation_length",
+    "gc_content",
+    "complete",
+    "refseq_category",
+    "save_date"
+})
+public class CompactGenomeFeatureData {
+
+    /** The value of a missing long field. */
+    public static final long MISSING_LONG = Long.MIN_VALUE;
+
+    private static final ValueDictionary FEATURE_TYPE_VALUES = new ValueDictionary("feature_type");
+    private static final ValueDictionary DOMAIN_VALUES = new ValueDictionary("domain");
+    private static final ValueDictionary GENOME_SOURCE_VALUES = new ValueDictionary("genome_source");
+    private static final ValueDictionary GO_ONTOLOGY_DOMAIN_VALUES = new ValueDictionary("go_ontology_domain");
+    private static final ValueDictionary LOCATION_STRAND_VALUES = new ValueDictionary("location_strand");
+    private static final ValueDictionary GENETIC_CODE_VALUES = new ValueDictionary("genetic_code");
+    private static final ValueDictionary REFSEQ_CATEGORY_VALUES = new ValueDictionary("refseq_category");
+
+    private String genomeFeatureId;
+    private String genomeId;
+    private String featureId;
+    private String wsRef;
+    private short featureType;
+    private String aliases;
+    private String scientificName;
+    private short domain;
+    private String functions;
+    private short genomeSource;
+    private String goOntologyDescription;
+    private short goOntologyDomain;
+    private String geneName;
+    private String objectName;
+    private String locationContig;
+    private short locationStrand;
+    private String taxonomy;
+    private String workspaceName;
+    private short geneticCode;
+    private String md5;
+    private String taxId;
+    private String assemblyRef;
+    private String taxonomyRef;
+    private String ontologyNamespaces;
+    private String ontologyIds;
+    private String ontologyNames;
+    private String ontologyLineages;
+    private long dnaSequenceLength = MISSING_LONG;
+    private long genomeDnaSize = MISSING_LONG;
+    private long locationBegin = MISSING_LONG;
+    private long locationEnd = MISSING_LONG;
+    private long numCds = MISSING_LONG;
+    private long numContigs = MISSING_LONG;
+    private long proteinTranslationLength = MISSING_LONG;
+    private double gcContent = Double.NaN;
+    private long complete = MISSING_LONG;
+    private short refseqCategory;
+    private String saveDate;
+    private Map<String, Object> additionalProperties = null;
+
+    /** Make a compact copy of a feature.
+     * @param doc the feature.
+     * @return the copy.
+     */
+    public static CompactGenomeFeatureData fromSolrGenomeFeatureData(SolrGenomeFeatureData doc) {
+        CompactGenomeFeatureData out = new CompactGenomeFeatureData();
+        out.setGenomeFeatureId(doc.getGenomeFeatureId());
+        out.setGenomeId(doc.getGenomeId());
+        out.setFeatureId(doc.getFeatureId());
+        out.setWsRef(doc.getWsRef());
+        out.setFeatureType(doc.getFeatureType());
+        out.setAliases(doc.getAliases());
+        out.setScientificName(doc.getScientificName());
+        out.setDomain(doc.getDomain());
+        out.setFunctions(doc.getFunctions());
+        out.setGenomeSource(doc.getGenomeSource());
+        out.setGoOntologyDescription(doc.getGoOntologyDescription());
+        out.setGoOntologyDomain(doc.getGoOntologyDomain());
+        out.setGeneName(doc.getGeneName());
+        out.setObjectName(doc.getObjectName());
+        out.setLocationContig(doc.getLocationContig());
+        out.setLocationStrand(doc.getLocationStrand());
+        out.setTaxonomy(doc.getTaxonomy());
+        out.setWorkspaceName(doc.getWorkspaceName());
+        out.setGeneticCode(doc.getGeneticCode());
+        out.setMd5(doc.getMd5());
+        out.setTaxId(doc.getTaxId());
+        out.setAssemblyRef(doc.getAssemblyRef());
+        out.setTaxonomyRef(doc.getTaxonomyRef());
+        out.setOntologyNamespaces(doc.getOntologyNamespaces());
+        out.setOntologyIds(doc.getOntologyIds());
+        out.setOntologyNames(doc.getOntologyNames());
+        out.setOntologyLineages(doc.getOntologyLineages());
+        out.dnaSequenceLength = unbox(doc.getDnaSequenceLength());
+        out.genomeDnaSize = unbox(doc.getGenomeDnaSize());
+        out.locationBegin = unbox(doc.getLocationBegin());
+        out.locationEnd = unbox(doc.getLocationEnd());
+        out.numCds = unbox(doc.getNumCds());
+        out.numContigs = unbox(doc.getNumContigs());
+        out.proteinTranslationLength = unbox(doc.getProteinTranslationLength());
+        out.gcContent = unbox(doc.getGcContent());
+        out.complete = unbox(doc.getComplete());
+        out.setRefseqCategory(doc.getRefseqCategory());
+        out.setSaveDate(doc.getSaveDate());
+        for (Map.Entry<String, Object> e : doc.getAdditionalProperties().entrySet()) {
+            out.setAdditionalProperties(e.getKey(), e.getValue());
+        }
+        return out;
+    }
+
+    /** @return a SolrGenomeFeatureData copy of this feature. */
+    public SolrGenomeFeatureData toSolrGenomeFeatureData() {
+        SolrGenomeFeatureData out = new SolrGenomeFeatureData();
+        out.setGenomeFeatureId(getGenomeFeatureId());
+        out.setGenomeId(getGenomeId());
+        out.setFeatureId(getFeatureId());
+        out.setWsRef(getWsRef());
+        out.setFeatureType(getFeatureType());
+        out.setAliases(getAliases());
+        out.setScientificName(getScientificName());
+        out.setDomain(getDomain());
+        out.setFunctions(getFunctions());
+        out.setGenomeSource(getGenomeSource());
+        out.setGoOntologyDescription(getGoOntologyDescription());
+        out.setGoOntologyDomain(getGoOntologyDomain());
+        out.setGeneName(getGeneName());
+        out.setObjectName(getObjectName());
+        out.setLocationContig(getLocationContig());
+        out.setLocationStrand(getLocationStrand());
+        out.setTaxonomy(getTaxonomy());
+        out.setWorkspaceName(getWorkspaceName());
+        out.setGeneticCode(getGeneticCode());
+        out.setMd5(getMd5());
+        out.setTaxId(getTaxId());
+        out.setAssemblyRef(getAssemblyRef());
+        out.setTaxonomyRef(getTaxonomyRef());
+        out.setOntologyNamespaces(getOntologyNamespaces());
+        out.setOntologyIds(getOntologyIds());
+        out.setOntologyNames(getOntologyNames());
+        out.setOntologyLineages(getOntologyLineages());
+        out.setDnaSequenceLength(box(dnaSequenceLength));
+        out.setGenomeDnaSize(box(genomeDnaSize));
+        out.setLocationBegin(box(locationBegin));
+        out.setLocationEnd(box(locationEnd));
+        out.setNumCds(box(numCds));
+        out.setNumContigs(box(numContigs));
+        out.setProteinTranslationLength(box(proteinTranslationLength));
+        out.setGcContent(box(gcContent));
+        out.setComplete(box(complete));
+        out.setRefseqCategory(getRefseqCategory());
+        out.setSaveDate(getSaveDate());
+        for (Map.Entry<String, Object> e : getAdditionalProperties().entrySet()) {
+            out.setAdditionalProperties(e.getKey(), e.getValue());
+        }
+        return out;
+    }
+
+    /** @return the fields of this feature as the string map sent to index_in_solr, without
+     * going through Jackson; the missing fields are left out.
+     */
+    public Map<String, String> toDocData() {
+        Map<String, String> out = new LinkedHashMap<String, String>();
+        putIfNotNull(out, "genome_feature_id", getGenomeFeatureId());
+        putIfNotNull(out, "genome_id", getGenomeId());
+        putIfNotNull(out, "feature_id", getFeatureId());
+        putIfNotNull(out, "ws_ref", getWsRef());
+        putIfNotNull(out, "feature_type", getFeatureType());
+        putIfNotNull(out, "aliases", getAliases());
+        putIfNotNull(out, "scientific_name", getScientificName());
+        putIfNotNull(out, "domain", getDomain());
+        putIfNotNull(out, "functions", getFunctions());
+        putIfNotNull(out, "genome_source", getGenomeSource());
+        putIfNotNull(out, "go_ontology_description", getGoOntologyDescription());
+        putIfNotNull(out, "go_ontology_domain", getGoOntologyDomain());
+        putIfNotNull(out, "gene_name", getGeneName());
+        putIfNotNull(out, "object_name", getObjectName());
+        putIfNotNull(out, "location_contig", getLocationContig());
+        putIfNotNull(out, "location_strand", getLocationStrand());
+        putIfNotNull(out, "taxonomy", getTaxonomy());
+        putIfNotNull(out, "workspace_name", getWorkspaceName());
+        putIfNotNull(out, "genetic_code", getGeneticCode());
+        putIfNotNull(out, "md5", getMd5());
+        putIfNotNull(out, "tax_id", getTaxId());
+        putIfNotNull(out, "assembly_ref", getAssemblyRef());
+        putIfNotNull(out, "taxonomy_ref", getTaxonomyRef());
+        putIfNotNull(out, "ontology_namespaces", getOntologyNamespaces());
+        putIfNotNull(out, "ontology_ids", getOntologyIds());
+        putIfNotNull(out, "ontology_names", getOntologyNames());
+        putIfNotNull(out, "ontology_lineages", getOntologyLineages());
+        if (dnaSequenceLength != MISSING_LONG) {
+            out.put("dna_sequence_length", Long.toString(dnaSequenceLength));
+        }
+        if (genomeDnaSize != MISSING_LONG) {
+            out.put("genome_dna_size", Long.toString(genomeDnaSize));
+        }
+        if (locationBegin != MISSING_LONG) {
+            out.put("location_begin", Long.toString(locationBegin));
+        }
+        if (locationEnd != MISSING_LONG) {
+            out.put("location_end", Long.toString(locationEnd));
+        }
+        if (numCds != MISSING_LONG) {
+            out.put("num_cds", Long.toString(numCds));
+        }
+        if (numContigs != MISSING_LONG) {
+            out.put("num_contigs", Long.toString(numContigs));
+        }
+        if (proteinTranslationLength != MISSING_LONG) {
+            out.put("protein_translation_length", Long.toString(proteinTranslationLength));
+        }
+        if (!Double.isNaN(gcContent)) {
+            out.put("gc_content", Double.toString(gcContent));
+        }
+        if (complete != MISSING_LONG) {
+            out.put("complete", Long.toString(complete));
+        }
+        putIfNotNull(out, "refseq_category", getRefseqCategory());
+        putIfNotNull(out, "save_date", getSaveDate());
+        for (Map.Entry<String, Object> e : getAdditionalProperties().entrySet()) {
+            putIfNotNull(out, e.getKey(), e.getValue() == null ? null : e.getValue().toString());
+        }
+        return out;
+    }
+
+    @JsonProperty("genome_feature_id")
+    public String getGenomeFeatureId() {
+        return genomeFeatureId;
+    }
+
+    @JsonProperty("genome_feature_id")
+    public void setGenomeFeatureId(String genomeFeatureId) {
+        this.genomeFeatureId = genomeFeatureId;
+    }
+
+    public CompactGenomeFeatureData withGenomeFeatureId(String genomeFeatureId) {
+        setGenomeFeatureId(genomeFeatureId);
+        return this;
+    }
+
+    @JsonProperty("genome_id")
+    public String getGenomeId() {
+        return genomeId;
+    }
+
+    @JsonProperty("genome_id")
+    public void setGenomeId(String genomeId) {
+        this.genomeId = intern(genomeId);
+    }
+
+    public CompactGenomeFeatureData withGenomeId(String genomeId) {
+        setGenomeId(genomeId);
+        return this;
+    }
+
+    @JsonProperty("feature_id")
+    public String getFeatureId() {
+        return featureId;
+    }
+
+    @JsonProperty("feature_id")
+    public void setFeatureId(String featureId) {
+        this.featureId = featureId;
+    }
+
+    public CompactGenomeFeatureData withFeatureId(String featureId) {
+        setFeatureId(featureId);
+        return this;
+    }
+
+    @JsonProperty("ws_ref")
+    public String getWsRef() {
+        return wsRef;
+    }
+
+    @JsonProperty("ws_ref")
+    public void setWsRef(String wsRef) {
+        this.wsRef = intern(wsRef);
+    }
+
+    public CompactGenomeFeatureData withWsRef(String wsRef) {
+        setWsRef(wsRef);
+        return this;
+    }
+
+    @JsonProperty("feature_type")
+    public String getFeatureType() {
+        return FEATURE_TYPE_VALUES.decode(featureType);
+    }
+
+    @JsonProperty("feature_type")
+    public void setFeatureType(String featureType) {
+        this.featureType = FEATURE_TYPE_VALUES.encode(featureType);
+    }
+
+    public CompactGenomeFeatureData withFeatureType(String featureType) {
+        setFeatureType(featureType);
+        return this;
+    }
+
+    @JsonProperty("aliases")
+    public String getAliases() {
+        return aliases;
+    }
+
+    @JsonProperty("aliases")
+    public void setAliases(String aliases) {
+        this.aliases = aliases;
+    }
+
+    public CompactGenomeFeatureData withAliases(String aliases) {
+        setAliases(aliases);
+        return this;
+    }
+
+    @JsonProperty("scientific_name")
+    public String getScientificName() {
+        return scientificName;
+    }
+
+    @JsonProperty("scientific_name")
+    public void setScientificName(String scientificName) {
+        this.scientificName = intern(scientificName);
+    }
+
+    public CompactGenomeFeatureData withScientificName(String scientificName) {
+        setScientificName(scientificName);
+        return this;
+    }
+
+    @JsonProperty("domain")
+    public String getDomain() {
+        return DOMAIN_VALUES.decode(domain);
+    }
+
+    @JsonProperty("domain")
+    public void setDomain(String domain) {
+        this.domain = DOMAIN_VALUES.encode(domain);
+    }
+
+    public CompactGenomeFeatureData withDomain(String domain) {
+        setDomain(domain);
+        return this;
+    }
+
+    @JsonProperty("functions")
+    public String getFunctions() {
+        return functions;
+    }
+
+    @JsonProperty("functions")
+    public void setFunctions(String functions) {
+        this.functions = functions;
+    }
+
+    public CompactGenomeFeatureData withFunctions(String functions) {
+        setFunctions(functions);
+        return this;
+    }
+
+    @JsonProperty("genome_source")
+    public String getGenomeSource() {
+        return GENOME_SOURCE_VALUES.decode(genomeSource);
+    }
+
+    @JsonProperty("genome_source")
+    public void setGenomeSource(String genomeSource) {
+        this.genomeSource = GENOME_SOURCE_VALUES.encode(genomeSource);
+    }
+
+    public CompactGenomeFeatureData withGenomeSource(String genomeSource) {
+        setGenomeSource(genomeSource);
+        return this;
+    }
+
+    @JsonProperty("go_ontology_description")
+    public String getGoOntologyDescription() {
+        return goOntologyDescription;
+    }
+
+    @JsonProperty("go_ontology_description")
+    public void setGoOntologyDescription(String goOntologyDescription) {
+        this.goOntologyDescription = goOntologyDescription;
+    }
+
+    public CompactGenomeFeatureData withGoOntologyDescription(String goOntologyDescription) {
+        setGoOntologyDescription(goOntologyDescription);
+        return this;
+    }
+
+    @JsonProperty("go_ontology_domain")
+    public String getGoOntologyDomain() {
+        return GO_ONTOLOGY_DOMAIN_VALUES.decode(goOntologyDomain);
+    }
+
+    @JsonProperty("go_ontology_domain")
+    public void setGoOntologyDomain(String goOntologyDomain) {
+        this.goOntologyDomain = GO_ONTOLOGY_DOMAIN_VALUES.encode(goOntologyDomain);
+    }
+
+    public CompactGenomeFeatureData withGoOntologyDomain(String goOntologyDomain) {
+        setGoOntologyDomain(goOntologyDomain);
+        return this;
+    }
+
+    @JsonProperty("gene_name")
+    public String getGeneName() {
+        return geneName;
+    }
+
+    @JsonProperty("gene_name")
+    public void setGeneName(String geneName) {
+        this.geneName = geneName;
+    }
+
+    public CompactGenomeFeatureData withGeneName(String geneName) {
+        setGeneName(geneName);
+        return this;
+    }
+
+    @JsonProperty("object_name")
+    public String getObjectName() {
+        return objectName;
+    }
+
+    @JsonProperty("object_name")
+    public void setObjectName(String objectName) {
+        this.objectName = intern(objectName);
+    }
+
+    public CompactGenomeFeatureData withObjectName(String objectName) {
+        setObjectName(objectName);
+        return this;
+    }
+
+    @JsonProperty("location_contig")
+    public String getLocationContig() {
+        return locationContig;
+    }
+
+    @JsonProperty("location_contig")
+    public void setLocationContig(String locationContig) {
+        this.locationContig = intern(locationContig);
+    }
+
+    public CompactGenomeFeatureData withLocationContig(String locationContig) {
+        setLocationContig(locationContig);
+        return this;
+    }
+
+    @JsonProperty("location_strand")
+    public String getLocationStrand() {
+        return LOCATION_STRAND_VALUES.decode(locationStrand);
+    }
+
+    @JsonProperty("location_strand")
+    public void setLocationStrand(String locationStrand) {
+        this.locationStrand = LOCATION_STRAND_VALUES.encode(locationStrand);
+    }
+
+    public CompactGenomeFeatureData withLocationStrand(String locationStrand) {
+        setLocationStrand(locationStrand);
+        return this;
+    }
+
+    @JsonProperty("taxonomy")
+    public String getTaxonomy() {
+        return taxonomy;
+    }
+
+    @JsonProperty("taxonomy")
+    public void setTaxonomy(String taxonomy) {
+        this.taxonomy = intern(taxonomy);
+    }
+
+    public CompactGenomeFeatureData withTaxonomy(String taxonomy) {
+        setTaxonomy(taxonomy);
+        return this;
+    }
+
+    @JsonProperty("workspace_name")
+    public String getWorkspaceName() {
+        return workspaceName;
+    }
+
+    @JsonProperty("workspace_name")
+    public void setWorkspaceName(String workspaceName) {
+        this.workspaceName = intern(workspaceName);
+    }
+
+    public CompactGenomeFeatureData withWorkspaceName(String workspaceName) {
+        setWorkspaceName(workspaceName);
+        return this;
+    }
+
+    @JsonProperty("genetic_code")
+    public String getGeneticCode() {
+        return GENETIC_CODE_VALUES.decode(geneticCode);
+    }
+
+    @JsonProperty("genetic_code")
+    public void setGeneticCode(String geneticCode) {
+        this.geneticCode = GENETIC_CODE_VALUES.encode(geneticCode);
+    }
+
+    public CompactGenomeFeatureData withGeneticCode(String geneticCode) {
+        setGeneticCode(geneticCode);
+        return this;
+    }
+
+    @JsonProperty("md5")
+    public String getMd5() {
+        return md5;
+    }
+
+    @JsonProperty("md5")
+    public void setMd5(String md5) {
+        this.md5 = md5;
+    }
+
+    public CompactGenomeFeatureData withMd5(String md5) {
+        setMd5(md5);
+        return this;
+    }
+
+    @JsonProperty("tax_id")
+    public String getTaxId() {
+        return taxId;
+    }
+
+    @JsonProperty("tax_id")
+    public void setTaxId(String taxId) {
+        this.taxId = intern(taxId);
+    }
+
+    public CompactGenomeFeatureData withTaxId(String taxId) {
+        setTaxId(taxId);
+        return this;
+    }
+
+    @JsonProperty("assembly_ref")
+    public String getAssemblyRef() {
+        return assemblyRef;
+    }
+
+    @JsonProperty("assembly_ref")
+    public void setAssemblyRef(String assemblyRef) {
+        this.assemblyRef = intern(assemblyRef);
+    }
+
+    public CompactGenomeFeatureData withAssemblyRef(String assemblyRef) {
+        setAssemblyRef(assemblyRef);
+        return this;
+    }
+
+    @JsonProperty("taxonomy_ref")
+    public String getTaxonomyRef() {
+        return taxonomyRef;
+    }
+
+    @JsonProperty("taxonomy_ref")
+    public void setTaxonomyRef(String taxonomyRef) {
+        this.taxonomyRef = intern(taxonomyRef);
+    }
+
+    public CompactGenomeFeatureData withTaxonomyRef(String taxonomyRef) {
+        setTaxonomyRef(taxonomyRef);
+        return this;
+    }
+
+    @JsonProperty("ontology_namespaces")
+    public String getOntologyNamespaces() {
+        return ontologyNamespaces;
+    }
+
+    @JsonProperty("ontology_namespaces")
+    public void setOntologyNamespaces(String ontologyNamespaces) {
+        this.ontologyNamespaces = ontologyNamespaces;
+    }
+
+    public CompactGenomeFeatureData withOntologyNamespaces(String ontologyNamespaces) {
+        setOntologyNamespaces(ontologyNamespaces);
+        return this;
+    }
+
+    @JsonProperty("ontology_ids")
+    public String getOntologyIds() {
+        return ontologyIds;
+    }
+
+    @JsonProperty("ontology_ids")
+    public void setOntologyIds(String ontologyIds) {
+        this.ontologyIds = ontologyIds;
+    }
+
+    public CompactGenomeFeatureData withOntologyIds(String ontologyIds) {
+        setOntologyIds(ontologyIds);
+        return this;
+    }
+
+    @JsonProperty("ontology_names")
+    public String getOntologyNames() {
+        return ontologyNames;
+    }
+
+    @JsonProperty("ontology_names")
+    public void setOntologyNames(String ontologyNames) {
+        this.ontologyNames = ontologyNames;
+    }
+
+    public CompactGenomeFeatureData withOntologyNames(String ontologyNames) {
+        setOntologyNames(ontologyNames);
+        return this;
+    }
+
+    @JsonProperty("ontology_lineages")
+    public String getOntologyLineages() {
+        return ontologyLineages;
+    }
+
+    @JsonProperty("ontology_lineages")
+    public void setOntologyLineages(String ontologyLineages) {
+        this.ontologyLineages = ontologyLineages;
+    }
+
+    public CompactGenomeFeatureData withOntologyLineages(String ontologyLineages) {
+        setOntologyLineages(ontologyLineages);
+        return this;
+    }
+
+    /** @return dna_sequence_length, MISSING_LONG if it is missing. */
+    public long getDnaSequenceLength() {
+        return dnaSequenceLength;
+    }
+
+    /** @return true if dna_sequence_length is set. */
+    public boolean hasDnaSequenceLength() {
+        return dnaSequenceLength != MISSING_LONG;
+    }
+
+    public void setDnaSequenceLength(long dnaSequenceLength) {
+        this.dnaSequenceLength = dnaSequenceLength;
+    }
+
+    public CompactGenomeFeatureData withDnaSequenceLength(long dnaSequenceLength) {
+        this.dnaSequenceLength = dnaSequenceLength;
+        return this;
+    }
+
+    @JsonProperty("dna_sequence_length")
+    private Long jsonDnaSequenceLength() {
+        return box(dnaSequenceLength);
+    }
+
+    @JsonProperty("dna_sequence_length")
+    private void jsonDnaSequenceLength(Long dnaSequenceLength) {
+        this.dnaSequenceLength = unbox(dnaSequenceLength);
+    }
+
+    /** @return genome_dna_size, MISSING_LONG if it is missing. */
+    public long getGenomeDnaSize() {
+        return genomeDnaSize;
+    }
+
+    /** @return true if genome_dna_size is set. */
+    public boolean hasGenomeDnaSize() {
+        return genomeDnaSize != MISSING_LONG;
+    }
+
+    public void setGenomeDnaSize(long genomeDnaSize) {
+        this.genomeDnaSize = genomeDnaSize;
+    }
+
+    public CompactGenomeFeatureData withGenomeDnaSize(long genomeDnaSize) {
+        this.genomeDnaSize = genomeDnaSize;
+        return this;
+    }
+
+    @JsonProperty("genome_dna_size")
+    private Long jsonGenomeDnaSize() {
+        return box(genomeDnaSize);
+    }
+
+    @JsonProperty("genome_dna_size")
+    private void jsonGenomeDnaSize(Long genomeDnaSize) {
+        this.genomeDnaSize = unbox(genomeDnaSize);
+    }
+
+    /** @return location_begin, MISSING_LONG if it is missing. */
+    public long getLocationBegin() {
+        return locationBegin;
+    }
+
+    /** @return true if location_begin is set. */
+    public boolean hasLocationBegin() {
+        return locationBegin != MISSING_LONG;
+    }
+
+    public void setLocationBegin(long locationBegin) {
+        this.locationBegin = locationBegin;
+    }
+
+    public CompactGenomeFeatureData withLocationBegin(long locationBegin) {
+        this.locationBegin = locationBegin;
+        return this;
+    }
+
+    @JsonProperty("location_begin")
+    private Long jsonLocationBegin() {
+        return box(locationBegin);
+    }
+
+    @JsonProperty("location_begin")
+    private void jsonLocationBegin(Long locationBegin) {
+        this.locationBegin = unbox(locationBegin);
+    }
+
+    /** @return location_end, MISSING_LONG if it is missing. */
+    public long getLocationEnd() {
+        return locationEnd;
+    }
+
+    /** @return true if location_end is set. */
+    public boolean hasLocationEnd() {
+        return locationEnd != MISSING_LONG;
+    }
+
+    public void setLocationEnd(long locationEnd) {
+        this.locationEnd = locationEnd;
+    }
+
+    public CompactGenomeFeatureData withLocationEnd(long locationEnd) {
+        this.locationEnd = locationEnd;
+        return this;
+    }
+
+    @JsonProperty("location_end")
+    private Long jsonLocationEnd() {
+        return box(locationEnd);
+    }
+
+    @JsonProperty("location_end")
+    private void jsonLocationEnd(Long locationEnd) {
+        this.locationEnd = unbox(locationEnd);
+    }
+
+    /** @return num_cds, MISSING_LONG if it is missing. */
+    public long getNumCds() {
+        return numCds;
+    }
+
+    /** @return true if num_cds is set. */
+    public boolean hasNumCds() {
+        return numCds != MISSING_LONG;
+    }
+
+    public void setNumCds(long numCds) {
+        this.numCds = numCds;
+    }
+
+    public CompactGenomeFeatureData withNumCds(long numCds) {
+        this.numCds = numCds;
+        return this;
+    }
+
+    @JsonProperty("num_cds")
+    private Long jsonNumCds() {
+        return box(numCds);
+    }
+
+    @JsonProperty("num_cds")
+    private void jsonNumCds(Long numCds) {
+        this.numCds = unbox(numCds);
+    }
+
+    /** @return num_contigs, MISSING_LONG if it is missing. */
+    public long getNumContigs() {
+        return numContigs;
+    }
+
+    /** @return true if num_contigs is set. */
+    public boolean hasNumContigs() {
+        return numContigs != MISSING_LONG;
+    }
+
+    public void setNumContigs(long numContigs) {
+        this.numContigs = numContigs;
+    }
+
+    public CompactGenomeFeatureData withNumContigs(long numContigs) {
+        this.numContigs = numContigs;
+        return this;
+    }
+
+    @JsonProperty("num_contigs")
+    private Long jsonNumContigs() {
+        return box(numContigs);
+    }
+
+    @JsonProperty("num_contigs")
+    private void jsonNumContigs(Long numContigs) {
+        this.numContigs = unbox(numContigs);
+    }
+
+    /** @return protein_translation_length, MISSING_LONG if it is missing. */
+    public long getProteinTranslationLength() {
+        return proteinTranslationLength;
+    }
+
+    /** @return true if protein_translation_length is set. */
+    public boolean hasProteinTranslationLength() {
+        return proteinTranslationLength != MISSING_LONG;
+    }
+
+    public void setProteinTranslationLength(long proteinTranslationLength) {
+        this.proteinTranslationLength = proteinTranslationLength;
+    }
+
+    public CompactGenomeFeatureData withProteinTranslationLength(long proteinTranslationLength) {
+        this.proteinTranslationLength = proteinTranslationLength;
+        return this;
+    }
+
+    @JsonProperty("protein_translation_length")
+    private Long jsonProteinTranslationLength() {
+        return box(proteinTranslationLength);
+    }
+
+    @JsonProperty("protein_translation_length")
+    private void jsonProteinTranslationLength(Long proteinTranslationLength) {
+        this.proteinTranslationLength = unbox(proteinTranslationLength);
+    }
+
+    /** @return gc_content, Double.NaN if it is missing. */
+    public double getGcContent() {
+        return gcContent;
+    }
+
+    /** @return true if gc_content is set. */
+    public boolean hasGcContent() {
+        return !Double.isNaN(gcContent);
+    }
+
+    public void setGcContent(double gcContent) {
+        this.gcContent = gcContent;
+    }
+
+    public CompactGenomeFeatureData withGcContent(double gcContent) {
+        this.gcContent = gcContent;
+        return this;
+    }
+
+    @JsonProperty("gc_content")
+    private Double jsonGcContent() {
+        return box(gcContent);
+    }
+
+    @JsonProperty("gc_content")
+    private void jsonGcContent(Double gcContent) {
+        this.gcContent = unbox(gcContent);
+    }
+
+    /** @return complete, MISSING_LONG if it is missing. */
+    public long getComplete() {
+        return complete;
+    }
+
+    /** @return true if complete is set. */
+    public boolean hasComplete() {
+        return complete != MISSING_LONG;
+    }
+
+    public void setComplete(long complete) {
+        this.complete = complete;
+    }
+
+    public CompactGenomeFeatureData withComplete(long complete) {
+        this.complete = complete;
+        return this;
+    }
+
+    @JsonProperty("complete")
+    private Long jsonComplete() {
+        return box(complete);
+    }
+
+    @JsonProperty("complete")
+    private void jsonComplete(Long complete) {
+        this.complete = unbox(complete);
+    }
+
+    @JsonProperty("refseq_category")
+    public String getRefseqCategory() {
+        return REFSEQ_CATEGORY_VALUES.decode(refseqCategory);
+    }
+
+    @JsonProperty("refseq_category")
+    public void setRefseqCategory(String refseqCategory) {
+        this.refseqCategory = REFSEQ_CATEGORY_VALUES.encode(refseqCategory);
+    }
+
+    public CompactGenomeFeatureData withRefseqCategory(String refseqCategory) {
+        setRefseqCategory(refseqCategory);
+        return this;
+    }
+
+    @JsonProperty("save_date")
+    public String getSaveDate() {
+        return saveDate;
+    }
+
+    @JsonProperty("save_date")
+    public void setSaveDate(String saveDate) {
+        this.saveDate = intern(saveDate);
+    }
+
+    public CompactGenomeFeatureData withSaveDate(String saveDate) {
+        setSaveDate(saveDate);
+        return this;
+    }
+
+    @JsonAnyGetter
+    public Map<String, Object> getAdditionalProperties() {
+        return additionalProperties == null ? Collections.<String, Object>emptyMap() : additionalProperties;
+    }
+
+    @JsonAnySetter
+    public void setAdditionalProperties(String name, Object value) {
+        if (additionalProperties == null) {
+            additionalProperties = new HashMap<String, Object>(4);
+        }
+        additionalProperties.put(name, value);
+    }
+
+    private static String intern(String value) {
+        return value == null ? null : value.intern();
+    }
+
+    private static Long box(long value) {
+        return value == MISSING_LONG ? null : Long.valueOf(value);
+    }
+
+    private static Double box(double value) {
+        return Double.isNaN(value) ? null : Double.valueOf(value);
+    }
+
+    private static long unbox(Long value) {
+        return value == null ? MISSING_LONG : value.longValue();
+    }
+
+    private static double unbox(Double value) {
+        return value == null ? Double.NaN : value.doubleValue();
+    }
+
+    private static void putIfNotNull(Map<String, String> map, String key, String value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return ((((((((((((((((((((((((((((((((((((((((((((((((((((((((((((((((((((((((((((((("CompactGenomeFeatureData"+" [genomeFeatureId=")+ getGenomeFeatureId())+", genomeId=")+ getGenomeId())+", featureId=")+ getFeatureId())+", wsRef=")+ getWsRef())+", featureType=")+ getFeatureType())+", aliases=")+ getAliases())+", scientificName=")+ getScientificName())+", domain=")+ getDomain())+", functions=")+ getFunctions())+", genomeSource=")+ getGenomeSource())+", goOntologyDescription=")+ getGoOntologyDescription())+", goOntologyDomain=")+ getGoOntologyDomain())+", geneName=")+ getGeneName())+", objectName=")+ getObjectName())+", locationContig=")+ getLocationContig())+", locationStrand=")+ getLocationStrand())+", taxonomy=")+ getTaxonomy())+", workspaceName=")+ getWorkspaceName())+", geneticCode=")+ getGeneticCode())+", md5=")+ getMd5())+", taxId=")+ getTaxId())+", assemblyRef=")+ getAssemblyRef())+", taxonomyRef=")+ getTaxonomyRef())+", ontologyNamespaces=")+ getOntologyNamespaces())+", ontologyIds=")+ getOntologyIds())+", ontologyNames=")+ getOntologyNames())+", ontologyLineages=")+ getOntologyLineages())+", dnaSequenceLength=")+ box(dnaSequenceLength))+", genomeDnaSize=")+ box(genomeDnaSize))+", locationBegin=")+ box(locationBegin))+", locationEnd=")+ box(locationEnd))+", numCds=")+ box(numCds))+", numContigs=")+ box(numContigs))+", proteinTranslationLength=")+ box(proteinTranslationLength))+", gcContent=")+ box(gcContent))+", complete=")+ box(complete))+", refseqCategory=")+ getRefseqCategory())+", saveDate=")+ getSaveDate())+", additionalProperties=")+ additionalProperties)+"]");
+    }
+
+}
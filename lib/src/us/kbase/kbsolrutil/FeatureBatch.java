@@ -0,0 +1,718 @@
+package us.kbase.kbsolrutil;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import us.kbase.common.service.JsonClientException;
+import us.kbase.common.service.UObject;
+
+/**
+ * <p>A columnar (struct-of-arrays) batch of genome features, for bulk indexing and analysis.</p>
+ * <pre>
+ * Instead of an object per feature, the batch holds a column per SolrGenomeFeatureData field:
+ *     - long[] for the integer fields (location_begin, location_end, dna_sequence_length,
+ *       protein_translation_length, ...), MISSING_LONG for a missing value;
+ *     - double[] for gc_content, NaN for a missing value;
+ *     - int[] codes into a per-batch dictionary for the repetitive string fields (genome_id,
+ *       scientific_name, taxonomy, feature_type, functions, ...);
+ *     - String[] for the fields unique to a feature (genome_feature_id, feature_id, aliases,
+ *       gene_name, md5).
+ * A batch of N features is then a few dozen arrays instead of N objects with 38 fields each,
+ * which the garbage collector scans as a handful of objects.
+ * Rows are read through a {@link Row} view that reads the columns in place; one view can be
+ * moved from row to row (see view() and Row.moveTo) to walk a batch without allocating. The
+ * columns themselves are available with longColumn, doubleColumn and codeColumn for analysis.
+ * The batch is written as the JSON array of the Solr /update/json body straight from the
+ * columns (writeJson), and indexed with add_json_2solr (index), without building a document
+ * map per feature. clear() empties a batch for reuse, keeping the arrays.
+ * A batch is not thread-safe.
+ * </pre>
+ */
+public class FeatureBatch implements Iterable<FeatureBatch.Row> {
+
+    /** The value of a missing long field. */
+    public static final long MISSING_LONG = CompactGenomeFeatureData.MISSING_LONG;
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** How a field is stored. */
+    public enum Kind {
+        STRING, DICTIONARY, LONG, DOUBLE
+    }
+
+    /** The fields of a genome feature, in the order of SolrGenomeFeatureData. */
+    public enum Field {
+        GENOME_FEATURE_ID("genome_feature_id", Kind.STRING),
+        GENOME_ID("genome_id", Kind.DICTIONARY),
+        FEATURE_ID("feature_id", Kind.STRING),
+        WS_REF("ws_ref", Kind.DICTIONARY),
+        FEATURE_TYPE("feature_type", Kind.DICTIONARY),
+        ALIASES("aliases", Kind.STRING),
+        SCIENTIFIC_NAME("scientific_name", Kind.DICTIONARY),
+        DOMAIN("domain", Kind.DICTIONARY),
+        FUNCTIONS("functions", Kind.DICTIONARY),
+        GENOME_SOURCE("genome_source", Kind.DICTIONARY),
+        GO_ONTOLOGY_DESCRIPTION("go_ontology_description", Kind.DICTIONARY),
+        GO_ONTOLOGY_DOMAIN("go_ontology_domain", Kind.DICTIONARY),
+        GENE_NAME("gene_name", Kind.STRING),
+        OBJECT_NAME("object_name", Kind.DICTIONARY),
+        LOCATION_CONTIG("location_contig", Kind.DICTIONARY),
+        LOCATION_STRAND("location_strand", Kind.DICTIONARY),
+        TAXONOMY("taxonomy", Kind.DICTIONARY),
+        WORKSPACE_NAME("workspace_name", Kind.DICTIONARY),
+        GENETIC_CODE("genetic_code", Kind.DICTIONARY),
+        MD5("md5", Kind.STRING),
+        TAX_ID("tax_id", Kind.DICTIONARY),
+        ASSEMBLY_REF("assembly_ref", Kind.DICTIONARY),
+        TAXONOMY_REF("taxonomy_ref", Kind.DICTIONARY),
+        ONTOLOGY_NAMESPACES("ontology_namespaces", Kind.DICTIONARY),
+        ONTOLOGY_IDS("ontology_ids", Kind.DICTIONARY),
+        ONTOLOGY_NAMES("ontology_names", Kind.DICTIONARY),
+        ONTOLOGY_LINEAGES("ontology_lineages", Kind.DICTIONARY),
+        DNA_SEQUENCE_LENGTH("dna_sequence_length", Kind.LONG),
+        GENOME_DNA_SIZE("genome_dna_size", Kind.LONG),
+        LOCATION_BEGIN("location_begin", Kind.LONG),
+        LOCATION_END("location_end", Kind.LONG),
+        NUM_CDS("num_cds", Kind.LONG),
+        NUM_CONTIGS("num_contigs", Kind.LONG),
+        PROTEIN_TRANSLATION_LENGTH("protein_translation_length", Kind.LONG),
+        GC_CONTENT("gc_content", Kind.DOUBLE),
+        COMPLETE("complete", Kind.LONG),
+        REFSEQ_CATEGORY("refseq_category", Kind.DICTIONARY),
+        SAVE_DATE("save_date", Kind.DICTIONARY);
+
+        private final String jsonName;
+        private final Kind kind;
+
+        Field(String jsonName, Kind kind) {
+            this.jsonName = jsonName;
+            this.kind = kind;
+        }
+
+        /** @return the name of the field in the JSON and the Solr schema. */
+        public String getJsonName() {
+            return jsonName;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+    }
+
+    private static final Field[] FIELDS = Field.values();
+
+    private int size = 0;
+    private int capacity;
+    private final String[][] strings = new String[FIELDS.length][];
+    private final int[][] codes = new int[FIELDS.length][];
+    private final long[][] longs = new long[FIELDS.length][];
+    private final double[][] doubles = new double[FIELDS.length][];
+    private final Dictionary[] dictionaries = new Dictionary[FIELDS.length];
+    // the additional properties of the few rows that have any, by row
+    private final Map<Integer, Map<String, Object>> additionalProperties =
+            new HashMap<Integer, Map<String, Object>>();
+
+    public FeatureBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /** @param capacity the number of rows to allocate the columns for; they grow as needed. */
+    public FeatureBatch(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        for (Field f : FIELDS) {
+            int i = f.ordinal();
+            switch (f.kind) {
+            case STRING:
+                strings[i] = new String[this.capacity];
+                break;
+            case DICTIONARY:
+                codes[i] = new int[this.capacity];
+                dictionaries[i] = new Dictionary();
+                break;
+            case LONG:
+                longs[i] = new long[this.capacity];
+                break;
+            case DOUBLE:
+                doubles[i] = new double[this.capacity];
+                break;
+            }
+        }
+    }
+
+    /** @return the number of rows. */
+    public int size() {
+        return size;
+    }
+
+    /** Empty the batch, keeping the allocated columns for the next rows. */
+    public void clear() {
+        for (Field f : FIELDS) {
+            if (f.kind == Kind.STRING) {
+                Arrays.fill(strings[f.ordinal()], 0, size, null);
+            } else if (f.kind == Kind.DICTIONARY) {
+                dictionaries[f.ordinal()].clear();
+            }
+        }
+        additionalProperties.clear();
+        size = 0;
+    }
+
+    /** Append a feature.
+     * @param doc the feature.
+     * @return the row number of the feature.
+     */
+    public int add(SolrGenomeFeatureData doc) {
+        int row = addRow();
+        for (Field f : FIELDS) {
+            setValue(row, f, fieldValue(doc, f));
+        }
+        for (Map.Entry<String, Object> e : doc.getAdditionalProperties().entrySet()) {
+            setAdditionalProperty(row, e.getKey(), e.getValue());
+        }
+        return row;
+    }
+
+    /** Append a feature held as a CompactGenomeFeatureData.
+     * @param doc the feature.
+     * @return the row number of the feature.
+     */
+    public int add(CompactGenomeFeatureData doc) {
+        int row = addRow();
+        for (Field f : FIELDS) {
+            setValue(row, f, fieldValue(doc, f));
+        }
+        for (Map.Entry<String, Object> e : doc.getAdditionalProperties().entrySet()) {
+            setAdditionalProperty(row, e.getKey(), e.getValue());
+        }
+        return row;
+    }
+
+    /** Append an empty row, with all the fields missing, to be filled with the set methods.
+     * @return the row number.
+     */
+    public int addRow() {
+        if (size == capacity) {
+            grow();
+        }
+        int row = size++;
+        for (Field f : FIELDS) {
+            int i = f.ordinal();
+            switch (f.kind) {
+            case STRING:
+                strings[i][row] = null;
+                break;
+            case DICTIONARY:
+                codes[i][row] = Dictionary.NULL;
+                break;
+            case LONG:
+                longs[i][row] = MISSING_LONG;
+                break;
+            case DOUBLE:
+                doubles[i][row] = Double.NaN;
+                break;
+            }
+        }
+        return row;
+    }
+
+    /** Set a string field of a row. */
+    public void setString(int row, Field field, String value) {
+        checkRow(row);
+        if (field.kind == Kind.STRING) {
+            strings[field.ordinal()][row] = value;
+        } else if (field.kind == Kind.DICTIONARY) {
+            codes[field.ordinal()][row] = dictionaries[field.ordinal()].encode(value);
+        } else {
+            throw new IllegalArgumentException(field.jsonName + " is not a string field");
+        }
+    }
+
+    /** Set a long field of a row; MISSING_LONG unsets it. */
+    public void setLong(int row, Field field, long value) {
+        checkRow(row);
+        column(longs, field, Kind.LONG)[row] = value;
+    }
+
+    /** Set a double field of a row; NaN unsets it. */
+    public void setDouble(int row, Field field, double value) {
+        checkRow(row);
+        column(doubles, field, Kind.DOUBLE)[row] = value;
+    }
+
+    /** Set an additional property of a row, a field that is not one of the Field values. */
+    public void setAdditionalProperty(int row, String name, Object value) {
+        checkRow(row);
+        Map<String, Object> props = additionalProperties.get(row);
+        if (props == null) {
+            props = new HashMap<String, Object>(4);
+            additionalProperties.put(row, props);
+        }
+        props.put(name, value);
+    }
+
+    /** Get the backing array of a long column; only the first size() entries are rows.
+     * @param field a LONG field.
+     * @return the column, not a copy.
+     */
+    public long[] longColumn(Field field) {
+        return column(longs, field, Kind.LONG);
+    }
+
+    /** Get the backing array of a double column; only the first size() entries are rows.
+     * @param field a DOUBLE field.
+     * @return the column, not a copy.
+     */
+    public double[] doubleColumn(Field field) {
+        return column(doubles, field, Kind.DOUBLE);
+    }
+
+    /** Get the dictionary codes of a dictionary-encoded column; only the first size() entries
+     * are rows. Equal values have equal codes within a batch, see decode.
+     * @param field a DICTIONARY field.
+     * @return the column, not a copy.
+     */
+    public int[] codeColumn(Field field) {
+        return column(codes, field, Kind.DICTIONARY);
+    }
+
+    /** Get the value of a dictionary code of a column.
+     * @param field a DICTIONARY field.
+     * @param code a code of codeColumn(field).
+     * @return the value, null for a missing value.
+     */
+    public String decode(Field field, int code) {
+        column(codes, field, Kind.DICTIONARY);
+        return dictionaries[field.ordinal()].decode(code);
+    }
+
+    /** Get the number of distinct values of a dictionary-encoded column, missing excluded. */
+    public int cardinality(Field field) {
+        column(codes, field, Kind.DICTIONARY);
+        return dictionaries[field.ordinal()].size();
+    }
+
+    /** @return a view positioned on the first row, to be moved with Row.moveTo. */
+    public Row view() {
+        return new Row(0);
+    }
+
+    /** @return a view of a row. */
+    public Row row(int row) {
+        checkRow(row);
+        return new Row(row);
+    }
+
+    /** Iterates over the rows with a single view, moved from row to row; a Row returned by
+     * the iterator is only valid until the next call to next().
+     */
+    @Override
+    public Iterator<Row> iterator() {
+        final Row view = new Row(-1);
+        return new Iterator<Row>() {
+            @Override
+            public boolean hasNext() {
+                return view.row + 1 < size;
+            }
+
+            @Override
+            public Row next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                view.row++;
+                return view;
+            }
+        };
+    }
+
+    /** Write the rows as the JSON array of a Solr /update/json body, a document object per
+     * row with the missing fields left out.
+     * @param out the stream to write to; it is not closed.
+     * @throws IOException if the stream cannot be written.
+     */
+    public void writeJson(OutputStream out) throws IOException {
+        try (JsonGenerator g = UObject.getMapper().getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            g.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writeJson(g, 0, size);
+        }
+    }
+
+    /** Write rows from to to (exclusive) as a JSON array.
+     * @param g the generator to write to.
+     * @throws IOException if the generator cannot be written.
+     */
+    public void writeJson(JsonGenerator g, int from, int to) throws IOException {
+        g.writeStartArray();
+        for (int row = from; row < to; row++) {
+            g.writeStartObject();
+            for (Field f : FIELDS) {
+                int i = f.ordinal();
+                switch (f.kind) {
+                case STRING:
+                    if (strings[i][row] != null) {
+                        g.writeStringField(f.jsonName, strings[i][row]);
+                    }
+                    break;
+                case DICTIONARY:
+                    if (codes[i][row] != Dictionary.NULL) {
+                        g.writeStringField(f.jsonName, dictionaries[i].decode(codes[i][row]));
+                    }
+                    break;
+                case LONG:
+                    if (longs[i][row] != MISSING_LONG) {
+                        g.writeNumberField(f.jsonName, longs[i][row]);
+                    }
+                    break;
+                case DOUBLE:
+                    if (!Double.isNaN(doubles[i][row])) {
+                        g.writeNumberField(f.jsonName, doubles[i][row]);
+                    }
+                    break;
+                }
+            }
+            Map<String, Object> props = additionalProperties.get(row);
+            if (props != null) {
+                for (Map.Entry<String, Object> e : props.entrySet()) {
+                    g.writeFieldName(e.getKey());
+                    UObject.getMapper().writeValue(g, e.getValue());
+                }
+            }
+            g.writeEndObject();
+        }
+        g.writeEndArray();
+    }
+
+    /** @return the rows as the JSON text of writeJson. */
+    public String toJson() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size * 512 + 2);
+        writeJson(out);
+        return out.toString("UTF-8");
+    }
+
+    /** Index the rows with add_json_2solr, which posts the JSON to the core's /update/json
+     * as it is.
+     * @param client the client to call the service with.
+     * @param solrCore the name of the GenomeFeatures core.
+     * @param commitPolicy the commit_policy of the call, see IndexInSolrParams, or null.
+     * @return the result of add_json_2solr, 1 on success.
+     * @throws IOException if an IO exception occurs.
+     * @throws JsonClientException if a JSON RPC exception occurs.
+     */
+    public Long index(KBSolrUtilClient client, String solrCore, String commitPolicy)
+            throws IOException, JsonClientException {
+        Long result = client.addJson2solr(new IndexJsonParams()
+                .withSolrCore(solrCore)
+                .withJsonData(toJson())
+                .withCommitPolicy(commitPolicy));
+        client.getMetrics().addDocs("add_json_2solr", size);
+        return result;
+    }
+
+    /** A view of a row, reading the columns in place. */
+    public class Row {
+        private int row;
+
+        private Row(int row) {
+            this.row = row;
+        }
+
+        /** Move the view to another row.
+         * @return this view.
+         */
+        public Row moveTo(int row) {
+            checkRow(row);
+            this.row = row;
+            return this;
+        }
+
+        /** @return the row number. */
+        public int getRowNumber() {
+            return row;
+        }
+
+        /** @return true if the field is set in this row. */
+        public boolean has(Field field) {
+            int i = field.ordinal();
+            switch (field.kind) {
+            case STRING:
+                return strings[i][row] != null;
+            case DICTIONARY:
+                return codes[i][row] != Dictionary.NULL;
+            case LONG:
+                return longs[i][row] != MISSING_LONG;
+            default:
+                return !Double.isNaN(doubles[i][row]);
+            }
+        }
+
+        /** @return the value of a string field, null if it is missing. */
+        public String getString(Field field) {
+            if (field.kind == Kind.STRING) {
+                return strings[field.ordinal()][row];
+            }
+            return dictionaries[field.ordinal()].decode(column(codes, field, Kind.DICTIONARY)[row]);
+        }
+
+        /** @return the value of a long field, MISSING_LONG if it is missing. */
+        public long getLong(Field field) {
+            return column(longs, field, Kind.LONG)[row];
+        }
+
+        /** @return the value of a double field, NaN if it is missing. */
+        public double getDouble(Field field) {
+            return column(doubles, field, Kind.DOUBLE)[row];
+        }
+
+        public String getGenomeFeatureId() {
+            return strings[Field.GENOME_FEATURE_ID.ordinal()][row];
+        }
+
+        public String getGenomeId() {
+            return getString(Field.GENOME_ID);
+        }
+
+        public String getFeatureId() {
+            return strings[Field.FEATURE_ID.ordinal()][row];
+        }
+
+        public long getLocationBegin() {
+            return longs[Field.LOCATION_BEGIN.ordinal()][row];
+        }
+
+        public long getLocationEnd() {
+            return longs[Field.LOCATION_END.ordinal()][row];
+        }
+
+        public long getDnaSequenceLength() {
+            return longs[Field.DNA_SEQUENCE_LENGTH.ordinal()][row];
+        }
+
+        public long getProteinTranslationLength() {
+            return longs[Field.PROTEIN_TRANSLATION_LENGTH.ordinal()][row];
+        }
+
+        public double getGcContent() {
+            return doubles[Field.GC_CONTENT.ordinal()][row];
+        }
+
+        /** @return the additional properties of the row; empty, not null, if it has none. */
+        public Map<String, Object> getAdditionalProperties() {
+            Map<String, Object> props = additionalProperties.get(row);
+            return props == null ? new HashMap<String, Object>() : props;
+        }
+
+        /** @return a SolrGenomeFeatureData copy of the row. */
+        public SolrGenomeFeatureData toSolrGenomeFeatureData() {
+            Map<String, Object> values = new HashMap<String, Object>();
+            for (Field f : FIELDS) {
+                if (has(f)) {
+                    values.put(f.jsonName, f.kind == Kind.LONG ? (Object) getLong(f) :
+                            f.kind == Kind.DOUBLE ? (Object) getDouble(f) : getString(f));
+                }
+            }
+            values.putAll(getAdditionalProperties());
+            return UObject.getMapper().convertValue(values, SolrGenomeFeatureData.class);
+        }
+
+        @Override
+        public String toString() {
+            return "FeatureBatch.Row [" + row + ", genomeFeatureId=" + getGenomeFeatureId() + "]";
+        }
+    }
+
+    private void setValue(int row, Field f, Object value) {
+        switch (f.kind) {
+        case STRING:
+        case DICTIONARY:
+            setString(row, f, (String) value);
+            break;
+        case LONG:
+            setLong(row, f, value == null ? MISSING_LONG : ((Number) value).longValue());
+            break;
+        case DOUBLE:
+            setDouble(row, f, value == null ? Double.NaN : ((Number) value).doubleValue());
+            break;
+        }
+    }
+
+    private void grow() {
+        int newCapacity = capacity + Math.max(capacity >> 1, 16);
+        for (int i = 0; i < FIELDS.length; i++) {
+            if (strings[i] != null) {
+                strings[i] = Arrays.copyOf(strings[i], newCapacity);
+            }
+            if (codes[i] != null) {
+                codes[i] = Arrays.copyOf(codes[i], newCapacity);
+            }
+            if (longs[i] != null) {
+                longs[i] = Arrays.copyOf(longs[i], newCapacity);
+            }
+            if (doubles[i] != null) {
+                doubles[i] = Arrays.copyOf(doubles[i], newCapacity);
+            }
+        }
+        capacity = newCapacity;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of a batch of " + size);
+        }
+    }
+
+    private static <A> A column(A[] columns, Field field, Kind kind) {
+        if (field.kind != kind) {
+            throw new IllegalArgumentException(field.jsonName + " is not a " + kind + " field");
+        }
+        return columns[field.ordinal()];
+    }
+
+    private static Object fieldValue(SolrGenomeFeatureData d, Field f) {
+        switch (f) {
+        case GENOME_FEATURE_ID: return d.getGenomeFeatureId();
+        case GENOME_ID: return d.getGenomeId();
+        case FEATURE_ID: return d.getFeatureId();
+        case WS_REF: return d.getWsRef();
+        case FEATURE_TYPE: return d.getFeatureType();
+        case ALIASES: return d.getAliases();
+        case SCIENTIFIC_NAME: return d.getScientificName();
+        case DOMAIN: return d.getDomain();
+        case FUNCTIONS: return d.getFunctions();
+        case GENOME_SOURCE: return d.getGenomeSource();
+        case GO_ONTOLOGY_DESCRIPTION: return d.getGoOntologyDescription();
+        case GO_ONTOLOGY_DOMAIN: return d.getGoOntologyDomain();
+        case GENE_NAME: return d.getGeneName();
+        case OBJECT_NAME: return d.getObjectName();
+        case LOCATION_CONTIG: return d.getLocationContig();
+        case LOCATION_STRAND: return d.getLocationStrand();
+        case TAXONOMY: return d.getTaxonomy();
+        case WORKSPACE_NAME: return d.getWorkspaceName();
+        case GENETIC_CODE: return d.getGeneticCode();
+        case MD5: return d.getMd5();
+        case TAX_ID: return d.getTaxId();
+        case ASSEMBLY_REF: return d.getAssemblyRef();
+        case TAXONOMY_REF: return d.getTaxonomyRef();
+        case ONTOLOGY_NAMESPACES: return d.getOntologyNamespaces();
+        case ONTOLOGY_IDS: return d.getOntologyIds();
+        case ONTOLOGY_NAMES: return d.getOntologyNames();
+        case ONTOLOGY_LINEAGES: return d.getOntologyLineages();
+        case DNA_SEQUENCE_LENGTH: return d.getDnaSequenceLength();
+        case GENOME_DNA_SIZE: return d.getGenomeDnaSize();
+        case LOCATION_BEGIN: return d.getLocationBegin();
+        case LOCATION_END: return d.getLocationEnd();
+        case NUM_CDS: return d.getNumCds();
+        case NUM_CONTIGS: return d.getNumContigs();
+        case PROTEIN_TRANSLATION_LENGTH: return d.getProteinTranslationLength();
+        case GC_CONTENT: return d.getGcContent();
+        case COMPLETE: return d.getComplete();
+        case REFSEQ_CATEGORY: return d.getRefseqCategory();
+        default: return d.getSaveDate();
+        }
+    }
+
+    private static Object fieldValue(CompactGenomeFeatureData d, Field f) {
+        switch (f.kind) {
+        case LONG:
+            long l = compactLong(d, f);
+            return l == MISSING_LONG ? null : (Object) l;
+        case DOUBLE:
+            return d.hasGcContent() ? (Object) d.getGcContent() : null;
+        default:
+            return compactString(d, f);
+        }
+    }
+
+    private static long compactLong(CompactGenomeFeatureData d, Field f) {
+        switch (f) {
+        case DNA_SEQUENCE_LENGTH: return d.getDnaSequenceLength();
+        case GENOME_DNA_SIZE: return d.getGenomeDnaSize();
+        case LOCATION_BEGIN: return d.getLocationBegin();
+        case LOCATION_END: return d.getLocationEnd();
+        case NUM_CDS: return d.getNumCds();
+        case NUM_CONTIGS: return d.getNumContigs();
+        case PROTEIN_TRANSLATION_LENGTH: return d.getProteinTranslationLength();
+        default: return d.getComplete();
+        }
+    }
+
+    private static String compactString(CompactGenomeFeatureData d, Field f) {
+        switch (f) {
+        case GENOME_FEATURE_ID: return d.getGenomeFeatureId();
+        case GENOME_ID: return d.getGenomeId();
+        case FEATURE_ID: return d.getFeatureId();
+        case WS_REF: return d.getWsRef();
+        case FEATURE_TYPE: return d.getFeatureType();
+        case ALIASES: return d.getAliases();
+        case SCIENTIFIC_NAME: return d.getScientificName();
+        case DOMAIN: return d.getDomain();
+        case FUNCTIONS: return d.getFunctions();
+        case GENOME_SOURCE: return d.getGenomeSource();
+        case GO_ONTOLOGY_DESCRIPTION: return d.getGoOntologyDescription();
+        case GO_ONTOLOGY_DOMAIN: return d.getGoOntologyDomain();
+        case GENE_NAME: return d.getGeneName();
+        case OBJECT_NAME: return d.getObjectName();
+        case LOCATION_CONTIG: return d.getLocationContig();
+        case LOCATION_STRAND: return d.getLocationStrand();
+        case TAXONOMY: return d.getTaxonomy();
+        case WORKSPACE_NAME: return d.getWorkspaceName();
+        case GENETIC_CODE: return d.getGeneticCode();
+        case MD5: return d.getMd5();
+        case TAX_ID: return d.getTaxId();
+        case ASSEMBLY_REF: return d.getAssemblyRef();
+        case TAXONOMY_REF: return d.getTaxonomyRef();
+        case ONTOLOGY_NAMESPACES: return d.getOntologyNamespaces();
+        case ONTOLOGY_IDS: return d.getOntologyIds();
+        case ONTOLOGY_NAMES: return d.getOntologyNames();
+        case ONTOLOGY_LINEAGES: return d.getOntologyLineages();
+        case REFSEQ_CATEGORY: return d.getRefseqCategory();
+        default: return d.getSaveDate();
+        }
+    }
+
+    // the distinct values of a dictionary-encoded column of one batch
+    private static class Dictionary {
+        static final int NULL = 0;
+
+        private final Map<String, Integer> codes = new HashMap<String, Integer>();
+        private final List<String> values = new ArrayList<String>();
+
+        Dictionary() {
+            values.add(null);
+        }
+
+        int encode(String value) {
+            if (value == null) {
+                return NULL;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                values.add(value);
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        String decode(int code) {
+            return values.get(code);
+        }
+
+        int size() {
+            return values.size() - 1;
+        }
+
+        void clear() {
+            codes.clear();
+            values.subList(1, values.size()).clear();
+        }
+    }
+}
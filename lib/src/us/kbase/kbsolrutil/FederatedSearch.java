@@ -0,0 +1,470 @@
+package us.kbase.kbsolrutil;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import us.kbase.common.service.UObject;
+
+/**
+ * <p>Runs one search on several Solr cores at once, e.g. GenomeFeatures_ci and
+ * GenomeFeatures_prod, or the same core behind two services, and merges the results.</p>
+ * <pre>
+ * Each core is searched by search_solr through the client it was added with (one per service
+ * host), all of them in parallel with the typed searchSolrAsync, so the search takes as long as
+ * the slowest core instead of the sum of all of them. Every core returns its first rows docs in
+ * the sort order, and these are merge-sorted on the sort field into the first rows docs overall;
+ * without a sort the docs are concatenated in the order the cores were added.
+ * The search has a deadline: the cores that have not answered by then are reported as timed out
+ * and the result holds the docs of the others, as do the results of cores whose search failed.
+ * Per core, the result reports the status, numFound, Solr's QTime and the elapsed time.
+ * Example:
+ *     FederatedSearch&lt;SolrGenomeFeatureData&gt; search =
+ *         new FederatedSearch&lt;SolrGenomeFeatureData&gt;(SolrGenomeFeatureData.class)
+ *             .withCore("ci", ciClient, "GenomeFeatures_ci")
+ *             .withCore("prod", prodClient, "GenomeFeatures_prod")
+ *             .withSort("location_begin", true)
+ *             .withRows(500)
+ *             .withDeadline(10000);
+ *     FederatedSearch.Result&lt;SolrGenomeFeatureData&gt; result = search.search(query);
+ *     if (result.isPartial()) { ... result.getCores() ... }
+ * </pre>
+ */
+public class FederatedSearch<T> {
+
+    public static final int DEFAULT_ROWS = 100;
+    public static final long DEFAULT_DEADLINE_MILLIS = 30000;
+
+    /** The outcome of the search of a core. */
+    public enum Status { OK, FAILED, TIMED_OUT }
+
+    private final Class<T> docType;
+    private final List<Target> targets = new ArrayList<Target>();
+    private final Map<String, String> searchParam = new HashMap<String, String>();
+    private final List<String> filterQueries = new ArrayList<String>();
+    private String sortField = null;
+    private boolean ascending = true;
+    private Comparator<? super T> order = null;
+    private int rows = DEFAULT_ROWS;
+    private long deadlineMillis = DEFAULT_DEADLINE_MILLIS;
+
+    /** @param docType the record type the docs of all the cores are bound to. */
+    public FederatedSearch(Class<T> docType) {
+        this.docType = docType;
+    }
+
+    /** Add a core, named after itself in the results. */
+    public FederatedSearch<T> withCore(KBSolrUtilClient client, String solrCore) {
+        return withCore(solrCore, client, solrCore);
+    }
+
+    /** Add a core.
+     * @param name the name of the core in the results, unique in the search, e.g. 'prod'.
+     * @param client the client of the service the core is searched through.
+     * @param solrCore the name of the core.
+     */
+    public FederatedSearch<T> withCore(String name, KBSolrUtilClient client, String solrCore) {
+        for (Target t : targets) {
+            if (t.name.equals(name)) {
+                throw new IllegalArgumentException("A core is already named " + name);
+            }
+        }
+        targets.add(new Target(name, client, solrCore));
+        return this;
+    }
+
+    /** Sort the docs on a field, compared as numbers when both values are numbers and as strings
+     * otherwise; docs without the field come last.
+     */
+    public FederatedSearch<T> withSort(String field, boolean ascending) {
+        return withSort(field, ascending, null);
+    }
+
+    /** Sort the docs on a field, merging them with a comparator of the records that orders them
+     * as Solr does in ascending order (reversed for a descending sort).
+     */
+    public FederatedSearch<T> withSort(String field, boolean ascending, Comparator<? super T> order) {
+        this.sortField = field;
+        this.ascending = ascending;
+        this.order = order;
+        return this;
+    }
+
+    /** The number of docs returned, at most, from every core and overall; default 100. */
+    public FederatedSearch<T> withRows(int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("rows must not be negative");
+        }
+        this.rows = rows;
+        return this;
+    }
+
+    /** The fields returned (Solr's fl); the sort field is added when missing. */
+    public FederatedSearch<T> withFields(String fields) {
+        return withSearchParam("fl", fields);
+    }
+
+    /** Filter queries sent to every core, cached by each of them in its filterCache. */
+    public FederatedSearch<T> withFilterQueries(List<String> filterQueries) {
+        this.filterQueries.addAll(filterQueries);
+        return this;
+    }
+
+    /** Another search_param sent to every core, e.g. defType. */
+    public FederatedSearch<T> withSearchParam(String name, String value) {
+        searchParam.put(name, value);
+        return this;
+    }
+
+    /** The time the search waits for the cores, default 30 s. */
+    public FederatedSearch<T> withDeadline(long millis) {
+        this.deadlineMillis = millis;
+        return this;
+    }
+
+    /** Search all the cores.
+     * @param searchQuery the search_query of search_solr.
+     * @return the merged docs and the outcome of every core.
+     * @throws InterruptedException if the thread is interrupted while waiting for the cores.
+     */
+    public Result<T> search(Map<String, String> searchQuery) throws InterruptedException {
+        return search(searchQuery, filterQueries);
+    }
+
+    /** Search all the cores with the query and the filters of a query builder, besides those
+     * added with withFilterQueries.
+     * @param query the query.
+     * @return the merged docs and the outcome of every core.
+     * @throws InterruptedException if the thread is interrupted while waiting for the cores.
+     */
+    public Result<T> search(SolrQueryBuilder query) throws InterruptedException {
+        List<String> fq = new ArrayList<String>(filterQueries);
+        fq.addAll(query.getFilterQueries());
+        return search(query.toSearchQuery(), fq);
+    }
+
+    private Result<T> search(Map<String, String> searchQuery, List<String> fq) throws InterruptedException {
+        if (targets.isEmpty()) {
+            throw new IllegalStateException("No core to search");
+        }
+        Map<String, String> param = new HashMap<String, String>(searchParam);
+        param.put("rows", Integer.toString(rows));
+        if (sortField != null) {
+            param.put("sort", sortField + (ascending ? " asc" : " desc"));
+            String fl = param.get("fl");
+            if (fl != null && !fl.trim().equals("*") && !hasField(fl, sortField)) {
+                param.put("fl", fl + "," + sortField);
+            }
+        }
+        final long start = System.nanoTime();
+        List<CompletableFuture<SolrSearchResponse<T>>> futures =
+                new ArrayList<CompletableFuture<SolrSearchResponse<T>>>();
+        final List<AtomicLong> done = new ArrayList<AtomicLong>();
+        for (Target t : targets) {
+            SearchSolrParams params = new SearchSolrParams()
+                    .withSearchCore(t.solrCore)
+                    .withSearchParam(new HashMap<String, String>(param))
+                    .withSearchQuery(searchQuery)
+                    .withResultFormat("json")
+                    .withGroupOption("")
+                    .withFilterQueries(new ArrayList<String>(fq));
+            final AtomicLong finished = new AtomicLong(-1);
+            CompletableFuture<SolrSearchResponse<T>> future = t.client.searchSolrAsync(params, docType);
+            future.whenComplete(new BiConsumer<SolrSearchResponse<T>, Throwable>() {
+                @Override
+                public void accept(SolrSearchResponse<T> response, Throwable error) {
+                    finished.set(System.nanoTime());
+                }
+            });
+            futures.add(future);
+            done.add(finished);
+        }
+
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        List<CoreResult> cores = new ArrayList<CoreResult>();
+        List<List<T>> docs = new ArrayList<List<T>>();
+        for (int i = 0; i < targets.size(); i++) {
+            Target t = targets.get(i);
+            CoreResult core = new CoreResult(t.name, t.solrCore);
+            List<T> coreDocs = Collections.emptyList();
+            try {
+                SolrSearchResponse<T> response = futures.get(i).get(
+                        Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                core.status = Status.OK;
+                core.numFound = response.getNumFound();
+                core.qTime = response.getQTime();
+                if (response.getDocs() != null) {
+                    coreDocs = response.getDocs();
+                }
+            } catch (TimeoutException e) {
+                // the call is left to finish on its own; its response is ignored
+                core.status = Status.TIMED_OUT;
+                futures.get(i).cancel(false);
+            } catch (ExecutionException e) {
+                core.status = Status.FAILED;
+                core.error = e.getCause();
+            }
+            long finished = done.get(i).get();
+            core.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(
+                    (core.status == Status.TIMED_OUT || finished < 0 ? System.nanoTime() : finished) - start);
+            core.docCount = coreDocs.size();
+            cores.add(core);
+            docs.add(coreDocs);
+        }
+        List<Hit<T>> hits = sortField == null ? concatenate(docs) : merge(docs);
+        return new Result<T>(hits, cores, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private List<Hit<T>> concatenate(List<List<T>> docs) {
+        List<Hit<T>> hits = new ArrayList<Hit<T>>();
+        for (int i = 0; i < docs.size() && hits.size() < rows; i++) {
+            for (T doc : docs.get(i)) {
+                if (hits.size() == rows) {
+                    break;
+                }
+                hits.add(new Hit<T>(targets.get(i).name, doc));
+            }
+        }
+        return hits;
+    }
+
+    // a k-way merge of the sorted docs of the cores, ties going to the core added first
+    private List<Hit<T>> merge(final List<List<T>> docs) {
+        final List<List<JsonNode>> keys = new ArrayList<List<JsonNode>>();
+        if (order == null) {
+            ObjectMapper mapper = UObject.getMapper();
+            for (List<T> coreDocs : docs) {
+                List<JsonNode> coreKeys = new ArrayList<JsonNode>(coreDocs.size());
+                for (T doc : coreDocs) {
+                    coreKeys.add(mapper.valueToTree(doc).get(sortField));
+                }
+                keys.add(coreKeys);
+            }
+        }
+        final int direction = ascending ? 1 : -1;
+        // a head is {core, position in the core's docs}
+        PriorityQueue<int[]> heads = new PriorityQueue<int[]>(Math.max(1, docs.size()), new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                int c;
+                if (order != null) {
+                    c = direction * order.compare(docs.get(a[0]).get(a[1]), docs.get(b[0]).get(b[1]));
+                } else {
+                    c = compareKeys(keys.get(a[0]).get(a[1]), keys.get(b[0]).get(b[1]), direction);
+                }
+                return c != 0 ? c : Integer.compare(a[0], b[0]);
+            }
+        });
+        for (int i = 0; i < docs.size(); i++) {
+            if (!docs.get(i).isEmpty()) {
+                heads.add(new int[] {i, 0});
+            }
+        }
+        List<Hit<T>> hits = new ArrayList<Hit<T>>();
+        while (!heads.isEmpty() && hits.size() < rows) {
+            int[] head = heads.poll();
+            hits.add(new Hit<T>(targets.get(head[0]).name, docs.get(head[0]).get(head[1])));
+            if (++head[1] < docs.get(head[0]).size()) {
+                heads.add(head);
+            }
+        }
+        return hits;
+    }
+
+    static int compareKeys(JsonNode a, JsonNode b, int direction) {
+        boolean aMissing = a == null || a.isNull();
+        boolean bMissing = b == null || b.isNull();
+        if (aMissing || bMissing) {
+            return aMissing == bMissing ? 0 : (aMissing ? 1 : -1);
+        }
+        if (a.isArray() && a.size() > 0) {
+            a = a.get(0);
+        }
+        if (b.isArray() && b.size() > 0) {
+            b = b.get(0);
+        }
+        if (a.isNumber() && b.isNumber()) {
+            return direction * a.decimalValue().compareTo(b.decimalValue());
+        }
+        return direction * a.asText().compareTo(b.asText());
+    }
+
+    private static boolean hasField(String fl, String field) {
+        for (String f : fl.split("[,\\s]+")) {
+            if (f.equals(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Target {
+        final String name;
+        final KBSolrUtilClient client;
+        final String solrCore;
+
+        Target(String name, KBSolrUtilClient client, String solrCore) {
+            this.name = name;
+            this.client = client;
+            this.solrCore = solrCore;
+        }
+    }
+
+    /** A doc of the merged result, with the name of the core it came from. */
+    public static class Hit<T> {
+        private final String core;
+        private final T doc;
+
+        Hit(String core, T doc) {
+            this.core = core;
+            this.doc = doc;
+        }
+
+        public String getCore() {
+            return core;
+        }
+
+        public T getDoc() {
+            return doc;
+        }
+
+        @Override
+        public String toString() {
+            return ((((("Hit"+" [core=")+ core)+", doc=")+ doc)+"]");
+        }
+    }
+
+    /** The outcome of the search of a core. */
+    public static class CoreResult {
+        private final String name;
+        private final String solrCore;
+        private Status status;
+        private Long numFound;
+        private Long qTime;
+        private int docCount;
+        private long elapsedMillis;
+        private Throwable error;
+
+        CoreResult(String name, String solrCore) {
+            this.name = name;
+            this.solrCore = solrCore;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getSolrCore() {
+            return solrCore;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /** @return the number of docs of the core matching the query, null unless OK. */
+        public Long getNumFound() {
+            return numFound;
+        }
+
+        /** @return Solr's QTime of the search, null unless OK. */
+        public Long getQTime() {
+            return qTime;
+        }
+
+        /** @return the number of docs the core returned, merged or not. */
+        public int getDocCount() {
+            return docCount;
+        }
+
+        /** @return the time from the start of the search to the response of the core (or to the
+         * deadline), queueing in the client included.
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /** @return the error of a FAILED search. */
+        public Throwable getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return ((((((((((((((("CoreResult"+" [name=")+ name)+", solrCore=")+ solrCore)+", status=")+ status)+", numFound=")+ numFound)+", docCount=")+ docCount)+", elapsedMillis=")+ elapsedMillis)+", error=")+ error)+"]");
+        }
+    }
+
+    /** The merged docs of a search and the outcome of every core. */
+    public static class Result<T> {
+        private final List<Hit<T>> hits;
+        private final List<CoreResult> cores;
+        private final long elapsedMillis;
+
+        Result(List<Hit<T>> hits, List<CoreResult> cores, long elapsedMillis) {
+            this.hits = Collections.unmodifiableList(hits);
+            this.cores = Collections.unmodifiableList(cores);
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /** @return the merged docs, with their cores. */
+        public List<Hit<T>> getHits() {
+            return hits;
+        }
+
+        /** @return the merged docs. */
+        public List<T> getDocs() {
+            List<T> docs = new ArrayList<T>(hits.size());
+            for (Hit<T> hit : hits) {
+                docs.add(hit.getDoc());
+            }
+            return docs;
+        }
+
+        /** @return the outcome of every core, in the order they were added. */
+        public List<CoreResult> getCores() {
+            return cores;
+        }
+
+        /** @return the sum of the numFound of the cores that answered. */
+        public long getNumFound() {
+            long n = 0;
+            for (CoreResult core : cores) {
+                if (core.getNumFound() != null) {
+                    n += core.getNumFound();
+                }
+            }
+            return n;
+        }
+
+        /** @return true if a core failed or timed out. */
+        public boolean isPartial() {
+            for (CoreResult core : cores) {
+                if (core.getStatus() != Status.OK) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public java.lang.String toString() {
+            return ((((((("Result"+" [hits=")+ hits.size())+", cores=")+ cores)+", elapsedMillis=")+ elapsedMillis)+"]");
+        }
+    }
+}
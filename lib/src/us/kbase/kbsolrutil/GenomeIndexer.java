@@ -0,0 +1,607 @@
+package us.kbase.kbsolrutil;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import us.kbase.common.service.JsonClientException;
+
+/**
+ * <p>Indexes the features of a list of genomes (IndexGenomesInSolrParams) into a Solr core
+ * through the index_in_solr function.</p>
+ * <pre>
+ * Up to workers genomes are indexed at the same time: each worker reads the features of a
+ * genome from a {@link FeatureSource} (e.g. the genome objects of the workspace), converts them
+ * and sends them in a single index_in_solr call with commit policy 'none', so a genome is either
+ * indexed whole or not at all. At most maxConcurrentWrites of those calls are in flight at once,
+ * whatever the number of workers, so slow sources can be read in parallel without crowding Solr.
+ * All the genomes are committed at the end, with the commit_policy of the params ('commit' by
+ * default; with 'commitWithin=&lt;ms&gt;' the genomes are sent with it and no commit is made).
+ * The outcome of every genome is reported in a {@link GenomeResult}, in the order of the
+ * selection whatever the order the workers finished in, and with create_report set to 1 as a
+ * text report (Result.getReport).
+ * With delta set to 1 only the genomes saved since the previous delta run of the core are
+ * indexed. The previous run is remembered by a per-core high-water mark, kept in a
+ * {@link WatermarkStore}: the save_date of the newest genome indexed, with the refs of the
+ * genomes indexed at that very save_date. A delta run
+ *     - selects the genomes saved after the mark, and those saved at the mark that are not in
+ *       its refs; genomes without a save_date are always selected;
+ *     - indexes them in save_date order, then makes a hard commit, whatever the commit_policy;
+ *     - only then moves the mark to the newest genome before the first one that failed, so a
+ *       failed genome is selected again by the next run.
+ * A run that stops before the commit leaves the mark where it was, and the next run indexes the
+ * same genomes again, which replaces their features with the same documents.
+ * Example:
+ *     GenomeIndexer indexer = new GenomeIndexer(client, source)
+ *             .withWatermarkStore(new GenomeIndexer.FileWatermarkStore(Paths.get("watermarks")));
+ *     GenomeIndexer.Result result = indexer.index(new IndexGenomesInSolrParams()
+ *             .withGenomes(genomes).withSolrCore("GenomeFeatures_prod").withDelta(1L));
+ * </pre>
+ */
+public class GenomeIndexer {
+
+    public static final int DEFAULT_WORKERS = 4;
+    public static final int DEFAULT_MAX_CONCURRENT_WRITES = 2;
+
+    private static final TypeReference<Map<String, String>> DOC_TYPE =
+            new TypeReference<Map<String, String>>() {};
+
+    // workspace save dates (2017-06-20T17:08:24+0000) as well as Solr dates (2017-06-20T17:08:24Z)
+    private static final DateTimeFormatter SAVE_DATE_FORMAT = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+            .optionalStart().appendOffset("+HH:MM", "Z").optionalEnd()
+            .optionalStart().appendOffset("+HHMM", "Z").optionalEnd()
+            .parseDefaulting(ChronoField.OFFSET_SECONDS, 0)
+            .toFormatter();
+
+    private final KBSolrUtilClient client;
+    private final FeatureSource source;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private WatermarkStore watermarkStore = null;
+    private int workers = DEFAULT_WORKERS;
+    private int maxConcurrentWrites = DEFAULT_MAX_CONCURRENT_WRITES;
+
+    /** Provides the features of a genome. */
+    public interface FeatureSource {
+        /** Get the features of a genome.
+         * @param genome the genome, with at least its ref.
+         * @return the features to index; those without a save_date get the genome's.
+         * @throws Exception if the features cannot be read; the genome is then counted as failed.
+         */
+        List<SolrGenomeFeatureData> getFeatures(KBaseReferenceGenomeData genome) throws Exception;
+    }
+
+    /** Keeps the high-water mark of the delta runs of each core. */
+    public interface WatermarkStore {
+        /** @return the mark of a core, or null if the core has none yet. */
+        Watermark load(String solrCore) throws IOException;
+
+        /** Replace the mark of a core; the new mark must be durable when this returns. */
+        void save(String solrCore, Watermark watermark) throws IOException;
+    }
+
+    /** The newest save_date indexed into a core, with the refs of the genomes indexed at it. */
+    public static class Watermark {
+        private final String saveDate;
+        private final Set<String> refs;
+
+        /**
+         * @param saveDate the save_date, as the workspace or Solr writes it.
+         * @param refs the refs of the genomes indexed with that save_date.
+         */
+        public Watermark(String saveDate, Set<String> refs) {
+            parseSaveDate(saveDate);
+            this.saveDate = saveDate;
+            this.refs = Collections.unmodifiableSet(new TreeSet<String>(refs));
+        }
+
+        public String getSaveDate() {
+            return saveDate;
+        }
+
+        public Set<String> getRefs() {
+            return refs;
+        }
+
+        /** @return true if a genome is newer than the mark. */
+        public boolean isBefore(KBaseReferenceGenomeData genome) {
+            Instant saved = saveDateOf(genome);
+            if (saved == null) {
+                return true;
+            }
+            int cmp = saved.compareTo(parseSaveDate(saveDate));
+            return cmp > 0 || (cmp == 0 && !refs.contains(genome.getRef()));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Watermark && saveDate.equals(((Watermark) o).saveDate) &&
+                    refs.equals(((Watermark) o).refs);
+        }
+
+        @Override
+        public int hashCode() {
+            return saveDate.hashCode() * 31 + refs.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return ((((("Watermark"+" [saveDate=")+ saveDate)+", refs=")+ refs)+"]");
+        }
+    }
+
+    /** A WatermarkStore keeping the mark of each core in a properties file of a directory,
+     * &lt;dir&gt;/&lt;core&gt;.watermark, replaced atomically by save.
+     */
+    public static class FileWatermarkStore implements WatermarkStore {
+        private final Path dir;
+
+        /** @param dir the directory of the files; it is created if missing. */
+        public FileWatermarkStore(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        public Watermark load(String solrCore) throws IOException {
+            Path file = file(solrCore);
+            if (!Files.exists(file)) {
+                return null;
+            }
+            Properties props = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                props.load(in);
+            }
+            String refs = props.getProperty("refs", "");
+            return new Watermark(props.getProperty("save_date"), new TreeSet<String>(
+                    refs.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(refs.split(","))));
+        }
+
+        @Override
+        public void save(String solrCore, Watermark watermark) throws IOException {
+            Files.createDirectories(dir);
+            Properties props = new Properties();
+            props.setProperty("save_date", watermark.getSaveDate());
+            props.setProperty("refs", String.join(",", watermark.getRefs()));
+            Path tmp = Files.createTempFile(dir, solrCore, ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    props.store(out, "High-water mark of the delta indexing of " + solrCore);
+                }
+                Files.move(tmp, file(solrCore), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+
+        private Path file(String solrCore) {
+            return dir.resolve(solrCore.replaceAll("[^\\w.-]", "_") + ".watermark");
+        }
+    }
+
+    /** The outcome of one genome of an index run. */
+    public static class GenomeResult {
+        private final KBaseReferenceGenomeData genome;
+        private final long docs;
+        private final long latencyMillis;
+        private final String error;
+
+        GenomeResult(KBaseReferenceGenomeData genome, long docs, long latencyMillis, String error) {
+            this.genome = genome;
+            this.docs = docs;
+            this.latencyMillis = latencyMillis;
+            this.error = error;
+        }
+
+        public KBaseReferenceGenomeData getGenome() {
+            return genome;
+        }
+
+        /** @return true if the features of the genome were indexed. */
+        public boolean isIndexed() {
+            return error == null;
+        }
+
+        /** @return the number of features indexed, 0 if the genome failed. */
+        public long getDocs() {
+            return docs;
+        }
+
+        /** @return the time taken to read, convert and send the features. */
+        public long getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        /** @return the error of a genome that failed, or null. */
+        public String getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return ((((((((("GenomeResult"+" [ref=")+ genome.getRef())+", docs=")+ docs)+", latencyMillis=")+ latencyMillis)+", error=")+ error)+"]");
+        }
+    }
+
+    /** The outcome of an index run. */
+    public static class Result {
+        private String solrCore;
+        private int genomesSelected = 0;
+        private int genomesSkipped = 0;
+        private int genomesIndexed = 0;
+        private long docsIndexed = 0;
+        private long elapsedMillis = 0;
+        private final List<GenomeResult> genomes = new ArrayList<GenomeResult>();
+        private final Map<String, String> failures = new LinkedHashMap<String, String>();
+        private Watermark previousWatermark = null;
+        private Watermark watermark = null;
+        private String report = null;
+
+        /** @return the number of genomes to index, after the delta selection. */
+        public int getGenomesSelected() {
+            return genomesSelected;
+        }
+
+        /** @return the number of genomes left out by the delta selection. */
+        public int getGenomesSkipped() {
+            return genomesSkipped;
+        }
+
+        /** @return the number of genomes whose features were all sent. */
+        public int getGenomesIndexed() {
+            return genomesIndexed;
+        }
+
+        /** @return the number of feature documents sent. */
+        public long getDocsIndexed() {
+            return docsIndexed;
+        }
+
+        /** @return the time the run took, commit included. */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /** @return the outcome of each selected genome, in the order of the selection. */
+        public List<GenomeResult> getGenomes() {
+            return genomes;
+        }
+
+        /** @return the error of each genome that failed, by ref, in the order of the selection. */
+        public Map<String, String> getFailures() {
+            return failures;
+        }
+
+        /** @return the mark of the core before a delta run, or null. */
+        public Watermark getPreviousWatermark() {
+            return previousWatermark;
+        }
+
+        /** @return the mark of the core after a delta run, or null. */
+        public Watermark getWatermark() {
+            return watermark;
+        }
+
+        /** @return the text report of the run if create_report was 1, or null. */
+        public String getReport() {
+            return report;
+        }
+
+        // a summary line, then one line per genome in the order of the selection
+        private String buildReport() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format(Locale.ROOT, "Indexed %d of %d genomes (%d features) into %s in %.1f s",
+                    genomesIndexed, genomesSelected, docsIndexed, solrCore, elapsedMillis / 1000.0));
+            if (genomesSkipped > 0) {
+                text.append(String.format(Locale.ROOT, ", %d genomes skipped as saved before %s",
+                        genomesSkipped, previousWatermark.getSaveDate()));
+            }
+            text.append('\n');
+            for (GenomeResult g : genomes) {
+                text.append(g.genome.getRef()).append('\t');
+                if (g.isIndexed()) {
+                    text.append(String.format(Locale.ROOT, "indexed\t%d features\t%d ms\n",
+                            g.docs, g.latencyMillis));
+                } else {
+                    text.append("failed\t").append(g.error.replace('\n', ' ')).append('\n');
+                }
+            }
+            if (watermark != null) {
+                text.append("Watermark: ").append(watermark.getSaveDate()).append('\n');
+            }
+            return text.toString();
+        }
+
+        @Override
+        public String toString() {
+            return ((((((((((((((("Result"+" [genomesSelected=")+ genomesSelected)+", genomesSkipped=")+ genomesSkipped)+", genomesIndexed=")+ genomesIndexed)+", docsIndexed=")+ docsIndexed)+", failures=")+ failures.size())+", previousWatermark=")+ previousWatermark)+", watermark=")+ watermark)+"]");
+        }
+    }
+
+    /** Constructs a genome indexer.
+     * @param client the client used to send the features.
+     * @param source the source of the features of the genomes.
+     */
+    public GenomeIndexer(KBSolrUtilClient client, FeatureSource source) {
+        if (client == null) {
+            throw new NullPointerException("client");
+        }
+        if (source == null) {
+            throw new NullPointerException("source");
+        }
+        this.client = client;
+        this.source = source;
+    }
+
+    /** Set the store of the high-water marks, needed for delta runs.
+     * @param watermarkStore the store.
+     * @return this indexer.
+     */
+    public GenomeIndexer withWatermarkStore(WatermarkStore watermarkStore) {
+        this.watermarkStore = watermarkStore;
+        return this;
+    }
+
+    /** Set the number of genomes indexed at the same time.
+     * @param workers the number of worker threads. Default 4.
+     * @return this indexer.
+     */
+    public GenomeIndexer withWorkers(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be at least 1");
+        }
+        this.workers = workers;
+        return this;
+    }
+
+    /** Set the maximum number of index_in_solr calls in flight at the same time.
+     * @param maxConcurrentWrites the maximum number of calls. Default 2.
+     * @return this indexer.
+     */
+    public GenomeIndexer withMaxConcurrentWrites(int maxConcurrentWrites) {
+        if (maxConcurrentWrites < 1) {
+            throw new IllegalArgumentException("maxConcurrentWrites must be at least 1");
+        }
+        this.maxConcurrentWrites = maxConcurrentWrites;
+        return this;
+    }
+
+    /** Index the features of the genomes of params. A genome that fails is recorded in the
+     * result and the run goes on with the next one.
+     * @param params the genomes, the core, the commit_policy and delta.
+     * @return the outcome of the run.
+     * @throws IOException if the final commit, or reading or saving the mark, fails.
+     * @throws JsonClientException if the final commit fails.
+     * @throws InterruptedException if interrupted while waiting for the workers; the genomes
+     * not yet indexed are abandoned and the mark is not moved.
+     */
+    public Result index(IndexGenomesInSolrParams params)
+            throws IOException, JsonClientException, InterruptedException {
+        long started = System.nanoTime();
+        String solrCore = params.getSolrCore();
+        if (solrCore == null || solrCore.isEmpty()) {
+            throw new IllegalArgumentException("solr_core must be specified");
+        }
+        boolean delta = params.getDelta() != null && params.getDelta() == 1L;
+        if (delta && watermarkStore == null) {
+            throw new IllegalStateException("A delta run needs a WatermarkStore");
+        }
+        List<KBaseReferenceGenomeData> genomes = params.getGenomes() == null ?
+                Collections.<KBaseReferenceGenomeData>emptyList() : params.getGenomes();
+        Result result = new Result();
+        result.solrCore = solrCore;
+
+        Watermark previous = delta ? watermarkStore.load(solrCore) : null;
+        List<KBaseReferenceGenomeData> selected = new ArrayList<KBaseReferenceGenomeData>();
+        for (KBaseReferenceGenomeData genome : genomes) {
+            if (previous == null || previous.isBefore(genome)) {
+                selected.add(genome);
+            }
+        }
+        if (delta) {
+            sortBySaveDate(selected);
+        }
+        result.previousWatermark = previous;
+        result.watermark = previous;
+        result.genomesSelected = selected.size();
+        result.genomesSkipped = genomes.size() - selected.size();
+
+        String commitPolicy = delta ? "commit" : params.getCommitPolicy();
+        if (commitPolicy == null || commitPolicy.isEmpty()) {
+            commitPolicy = "commit";
+        }
+        // genomes are committed at the end, except with commitWithin, which is up to Solr
+        final String writePolicy = commitPolicy.startsWith("commitWithin") ? commitPolicy : "none";
+
+        final Semaphore writes = new Semaphore(maxConcurrentWrites);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(workers, selected.size())),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "GenomeIndexer-" + solrCore + "-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        List<Boolean> indexed = new ArrayList<Boolean>(selected.size());
+        try {
+            List<Future<GenomeResult>> futures = new ArrayList<Future<GenomeResult>>(selected.size());
+            for (final KBaseReferenceGenomeData genome : selected) {
+                futures.add(pool.submit(new Callable<GenomeResult>() {
+                    @Override
+                    public GenomeResult call() {
+                        return indexGenome(solrCore, genome, writePolicy, writes);
+                    }
+                }));
+            }
+            for (Future<GenomeResult> future : futures) {
+                GenomeResult g;
+                try {
+                    g = future.get();
+                } catch (ExecutionException e) {
+                    // indexGenome catches everything but Errors
+                    throw new IllegalStateException(e.getCause());
+                }
+                result.genomes.add(g);
+                indexed.add(g.isIndexed());
+                if (g.isIndexed()) {
+                    result.genomesIndexed++;
+                    result.docsIndexed += g.docs;
+                } else {
+                    result.failures.put(g.genome.getRef(), g.error);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (result.genomesIndexed > 0 && (commitPolicy.equals("commit") || commitPolicy.equals("soft"))) {
+            // makes the genomes visible, and for a delta run durable, before the mark moves past them
+            client.indexInSolr(new IndexInSolrParams()
+                    .withSolrCore(solrCore)
+                    .withDocData(Collections.<Map<String, String>>emptyList())
+                    .withCommitPolicy(commitPolicy));
+        }
+        if (delta) {
+            Watermark next = advance(previous, selected, indexed);
+            if (next != null && !next.equals(previous)) {
+                watermarkStore.save(solrCore, next);
+                result.watermark = next;
+            }
+        }
+        result.elapsedMillis = (System.nanoTime() - started) / 1000000;
+        if (params.getCreateReport() != null && params.getCreateReport() == 1L) {
+            result.report = result.buildReport();
+        }
+        return result;
+    }
+
+    private GenomeResult indexGenome(String solrCore, KBaseReferenceGenomeData genome,
+            String commitPolicy, Semaphore writes) {
+        long started = System.nanoTime();
+        try {
+            List<SolrGenomeFeatureData> features = source.getFeatures(genome);
+            List<Map<String, String>> docs = new ArrayList<Map<String, String>>(features.size());
+            for (SolrGenomeFeatureData feature : features) {
+                if (feature.getSaveDate() == null) {
+                    feature.setSaveDate(genome.getSaveDate());
+                }
+                docs.add(mapper.convertValue(feature, DOC_TYPE));
+            }
+            // only the converted docs are kept while waiting for a write slot
+            features = null;
+            if (!docs.isEmpty()) {
+                writes.acquire();
+                try {
+                    client.indexInSolr(new IndexInSolrParams()
+                            .withSolrCore(solrCore)
+                            .withDocData(docs)
+                            .withCommitPolicy(commitPolicy));
+                } finally {
+                    writes.release();
+                }
+            }
+            return new GenomeResult(genome, docs.size(), (System.nanoTime() - started) / 1000000, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new GenomeResult(genome, 0, (System.nanoTime() - started) / 1000000, "interrupted");
+        } catch (Exception e) {
+            return new GenomeResult(genome, 0, (System.nanoTime() - started) / 1000000,
+                    e.getMessage() == null ? e.toString() : e.getMessage());
+        }
+    }
+
+    // the mark after the longest run of indexed genomes at the start of the (dated) selection
+    private static Watermark advance(Watermark previous, List<KBaseReferenceGenomeData> selected,
+            List<Boolean> indexed) {
+        Instant markDate = previous == null ? null : parseSaveDate(previous.getSaveDate());
+        String markText = previous == null ? null : previous.getSaveDate();
+        Set<String> markRefs = previous == null ? new TreeSet<String>() :
+                new TreeSet<String>(previous.getRefs());
+        for (int i = 0; i < selected.size(); i++) {
+            KBaseReferenceGenomeData genome = selected.get(i);
+            Instant saved = saveDateOf(genome);
+            if (saved == null) {
+                // undated genomes are selected by every run and do not move the mark
+                continue;
+            }
+            if (!indexed.get(i)) {
+                break;
+            }
+            if (markDate == null || saved.isAfter(markDate)) {
+                markDate = saved;
+                markText = genome.getSaveDate();
+                markRefs.clear();
+            }
+            markRefs.add(genome.getRef());
+        }
+        return markText == null ? null : new Watermark(markText, markRefs);
+    }
+
+    private static void sortBySaveDate(List<KBaseReferenceGenomeData> genomes) {
+        Collections.sort(genomes, new Comparator<KBaseReferenceGenomeData>() {
+            @Override
+            public int compare(KBaseReferenceGenomeData a, KBaseReferenceGenomeData b) {
+                Instant x = saveDateOf(a);
+                Instant y = saveDateOf(b);
+                if (x == null || y == null) {
+                    return x == null ? (y == null ? 0 : -1) : 1;
+                }
+                return x.compareTo(y);
+            }
+        });
+    }
+
+    private static Instant saveDateOf(KBaseReferenceGenomeData genome) {
+        String saveDate = genome.getSaveDate();
+        return saveDate == null || saveDate.isEmpty() ? null : parseSaveDate(saveDate);
+    }
+
+    /** Parse a save_date as written by the workspace (2017-06-20T17:08:24+0000) or by Solr
+     * (2017-06-20T17:08:24Z); a date without an offset is taken as UTC.
+     * @param saveDate the date.
+     * @return the instant.
+     * @throws IllegalArgumentException if the date cannot be parsed.
+     */
+    public static Instant parseSaveDate(String saveDate) {
+        if (saveDate == null) {
+            throw new IllegalArgumentException("save_date is null");
+        }
+        try {
+            return OffsetDateTime.parse(saveDate, SAVE_DATE_FORMAT).toInstant();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid save_date " + saveDate, e);
+        }
+    }
+}
@@ -16,6 +16,9 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
  * <p>Original spec-file type: IndexGenomesInSolrParams</p>
  * <pre>
  * Arguments for the index_genomes_in_solr function
+ * string commit_policy - when the indexed genomes become visible to searches, see IndexInSolrParams
+ * bool delta - 1 to index only the genomes saved (save_date) since the previous delta run of the core,
+ *     see GenomeIndexer; default to 0, all the genomes are indexed.
  * </pre>
  * 
  */
@@ -24,7 +27,9 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 @JsonPropertyOrder({
     "genomes",
     "solr_core",
-    "create_report"
+    "create_report",
+    "commit_policy",
+    "delta"
 })
 public class IndexGenomesInSolrParams {
 
@@ -34,6 +39,10 @@ public class IndexGenomesInSolrParams {
     private String solrCore;
     @JsonProperty("create_report")
     private Long createReport;
+    @JsonProperty("commit_policy")
+    private String commitPolicy;
+    @JsonProperty("delta")
+    private Long delta;
     private Map<String, Object> additionalProperties = new HashMap<String, Object>();
 
     @JsonProperty("genomes")
@@ -81,6 +90,36 @@ public class IndexGenomesInSolrParams {
         return this;
     }
 
+    @JsonProperty("commit_policy")
+    public String getCommitPolicy() {
+        return commitPolicy;
+    }
+
+    @JsonProperty("commit_policy")
+    public void setCommitPolicy(String commitPolicy) {
+        this.commitPolicy = commitPolicy;
+    }
+
+    public IndexGenomesInSolrParams withCommitPolicy(String commitPolicy) {
+        this.commitPolicy = commitPolicy;
+        return this;
+    }
+
+    @JsonProperty("delta")
+    public Long getDelta() {
+        return delta;
+    }
+
+    @JsonProperty("delta")
+    public void setDelta(Long delta) {
+        this.delta = delta;
+    }
+
+    public IndexGenomesInSolrParams withDelta(Long delta) {
+        this.delta = delta;
+        return this;
+    }
+
     @JsonAnyGetter
     public Map<String, Object> getAdditionalProperties() {
         return this.additionalProperties;
@@ -93,7 +132,7 @@ public class IndexGenomesInSolrParams {
 
     @Override
     public String toString() {
-        return ((((((((("IndexGenomesInSolrParams"+" [genomes=")+ genomes)+", solrCore=")+ solrCore)+", createReport=")+ createReport)+", additionalProperties=")+ additionalProperties)+"]");
+        return ((((((((((((("IndexGenomesInSolrParams"+" [genomes=")+ genomes)+", solrCore=")+ solrCore)+", createReport=")+ createReport)+", commitPolicy=")+ commitPolicy)+", delta=")+ delta)+", additionalProperties=")+ additionalProperties)+"]");
     }
 
 }
@@ -16,37 +16,67 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
  * <p>Original spec-file type: IndexInSolrParams</p>
  * <pre>
  * Arguments for the index_in_solr function - send doc data to solr for indexing
- * string search_core - the name of the solr core to index to
+ * string solr_core - the name of the solr core to index to
  * list<docdata> doc_data - the doc to be indexed, a list of hashes
+ * string commit_policy - when the indexed docs become visible to searches, one of
+ *         'commit' - a hard commit as part of the update
+ *         'soft' - a soft commit as part of the update, visible at once but flushed to disk by SOLR's next hard commit
+ *         'commitWithin=<ms>' - SOLR commits within <ms> milliseconds, merging the commits of concurrent updates
+ *         'none' - no commit, left to SOLR's autoCommit or to a later commit
+ *     default to 'commit', or to 'none' when the service is set to rely on SOLR's autocommit.
+ *     With an empty doc_data and a commit_policy of 'commit' or 'soft', only the commit is made, e.g. at the end
+ *     of a bulk job whose batches were sent with 'none'.
+ * bool skip_unchanged - 1 to send only the docs that are new or have changed since they were last indexed with
+ *     skip_unchanged: the content hash of each doc (the MD5 of its fields) is compared with the hash stored for
+ *     its unique key, and the docs with the same hash are left out. Default to 0, all the docs are sent.
+ * string hash_store - where the hashes are kept with skip_unchanged, one of
+ *         'solr' - in the hash_field of the docs themselves, fetched from SOLR in bulk before the update;
+ *             the core's schema must have the field (a stored string)
+ *         'local' - in a store of the service (hash-store-dir in the deployment config), for cores without
+ *             the field; it only knows the docs indexed through the service
+ *     default to 'solr'.
+ * string hash_field - the field of the hashes with hash_store 'solr', default to 'content_hash'
  * </pre>
  * 
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @Generated("com.googlecode.jsonschema2pojo")
 @JsonPropertyOrder({
-    "search_core",
-    "doc_data"
+    "solr_core",
+    "doc_data",
+    "commit_policy",
+    "skip_unchanged",
+    "hash_store",
+    "hash_field"
 })
 public class IndexInSolrParams {
 
-    @JsonProperty("search_core")
-    private java.lang.String searchCore;
+    @JsonProperty("solr_core")
+    private java.lang.String solrCore;
     @JsonProperty("doc_data")
     private List<Map<String, String>> docData;
+    @JsonProperty("commit_policy")
+    private java.lang.String commitPolicy;
+    @JsonProperty("skip_unchanged")
+    private Long skipUnchanged;
+    @JsonProperty("hash_store")
+    private java.lang.String hashStore;
+    @JsonProperty("hash_field")
+    private java.lang.String hashField;
     private Map<java.lang.String, Object> additionalProperties = new HashMap<java.lang.String, Object>();
 
-    @JsonProperty("search_core")
-    public java.lang.String getSearchCore() {
-        return searchCore;
+    @JsonProperty("solr_core")
+    public java.lang.String getSolrCore() {
+        return solrCore;
     }
 
-    @JsonProperty("search_core")
-    public void setSearchCore(java.lang.String searchCore) {
-        this.searchCore = searchCore;
+    @JsonProperty("solr_core")
+    public void setSolrCore(java.lang.String solrCore) {
+        this.solrCore = solrCore;
     }
 
-    public IndexInSolrParams withSearchCore(java.lang.String searchCore) {
-        this.searchCore = searchCore;
+    public IndexInSolrParams withSolrCore(java.lang.String solrCore) {
+        this.solrCore = solrCore;
         return this;
     }
 
@@ -65,6 +95,66 @@ public class IndexInSolrParams {
         return this;
     }
 
+    @JsonProperty("commit_policy")
+    public java.lang.String getCommitPolicy() {
+        return commitPolicy;
+    }
+
+    @JsonProperty("commit_policy")
+    public void setCommitPolicy(java.lang.String commitPolicy) {
+        this.commitPolicy = commitPolicy;
+    }
+
+    public IndexInSolrParams withCommitPolicy(java.lang.String commitPolicy) {
+        this.commitPolicy = commitPolicy;
+        return this;
+    }
+
+    @JsonProperty("skip_unchanged")
+    public Long getSkipUnchanged() {
+        return skipUnchanged;
+    }
+
+    @JsonProperty("skip_unchanged")
+    public void setSkipUnchanged(Long skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
+    public IndexInSolrParams withSkipUnchanged(Long skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+        return this;
+    }
+
+    @JsonProperty("hash_store")
+    public java.lang.String getHashStore() {
+        return hashStore;
+    }
+
+    @JsonProperty("hash_store")
+    public void setHashStore(java.lang.String hashStore) {
+        this.hashStore = hashStore;
+    }
+
+    public IndexInSolrParams withHashStore(java.lang.String hashStore) {
+        this.hashStore = hashStore;
+        return this;
+    }
+
+    @JsonProperty("hash_field")
+    public java.lang.String getHashField() {
+        return hashField;
+    }
+
+    @JsonProperty("hash_field")
+    public void setHashField(java.lang.String hashField) {
+        this.hashField = hashField;
+    }
+
+    public IndexInSolrParams withHashField(java.lang.String hashField) {
+        this.hashField = hashField;
+        return this;
+    }
+
     @JsonAnyGetter
     public Map<java.lang.String, Object> getAdditionalProperties() {
         return this.additionalProperties;
@@ -77,7 +167,7 @@ public class IndexInSolrParams {
 
     @Override
     public java.lang.String toString() {
-        return ((((((("IndexInSolrParams"+" [searchCore=")+ searchCore)+", docData=")+ docData)+", additionalProperties=")+ additionalProperties)+"]");
+        return ((((((((((((((("IndexInSolrParams"+" [solrCore=")+ solrCore)+", docData=")+ docData)+", commitPolicy=")+ commitPolicy)+", skipUnchanged=")+ skipUnchanged)+", hashStore=")+ hashStore)+", hashField=")+ hashField)+", additionalProperties=")+ additionalProperties)+"]");
     }
 
 }
@@ -7,6 +7,16 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import us.kbase.auth.AuthToken;
 import us.kbase.common.service.JsonClientCaller;
 import us.kbase.common.service.JsonClientException;
@@ -22,8 +32,19 @@ import us.kbase.common.service.UnauthorizedException;
  */
 public class KBSolrUtilClient {
     private JsonClientCaller caller;
+    private volatile PooledJsonClientCaller pooledCaller = null;
+    private Integer readTimeOut = 30 * 60 * 1000;
+    private int gzipMinBytes = PooledJsonClientCaller.GZIP_DISABLED;
     private String serviceVersion = null;
+    private final ClientMetrics metrics = new ClientMetrics();
 
+    /** The default maximum number of asynchronous calls in flight per client. */
+    public static final int DEFAULT_MAX_IN_FLIGHT_REQUESTS = 32;
+
+    private volatile Executor asyncExecutor = null;
+    private volatile int maxInFlightRequests = DEFAULT_MAX_IN_FLIGHT_REQUESTS;
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    private final Queue<AsyncCall<?>> pendingRequests = new ConcurrentLinkedQueue<AsyncCall<?>>();
 
     /** Constructs a client with a custom URL and no user credentials.
      * @param url the URL of the service.
@@ -88,7 +109,78 @@ public class KBSolrUtilClient {
      * attempting to read from a server.
      */
     public void setConnectionReadTimeOut(Integer milliseconds) {
+        this.readTimeOut = milliseconds;
         this.caller.setConnectionReadTimeOut(milliseconds);
+        PooledJsonClientCaller pooled = this.pooledCaller;
+        if (pooled != null) {
+            pooled.setConnectionReadTimeOut(milliseconds);
+        }
+    }
+
+    /** Set the size from which request bodies are sent gzipped, e.g. for
+     * bandwidth-bound bulk loads with index_in_solr. Applies to calls made over
+     * pooled connections (see usePooledConnections), which also accept
+     * compressed responses; the service must inflate compressed requests.
+     * @param bytes the minimum size of a compressed request body in bytes, or
+     * PooledJsonClientCaller.GZIP_DISABLED (the default) to send all requests
+     * uncompressed.
+     */
+    public void setGzipMinBytes(int bytes) {
+        this.gzipMinBytes = bytes;
+        PooledJsonClientCaller pooled = this.pooledCaller;
+        if (pooled != null) {
+            pooled.setGzipMinBytes(bytes);
+        }
+    }
+
+    /** Send all further calls over a pool of persistent (keep-alive) HTTP
+     * connections instead of opening a connection per call. Any previously
+     * configured pool is closed.
+     * @param maxPerHost the maximum number of connections to the service host.
+     * @param maxTotal the maximum number of connections in the pool.
+     * @param idleTimeoutMillis the time after which an idle connection is closed.
+     * @throws IOException if an IOException occurs when closing a previous pool.
+     */
+    public void usePooledConnections(int maxPerHost, int maxTotal, long idleTimeoutMillis) throws IOException {
+        PooledJsonClientCaller pooled = new PooledJsonClientCaller(caller.getURL(), caller.getToken(),
+                maxPerHost, maxTotal, idleTimeoutMillis, caller.isInsecureHttpConnectionAllowed(),
+                caller.isAllSSLCertificatesTrusted());
+        pooled.setConnectionReadTimeOut(readTimeOut);
+        pooled.setGzipMinBytes(gzipMinBytes);
+        pooled.setMetrics(metrics);
+        PooledJsonClientCaller previous = this.pooledCaller;
+        this.pooledCaller = pooled;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /** Send all further calls over a pool of persistent HTTP connections with
+     * the default limits.
+     * @throws IOException if an IOException occurs when closing a previous pool.
+     */
+    public void usePooledConnections() throws IOException {
+        usePooledConnections(PooledJsonClientCaller.DEFAULT_MAX_PER_HOST,
+                PooledJsonClientCaller.DEFAULT_MAX_TOTAL,
+                PooledJsonClientCaller.DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /** Close the connection pool, if any, and go back to a connection per call.
+     * @throws IOException if an IOException occurs when closing the pool.
+     */
+    public void closePooledConnections() throws IOException {
+        PooledJsonClientCaller pooled = this.pooledCaller;
+        this.pooledCaller = null;
+        if (pooled != null) {
+            pooled.close();
+        }
+    }
+
+    /** Check if this client sends its calls over a connection pool.
+     * @return true if a connection pool is in use.
+     */
+    public boolean isUsingPooledConnections() {
+        return this.pooledCaller != null;
     }
 
     /** Check if this client allows insecure http (vs https) connections.
@@ -111,6 +203,10 @@ public class KBSolrUtilClient {
      */
     public void setIsInsecureHttpConnectionAllowed(boolean allowed) {
         caller.setInsecureHttpConnectionAllowed(allowed);
+        PooledJsonClientCaller pooled = this.pooledCaller;
+        if (pooled != null) {
+            pooled.setInsecureHttpConnectionAllowed(allowed);
+        }
     }
 
     /** Deprecated. Use setIsInsecureHttpConnectionAllowed().
@@ -118,14 +214,30 @@ public class KBSolrUtilClient {
      */
     public void setAuthAllowedForHttp(boolean isAuthAllowedForHttp) {
         caller.setAuthAllowedForHttp(isAuthAllowedForHttp);
+        PooledJsonClientCaller pooled = this.pooledCaller;
+        if (pooled != null) {
+            pooled.setInsecureHttpConnectionAllowed(isAuthAllowedForHttp);
+        }
     }
 
     /** Set whether all SSL certificates, including self-signed certificates,
-     * should be trusted.
+     * should be trusted. A connection pool in use is replaced by one with the
+     * same limits and the new setting.
      * @param trustAll true to trust all certificates. Default false.
+     * @throws IllegalStateException if the replaced pool could not be closed.
      */
     public void setAllSSLCertificatesTrusted(final boolean trustAll) {
         caller.setAllSSLCertificatesTrusted(trustAll);
+        PooledJsonClientCaller pooled = this.pooledCaller;
+        if (pooled != null && pooled.isAllSSLCertificatesTrusted() != trustAll) {
+            try {
+                usePooledConnections(pooled.getMaxPerHost(), pooled.getMaxTotal(),
+                        pooled.getIdleTimeoutMillis());
+            } catch (IOException e) {
+                // the new pool is in use already; only closing the old one failed
+                throw new IllegalStateException("Could not close the previous connection pool", e);
+            }
+        }
     }
     
     /** Check if this client trusts all SSL certificates, including
@@ -163,6 +275,159 @@ public class KBSolrUtilClient {
         this.serviceVersion = newValue;
     }
 
+    /** Set the executor that runs the JSON-RPC calls made by the *Async
+     * methods. If no executor is set, a cached pool of daemon threads is
+     * created on first use.
+     * @param executor the executor for asynchronous calls.
+     */
+    public void setAsyncExecutor(Executor executor) {
+        this.asyncExecutor = executor;
+    }
+
+    /** Get the executor that runs the JSON-RPC calls made by the *Async
+     * methods.
+     * @return the executor for asynchronous calls, or null if the default
+     * pool has not been created yet.
+     */
+    public Executor getAsyncExecutor() {
+        return this.asyncExecutor;
+    }
+
+    /** Set the maximum number of asynchronous calls this client keeps in
+     * flight. Calls submitted past the limit are queued, without blocking the
+     * submitting thread, until an earlier call completes.
+     * @param max the maximum number of calls in flight. Default 32.
+     */
+    public void setMaxInFlightRequests(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("max must be at least 1");
+        }
+        this.maxInFlightRequests = max;
+        dispatchPendingRequests();
+    }
+
+    /** Get the maximum number of asynchronous calls this client keeps in
+     * flight.
+     * @return the maximum number of calls in flight.
+     */
+    public int getMaxInFlightRequests() {
+        return this.maxInFlightRequests;
+    }
+
+    /** Get the number of asynchronous calls currently in flight.
+     * @return the number of calls in flight.
+     */
+    public int getInFlightRequests() {
+        return inFlightRequests.get();
+    }
+
+    /** Get the number of asynchronous calls waiting for an in-flight slot.
+     * @return the number of queued calls.
+     */
+    public int getPendingRequests() {
+        return pendingRequests.size();
+    }
+
+    /** Get the per-method call counters and latency histograms of this client.
+     * @return the metrics, updated by every call.
+     */
+    public ClientMetrics getMetrics() {
+        return metrics;
+    }
+
+    private <ARG, RET> RET jsonrpcCall(String method, ARG arg, TypeReference<RET> cls, boolean ret,
+            boolean authRequired, RpcContext[] jsonRpcContext, String serviceVersion)
+            throws IOException, JsonClientException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            PooledJsonClientCaller pooled = this.pooledCaller;
+            RET result = pooled != null ?
+                    pooled.jsonrpcCall(method, arg, cls, ret, authRequired, jsonRpcContext, serviceVersion) :
+                    caller.jsonrpcCall(method, arg, cls, ret, authRequired, jsonRpcContext, serviceVersion);
+            failed = false;
+            return result;
+        } finally {
+            metrics.recordCall(method, System.nanoTime() - start, failed);
+        }
+    }
+
+    private <T> CompletableFuture<T> callAsync(final Callable<T> call) {
+        AsyncCall<T> task = new AsyncCall<T>(call);
+        pendingRequests.add(task);
+        dispatchPendingRequests();
+        return task.future;
+    }
+
+    private void dispatchPendingRequests() {
+        while (!pendingRequests.isEmpty()) {
+            int current = inFlightRequests.get();
+            if (current >= maxInFlightRequests) {
+                return;
+            }
+            if (!inFlightRequests.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            AsyncCall<?> task = pendingRequests.poll();
+            if (task == null) {
+                inFlightRequests.decrementAndGet();
+                continue;
+            }
+            try {
+                getOrCreateAsyncExecutor().execute(task);
+            } catch (RejectedExecutionException e) {
+                inFlightRequests.decrementAndGet();
+                task.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private class AsyncCall<T> implements Runnable {
+        private final Callable<T> call;
+        private final CompletableFuture<T> future = new CompletableFuture<T>();
+
+        private AsyncCall(Callable<T> call) {
+            this.call = call;
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete(call.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                inFlightRequests.decrementAndGet();
+                dispatchPendingRequests();
+            }
+        }
+    }
+
+    private Executor getOrCreateAsyncExecutor() {
+        Executor executor = asyncExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                if (asyncExecutor == null) {
+                    asyncExecutor = createDefaultAsyncExecutor();
+                }
+                executor = asyncExecutor;
+            }
+        }
+        return executor;
+    }
+
+    private static ExecutorService createDefaultAsyncExecutor() {
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "KBSolrUtilClient-async-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
     /**
      * <p>Original spec-file function name: index_in_solr</p>
      * <pre>
@@ -177,7 +442,119 @@ public class KBSolrUtilClient {
         List<Object> args = new ArrayList<Object>();
         args.add(params);
         TypeReference<List<Long>> retType = new TypeReference<List<Long>>() {};
-        List<Long> res = caller.jsonrpcCall("KBSolrUtil.index_in_solr", args, retType, true, true, jsonRpcContext, this.serviceVersion);
+        List<Long> res = jsonrpcCall("KBSolrUtil.index_in_solr", args, retType, true, true, jsonRpcContext, this.serviceVersion);
+        if (params.getDocData() != null) {
+            metrics.addDocs("index_in_solr", params.getDocData().size());
+        }
+        return res.get(0);
+    }
+
+    /**
+     * <p>Asynchronous variant of {@link #indexInSolr(IndexInSolrParams, RpcContext...) indexInSolr}.
+     * The call runs on the client's async executor and counts against
+     * {@link #setMaxInFlightRequests(int) the in-flight limit}.</p>
+     * @param   params   instance of type {@link us.kbase.kbsolrutil.IndexInSolrParams IndexInSolrParams}
+     * @return   a future holding parameter "output" of Long, completed exceptionally with an
+     * IOException or JsonClientException if the call fails
+     */
+    public CompletableFuture<Long> indexInSolrAsync(final IndexInSolrParams params, final RpcContext... jsonRpcContext) {
+        return callAsync(new Callable<Long>() {
+            @Override
+            public Long call() throws IOException, JsonClientException {
+                return indexInSolr(params, jsonRpcContext);
+            }
+        });
+    }
+
+    /**
+     * <p>Original spec-file function name: new_or_updated</p>
+     * <pre>
+     * The new_or_updated function that returns a list of docs
+     * </pre>
+     * @param   params   instance of type {@link us.kbase.kbsolrutil.NewOrUpdatedParams NewOrUpdatedParams}
+     * @return   instance of list of original type "searchdata" (User provided parameter data. Arbitrary key-value pairs provided by the user.) &rarr; mapping from String to String
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public List<Map<String,String>> newOrUpdated(NewOrUpdatedParams params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        List<Object> args = new ArrayList<Object>();
+        args.add(params);
+        TypeReference<List<List<Map<String,String>>>> retType = new TypeReference<List<List<Map<String,String>>>>() {};
+        List<List<Map<String,String>>> res = jsonrpcCall("KBSolrUtil.new_or_updated", args, retType, true, true, jsonRpcContext, this.serviceVersion);
+        return res.get(0);
+    }
+
+    /**
+     * <p>Original spec-file function name: exists_in_solr</p>
+     * <pre>
+     * The exists_in_solr function that returns 0 or 1
+     * </pre>
+     * @param   params   instance of type {@link us.kbase.kbsolrutil.ExistsInputParams ExistsInputParams}
+     * @return   parameter "output" of Long
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public Long existsInSolr(ExistsInputParams params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        List<Object> args = new ArrayList<Object>();
+        args.add(params);
+        TypeReference<List<Long>> retType = new TypeReference<List<Long>>() {};
+        List<Long> res = jsonrpcCall("KBSolrUtil.exists_in_solr", args, retType, true, true, jsonRpcContext, this.serviceVersion);
+        return res.get(0);
+    }
+
+    /**
+     * <p>Original spec-file function name: get_total_count</p>
+     * <pre>
+     * The get_total_count function that returns a positive integer (including 0) or -1
+     * </pre>
+     * @param   params   instance of type {@link us.kbase.kbsolrutil.TotalCountParams TotalCountParams}
+     * @return   parameter "output" of Long
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public Long getTotalCount(TotalCountParams params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        List<Object> args = new ArrayList<Object>();
+        args.add(params);
+        TypeReference<List<Long>> retType = new TypeReference<List<Long>>() {};
+        List<Long> res = jsonrpcCall("KBSolrUtil.get_total_count", args, retType, true, true, jsonRpcContext, this.serviceVersion);
+        return res.get(0);
+    }
+
+    /**
+     * <p>Original spec-file function name: exists_in_solr_batch</p>
+     * <pre>
+     * The exists_in_solr_batch function - the batch form of exists_in_solr. Returns a list of 0 or 1, one for each of the
+     * ExistsInputParams in the order given. The queries are answered with a single SOLR request per search_core.
+     * </pre>
+     * @param   params   instance of list of type {@link us.kbase.kbsolrutil.ExistsInputParams ExistsInputParams}
+     * @return   parameter "output" of list of Long
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public List<Long> existsInSolrBatch(List<ExistsInputParams> params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        List<Object> args = new ArrayList<Object>();
+        args.add(params);
+        TypeReference<List<List<Long>>> retType = new TypeReference<List<List<Long>>>() {};
+        List<List<Long>> res = jsonrpcCall("KBSolrUtil.exists_in_solr_batch", args, retType, true, true, jsonRpcContext, this.serviceVersion);
+        return res.get(0);
+    }
+
+    /**
+     * <p>Original spec-file function name: get_total_count_batch</p>
+     * <pre>
+     * The get_total_count_batch function - the batch form of get_total_count. Returns a list of counts (or -1 if error), one for each
+     * of the TotalCountParams in the order given. The queries are answered with a single SOLR request per search_core.
+     * </pre>
+     * @param   params   instance of list of type {@link us.kbase.kbsolrutil.TotalCountParams TotalCountParams}
+     * @return   parameter "output" of list of Long
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public List<Long> getTotalCountBatch(List<TotalCountParams> params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        List<Object> args = new ArrayList<Object>();
+        args.add(params);
+        TypeReference<List<List<Long>>> retType = new TypeReference<List<List<Long>>>() {};
+        List<List<Long>> res = jsonrpcCall("KBSolrUtil.get_total_count_batch", args, retType, true, true, jsonRpcContext, this.serviceVersion);
         return res.get(0);
     }
 
@@ -195,14 +572,176 @@ public class KBSolrUtilClient {
         List<Object> args = new ArrayList<Object>();
         args.add(params);
         TypeReference<List<Map<String,String>>> retType = new TypeReference<List<Map<String,String>>>() {};
-        List<Map<String,String>> res = caller.jsonrpcCall("KBSolrUtil.search_solr", args, retType, true, true, jsonRpcContext, this.serviceVersion);
+        List<Map<String,String>> res = jsonrpcCall("KBSolrUtil.search_solr", args, retType, true, true, jsonRpcContext, this.serviceVersion);
+        return res.get(0);
+    }
+
+    /**
+     * <p>Asynchronous variant of {@link #searchSolr(SearchSolrParams, RpcContext...) searchSolr}.
+     * The call runs on the client's async executor and counts against
+     * {@link #setMaxInFlightRequests(int) the in-flight limit}.</p>
+     * @param   params   instance of type {@link us.kbase.kbsolrutil.SearchSolrParams SearchSolrParams}
+     * @return   a future holding parameter "output" of original type "solrresponse", completed
+     * exceptionally with an IOException or JsonClientException if the call fails
+     */
+    public CompletableFuture<Map<String,String>> searchSolrAsync(final SearchSolrParams params, final RpcContext... jsonRpcContext) {
+        return callAsync(new Callable<Map<String,String>>() {
+            @Override
+            public Map<String,String> call() throws IOException, JsonClientException {
+                return searchSolr(params, jsonRpcContext);
+            }
+        });
+    }
+
+    /**
+     * <p>Typed variant of {@link #searchSolr(SearchSolrParams, RpcContext...) searchSolr}.
+     * The search is run with result_format 'json' and the docs of the Solr response are
+     * stream-parsed straight into docType as they are read, along with numFound, QTime,
+     * the nextCursorMark and any grouping results.</p>
+     * @param   params   instance of type {@link us.kbase.kbsolrutil.SearchSolrParams SearchSolrParams}; result_format must be unset or 'json'
+     * @param   docType  the record type each document is bound to, e.g. {@link us.kbase.kbsolrutil.SolrGenomeFeatureData SolrGenomeFeatureData}
+     * @return   the typed search response
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public <T> SolrSearchResponse<T> searchSolr(SearchSolrParams params, Class<T> docType, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        return searchSolrTyped("KBSolrUtil.search_solr", params, docType, jsonRpcContext);
+    }
+
+    /**
+     * <p>Searches a GenomeFeatures core, binding each doc to {@link us.kbase.kbsolrutil.SolrGenomeFeatureData SolrGenomeFeatureData}.
+     * See {@link #searchSolr(SearchSolrParams, Class, RpcContext...)}.</p>
+     * @param   params   instance of type {@link us.kbase.kbsolrutil.SearchSolrParams SearchSolrParams}
+     * @return   the typed search response
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public SolrSearchResponse<SolrGenomeFeatureData> searchSolrGenomeFeatures(SearchSolrParams params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        return searchSolr(params, SolrGenomeFeatureData.class, jsonRpcContext);
+    }
+
+    /**
+     * <p>Searches a taxonomy core, binding each doc to {@link us.kbase.kbsolrutil.SolrTaxonData SolrTaxonData}.
+     * See {@link #searchSolr(SearchSolrParams, Class, RpcContext...)}.</p>
+     * @param   params   instance of type {@link us.kbase.kbsolrutil.SearchSolrParams SearchSolrParams}
+     * @return   the typed search response
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public SolrSearchResponse<SolrTaxonData> searchSolrTaxa(SearchSolrParams params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        return searchSolr(params, SolrTaxonData.class, jsonRpcContext);
+    }
+
+    /**
+     * <p>Original spec-file function name: search_kbase_solr</p>
+     * <pre>
+     * The search_kbase_solr function that returns a solrresponse consisting of a string in the format of the specified 'result_format' in SearchSolrParams
+     * The interface is exactly the same as that of search_solr, except the output content will be different. And this function is exposed to the narrative for users to search KBase Solr databases, while search_solr will be mainly serving RDM.
+     * </pre>
+     * @param   params   instance of type {@link us.kbase.kbsolrutil.SearchSolrParams SearchSolrParams}
+     * @return   parameter "output" of original type "solrresponse" (Solr response data for search requests. Arbitrary key-value pairs returned by the solr.) &rarr; mapping from String to String
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public Map<String,String> searchKbaseSolr(SearchSolrParams params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        List<Object> args = new ArrayList<Object>();
+        args.add(params);
+        TypeReference<List<Map<String,String>>> retType = new TypeReference<List<Map<String,String>>>() {};
+        List<Map<String,String>> res = jsonrpcCall("KBSolrUtil.search_kbase_solr", args, retType, true, true, jsonRpcContext, this.serviceVersion);
+        return res.get(0);
+    }
+
+    /**
+     * <p>Typed variant of {@link #searchKbaseSolr(SearchSolrParams, RpcContext...) searchKbaseSolr}.
+     * The raw Solr response in solr_search_result is stream-parsed the same way as by
+     * {@link #searchSolr(SearchSolrParams, Class, RpcContext...)}, instead of being returned as a string to re-parse.</p>
+     * @param   params   instance of type {@link us.kbase.kbsolrutil.SearchSolrParams SearchSolrParams}; result_format must be unset or 'json'
+     * @param   docType  the record type each document is bound to
+     * @return   the typed search response
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public <T> SolrSearchResponse<T> searchKbaseSolr(SearchSolrParams params, Class<T> docType, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        return searchSolrTyped("KBSolrUtil.search_kbase_solr", params, docType, jsonRpcContext);
+    }
+
+    /**
+     * <p>Asynchronous variant of {@link #searchSolr(SearchSolrParams, Class, RpcContext...) the typed searchSolr}.</p>
+     * @param   params   instance of type {@link us.kbase.kbsolrutil.SearchSolrParams SearchSolrParams}
+     * @param   docType  the record type each document is bound to
+     * @return   a future holding the typed search response, completed exceptionally with an
+     * IOException or JsonClientException if the call fails
+     */
+    public <T> CompletableFuture<SolrSearchResponse<T>> searchSolrAsync(final SearchSolrParams params, final Class<T> docType, final RpcContext... jsonRpcContext) {
+        return callAsync(new Callable<SolrSearchResponse<T>>() {
+            @Override
+            public SolrSearchResponse<T> call() throws IOException, JsonClientException {
+                return searchSolr(params, docType, jsonRpcContext);
+            }
+        });
+    }
+
+    private <T> SolrSearchResponse<T> searchSolrTyped(String method, SearchSolrParams params, Class<T> docType, RpcContext[] jsonRpcContext) throws IOException, JsonClientException {
+        if (params.getResultFormat() != null && !"json".equals(params.getResultFormat())) {
+            throw new IllegalArgumentException("Typed searches need result_format 'json', not '" +
+                    params.getResultFormat() + "'");
+        }
+        SearchSolrParams jsonParams = new SearchSolrParams()
+                .withSearchCore(params.getSearchCore())
+                .withSearchParam(params.getSearchParam())
+                .withSearchQuery(params.getSearchQuery())
+                .withResultFormat("json")
+                .withGroupOption(params.getGroupOption())
+                .withFilterQueries(params.getFilterQueries());
+        for (Map.Entry<String, Object> e : params.getAdditionalProperties().entrySet()) {
+            jsonParams.setAdditionalProperties(e.getKey(), e.getValue());
+        }
+        List<Object> args = new ArrayList<Object>();
+        args.add(jsonParams);
+        List<SolrSearchResponse<T>> res = jsonrpcCall(method, args, SolrSearchResponse.resultListType(docType), true, true, jsonRpcContext, this.serviceVersion);
+        return res.get(0);
+    }
+
+    /**
+     * <p>Original spec-file function name: add_json_2solr</p>
+     * <pre>
+     * The add_json_2solr function that returns 1 if succeeded otherwise 0
+     * </pre>
+     * @param   params   instance of type {@link us.kbase.kbsolrutil.IndexJsonParams IndexJsonParams}
+     * @return   parameter "output" of Long
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public Long addJson2solr(IndexJsonParams params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        List<Object> args = new ArrayList<Object>();
+        args.add(params);
+        TypeReference<List<Long>> retType = new TypeReference<List<Long>>() {};
+        List<Long> res = jsonrpcCall("KBSolrUtil.add_json_2solr", args, retType, true, true, jsonRpcContext, this.serviceVersion);
+        return res.get(0);
+    }
+
+    /**
+     * <p>Original spec-file function name: delete_in_solr</p>
+     * <pre>
+     * The delete_in_solr function that returns 1 if succeeded otherwise 0
+     * </pre>
+     * @param   params   instance of type {@link us.kbase.kbsolrutil.DeleteInSolrParams DeleteInSolrParams}
+     * @return   parameter "output" of Long
+     * @throws IOException if an IO exception occurs
+     * @throws JsonClientException if a JSON RPC exception occurs
+     */
+    public Long deleteInSolr(DeleteInSolrParams params, RpcContext... jsonRpcContext) throws IOException, JsonClientException {
+        List<Object> args = new ArrayList<Object>();
+        args.add(params);
+        TypeReference<List<Long>> retType = new TypeReference<List<Long>>() {};
+        List<Long> res = jsonrpcCall("KBSolrUtil.delete_in_solr", args, retType, true, true, jsonRpcContext, this.serviceVersion);
         return res.get(0);
     }
 
     public Map<String, Object> status(RpcContext... jsonRpcContext) throws IOException, JsonClientException {
         List<Object> args = new ArrayList<Object>();
         TypeReference<List<Map<String, Object>>> retType = new TypeReference<List<Map<String, Object>>>() {};
-        List<Map<String, Object>> res = caller.jsonrpcCall("KBSolrUtil.status", args, retType, true, false, jsonRpcContext, this.serviceVersion);
+        List<Map<String, Object>> res = jsonrpcCall("KBSolrUtil.status", args, retType, true, false, jsonRpcContext, this.serviceVersion);
         return res.get(0);
     }
 }
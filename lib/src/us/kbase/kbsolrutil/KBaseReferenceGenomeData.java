@@ -15,6 +15,7 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
  * <p>Original spec-file type: KBaseReferenceGenomeData</p>
  * <pre>
  * Structure of a single KBase genome in the input list of genomes of the index_genomes_in_solr function.
+ * string save_date - the date the genome object was saved to the workspace, e.g. 2017-06-20T17:08:24+0000
  * </pre>
  * 
  */
@@ -29,7 +30,8 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
     "name",
     "version",
     "source",
-    "domain"
+    "domain",
+    "save_date"
 })
 public class KBaseReferenceGenomeData {
 
@@ -51,6 +53,8 @@ public class KBaseReferenceGenomeData {
     private String source;
     @JsonProperty("domain")
     private String domain;
+    @JsonProperty("save_date")
+    private String saveDate;
     private Map<String, Object> additionalProperties = new HashMap<String, Object>();
 
     @JsonProperty("ref")
@@ -188,6 +192,21 @@ public class KBaseReferenceGenomeData {
         return this;
     }
 
+    @JsonProperty("save_date")
+    public String getSaveDate() {
+        return saveDate;
+    }
+
+    @JsonProperty("save_date")
+    public void setSaveDate(String saveDate) {
+        this.saveDate = saveDate;
+    }
+
+    public KBaseReferenceGenomeData withSaveDate(String saveDate) {
+        this.saveDate = saveDate;
+        return this;
+    }
+
     @JsonAnyGetter
     public Map<String, Object> getAdditionalProperties() {
         return this.additionalProperties;
@@ -200,7 +219,7 @@ public class KBaseReferenceGenomeData {
 
     @Override
     public String toString() {
-        return ((((((((((((((((((((("KBaseReferenceGenomeData"+" [ref=")+ ref)+", id=")+ id)+", workspaceName=")+ workspaceName)+", sourceId=")+ sourceId)+", accession=")+ accession)+", name=")+ name)+", version=")+ version)+", source=")+ source)+", domain=")+ domain)+", additionalProperties=")+ additionalProperties)+"]");
+        return ((((((((((((((((((((((("KBaseReferenceGenomeData"+" [ref=")+ ref)+", id=")+ id)+", workspaceName=")+ workspaceName)+", sourceId=")+ sourceId)+", accession=")+ accession)+", name=")+ name)+", version=")+ version)+", source=")+ source)+", domain=")+ domain)+", saveDate=")+ saveDate)+", additionalProperties=")+ additionalProperties)+"]");
     }
 
 }
@@ -0,0 +1,100 @@
+package us.kbase.kbsolrutil;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A thread-safe HDR-style histogram of call latencies.</p>
+ * <pre>
+ * Latencies are counted in microseconds, from 0 to about 2^40 (12 days). Values below
+ * SUB_BUCKETS have a bucket each, then every power of two is split into SUB_BUCKETS buckets
+ * of equal width, so a percentile is reported within 1/SUB_BUCKETS (6.25%) of the recorded
+ * value whatever its magnitude, in a fixed array of a few hundred counters. This is the same
+ * bucketing as the service's KBSolrUtil::Metrics, so client and service percentiles compare.
+ * Recording is lock-free; a percentile read while calls are recorded is approximate.
+ * </pre>
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    public static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_MICROS = (1L << (MAX_EXPONENT + 1)) - 1;
+
+    private final AtomicLongArray buckets =
+            new AtomicLongArray(bucketIndex(MAX_MICROS) + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /** Record one call.
+     * @param nanos the latency of the call in nanoseconds.
+     */
+    public void record(long nanos) {
+        long micros = Math.min(MAX_MICROS, Math.max(0, (nanos + 500) / 1000));
+        buckets.incrementAndGet(bucketIndex(micros));
+        count.incrementAndGet();
+        sumMicros.addAndGet(micros);
+        for (long max = maxMicros.get(); micros > max; max = maxMicros.get()) {
+            if (maxMicros.compareAndSet(max, micros)) {
+                break;
+            }
+        }
+    }
+
+    /** @return the number of calls recorded. */
+    public long getCount() {
+        return count.get();
+    }
+
+    /** @return the mean latency in milliseconds, 0 if no call was recorded. */
+    public double getMeanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : sumMicros.get() / 1000.0 / n;
+    }
+
+    /** @return the highest latency recorded in milliseconds. */
+    public double getMaxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /** Get a percentile of the latencies.
+     * @param percentile the percentile, from 0 to 100, e.g. 99.9.
+     * @return the latency in milliseconds below which that percentage of the calls fall,
+     * 0 if no call was recorded.
+     */
+    public double getPercentileMillis(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        double rank = percentile / 100 * n;
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen > 0 && seen >= rank) {
+                return Math.min(bucketValue(i), maxMicros.get()) / 1000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((micros >> shift) - SUB_BUCKETS);
+    }
+
+    // the highest latency in microseconds of a bucket
+    static long bucketValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,424 @@
+package us.kbase.kbsolrutil;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import javax.net.ssl.SSLContext;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.http.ssl.TrustStrategy;
+import org.apache.http.util.EntityUtils;
+import us.kbase.auth.AuthToken;
+import us.kbase.common.service.JsonClientException;
+import us.kbase.common.service.RpcContext;
+import us.kbase.common.service.ServerException;
+import us.kbase.common.service.UObject;
+import us.kbase.common.service.UnauthorizedException;
+
+/**
+ * <p>A JSON-RPC 1.1 transport for KBSolrUtilClient that keeps a pool of persistent
+ * (keep-alive) HTTP connections to the service.</p>
+ * <pre>
+ * JsonClientCaller opens an HttpURLConnection per call and relies on the JVM-wide
+ * keep-alive cache, which keeps at most http.maxConnections (default 5) idle connections
+ * per host. This caller owns its pool instead:
+ *     - maxPerHost caps the connections open to the service host at any time
+ *     - maxTotal caps the connections across all hosts
+ *     - connections idle for longer than idleTimeoutMillis are closed by a background evictor
+ * It also compresses the traffic: responses are requested with Accept-Encoding: gzip, deflate
+ * and inflated as they are read, and request bodies of at least gzipMinBytes bytes (e.g. large
+ * index_in_solr batches) are sent gzipped. Request compression is off by default since the
+ * service must be one that inflates request bodies; enable it with setGzipMinBytes.
+ * Like JsonClientCaller, it refuses to send the token over plain http unless insecure
+ * connections are allowed, and trusts self-signed certificates only when told to.
+ * Use it through {@link KBSolrUtilClient#usePooledConnections(int, int, long)}.
+ * </pre>
+ */
+public class PooledJsonClientCaller implements Closeable {
+
+    public static final int DEFAULT_MAX_PER_HOST = 32;
+    public static final int DEFAULT_MAX_TOTAL = 64;
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60000;
+    /** Request bodies are not compressed unless a threshold is set. */
+    public static final int GZIP_DISABLED = -1;
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+
+    private final URL serviceUrl;
+    private final AuthToken token;
+    private final boolean allSSLCertificatesTrusted;
+    private final int maxPerHost;
+    private final int maxTotal;
+    private final long idleTimeoutMillis;
+    private final ObjectMapper mapper = UObject.getMapper();
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final IdleConnectionEvictor evictor;
+    private final CloseableHttpClient httpClient;
+    private volatile Integer connectionReadTimeOut = 30 * 60 * 1000;
+    private volatile int gzipMinBytes = GZIP_DISABLED;
+    private volatile boolean insecureHttpConnectionAllowed = false;
+    private volatile ClientMetrics metrics = null;
+
+    /** Constructs a pooled caller that sends the token over https only and checks the
+     * certificates of the service.
+     * @param url the URL of the service.
+     * @param token the user's authorization token, or null if none.
+     * @param maxPerHost the maximum number of connections to the service host.
+     * @param maxTotal the maximum number of connections in the pool.
+     * @param idleTimeoutMillis the time after which an idle connection is closed.
+     */
+    public PooledJsonClientCaller(URL url, AuthToken token, int maxPerHost, int maxTotal,
+            long idleTimeoutMillis) {
+        this(url, token, maxPerHost, maxTotal, idleTimeoutMillis, false, false);
+    }
+
+    /** Constructs a pooled caller.
+     * @param url the URL of the service.
+     * @param token the user's authorization token, or null if none.
+     * @param maxPerHost the maximum number of connections to the service host.
+     * @param maxTotal the maximum number of connections in the pool.
+     * @param idleTimeoutMillis the time after which an idle connection is closed.
+     * @param insecureHttpConnectionAllowed true to allow the token to be sent over http.
+     * @param allSSLCertificatesTrusted true to trust all certificates, including self-signed
+     * ones, and not to verify the host names of the certificates.
+     */
+    public PooledJsonClientCaller(URL url, AuthToken token, int maxPerHost, int maxTotal,
+            long idleTimeoutMillis, boolean insecureHttpConnectionAllowed,
+            boolean allSSLCertificatesTrusted) {
+        if (maxPerHost < 1 || maxTotal < maxPerHost) {
+            throw new IllegalArgumentException(
+                    "maxPerHost must be at least 1 and no more than maxTotal");
+        }
+        if (idleTimeoutMillis < 1) {
+            throw new IllegalArgumentException("idleTimeoutMillis must be at least 1");
+        }
+        this.serviceUrl = url;
+        this.token = token;
+        this.insecureHttpConnectionAllowed = insecureHttpConnectionAllowed;
+        this.allSSLCertificatesTrusted = allSSLCertificatesTrusted;
+        this.maxPerHost = maxPerHost;
+        this.maxTotal = maxTotal;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        connectionManager = allSSLCertificatesTrusted ?
+                new PoolingHttpClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .register("https", trustAllSocketFactory())
+                        .build()) :
+                new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(maxPerHost);
+        connectionManager.setMaxTotal(maxTotal);
+        // re-check a pooled connection before reuse if the server may have closed it meanwhile
+        connectionManager.setValidateAfterInactivity((int) Math.min(idleTimeoutMillis, 2000));
+        // the builder's defaults send Accept-Encoding: gzip, deflate and inflate the responses
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .build();
+        evictor = new IdleConnectionEvictor(connectionManager,
+                Math.max(1, idleTimeoutMillis / 2), TimeUnit.MILLISECONDS,
+                idleTimeoutMillis, TimeUnit.MILLISECONDS);
+        evictor.start();
+    }
+
+    /** Get the URL of the service with which this caller communicates.
+     * @return the service URL.
+     */
+    public URL getURL() {
+        return serviceUrl;
+    }
+
+    /** Set whether the token may be sent over insecure http (vs https) connections.
+     * @param allowed true to allow insecure connections. Default false.
+     */
+    public void setInsecureHttpConnectionAllowed(boolean allowed) {
+        this.insecureHttpConnectionAllowed = allowed;
+    }
+
+    /** Check if this caller allows insecure http (vs https) connections.
+     * @return true if insecure connections are allowed.
+     */
+    public boolean isInsecureHttpConnectionAllowed() {
+        return insecureHttpConnectionAllowed;
+    }
+
+    /** Check if this caller trusts all SSL certificates, including self-signed
+     * certificates. It is fixed when the pool is created.
+     * @return true if all certificates are trusted.
+     */
+    public boolean isAllSSLCertificatesTrusted() {
+        return allSSLCertificatesTrusted;
+    }
+
+    /** @return the maximum number of connections to the service host. */
+    public int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    /** @return the maximum number of connections in the pool. */
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /** @return the time after which an idle connection is closed. */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /** Set the timeout between establishing a connection to a server and
+     * receiving a response. A value of zero or null implies no timeout.
+     * @param milliseconds the milliseconds to wait before timing out when
+     * attempting to read from a server.
+     */
+    public void setConnectionReadTimeOut(Integer milliseconds) {
+        this.connectionReadTimeOut = milliseconds;
+    }
+
+    /** Set the size from which request bodies are sent gzipped. Small requests
+     * are sent as they are, as compressing them costs more than it saves.
+     * @param bytes the minimum size of a compressed request body in bytes, or
+     * GZIP_DISABLED to send all requests uncompressed.
+     */
+    public void setGzipMinBytes(int bytes) {
+        this.gzipMinBytes = bytes;
+    }
+
+    /** Get the size from which request bodies are sent gzipped.
+     * @return the minimum size in bytes, or GZIP_DISABLED.
+     */
+    public int getGzipMinBytes() {
+        return gzipMinBytes;
+    }
+
+    /** Set the metrics the request and response bytes of each call are added to.
+     * @param metrics the metrics, or null to count nothing.
+     */
+    public void setMetrics(ClientMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /** Make a JSON-RPC call over a pooled connection. The arguments mirror
+     * JsonClientCaller.jsonrpcCall.
+     * @param method the fully qualified method name, e.g. KBSolrUtil.search_solr.
+     * @param arg the list of method arguments.
+     * @param cls the type of the result list.
+     * @param ret true if the method returns a value.
+     * @param authRequired true if the method requires authentication.
+     * @param context optional RPC context, sent as the request context.
+     * @param serviceVersion ignored; the service URL is used as given.
+     * @return the result of the call, or null if the method returns nothing.
+     * @throws IOException if an IO exception occurs.
+     * @throws JsonClientException if a JSON RPC exception occurs.
+     */
+    public <ARG, RET> RET jsonrpcCall(String method, ARG arg, TypeReference<RET> cls,
+            boolean ret, boolean authRequired, RpcContext[] context, String serviceVersion)
+            throws IOException, JsonClientException {
+        if ((authRequired || token != null) && !insecureHttpConnectionAllowed &&
+                !"https".equalsIgnoreCase(serviceUrl.getProtocol())) {
+            throw new UnauthorizedException("RPC method required authentication shouldn't be called " +
+                    "through unsecured http, use https instead or call setAuthAllowedForHttp(true) " +
+                    "for your client");
+        }
+        if (authRequired && token == null) {
+            throw new UnauthorizedException("RPC method requires authentication but credential " +
+                    "wasn't provided to client");
+        }
+        HttpPost post;
+        try {
+            post = new HttpPost(serviceUrl.toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Invalid service URL " + serviceUrl, e);
+        }
+        Integer readTimeOut = connectionReadTimeOut;
+        post.setConfig(RequestConfig.custom()
+                .setConnectTimeout(CONNECT_TIMEOUT_MILLIS)
+                .setSocketTimeout(readTimeOut == null ? 0 : readTimeOut)
+                .build());
+        if (token != null) {
+            post.setHeader("Authorization", token.getToken());
+        }
+        byte[] body = encodeRequest(method, arg, context);
+        int minBytes = gzipMinBytes;
+        if (minBytes >= 0 && body.length >= minBytes) {
+            // compressed up front rather than with GzipCompressingEntity, so the request keeps
+            // a Content-Length instead of a chunked body
+            body = gzip(body);
+            post.setHeader("Content-Encoding", "gzip");
+        }
+        post.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+        try (CloseableHttpResponse response = httpClient.execute(post)) {
+            HttpEntity entity = response.getEntity();
+            if (entity == null) {
+                throw new JsonClientException("Server returned no content, HTTP status " +
+                        response.getStatusLine().getStatusCode());
+            }
+            CountingInputStream is = new CountingInputStream(entity.getContent());
+            try {
+                RET result = decodeResponse(is, cls, ret,
+                        response.getStatusLine().getStatusCode());
+                // drain anything left so the connection goes back to the pool
+                EntityUtils.consume(entity);
+                return result;
+            } finally {
+                is.close();
+                ClientMetrics m = metrics;
+                if (m != null) {
+                    m.addBytes(method, body.length, is.count);
+                }
+            }
+        }
+    }
+
+    /** Close all pooled connections and stop the idle connection evictor. */
+    @Override
+    public void close() throws IOException {
+        evictor.shutdown();
+        httpClient.close();
+    }
+
+    // trusts any certificate and host name, as JsonClientCaller does when all certificates are trusted
+    private static SSLConnectionSocketFactory trustAllSocketFactory() {
+        SSLContext context;
+        try {
+            context = SSLContexts.custom().loadTrustMaterial(null, new TrustStrategy() {
+                @Override
+                public boolean isTrusted(X509Certificate[] chain, String authType) {
+                    return true;
+                }
+            }).build();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not create an SSL context trusting all certificates", e);
+        }
+        return new SSLConnectionSocketFactory(context, NoopHostnameVerifier.INSTANCE);
+    }
+
+    private byte[] encodeRequest(String method, Object arg, RpcContext[] context)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonGenerator g = mapper.getFactory().createGenerator(bytes)) {
+            g.writeStartObject();
+            g.writeFieldName("params");
+            mapper.writeValue(g, arg);
+            g.writeStringField("method", method);
+            g.writeStringField("version", "1.1");
+            g.writeStringField("id", Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE));
+            if (context != null && context.length > 0 && context[0] != null) {
+                g.writeFieldName("context");
+                mapper.writeValue(g, context[0]);
+            }
+            g.writeEndObject();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(bytes, 8192)) {
+            gz.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private <RET> RET decodeResponse(InputStream is, TypeReference<RET> cls, boolean ret,
+            int httpStatus) throws IOException, JsonClientException {
+        RET result = null;
+        JsonNode error = null;
+        try (JsonParser p = mapper.getFactory().createParser(is)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonClientException("Server response is not a JSON object, HTTP status " +
+                        httpStatus);
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                p.nextToken();
+                if ("result".equals(field) && p.getCurrentToken() != JsonToken.VALUE_NULL) {
+                    // bind the result straight from the stream, without an intermediate tree
+                    result = ret ? mapper.<RET>readValue(p, cls) : null;
+                    if (!ret) {
+                        p.skipChildren();
+                    }
+                } else if ("error".equals(field) && p.getCurrentToken() != JsonToken.VALUE_NULL) {
+                    error = mapper.readTree(p);
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+        if (error != null) {
+            throw new ServerException(textOrNull(error, "message"),
+                    error.path("code").asInt(0), textOrNull(error, "name"),
+                    error.has("error") ? error.path("error").asText() : textOrNull(error, "data"));
+        }
+        if (ret && result == null) {
+            throw new JsonClientException("An unknown server error occured, HTTP status " +
+                    httpStatus);
+        }
+        return result;
+    }
+
+    private static String textOrNull(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    // counts the (inflated) response bytes read by the decoder
+    private static class CountingInputStream extends FilterInputStream {
+        private long count = 0;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -2,6 +2,7 @@
 package us.kbase.kbsolrutil;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import javax.annotation.Generated;
 import com.fasterxml.jackson.annotation.JsonAnyGetter;
@@ -40,6 +41,10 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
  *         search_query= { q => "*" };
  * string result_format - the format of the search result, 'xml' as the default, can be 'json', 'csv', etc.
  * string group_option - the name of the field to be grouped for the result
+ * list<string> filter_queries - SOLR queries that restrict the result without affecting its scores, each sent
+ *                         as a separate fq parameter, e.g. ['domain:"Bacteria"', 'rank:("species" OR "strain")'];
+ *                         SOLR caches the matching docs of each one in its filterCache, so exact-match restrictions
+ *                         that recur across searches are better put here than in search_query
  * </pre>
  * 
  */
@@ -50,7 +55,8 @@ import com.fasterxml.jackson.annotation.JsonPropertyOrder;
     "search_param",
     "search_query",
     "result_format",
-    "group_option"
+    "group_option",
+    "filter_queries"
 })
 public class SearchSolrParams {
 
@@ -64,6 +70,8 @@ public class SearchSolrParams {
     private java.lang.String resultFormat;
     @JsonProperty("group_option")
     private java.lang.String groupOption;
+    @JsonProperty("filter_queries")
+    private List<String> filterQueries;
     private Map<java.lang.String, Object> additionalProperties = new HashMap<java.lang.String, Object>();
 
     @JsonProperty("search_core")
@@ -141,6 +149,21 @@ public class SearchSolrParams {
         return this;
     }
 
+    @JsonProperty("filter_queries")
+    public List<String> getFilterQueries() {
+        return filterQueries;
+    }
+
+    @JsonProperty("filter_queries")
+    public void setFilterQueries(List<String> filterQueries) {
+        this.filterQueries = filterQueries;
+    }
+
+    public SearchSolrParams withFilterQueries(List<String> filterQueries) {
+        this.filterQueries = filterQueries;
+        return this;
+    }
+
     @JsonAnyGetter
     public Map<java.lang.String, Object> getAdditionalProperties() {
         return this.additionalProperties;
@@ -153,7 +176,7 @@ public class SearchSolrParams {
 
     @Override
     public java.lang.String toString() {
-        return ((((((((((((("SearchSolrParams"+" [searchCore=")+ searchCore)+", searchParam=")+ searchParam)+", searchQuery=")+ searchQuery)+", resultFormat=")+ resultFormat)+", groupOption=")+ groupOption)+", additionalProperties=")+ additionalProperties)+"]");
+        return ((((((((((((((("SearchSolrParams"+" [searchCore=")+ searchCore)+", searchParam=")+ searchParam)+", searchQuery=")+ searchQuery)+", resultFormat=")+ resultFormat)+", groupOption=")+ groupOption)+", filterQueries=")+ filterQueries)+", additionalProperties=")+ additionalProperties)+"]");
     }
 
 }
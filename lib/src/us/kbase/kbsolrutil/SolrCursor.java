@@ -0,0 +1,228 @@
+package us.kbase.kbsolrutil;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * <p>Walks all the documents of a Solr core that match a query, one page at a time.</p>
+ * <pre>
+ * Pages are fetched through search_solr with Solr's cursorMark deep paging rather than
+ * start/rows, so fetching page N costs the same as fetching page 1. Cursor paging needs a
+ * stable sort that ends with the core's unique key field; if the sort does not include the
+ * unique key, it is appended as a tie-breaker.
+ * Only the current page is held in memory, and each document is bound to the record type
+ * (e.g. SolrGenomeFeatureData or SolrTaxonData) as it is returned.
+ * Example - walk all the features of a genome:
+ *     Map&lt;String, String&gt; query = new HashMap&lt;String, String&gt;();
+ *     query.put("genome_id", "GCF_000518705.1");
+ *     for (SolrGenomeFeatureData f : SolrCursor.genomeFeatures(client, "GenomeFeatures_prod", query)) {
+ *         ...
+ *     }
+ * </pre>
+ */
+public class SolrCursor<T> implements Iterator<T>, Iterable<T> {
+
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+    /** The unique key field of the GenomeFeatures cores. */
+    public static final String GENOME_FEATURE_KEY = "genome_feature_id";
+    /** The unique key field of the taxonomy cores. */
+    public static final String TAXON_KEY = "taxonomy_id";
+
+    private static final String CURSOR_START = "*";
+
+    private final KBSolrUtilClient client;
+    private final String solrCore;
+    private final Map<String, String> searchQuery;
+    private final Map<String, String> searchParam;
+    private final Class<T> type;
+    private List<String> filterQueries = null;
+
+    private final ArrayDeque<T> page = new ArrayDeque<T>();
+    private String cursorMark = CURSOR_START;
+    private boolean done = false;
+    private long numFound = -1;
+    private long pagesFetched = 0;
+
+    /** Unchecked wrapper for the IOException or JsonClientException thrown
+     * while fetching a page, since Iterator methods cannot throw checked
+     * exceptions.
+     */
+    public static class SolrCursorException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public SolrCursorException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /** Constructs a cursor over the documents matching a query.
+     * @param client the client used to run the searches.
+     * @param solrCore the name of the solr core to be searched.
+     * @param searchQuery the search_query of search_solr, e.g. {genome_id => 'GCF_000518705.1'} or {q => '*'}.
+     * @param uniqueKey the unique key field of the core, used as the sort tie-breaker.
+     * @param sort the sort, e.g. 'genome_id asc', or null to sort by the unique key only.
+     * @param fields the comma-separated list of fields to return, or null for all stored fields.
+     * @param pageSize the number of documents fetched per search_solr call.
+     * @param type the record type each document is bound to.
+     */
+    public SolrCursor(KBSolrUtilClient client, String solrCore, Map<String, String> searchQuery,
+            String uniqueKey, String sort, String fields, int pageSize, Class<T> type) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be at least 1");
+        }
+        if (uniqueKey == null || uniqueKey.isEmpty()) {
+            throw new IllegalArgumentException("uniqueKey must be specified");
+        }
+        this.client = client;
+        this.solrCore = solrCore;
+        this.searchQuery = searchQuery == null || searchQuery.isEmpty() ?
+                Collections.singletonMap("q", "*:*") : searchQuery;
+        this.type = type;
+        this.searchParam = new HashMap<String, String>();
+        this.searchParam.put("rows", Integer.toString(pageSize));
+        this.searchParam.put("sort", stableSort(sort, uniqueKey));
+        if (fields != null && !fields.isEmpty()) {
+            this.searchParam.put("fl", fields);
+        }
+    }
+
+    /** Constructs a cursor over the genome features matching a query, with the default page size.
+     * @param client the client used to run the searches.
+     * @param solrCore the name of the GenomeFeatures core, e.g. GenomeFeatures_prod.
+     * @param searchQuery the search_query of search_solr.
+     * @return the cursor.
+     */
+    public static SolrCursor<SolrGenomeFeatureData> genomeFeatures(KBSolrUtilClient client,
+            String solrCore, Map<String, String> searchQuery) {
+        return new SolrCursor<SolrGenomeFeatureData>(client, solrCore, searchQuery,
+                GENOME_FEATURE_KEY, null, null, DEFAULT_PAGE_SIZE, SolrGenomeFeatureData.class);
+    }
+
+    /** Constructs a cursor over the genome features matching a query, returned as the
+     * memory-lean CompactGenomeFeatureData, with the default page size.
+     * @param client the client used to run the searches.
+     * @param solrCore the name of the GenomeFeatures core, e.g. GenomeFeatures_prod.
+     * @param searchQuery the search_query of search_solr.
+     * @return the cursor.
+     */
+    public static SolrCursor<CompactGenomeFeatureData> compactGenomeFeatures(KBSolrUtilClient client,
+            String solrCore, Map<String, String> searchQuery) {
+        return new SolrCursor<CompactGenomeFeatureData>(client, solrCore, searchQuery,
+                GENOME_FEATURE_KEY, null, null, DEFAULT_PAGE_SIZE, CompactGenomeFeatureData.class);
+    }
+
+    /** Constructs a cursor over the taxa matching a query, with the default page size.
+     * @param client the client used to run the searches.
+     * @param solrCore the name of the taxonomy core, e.g. taxonomy_prod.
+     * @param searchQuery the search_query of search_solr.
+     * @return the cursor.
+     */
+    public static SolrCursor<SolrTaxonData> taxa(KBSolrUtilClient client,
+            String solrCore, Map<String, String> searchQuery) {
+        return new SolrCursor<SolrTaxonData>(client, solrCore, searchQuery,
+                TAXON_KEY, null, null, DEFAULT_PAGE_SIZE, SolrTaxonData.class);
+    }
+
+    /** Restrict the documents with filter queries, e.g. those of a {@link SolrQueryBuilder};
+     * to be called before the first page is fetched.
+     * @param filterQueries the filter_queries of search_solr.
+     * @return this cursor.
+     */
+    public SolrCursor<T> withFilterQueries(List<String> filterQueries) {
+        if (pagesFetched > 0) {
+            throw new IllegalStateException("The cursor has already fetched a page");
+        }
+        this.filterQueries = filterQueries;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (page.isEmpty() && !done) {
+            fetchPage();
+        }
+        return !page.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.poll();
+    }
+
+    /** @return this cursor; it can be iterated only once. */
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    /** @return a sequential stream over the remaining documents. */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /** @return the total number of matching documents, or -1 before the first page is fetched. */
+    public long getNumFound() {
+        return numFound;
+    }
+
+    /** @return the number of pages fetched so far. */
+    public long getPagesFetched() {
+        return pagesFetched;
+    }
+
+    private void fetchPage() {
+        Map<String, String> param = new HashMap<String, String>(searchParam);
+        param.put("cursorMark", cursorMark);
+        SearchSolrParams params = new SearchSolrParams()
+                .withSearchCore(solrCore)
+                .withSearchParam(param)
+                .withSearchQuery(searchQuery)
+                .withResultFormat("json")
+                .withGroupOption("")
+                .withFilterQueries(filterQueries);
+        SolrSearchResponse<T> out;
+        try {
+            out = client.searchSolr(params, type);
+        } catch (Exception e) {
+            throw new SolrCursorException("Error fetching page " + (pagesFetched + 1) +
+                    " of core " + solrCore + " at cursorMark " + cursorMark, e);
+        }
+        pagesFetched++;
+        if (out.getNumFound() != null) {
+            numFound = out.getNumFound();
+        }
+        page.addAll(out.getDocs());
+        String next = out.getNextCursorMark();
+        if (next == null || next.equals(cursorMark)) {
+            done = true;
+        } else {
+            cursorMark = next;
+        }
+    }
+
+    static String stableSort(String sort, String uniqueKey) {
+        if (sort == null || sort.trim().isEmpty()) {
+            return uniqueKey + " asc";
+        }
+        for (String clause : sort.split(",")) {
+            String[] parts = clause.trim().split("\\s+");
+            if (parts[0].equals(uniqueKey)) {
+                return sort;
+            }
+        }
+        return sort + "," + uniqueKey + " asc";
+    }
+}
@@ -0,0 +1,300 @@
+package us.kbase.kbsolrutil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Builds the search_query and the filter_queries of a search_solr call from typed clauses,
+ * keeping the clauses that score the docs apart from those that only restrict them.</p>
+ * <pre>
+ * The scoring clauses (must, should, mustNot, mustPrefix) are joined into q. The filters
+ * (filter, filterAnyOf, filterRange, exclude, excludeAnyOf, filterPrefix) become one fq each:
+ * Solr does not score them and caches the doc set of each one in its filterCache, so a filter
+ * that recurs across searches (domain, object_type, workspace_name, a genome...) is evaluated
+ * once and then intersected with q from the cache. Put every exact-match restriction in a
+ * filter and only what should rank the docs in q.
+ * A filter is written the same way every time it is built - the values of a term set are
+ * sorted and deduplicated, and values are quoted and escaped - so equal filters built in
+ * different places hit the same cache entry. Term sets of TERMS_PARSER_MIN_VALUES values or
+ * more use Solr's terms query parser (Solr 4.10 and later) instead of a boolean query, which
+ * is faster to build for large sets and not bound by maxBooleanClauses.
+ * Example - the protein-coding features of a few genomes, ranked by function:
+ *     SolrQueryBuilder query = new SolrQueryBuilder()
+ *         .should("function", "ABC transporter")
+ *         .filterAnyOf("genome_id", Arrays.asList("GCF_000518705.1", "GCF_000005845.2"))
+ *         .filter("feature_type", "CDS")
+ *         .filterRange("location_begin", 1000, null)
+ *         .exclude("object_type", "KBaseGenomes.Genome");
+ *     SolrSearchResponse&lt;SolrGenomeFeatureData&gt; out = client.searchSolr(
+ *         query.toParams("GenomeFeatures_prod"), SolrGenomeFeatureData.class);
+ * </pre>
+ */
+public class SolrQueryBuilder {
+
+    /** The smallest term set written with the terms query parser. */
+    public static final int TERMS_PARSER_MIN_VALUES = 64;
+    /** The query of a search without scoring clauses. */
+    public static final String MATCH_ALL = "*:*";
+
+    private static final Pattern FIELD_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_.\\-]*");
+    private static final Pattern SPECIAL_CHARS = Pattern.compile("([+\\-&|!(){}\\[\\]^\"~*?:\\\\/\\s])");
+    private static final String[] TERMS_SEPARATORS = {",", "|", ";", "\u001f"};
+
+    private final List<String> clauses = new ArrayList<String>();
+    private final Set<String> filters = new LinkedHashSet<String>();
+    private boolean scored = false;
+
+    /** A clause every doc must match, scored on the value, e.g. must("scientific_name", "Escherichia coli"). */
+    public SolrQueryBuilder must(String field, Object value) {
+        return addClause("+" + term(field, value), true);
+    }
+
+    /** A clause that raises the score of the docs matching it without being required. */
+    public SolrQueryBuilder should(String field, Object value) {
+        return addClause(term(field, value), true);
+    }
+
+    /** A clause no doc may match; it does not score the docs, see also {@link #exclude(String, Object)}. */
+    public SolrQueryBuilder mustNot(String field, Object value) {
+        return addClause("-" + term(field, value), false);
+    }
+
+    /** A required clause matching the values that start with a prefix. */
+    public SolrQueryBuilder mustPrefix(String field, String prefix) {
+        return addClause("+" + prefixTerm(field, prefix), true);
+    }
+
+    /** A clause written in the Solr query syntax, e.g. '+scientific_lineage:(Bacteria AND Proteobacteria)'. */
+    public SolrQueryBuilder clause(String query) {
+        return addClause(query, true);
+    }
+
+    /** A filter the docs must match exactly, e.g. filter("domain", "Bacteria"). */
+    public SolrQueryBuilder filter(String field, Object value) {
+        return addFilter(term(field, value));
+    }
+
+    /** A filter the docs match with any of a set of values. An empty set matches no doc. */
+    public SolrQueryBuilder filterAnyOf(String field, Collection<?> values) {
+        return addFilter(termSet(field, values));
+    }
+
+    /** A filter on an inclusive range; a null bound leaves that end open. */
+    public SolrQueryBuilder filterRange(String field, Object from, Object to) {
+        return filterRange(field, from, true, to, true);
+    }
+
+    /** A filter on a range whose ends are each inclusive or exclusive; a null bound leaves that end open. */
+    public SolrQueryBuilder filterRange(String field, Object from, boolean fromInclusive,
+            Object to, boolean toInclusive) {
+        return addFilter(checkField(field) + ":" + (fromInclusive ? "[" : "{") + bound(from) + " TO " +
+                bound(to) + (toInclusive ? "]" : "}"));
+    }
+
+    /** A filter matching the values that start with a prefix. */
+    public SolrQueryBuilder filterPrefix(String field, String prefix) {
+        return addFilter(prefixTerm(field, prefix));
+    }
+
+    /** A filter the docs must not match, e.g. exclude("deleted", 1). */
+    public SolrQueryBuilder exclude(String field, Object value) {
+        return addFilter("-" + term(field, value));
+    }
+
+    /** A filter the docs match with none of a set of values. An empty set excludes no doc. */
+    public SolrQueryBuilder excludeAnyOf(String field, Collection<?> values) {
+        if (values.isEmpty()) {
+            return this;
+        }
+        String set = termSet(field, values);
+        // the terms parser cannot be negated with a '-' prefix
+        return addFilter(set.startsWith("{!") ? "-_query_:\"" + escapePhrase(set) + "\"" : "-" + set);
+    }
+
+    /** A filter written in the Solr query syntax, e.g. '{!geofilt sfield=location pt=45,-93 d=5}'. */
+    public SolrQueryBuilder filterQuery(String query) {
+        return addFilter(query);
+    }
+
+    /** @return q, or *:* when there is no scoring clause. */
+    public String getQuery() {
+        if (clauses.isEmpty()) {
+            return MATCH_ALL;
+        }
+        StringBuilder q = new StringBuilder();
+        if (!scored) {
+            // a query of prohibited clauses only must be given something to prohibit them from
+            q.append(MATCH_ALL);
+        }
+        for (String c : clauses) {
+            q.append(q.length() == 0 ? "" : " ").append(c);
+        }
+        return q.toString();
+    }
+
+    /** @return the filters, one fq each, in the order they were added. */
+    public List<String> getFilterQueries() {
+        return new ArrayList<String>(filters);
+    }
+
+    /** @return the search_query of search_solr, {q => getQuery()}. */
+    public Map<String, String> toSearchQuery() {
+        Map<String, String> searchQuery = new HashMap<String, String>();
+        searchQuery.put("q", getQuery());
+        return searchQuery;
+    }
+
+    /** Set the search_query and the filter_queries of search_solr parameters; the filter_queries
+     * already set are kept.
+     * @param params the parameters to be completed.
+     * @return the parameters.
+     */
+    public SearchSolrParams applyTo(SearchSolrParams params) {
+        Set<String> fq = new LinkedHashSet<String>();
+        if (params.getFilterQueries() != null) {
+            fq.addAll(params.getFilterQueries());
+        }
+        fq.addAll(filters);
+        return params.withSearchQuery(toSearchQuery())
+                .withFilterQueries(new ArrayList<String>(fq));
+    }
+
+    /** @return the search_solr parameters of a JSON search of a core. */
+    public SearchSolrParams toParams(String searchCore) {
+        return applyTo(new SearchSolrParams()
+                .withSearchCore(searchCore)
+                .withSearchParam(new HashMap<String, String>())
+                .withResultFormat("json")
+                .withGroupOption(""));
+    }
+
+    @Override
+    public String toString() {
+        return "SolrQueryBuilder [q=" + getQuery() + ", fq=" + filters + "]";
+    }
+
+    /** Escape the characters of a term that have a special meaning in the Solr query syntax. */
+    public static String escapeTerm(String term) {
+        return SPECIAL_CHARS.matcher(term).replaceAll("\\\\$1");
+    }
+
+    private SolrQueryBuilder addClause(String clause, boolean scoring) {
+        clauses.add(clause);
+        scored |= scoring;
+        return this;
+    }
+
+    private SolrQueryBuilder addFilter(String filter) {
+        if (filter == null || filter.trim().isEmpty()) {
+            throw new IllegalArgumentException("Empty filter query");
+        }
+        filters.add(filter);
+        return this;
+    }
+
+    private static String term(String field, Object value) {
+        return checkField(field) + ":" + value(value);
+    }
+
+    private static String prefixTerm(String field, String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            throw new IllegalArgumentException("Empty prefix for field " + field);
+        }
+        return checkField(field) + ":" + escapeTerm(prefix) + "*";
+    }
+
+    private static String termSet(String field, Collection<?> values) {
+        checkField(field);
+        if (values.isEmpty()) {
+            return "-" + MATCH_ALL;
+        }
+        if (values.size() >= TERMS_PARSER_MIN_VALUES) {
+            TreeSet<String> raw = new TreeSet<String>();
+            for (Object v : values) {
+                raw.add(String.valueOf(checkValue(v)));
+            }
+            String separator = separator(raw);
+            if (separator != null) {
+                StringBuilder set = new StringBuilder("{!terms f=").append(field);
+                if (!separator.equals(",")) {
+                    set.append(" separator=\"").append(separator).append("\"");
+                }
+                set.append("}");
+                boolean first = true;
+                for (String v : raw) {
+                    set.append(first ? "" : separator).append(v);
+                    first = false;
+                }
+                return set.toString();
+            }
+        }
+        TreeSet<String> terms = new TreeSet<String>();
+        for (Object v : values) {
+            terms.add(value(v));
+        }
+        if (terms.size() == 1) {
+            return field + ":" + terms.first();
+        }
+        StringBuilder set = new StringBuilder(field).append(":(");
+        boolean first = true;
+        for (String t : terms) {
+            set.append(first ? "" : " OR ").append(t);
+            first = false;
+        }
+        return set.append(")").toString();
+    }
+
+    // the first separator that none of the values contains
+    private static String separator(Collection<String> values) {
+        for (String s : TERMS_SEPARATORS) {
+            boolean used = false;
+            for (String v : values) {
+                if (v.contains(s)) {
+                    used = true;
+                    break;
+                }
+            }
+            if (!used) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    private static String value(Object value) {
+        checkValue(value);
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        return "\"" + escapePhrase(value.toString()) + "\"";
+    }
+
+    private static String bound(Object bound) {
+        return bound == null ? "*" : value(bound);
+    }
+
+    private static String escapePhrase(String phrase) {
+        return phrase.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static Object checkValue(Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null value in a query");
+        }
+        return value;
+    }
+
+    private static String checkField(String field) {
+        if (field == null || !FIELD_NAME.matcher(field).matches()) {
+            throw new IllegalArgumentException("Invalid field name: " + field);
+        }
+        return field;
+    }
+}
@@ -0,0 +1,462 @@
+package us.kbase.kbsolrutil;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
+import com.fasterxml.jackson.databind.deser.Deserializers;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import us.kbase.common.service.UObject;
+
+/**
+ * <p>Typed result of a search_solr or search_kbase_solr call made with result_format 'json'.</p>
+ * <pre>
+ * The response is read with Jackson's streaming parser: each element of Solr's docs array
+ * is bound straight into the document type T (e.g. SolrGenomeFeatureData or SolrTaxonData)
+ * as it is parsed, without first building the response as nested maps.
+ * Both output shapes are understood:
+ *     search_solr       - {responsecode, url, response => {responseHeader, response, grouped, nextCursorMark}}
+ *     search_kbase_solr - {solr_search_result => '...the raw Solr JSON response...'}
+ * Solr returns single-valued fields as scalars and multi-valued fields as arrays; both are
+ * accepted for either kind of POJO property.
+ * The deserializer is found through MODULE, which is registered on the mapper of the
+ * KBase JSON-RPC callers; register it on any other ObjectMapper used to read this type.
+ * A search_solr error, where Solr's error text comes back in place of the response
+ * object, is raised as a JsonMappingException carrying that text.
+ * </pre>
+ */
+public class SolrSearchResponse<T> {
+
+    /** Supplies the deserializer for SolrSearchResponse types, with the document type taken
+     * from the type parameter.
+     */
+    public static final Module MODULE = new Module() {
+        @Override
+        public String getModuleName() {
+            return "SolrSearchResponse";
+        }
+
+        @Override
+        public Version version() {
+            return Version.unknownVersion();
+        }
+
+        @Override
+        public void setupModule(SetupContext context) {
+            context.addDeserializers(new Deserializers.Base() {
+                @Override
+                public JsonDeserializer<?> findBeanDeserializer(JavaType type,
+                        DeserializationConfig config, BeanDescription beanDesc) {
+                    if (type.getRawClass() != SolrSearchResponse.class) {
+                        return null;
+                    }
+                    return type.containedTypeCount() == 1 ?
+                            new Deserializer(type.containedType(0)) : new Deserializer();
+                }
+            });
+        }
+    };
+
+    static {
+        UObject.getMapper().registerModule(MODULE);
+    }
+
+    private Long responseCode;
+    private String url;
+    private Long status;
+    private Long qTime;
+    private Long numFound;
+    private Long start;
+    private List<T> docs = new ArrayList<T>();
+    private String nextCursorMark;
+    private Map<String, Grouping<T>> grouped = new LinkedHashMap<String, Grouping<T>>();
+
+    /** @return the HTTP status code of the Solr response, or null for search_kbase_solr. */
+    public Long getResponseCode() {
+        return responseCode;
+    }
+
+    /** @return the Solr URL that was queried, or null for search_kbase_solr. */
+    public String getUrl() {
+        return url;
+    }
+
+    /** @return the status from the Solr responseHeader, 0 for success. */
+    public Long getStatus() {
+        return status;
+    }
+
+    /** @return the query time in milliseconds from the Solr responseHeader. */
+    public Long getQTime() {
+        return qTime;
+    }
+
+    /** @return the number of matching documents, or null for a grouped search. */
+    public Long getNumFound() {
+        return numFound;
+    }
+
+    /** @return the offset of the first returned document. */
+    public Long getStart() {
+        return start;
+    }
+
+    /** @return the returned documents, empty for a grouped search. */
+    public List<T> getDocs() {
+        return docs;
+    }
+
+    /** @return the cursorMark of the next page, if the search was made with a cursorMark. */
+    public String getNextCursorMark() {
+        return nextCursorMark;
+    }
+
+    /** @return the grouping results by group field, empty unless group_option was set. */
+    public Map<String, Grouping<T>> getGrouped() {
+        return grouped;
+    }
+
+    @Override
+    public String toString() {
+        return ((((((((((((((((((("SolrSearchResponse"+" [responseCode=")+ responseCode)+", url=")+ url)+", status=")+ status)+", qTime=")+ qTime)+", numFound=")+ numFound)+", start=")+ start)+", docs=")+ docs)+", nextCursorMark=")+ nextCursorMark)+", grouped=")+ grouped)+"]");
+    }
+
+    /** The groups of a single group field. */
+    public static class Grouping<T> {
+        private Long matches;
+        private Long ngroups;
+        private List<Group<T>> groups = new ArrayList<Group<T>>();
+
+        /** @return the number of documents that matched the query. */
+        public Long getMatches() {
+            return matches;
+        }
+
+        /** @return the number of groups, if requested with group.ngroups. */
+        public Long getNgroups() {
+            return ngroups;
+        }
+
+        /** @return the returned groups. */
+        public List<Group<T>> getGroups() {
+            return groups;
+        }
+
+        @Override
+        public String toString() {
+            return ((((((("Grouping"+" [matches=")+ matches)+", ngroups=")+ ngroups)+", groups=")+ groups)+"]");
+        }
+    }
+
+    /** A single group of documents sharing a group field value. */
+    public static class Group<T> {
+        private String groupValue;
+        private Long numFound;
+        private Long start;
+        private List<T> docs = new ArrayList<T>();
+
+        /** @return the shared value of the group field. */
+        public String getGroupValue() {
+            return groupValue;
+        }
+
+        /** @return the number of documents in the group. */
+        public Long getNumFound() {
+            return numFound;
+        }
+
+        /** @return the offset of the first returned document of the group. */
+        public Long getStart() {
+            return start;
+        }
+
+        /** @return the returned documents of the group. */
+        public List<T> getDocs() {
+            return docs;
+        }
+
+        @Override
+        public String toString() {
+            return ((((((((("Group"+" [groupValue=")+ groupValue)+", numFound=")+ numFound)+", start=")+ start)+", docs=")+ docs)+"]");
+        }
+    }
+
+    /** Builds the type of a JSON-RPC result list holding a SolrSearchResponse of docType
+     * documents, for use with JsonClientCaller.
+     * @param docType the document type.
+     * @return the result list type.
+     */
+    static <T> TypeReference<List<SolrSearchResponse<T>>> resultListType(Class<T> docType) {
+        final Type responseType = new SimpleParameterizedType(SolrSearchResponse.class, docType);
+        final Type listType = new SimpleParameterizedType(List.class, responseType);
+        return new TypeReference<List<SolrSearchResponse<T>>>() {
+            @Override
+            public Type getType() {
+                return listType;
+            }
+        };
+    }
+
+    private static class SimpleParameterizedType implements ParameterizedType {
+        private final Class<?> raw;
+        private final Type[] args;
+
+        SimpleParameterizedType(Class<?> raw, Type... args) {
+            this.raw = raw;
+            this.args = args;
+        }
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return args.clone();
+        }
+
+        @Override
+        public Type getRawType() {
+            return raw;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ParameterizedType)) {
+                return false;
+            }
+            ParameterizedType p = (ParameterizedType) o;
+            return raw.equals(p.getRawType()) && p.getOwnerType() == null &&
+                    Arrays.equals(args, p.getActualTypeArguments());
+        }
+
+        @Override
+        public int hashCode() {
+            return raw.hashCode() ^ Arrays.hashCode(args);
+        }
+    }
+
+    /** Streaming deserializer; the document type comes from the type it was looked up for
+     * by MODULE, or from the declared type of a bean property.
+     */
+    static class Deserializer extends JsonDeserializer<SolrSearchResponse<Object>>
+            implements ContextualDeserializer {
+
+        private static final ObjectMapper DOC_MAPPER = new ObjectMapper()
+                .enable(DeserializationFeature.ACCEPT_SINGLE_VALUE_AS_ARRAY);
+
+        private final ObjectReader docReader;
+        // whether single-element arrays are unwrapped for the scalar properties of a POJO
+        private final boolean unwrapArrays;
+
+        public Deserializer() {
+            this.docReader = DOC_MAPPER.reader(Map.class);
+            this.unwrapArrays = false;
+        }
+
+        Deserializer(JavaType docType) {
+            this.docReader = DOC_MAPPER.reader(docType);
+            this.unwrapArrays = !docType.isContainerType() &&
+                    !JsonNode.class.isAssignableFrom(docType.getRawClass()) &&
+                    docType.getRawClass() != Object.class;
+        }
+
+        @Override
+        public JsonDeserializer<?> createContextual(DeserializationContext ctxt,
+                BeanProperty property) throws JsonMappingException {
+            if (property != null && property.getType().containedTypeCount() == 1) {
+                return new Deserializer(property.getType().containedType(0));
+            }
+            return this;
+        }
+
+        @Override
+        public SolrSearchResponse<Object> deserialize(JsonParser p, DeserializationContext ctxt)
+                throws IOException {
+            SolrSearchResponse<Object> out = new SolrSearchResponse<Object>();
+            readObject(p, out);
+            return out;
+        }
+
+        // The fields of the search_solr wrapper, of the Solr response and of its doc list
+        // never share a name, so one recursive reader handles every level.
+        private void readObject(JsonParser p, SolrSearchResponse<Object> out) throws IOException {
+            if (p.getCurrentToken() != JsonToken.START_OBJECT) {
+                throw new JsonMappingException("Expected a JSON object in the Solr search response",
+                        p.getCurrentLocation());
+            }
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                JsonToken t = p.nextToken();
+                if (t == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (field) {
+                case "response":
+                    if (t == JsonToken.VALUE_STRING) {
+                        // search_solr passes Solr's error text on in place of the response
+                        throw new JsonMappingException("Solr search failed: " + p.getText(),
+                                p.getCurrentLocation());
+                    }
+                    readObject(p, out);
+                    break;
+                case "solr_search_result":
+                    if (t == JsonToken.VALUE_STRING) {
+                        try (JsonParser raw = p.getCodec().getFactory().createParser(p.getText())) {
+                            raw.nextToken();
+                            readObject(raw, out);
+                        }
+                    } else {
+                        readObject(p, out);
+                    }
+                    break;
+                case "responsecode":
+                    out.responseCode = p.getValueAsLong();
+                    break;
+                case "url":
+                    out.url = p.getValueAsString();
+                    break;
+                case "responseHeader":
+                    readHeader(p, out);
+                    break;
+                case "numFound":
+                    out.numFound = p.getValueAsLong();
+                    break;
+                case "start":
+                    out.start = p.getValueAsLong();
+                    break;
+                case "docs":
+                    readDocs(p, out.docs);
+                    break;
+                case "nextCursorMark":
+                    out.nextCursorMark = p.getValueAsString();
+                    break;
+                case "grouped":
+                    readGrouped(p, out.grouped);
+                    break;
+                default:
+                    p.skipChildren();
+                }
+            }
+        }
+
+        private void readHeader(JsonParser p, SolrSearchResponse<Object> out) throws IOException {
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                p.nextToken();
+                if ("status".equals(field)) {
+                    out.status = p.getValueAsLong();
+                } else if ("QTime".equals(field)) {
+                    out.qTime = p.getValueAsLong();
+                } else {
+                    p.skipChildren();
+                }
+            }
+        }
+
+        private void readDocs(JsonParser p, List<Object> docs) throws IOException {
+            if (p.getCurrentToken() != JsonToken.START_ARRAY) {
+                p.skipChildren();
+                return;
+            }
+            while (p.nextToken() == JsonToken.START_OBJECT) {
+                if (unwrapArrays) {
+                    ObjectNode doc = DOC_MAPPER.readTree(p);
+                    unwrapSingleValueArrays(doc);
+                    docs.add(docReader.readValue(doc));
+                } else {
+                    docs.add(docReader.readValue(p));
+                }
+            }
+        }
+
+        // Solr returns a multi-valued field as an array even with a single value; a list
+        // property still takes the bare value back through ACCEPT_SINGLE_VALUE_AS_ARRAY.
+        private static void unwrapSingleValueArrays(ObjectNode doc) {
+            Iterator<Map.Entry<String, JsonNode>> fields = doc.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                JsonNode value = field.getValue();
+                if (value.isArray() && value.size() == 1) {
+                    field.setValue(value.get(0));
+                }
+            }
+        }
+
+        private void readGrouped(JsonParser p, Map<String, Grouping<Object>> grouped)
+                throws IOException {
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                Grouping<Object> grouping = new Grouping<Object>();
+                grouped.put(p.getCurrentName(), grouping);
+                p.nextToken();
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = p.getCurrentName();
+                    p.nextToken();
+                    if ("matches".equals(field)) {
+                        grouping.matches = p.getValueAsLong();
+                    } else if ("ngroups".equals(field)) {
+                        grouping.ngroups = p.getValueAsLong();
+                    } else if ("groups".equals(field) && p.getCurrentToken() == JsonToken.START_ARRAY) {
+                        while (p.nextToken() == JsonToken.START_OBJECT) {
+                            grouping.groups.add(readGroup(p));
+                        }
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            }
+        }
+
+        private Group<Object> readGroup(JsonParser p) throws IOException {
+            Group<Object> group = new Group<Object>();
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.getCurrentName();
+                p.nextToken();
+                if ("groupValue".equals(field)) {
+                    group.groupValue = p.getCurrentToken() == JsonToken.VALUE_NULL ?
+                            null : p.getValueAsString();
+                } else if ("doclist".equals(field)) {
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String f = p.getCurrentName();
+                        p.nextToken();
+                        if ("numFound".equals(f)) {
+                            group.numFound = p.getValueAsLong();
+                        } else if ("start".equals(f)) {
+                            group.start = p.getValueAsLong();
+                        } else if ("docs".equals(f)) {
+                            readDocs(p, group.docs);
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return group;
+        }
+    }
+}
@@ -0,0 +1,661 @@
+package us.kbase.kbsolrutil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>An in-memory index of the taxonomy tree of a taxonomy core, for existence, ancestor,
+ * descendant and lineage lookups without a Solr query per question.</p>
+ * <pre>
+ * The taxa are read once with a {@link SolrCursor} (only taxonomy_id, scientific_name, rank,
+ * ws_ref and parent_taxon_ref) and kept in primitive arrays indexed by taxonomy_id:
+ *     - the taxonomy_id of the parent (int[]), resolved from parent_taxon_ref, the ws_ref of the
+ *       parent taxon object;
+ *     - the rank, as a short code of a {@link ValueDictionary};
+ *     - the scientific name, as an offset into a single UTF-8 byte pool.
+ * The NCBI taxonomy (about 2.5M taxa, ids up to about 3M) takes some 100 MB this way instead of
+ * several hundred MB of records. A lookup reads a few array entries; a lineage walks the parent
+ * pointers, and the descendants are found from a child index built on first use.
+ * The index is refreshed incrementally with refresh (the taxa matching a query, e.g. those
+ * added since the last load) or put/remove; parents that are not loaded yet are resolved when
+ * they are. Lookups may run concurrently with each other and with a refresh.
+ * Example:
+ *     TaxonomyIndex taxonomy = TaxonomyIndex.load(client, "taxonomy_prod");
+ *     if (taxonomy.exists(1297193) &amp;&amp; taxonomy.isAncestor(2, 1297193)) {
+ *         System.out.println(taxonomy.getLineageNames(1297193));
+ *     }
+ * </pre>
+ */
+public class TaxonomyIndex {
+
+    /** The parent of a taxon without a (known) parent. */
+    public static final long NO_PARENT = -1;
+    /** The highest taxonomy_id the index takes. */
+    public static final int MAX_TAXONOMY_ID = 1 << 28;
+    public static final int LOAD_PAGE_SIZE = 10000;
+    public static final String LOAD_FIELDS = "taxonomy_id,scientific_name,rank,ws_ref,parent_taxon_ref";
+
+    private static final int ABSENT = -2;
+    private static final int UNRESOLVED = -3;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ValueDictionary ranks = new ValueDictionary("rank");
+    // all by taxonomy_id
+    private int[] parents = new int[0];
+    private long[] parentRefs = new long[0];
+    private long[] wsRefs = new long[0];
+    private short[] rankCodes = new short[0];
+    private int[] nameOffsets = new int[0];
+    private byte[] names = new byte[1 << 16];
+    private int namesLength = 0;
+    // the bytes of the names of removed or renamed taxa, reclaimed by compactNames
+    private int deadNamesLength = 0;
+    private final LongIntMap byWsRef = new LongIntMap();
+    private int size = 0;
+    private int unresolved = 0;
+    // the child index: the children of taxon t are children[childStart[t] .. childStart[t + 1]]
+    private int[] childStart = null;
+    private int[] children = null;
+
+    /** Load all the taxa of a taxonomy core.
+     * @param client the client used to run the searches.
+     * @param solrCore the name of the taxonomy core, e.g. taxonomy_prod.
+     * @return the index.
+     */
+    public static TaxonomyIndex load(KBSolrUtilClient client, String solrCore) {
+        TaxonomyIndex index = new TaxonomyIndex();
+        index.refresh(client, solrCore, null);
+        return index;
+    }
+
+    /** Add or update the taxa of a taxonomy core that match a query.
+     * @param client the client used to run the searches.
+     * @param solrCore the name of the taxonomy core.
+     * @param searchQuery the search_query of search_solr, or null for all the taxa.
+     * @return the number of taxa read.
+     */
+    public int refresh(KBSolrUtilClient client, String solrCore, Map<String, String> searchQuery) {
+        SolrCursor<SolrTaxonData> cursor = new SolrCursor<SolrTaxonData>(client, solrCore, searchQuery,
+                SolrCursor.TAXON_KEY, null, LOAD_FIELDS, LOAD_PAGE_SIZE, SolrTaxonData.class);
+        int count = 0;
+        List<SolrTaxonData> page = new ArrayList<SolrTaxonData>(LOAD_PAGE_SIZE);
+        for (SolrTaxonData taxon : cursor) {
+            page.add(taxon);
+            if (page.size() == LOAD_PAGE_SIZE) {
+                count += putAll(page, false);
+                page.clear();
+            }
+        }
+        // parents are resolved once all the pages are in, as children may come before them
+        return count + putAll(page, true);
+    }
+
+    /** Add or update taxa.
+     * @param taxa the taxa; those without a taxonomy_id are ignored.
+     * @return the number of taxa added or updated.
+     */
+    public int putAll(List<SolrTaxonData> taxa) {
+        return putAll(taxa, true);
+    }
+
+    private int putAll(List<SolrTaxonData> taxa, boolean resolve) {
+        lock.writeLock().lock();
+        try {
+            int count = 0;
+            for (SolrTaxonData t : taxa) {
+                if (t.getTaxonomyId() != null) {
+                    putLocked(t.getTaxonomyId(), t.getScientificName(), t.getRank(), t.getWsRef(),
+                            t.getParentTaxonRef());
+                    count++;
+                }
+            }
+            if (resolve) {
+                resolveLocked();
+            }
+            return count;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Add or update a taxon. */
+    public void put(SolrTaxonData taxon) {
+        putAll(Collections.singletonList(taxon));
+    }
+
+    /** Add or update a taxon read as a KBaseReferenceTaxonData.
+     * @param taxon the taxon.
+     * @param wsRef the ws_ref of the taxon object, which the parent_taxon_ref of its children
+     * point to, or null.
+     */
+    public void put(KBaseReferenceTaxonData taxon, String wsRef) {
+        if (taxon.getTaxonomyId() == null) {
+            throw new IllegalArgumentException("taxonomy_id must be specified");
+        }
+        lock.writeLock().lock();
+        try {
+            putLocked(taxon.getTaxonomyId(), taxon.getScientificName(), taxon.getRank(), wsRef,
+                    taxon.getParentTaxonRef());
+            resolveLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Remove a taxon; its children lose their parent until it is put back.
+     * @return true if the taxon was in the index.
+     */
+    public boolean remove(long taxonomyId) {
+        lock.writeLock().lock();
+        try {
+            if (!existsLocked(taxonomyId)) {
+                return false;
+            }
+            int id = (int) taxonomyId;
+            unindexWsRef(id);
+            for (int t = 0; t < parents.length; t++) {
+                if (parents[t] == id && t != id) {
+                    parents[t] = UNRESOLVED;
+                    unresolved++;
+                }
+            }
+            if (parents[id] == UNRESOLVED) {
+                unresolved--;
+            }
+            parents[id] = ABSENT;
+            wsRefs[id] = 0;
+            parentRefs[id] = 0;
+            releaseName(id);
+            size--;
+            childStart = null;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** @return the number of taxa. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return the number of taxa whose parent_taxon_ref points to a taxon not in the index. */
+    public int getUnresolvedCount() {
+        lock.readLock().lock();
+        try {
+            return unresolved;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return true if the taxon is in the index. */
+    public boolean exists(long taxonomyId) {
+        lock.readLock().lock();
+        try {
+            return existsLocked(taxonomyId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return the taxonomy_id of the parent, or NO_PARENT for a root, a taxon whose parent is
+     * not in the index, or a taxon not in the index.
+     */
+    public long getParent(long taxonomyId) {
+        lock.readLock().lock();
+        try {
+            return existsLocked(taxonomyId) ? parentLocked((int) taxonomyId) : NO_PARENT;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return the scientific name, or null if the taxon is not in the index. */
+    public String getScientificName(long taxonomyId) {
+        lock.readLock().lock();
+        try {
+            return existsLocked(taxonomyId) ? nameLocked((int) taxonomyId) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return the rank, or null if the taxon is not in the index. */
+    public String getRank(long taxonomyId) {
+        lock.readLock().lock();
+        try {
+            return existsLocked(taxonomyId) ? ranks.decode(rankCodes[(int) taxonomyId]) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return the taxonomy_id of the taxon of a ws_ref (of any version of the object), or NO_PARENT
+     * if it is not in the index.
+     */
+    public long findByWsRef(String wsRef) {
+        long key = refKey(wsRef);
+        lock.readLock().lock();
+        try {
+            int id = key == 0 ? -1 : byWsRef.get(key);
+            return id < 0 ? NO_PARENT : id;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return true if ancestor is a strict ancestor of taxon. */
+    public boolean isAncestor(long ancestor, long taxon) {
+        lock.readLock().lock();
+        try {
+            if (!existsLocked(ancestor) || !existsLocked(taxon)) {
+                return false;
+            }
+            int steps = 0;
+            for (long t = parentLocked((int) taxon); t != NO_PARENT && steps <= size;
+                    t = parentLocked((int) t), steps++) {
+                if (t == ancestor) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return the taxonomy_ids from the root down to the taxon itself, empty if the taxon is
+     * not in the index.
+     */
+    public long[] getLineage(long taxonomyId) {
+        lock.readLock().lock();
+        try {
+            if (!existsLocked(taxonomyId)) {
+                return new long[0];
+            }
+            long[] path = new long[16];
+            int n = 0;
+            for (long t = taxonomyId; t != NO_PARENT && n <= size; t = parentLocked((int) t)) {
+                if (n == path.length) {
+                    path = Arrays.copyOf(path, n * 2);
+                }
+                path[n++] = t;
+            }
+            long[] lineage = new long[n];
+            for (int i = 0; i < n; i++) {
+                lineage[i] = path[n - 1 - i];
+            }
+            return lineage;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return the scientific names from the root down to the taxon itself. */
+    public List<String> getLineageNames(long taxonomyId) {
+        long[] lineage = getLineage(taxonomyId);
+        List<String> result = new ArrayList<String>(lineage.length);
+        lock.readLock().lock();
+        try {
+            for (long t : lineage) {
+                result.add(existsLocked(t) ? nameLocked((int) t) : null);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /** @return the taxonomy_ids of the direct children of a taxon. */
+    public long[] getChildren(long taxonomyId) {
+        lock.readLock().lock();
+        try {
+            if (!existsLocked(taxonomyId)) {
+                return new long[0];
+            }
+            int[][] index = childIndex();
+            int id = (int) taxonomyId;
+            long[] result = new long[index[0][id + 1] - index[0][id]];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = index[1][index[0][id] + i];
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** @return the taxonomy_ids of all the descendants of a taxon, itself excluded, parents
+     * before their children.
+     */
+    public long[] getDescendants(long taxonomyId) {
+        lock.readLock().lock();
+        try {
+            if (!existsLocked(taxonomyId)) {
+                return new long[0];
+            }
+            int[][] index = childIndex();
+            int[] start = index[0];
+            int[] kids = index[1];
+            long[] result = new long[16];
+            int n = 0;
+            int next = 0;
+            int current = (int) taxonomyId;
+            // breadth first, the result doubling as the queue
+            while (true) {
+                for (int i = start[current]; i < start[current + 1]; i++) {
+                    if (n == result.length) {
+                        result = Arrays.copyOf(result, n * 2);
+                    }
+                    result[n++] = kids[i];
+                }
+                if (next == n || n > size) {
+                    break;
+                }
+                current = (int) result[next++];
+            }
+            return Arrays.copyOf(result, n);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean existsLocked(long taxonomyId) {
+        return taxonomyId >= 0 && taxonomyId < parents.length && parents[(int) taxonomyId] != ABSENT;
+    }
+
+    private long parentLocked(int id) {
+        int p = parents[id];
+        return p < 0 || p == id ? NO_PARENT : p;
+    }
+
+    private String nameLocked(int id) {
+        int offset = nameOffsets[id];
+        if (offset < 0) {
+            return null;
+        }
+        int length = ((names[offset] & 0xff) << 8) | (names[offset + 1] & 0xff);
+        return new String(names, offset + 2, length, StandardCharsets.UTF_8);
+    }
+
+    private void putLocked(long taxonomyId, String name, String rank, String wsRef, String parentRef) {
+        if (taxonomyId < 0 || taxonomyId > MAX_TAXONOMY_ID) {
+            throw new IllegalArgumentException("taxonomy_id out of range: " + taxonomyId);
+        }
+        int id = (int) taxonomyId;
+        ensureCapacity(id + 1);
+        boolean existed = parents[id] != ABSENT;
+        if (!existed) {
+            size++;
+        } else {
+            unindexWsRef(id);
+            if (parents[id] == UNRESOLVED) {
+                unresolved--;
+            }
+        }
+        long ref = refKey(wsRef);
+        wsRefs[id] = ref;
+        if (ref != 0) {
+            byWsRef.put(ref, id);
+        }
+        parentRefs[id] = refKey(parentRef);
+        parents[id] = parentRefs[id] == 0 ? (int) NO_PARENT : UNRESOLVED;
+        if (parents[id] == UNRESOLVED) {
+            unresolved++;
+        }
+        rankCodes[id] = ranks.encode(rank);
+        byte[] bytes = name == null ? null : name.getBytes(StandardCharsets.UTF_8);
+        // a refresh re-puts mostly unchanged taxa, which keep their slot in the pool
+        if (!existed || !sameName(id, bytes)) {
+            if (existed) {
+                releaseName(id);
+            }
+            nameOffsets[id] = appendName(bytes);
+        }
+        childStart = null;
+    }
+
+    // another taxon may have taken over the key, e.g. another version of the same object
+    private void unindexWsRef(int id) {
+        if (wsRefs[id] != 0 && byWsRef.get(wsRefs[id]) == id) {
+            byWsRef.remove(wsRefs[id]);
+        }
+    }
+
+    // resolves the parent_taxon_refs of the taxa whose parent was not loaded before
+    private void resolveLocked() {
+        if (unresolved == 0) {
+            return;
+        }
+        for (int id = 0; id < parents.length; id++) {
+            if (parents[id] == UNRESOLVED) {
+                int parent = byWsRef.get(parentRefs[id]);
+                if (parent >= 0) {
+                    parents[id] = parent;
+                    unresolved--;
+                }
+            }
+        }
+    }
+
+    private boolean sameName(int id, byte[] bytes) {
+        int offset = nameOffsets[id];
+        if (offset < 0 || bytes == null) {
+            return offset < 0 && bytes == null;
+        }
+        int length = ((names[offset] & 0xff) << 8) | (names[offset + 1] & 0xff);
+        if (length != Math.min(bytes.length, 0xffff)) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (names[offset + 2 + i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void releaseName(int id) {
+        int offset = nameOffsets[id];
+        if (offset >= 0) {
+            deadNamesLength += (((names[offset] & 0xff) << 8) | (names[offset + 1] & 0xff)) + 2;
+            nameOffsets[id] = -1;
+        }
+    }
+
+    private int appendName(byte[] bytes) {
+        if (bytes == null) {
+            return -1;
+        }
+        if (deadNamesLength > namesLength / 2 && deadNamesLength > 1 << 16) {
+            compactNames();
+        }
+        int length = Math.min(bytes.length, 0xffff);
+        if (namesLength + length + 2 > names.length) {
+            names = Arrays.copyOf(names, Math.max(names.length * 2, namesLength + length + 2));
+        }
+        int offset = namesLength;
+        names[offset] = (byte) (length >>> 8);
+        names[offset + 1] = (byte) length;
+        System.arraycopy(bytes, 0, names, offset + 2, length);
+        namesLength += length + 2;
+        return offset;
+    }
+
+    // rewrites the names of the taxa in the index into a new pool, dropping the dead bytes
+    private void compactNames() {
+        byte[] live = new byte[Math.max(1 << 16, namesLength - deadNamesLength + (names.length >> 2))];
+        int length = 0;
+        for (int id = 0; id < parents.length; id++) {
+            int offset = nameOffsets[id];
+            if (parents[id] == ABSENT || offset < 0) {
+                continue;
+            }
+            int n = (((names[offset] & 0xff) << 8) | (names[offset + 1] & 0xff)) + 2;
+            System.arraycopy(names, offset, live, length, n);
+            nameOffsets[id] = length;
+            length += n;
+        }
+        names = live;
+        namesLength = length;
+        deadNamesLength = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= parents.length) {
+            return;
+        }
+        int newCapacity = Math.min(MAX_TAXONOMY_ID + 1, Math.max(capacity, parents.length + (parents.length >> 1)));
+        int old = parents.length;
+        parents = Arrays.copyOf(parents, newCapacity);
+        Arrays.fill(parents, old, newCapacity, ABSENT);
+        parentRefs = Arrays.copyOf(parentRefs, newCapacity);
+        wsRefs = Arrays.copyOf(wsRefs, newCapacity);
+        rankCodes = Arrays.copyOf(rankCodes, newCapacity);
+        nameOffsets = Arrays.copyOf(nameOffsets, newCapacity);
+    }
+
+    // built under the read lock by the first descendant lookup after a change; racing builders
+    // build the same index
+    private int[][] childIndex() {
+        int[] start = childStart;
+        int[] kids = children;
+        if (start != null && kids != null && start.length == parents.length + 1) {
+            return new int[][] {start, kids};
+        }
+        start = new int[parents.length + 1];
+        for (int id = 0; id < parents.length; id++) {
+            long p = parents[id] == ABSENT ? NO_PARENT : parentLocked(id);
+            if (p != NO_PARENT) {
+                start[(int) p + 1]++;
+            }
+        }
+        for (int i = 1; i < start.length; i++) {
+            start[i] += start[i - 1];
+        }
+        kids = new int[start[start.length - 1]];
+        int[] fill = Arrays.copyOf(start, start.length);
+        for (int id = 0; id < parents.length; id++) {
+            long p = parents[id] == ABSENT ? NO_PARENT : parentLocked(id);
+            if (p != NO_PARENT) {
+                kids[fill[(int) p]++] = id;
+            }
+        }
+        synchronized (this) {
+            children = kids;
+            childStart = start;
+        }
+        return new int[][] {start, kids};
+    }
+
+    /** Pack a workspace ref wsid/objid or wsid/objid/ver into a long: 20 bits of workspace id and
+     * 32 of object id. The version is checked but not kept: the parent_taxon_ref of a taxon may
+     * name another version of the parent object than the ws_ref it was loaded with, and it is the
+     * same taxon.
+     * @return the key, 0 if the ref is null or not of that form.
+     */
+    static long refKey(String ref) {
+        if (ref == null) {
+            return 0;
+        }
+        String[] parts = ref.trim().split("/");
+        if (parts.length < 2 || parts.length > 3) {
+            return 0;
+        }
+        try {
+            long ws = Long.parseLong(parts[0]);
+            long obj = Long.parseLong(parts[1]);
+            long ver = parts.length == 3 ? Long.parseLong(parts[2]) : 0;
+            if (ws <= 0 || ws >= 1L << 20 || obj <= 0 || obj >= 1L << 32 || ver < 0) {
+                return 0;
+            }
+            return (ws << 32) | obj;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // an open-addressing map of non-zero long keys to non-negative ints
+    private static class LongIntMap {
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];
+        private int count = 0;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((count + 1) * 4 > keys.length * 3) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) {
+                count++;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        void remove(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) {
+                return;
+            }
+            keys[i] = 0;
+            count--;
+            // re-insert the rest of the cluster so that lookups do not stop at the hole
+            for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+                long k = keys[j];
+                int v = values[j];
+                keys[j] = 0;
+                count--;
+                put(k, v);
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            count = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
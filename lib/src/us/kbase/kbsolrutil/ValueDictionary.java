@@ -0,0 +1,74 @@
+package us.kbase.kbsolrutil;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>A thread-safe, append-only dictionary of the values of a low-cardinality field.</p>
+ * <pre>
+ * Each distinct value gets a short code, so a record or column can hold the 2 byte code
+ * instead of a reference to its own copy of the string (e.g. "gene", "Bacteria", "RefSeq",
+ * "+"). Code 0 is null. Codes are never reused; a dictionary holds at most MAX_VALUES values
+ * and rejects more, since a field with that many values is not low-cardinality.
+ * </pre>
+ */
+public class ValueDictionary {
+
+    /** The code of null. */
+    public static final short NULL = 0;
+    /** The maximum number of distinct values, null excluded. */
+    public static final int MAX_VALUES = Short.MAX_VALUE;
+
+    private final String name;
+    private final ConcurrentMap<String, Short> codes = new ConcurrentHashMap<String, Short>();
+    private volatile String[] values = new String[] {null};
+
+    /** @param name the field name, for the error messages. */
+    public ValueDictionary(String name) {
+        this.name = name;
+    }
+
+    /** Get the code of a value, adding the value if it is new.
+     * @param value the value, or null.
+     * @return the code.
+     * @throws IllegalStateException if the dictionary is full.
+     */
+    public short encode(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        Short code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    /** Get the value of a code.
+     * @param code a code returned by encode.
+     * @return the value, or null for NULL.
+     */
+    public String decode(short code) {
+        return values[code];
+    }
+
+    /** @return the number of distinct values, null excluded. */
+    public int size() {
+        return values.length - 1;
+    }
+
+    private synchronized short add(String value) {
+        Short code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        String[] current = values;
+        if (current.length > MAX_VALUES) {
+            throw new IllegalStateException("More than " + MAX_VALUES + " distinct values of " + name);
+        }
+        String[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = value;
+        short newCode = (short) current.length;
+        values = grown;
+        codes.put(value, newCode);
+        return newCode;
+    }
+}
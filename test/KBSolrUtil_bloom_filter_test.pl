@@ -0,0 +1,36 @@
+use strict;
+use Test::More;
+use KBSolrUtil::BloomFilter;
+
+#
+# Tests of KBSolrUtil::BloomFilter, the existence filters of KBSolrUtilImpl; they need no SOLR,
+# workspace or token.
+#
+
+local $| = 1;
+
+#BloomFilter: no false negatives, a false positive rate close to the expected one
+{
+    my $n = 20000;
+    my $filter = KBSolrUtil::BloomFilter->new(capacity => $n, fp_rate => 0.01);
+    $filter->add("GCF_$_.1") foreach 1 .. $n;
+    my $missed = grep { !$filter->maybe_contains("GCF_$_.1") } 1 .. $n;
+    is($missed, 0, "BloomFilter has no false negatives");
+    $filter->add("\x{3b1}-taxon");
+    ok($filter->maybe_contains("\x{3b1}-taxon"), "BloomFilter finds an added wide character value");
+
+    my $stats = $filter->stats();
+    ok($stats->{entries} > $n * 0.99 && $stats->{entries} <= $n + 1, "BloomFilter counts the distinct values");
+    ok($stats->{expected_fp_rate} > 0.005 && $stats->{expected_fp_rate} < 0.015,
+       "BloomFilter expected fp rate $stats->{expected_fp_rate} is near the 0.01 it was sized for");
+    my $probes = 20000;
+    my $fp = grep { $filter->maybe_contains("absent_$_") } 1 .. $probes;
+    my $rate = $fp / $probes;
+    ok($rate < $stats->{expected_fp_rate} * 2 + 0.002,
+       "BloomFilter observed fp rate $rate is near the expected $stats->{expected_fp_rate}");
+
+    my $small = KBSolrUtil::BloomFilter->new(capacity => 1000000, fp_rate => 0.01, max_bits => 8192);
+    is($small->stats()->{bits}, 8192, "BloomFilter is bounded by max_bits");
+}
+
+done_testing();
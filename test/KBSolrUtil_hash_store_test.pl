@@ -0,0 +1,51 @@
+use strict;
+use Test::More;
+use File::Temp qw(tempdir);
+use KBSolrUtil::HashStore;
+
+#
+# Tests of KBSolrUtil::HashStore, the local store of the content hashes of index_in_solr with
+# skip_unchanged; they need no SOLR, workspace or token.
+#
+
+local $| = 1;
+my $md5a = "0123456789abcdef0123456789abcdef";
+my $md5b = "fedcba9876543210fedcba9876543210";
+
+#HashStore: in memory, with a log, replayed by a fresh instance, tombstones, ids with tabs
+{
+    my $store = KBSolrUtil::HashStore->new();
+    $store->put_many("core", {doc1 => $md5a, doc2 => $md5b});
+    is_deeply($store->get_many("core", ["doc1", "doc2", "doc3"]), {doc1 => $md5a, doc2 => $md5b},
+              "HashStore without a directory keeps the hashes in memory");
+    is($store->size("other"), 0, "HashStore keeps the cores apart");
+
+    my $dir = tempdir(CLEANUP => 1);
+    my $writer = KBSolrUtil::HashStore->new(dir => $dir);
+    $writer->put_many("Genome/Features", {doc1 => $md5a, doc2 => $md5a, "tab\tid" => $md5a, "nl\nid" => $md5a});
+    $writer->put_many("Genome/Features", {doc2 => $md5b});
+    ok(-e "$dir/Genome_Features.hashes", "HashStore writes the log of a core under a safe file name");
+    is($writer->size("Genome/Features"), 2, "HashStore does not store ids with a tab or a newline");
+    is_deeply($writer->get_many("Genome/Features", ["tab\tid", "nl\nid"]), {},
+              "HashStore has no hash for ids with a tab or a newline");
+
+    my $reader = KBSolrUtil::HashStore->new(dir => $dir);
+    is_deeply($reader->get_many("Genome/Features", ["doc1", "doc2"]), {doc1 => $md5a, doc2 => $md5b},
+              "HashStore replays the log, the last line of an id winning");
+
+    $writer->delete_many("Genome/Features", ["doc1", "unknown"]);
+    is_deeply($reader->get_many("Genome/Features", ["doc1", "doc2"]), {doc2 => $md5b},
+              "HashStore reads the tombstones appended by another instance");
+    my $fresh = KBSolrUtil::HashStore->new(dir => $dir);
+    is($fresh->size("Genome/Features"), 1, "HashStore replays the tombstones from the start of the log");
+    open(my $fh, '<', "$dir/Genome_Features.hashes") or die "cannot read the log: $!";
+    my @tombstones = grep { /\t-$/ } <$fh>;
+    close($fh);
+    is_deeply(\@tombstones, ["doc1\t-\n"], "HashStore only writes tombstones for ids it has a hash of");
+
+    $writer->put_many("Genome/Features", {doc1 => $md5a});
+    is_deeply($fresh->get_many("Genome/Features", ["doc1"]), {doc1 => $md5a},
+              "HashStore takes a hash put again after its tombstone");
+}
+
+done_testing();
@@ -0,0 +1,73 @@
+use strict;
+use Test::More;
+use KBSolrUtil::Metrics;
+use KBSolrUtil::MetricsEndpoint;
+
+#
+# Tests of KBSolrUtil::Metrics, the counters and latency histograms of status and /metrics; they
+# need no SOLR, workspace or token.
+#
+
+local $| = 1;
+
+#Metrics: calls, errors, counters, nested calls and the percentiles
+{
+    my $metrics = KBSolrUtil::Metrics->new();
+    my $outer = $metrics->start("method", "get_total_count");
+    my $inner = $metrics->start("method", "search_solr");
+    $inner->stop();
+    $outer->stop(docs => 3);
+    {
+        my $failed = $metrics->start("method", "index_in_solr");
+    }
+    $metrics->start("solr", "select")->stop(bytes_in => 100, bytes_out => 10);
+    $metrics->record("solr", "update", 0.002) foreach 1 .. 99;
+    $metrics->record("solr", "update", 1.5);
+
+    my $stats = $metrics->stats();
+    is($stats->{method}->{get_total_count}->{calls}, 1, "Metrics counts a call");
+    is($stats->{method}->{get_total_count}->{docs}, 3, "Metrics counts the docs of a call");
+    ok(!exists($stats->{method}->{search_solr}), "Metrics does not record a call nested in another of its group");
+    is($stats->{method}->{index_in_solr}->{errors}, 1, "Metrics records a timer dropped unstopped as an error");
+    is($stats->{solr}->{select}->{bytes_in}, 100, "Metrics counts the bytes of a call");
+    $metrics->add("method", "get_total_count", bytes_in => 20);
+    is_deeply([@{$metrics->stats()->{method}->{get_total_count}}{qw(calls bytes_in)}], [1, 20], "Metrics adds to the counters without recording a call");
+
+    my $p50 = $metrics->percentile("solr", "update", 0.5);
+    ok($p50 >= 0.002 && $p50 <= 0.002 * (1 + 1 / $KBSolrUtil::Metrics::SUB_BUCKETS),
+       "Metrics p50 $p50 is within a bucket of the recorded latency");
+    is($metrics->percentile("solr", "update", 1), 1.5, "Metrics p100 is the max");
+    foreach my $us (1, 15, 16, 17, 1023, 1024, 1025, 123456789) {
+        my $index = KBSolrUtil::Metrics::_bucketIndex($us);
+        ok(KBSolrUtil::Metrics::_bucketValue($index) >= $us &&
+           ($index == 0 || KBSolrUtil::Metrics::_bucketValue($index - 1) < $us),
+           "Metrics bucket $index holds $us us");
+    }
+    like($metrics->prometheus(), qr/^kbsolrutil_solr_seconds_count\{operation="update"\} 100$/m,
+         "Metrics exports the counts in the Prometheus format");
+}
+
+#MetricsEndpoint: /metrics is opt-in, and the body sizes go to the method the server dispatched
+{
+    my $metrics = KBSolrUtil::Metrics->new();
+    my $app = sub {
+        my ($env) = @_;
+        $env->{'kbsolrutil.method'} = "search_solr" if $env->{PATH_INFO} eq "/";
+        return [200, ['Content-Type' => 'application/json'], ['{"result":', '[1]}']];
+    };
+    my %get = (PATH_INFO => "/metrics", REQUEST_METHOD => "GET");
+    my %post = (PATH_INFO => "/", REQUEST_METHOD => "POST", CONTENT_LENGTH => 42);
+
+    my $closed = KBSolrUtil::MetricsEndpoint->wrap($app, metrics => $metrics);
+    is($closed->({%get})->[2]->[0], '{"result":', "MetricsEndpoint does not serve /metrics unless enabled");
+
+    my $open = KBSolrUtil::MetricsEndpoint->wrap($app, metrics => $metrics, endpoint => 1);
+    $open->({%post});
+    my $stats = $metrics->stats()->{method}->{search_solr};
+    is($stats->{bytes_in}, 42, "MetricsEndpoint counts the request bytes of the dispatched method");
+    is($stats->{bytes_out}, 14, "MetricsEndpoint counts the response bytes of the dispatched method");
+    like(join("", @{$open->({%get})->[2]}), qr/^kbsolrutil_method_bytes_in_total\{method="search_solr"\} 42$/m,
+         "MetricsEndpoint serves /metrics when enabled");
+}
+
+done_testing();
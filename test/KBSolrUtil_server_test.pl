@@ -106,7 +106,7 @@ eval {
          print $solrcount ."\n";
     }
     ok(defined($solrcount),"get_total_count command returned result.");
-=cut   
+=cut
 
 #=begin
     my $solrret;
@@ -129,6 +129,24 @@ eval {
     ok(defined($solrret),"_search_solr command returned result.");
 #=cut   
 
+    subtest "get_total_count_batch and exists_in_solr_batch" => sub {
+        my $batch_counts;
+        my $batch_exists;
+        eval {
+            my $queries = [
+              {search_core => "Reactions", search_query => {'abbreviation'=>'RXNQT-4349.c'}},
+              {search_core => "Reactions", search_query => {'abbreviation'=>'RXNQT-no-such-reaction'}}
+            ];
+            $batch_counts = $impl->get_total_count_batch($queries);
+            $batch_exists = $impl->exists_in_solr_batch($queries);
+        };
+        ok(!$@, "get_total_count_batch and exists_in_solr_batch commands successful") or diag("ERROR:".$@);
+        is(ref($batch_counts) && scalar(@{$batch_counts}), 2, "get_total_count_batch returned a count per query.");
+        is(ref($batch_exists) && scalar(@{$batch_exists}), 2, "exists_in_solr_batch returned a flag per query.");
+        is($batch_exists->[0], $batch_counts->[0] > 0 ? 1 : 0, "exists_in_solr_batch agrees with the count.");
+        is_deeply([$batch_counts->[1], $batch_exists->[1]], [0, 0], "An unknown reaction is neither counted nor found.");
+    };
+
 =begin
    my $solrret; 
 #=begin
@@ -333,7 +351,7 @@ eval {
     }
     ok(defined($xmlret)," XML indexing succeeded.");
 =cut
-    done_testing(6);
+    done_testing(3);
 };
 
 my $err = undef;
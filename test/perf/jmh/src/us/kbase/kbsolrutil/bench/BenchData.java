@@ -0,0 +1,251 @@
+package us.kbase.kbsolrutil.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import us.kbase.kbsolrutil.CompactGenomeFeatureData;
+import us.kbase.kbsolrutil.IndexInSolrParams;
+import us.kbase.kbsolrutil.KBaseReferenceTaxonData;
+import us.kbase.kbsolrutil.SearchSolrParams;
+import us.kbase.kbsolrutil.SolrGenomeFeatureData;
+import us.kbase.kbsolrutil.SolrTaxonData;
+
+/**
+ * <p>Builds the documents the benchmarks encode and decode.</p>
+ * <pre>
+ * The documents are shaped after the GenomeFeatures and taxonomy cores: every field of
+ * the data class is set, with values of the usual length (lineages of a few hundred
+ * characters, protein-length integers, etc.). A fixed seed keeps the data, and so the
+ * encoded sizes, the same from run to run.
+ * </pre>
+ */
+public final class BenchData {
+
+    /** The types the codec benchmarks are run for. */
+    public static final String GENOME_FEATURE = "SolrGenomeFeatureData";
+    public static final String COMPACT_GENOME_FEATURE = "CompactGenomeFeatureData";
+    public static final String TAXON = "SolrTaxonData";
+    public static final String REFERENCE_TAXON = "KBaseReferenceTaxonData";
+    public static final String INDEX_PARAMS = "IndexInSolrParams";
+    public static final String SEARCH_PARAMS = "SearchSolrParams";
+
+    private static final String LINEAGE = "cellular organisms; Bacteria; Proteobacteria; " +
+            "Gammaproteobacteria; Enterobacterales; Enterobacteriaceae; Escherichia";
+    private static final String[] FUNCTIONS = {
+        "hypothetical protein",
+        "DNA-directed RNA polymerase beta subunit (EC 2.7.7.6)",
+        "ABC transporter, ATP-binding protein",
+        "Transcriptional regulator, LysR family",
+        "Outer membrane protein A precursor"
+    };
+
+    private BenchData() {
+    }
+
+    /** @return the documents of the given type, see the type constants. */
+    public static List<?> documents(String type, int count) {
+        switch (type) {
+        case GENOME_FEATURE:
+            return genomeFeatures(count);
+        case COMPACT_GENOME_FEATURE:
+            return compactGenomeFeatures(count);
+        case TAXON:
+            return taxa(count);
+        case REFERENCE_TAXON:
+            return referenceTaxa(count);
+        case INDEX_PARAMS:
+            return Arrays.asList(indexParams(count));
+        case SEARCH_PARAMS:
+            return searchParams(count);
+        default:
+            throw new IllegalArgumentException("Unknown document type " + type);
+        }
+    }
+
+    /** @return the data class of the given type, see the type constants. */
+    public static Class<?> documentClass(String type) {
+        switch (type) {
+        case GENOME_FEATURE:
+            return SolrGenomeFeatureData.class;
+        case COMPACT_GENOME_FEATURE:
+            return CompactGenomeFeatureData.class;
+        case TAXON:
+            return SolrTaxonData.class;
+        case REFERENCE_TAXON:
+            return KBaseReferenceTaxonData.class;
+        case INDEX_PARAMS:
+            return IndexInSolrParams.class;
+        case SEARCH_PARAMS:
+            return SearchSolrParams.class;
+        default:
+            throw new IllegalArgumentException("Unknown document type " + type);
+        }
+    }
+
+    public static List<SolrGenomeFeatureData> genomeFeatures(int count) {
+        Random r = new Random(42);
+        List<SolrGenomeFeatureData> docs = new ArrayList<SolrGenomeFeatureData>(count);
+        for (int i = 0; i < count; i++) {
+            String genome = "GCF_" + String.format("%09d", i / 4000) + ".1";
+            String feature = "WP_" + String.format("%09d", r.nextInt(1000000000)) + ".1";
+            long begin = r.nextInt(5000000);
+            docs.add(new SolrGenomeFeatureData()
+                    .withGenomeFeatureId(genome + "|" + feature)
+                    .withGenomeId(genome)
+                    .withFeatureId(feature)
+                    .withWsRef("19217/" + (i / 4000 + 170000) + "/2")
+                    .withFeatureType("CDS")
+                    .withAliases("locus_tag:ECB_" + i + "; gene:gene" + i + "; protein_id:" + feature)
+                    .withScientificName("Escherichia coli str. K-12 substr. MG1655")
+                    .withDomain("Bacteria")
+                    .withFunctions(FUNCTIONS[r.nextInt(FUNCTIONS.length)])
+                    .withGenomeSource("RefSeq")
+                    .withGoOntologyDescription("transcription, DNA-templated")
+                    .withGoOntologyDomain("biological_process")
+                    .withGeneName("gene" + i)
+                    .withObjectName(genome)
+                    .withLocationContig("NC_000913.3")
+                    .withLocationStrand(r.nextBoolean() ? "+" : "-")
+                    .withTaxonomy(LINEAGE)
+                    .withWorkspaceName("ReferenceDataManager")
+                    .withGeneticCode("11")
+                    .withMd5(Long.toHexString(r.nextLong()) + Long.toHexString(r.nextLong()))
+                    .withTaxId("511145")
+                    .withAssemblyRef("19217/" + (i / 4000 + 170000) + "/1")
+                    .withTaxonomyRef("12570/183736/1")
+                    .withOntologyNamespaces("GO")
+                    .withOntologyIds("GO:0006351")
+                    .withOntologyNames("transcription, DNA-templated")
+                    .withOntologyLineages("GO:0008150; GO:0009987; GO:0006351")
+                    .withDnaSequenceLength((long) (300 + r.nextInt(3000)))
+                    .withGenomeDnaSize(4641652L)
+                    .withLocationBegin(begin)
+                    .withLocationEnd(begin + 300 + r.nextInt(3000))
+                    .withNumCds(4140L)
+                    .withNumContigs(1L)
+                    .withProteinTranslationLength((long) (100 + r.nextInt(1000)))
+                    .withGcContent(0.5079)
+                    .withComplete(1L)
+                    .withRefseqCategory("reference genome")
+                    .withSaveDate("2017-06-13T19:03:53+0000"));
+        }
+        return docs;
+    }
+
+    public static List<SolrTaxonData> taxa(int count) {
+        Random r = new Random(42);
+        List<SolrTaxonData> docs = new ArrayList<SolrTaxonData>(count);
+        for (int i = 0; i < count; i++) {
+            long id = 1000 + i;
+            docs.add(new SolrTaxonData()
+                    .withTaxonomyId(id)
+                    .withScientificName("Escherichia sp. " + id)
+                    .withScientificLineage(LINEAGE)
+                    .withRank("species")
+                    .withKingdom("Bacteria")
+                    .withDomain("Bacteria")
+                    .withWsRef("12570/" + (183000 + i) + "/1")
+                    .withAliases(Arrays.asList("Escherichia sp. strain " + id, "E. sp. " + id))
+                    .withGeneticCode(11L)
+                    .withParentTaxonRef("12570/" + (183000 + r.nextInt(1000)) + "/1")
+                    .withEmblCode("ES")
+                    .withInheritedDivFlag(1L)
+                    .withInheritedGCFlag(1L)
+                    .withMitochondrialGeneticCode(0L)
+                    .withInheritedMGCFlag(1L)
+                    .withGenBankHiddenFlag(0L)
+                    .withHiddenSubtreeFlag(0L)
+                    .withDivisionId(0L)
+                    .withComments(""));
+        }
+        return docs;
+    }
+
+    public static List<KBaseReferenceTaxonData> referenceTaxa(int count) {
+        Random r = new Random(42);
+        List<KBaseReferenceTaxonData> docs = new ArrayList<KBaseReferenceTaxonData>(count);
+        for (int i = 0; i < count; i++) {
+            long id = 1000 + i;
+            docs.add(new KBaseReferenceTaxonData()
+                    .withTaxonomyId(id)
+                    .withScientificName("Escherichia sp. " + id)
+                    .withScientificLineage(LINEAGE)
+                    .withRank("species")
+                    .withKingdom("Bacteria")
+                    .withDomain("Bacteria")
+                    .withAliases(Arrays.asList("Escherichia sp. strain " + id, "E. sp. " + id))
+                    .withGeneticCode(11L)
+                    .withParentTaxonRef("12570/" + (183000 + r.nextInt(1000)) + "/1")
+                    .withEmblCode("ES")
+                    .withInheritedDivFlag(1L)
+                    .withInheritedGCFlag(1L)
+                    .withMitochondrialGeneticCode(0L)
+                    .withInheritedMGCFlag(1L)
+                    .withGenBankHiddenFlag(0L)
+                    .withHiddenSubtreeFlag(0L)
+                    .withDivisionId(0L)
+                    .withComments(""));
+        }
+        return docs;
+    }
+
+    /** @return the genomeFeatures docs as CompactGenomeFeatureData. */
+    public static List<CompactGenomeFeatureData> compactGenomeFeatures(int count) {
+        List<CompactGenomeFeatureData> docs = new ArrayList<CompactGenomeFeatureData>(count);
+        for (SolrGenomeFeatureData doc : genomeFeatures(count)) {
+            docs.add(CompactGenomeFeatureData.fromSolrGenomeFeatureData(doc));
+        }
+        return docs;
+    }
+
+    /** @return an index_in_solr call of count genome feature docs, as BulkIndexer sends them. */
+    public static IndexInSolrParams indexParams(int count) {
+        List<Map<String, String>> docData = new ArrayList<Map<String, String>>(count);
+        for (SolrGenomeFeatureData doc : genomeFeatures(count)) {
+            Map<String, String> fields = new HashMap<String, String>();
+            fields.put("genome_feature_id", doc.getGenomeFeatureId());
+            fields.put("genome_id", doc.getGenomeId());
+            fields.put("feature_id", doc.getFeatureId());
+            fields.put("ws_ref", doc.getWsRef());
+            fields.put("feature_type", doc.getFeatureType());
+            fields.put("aliases", doc.getAliases());
+            fields.put("scientific_name", doc.getScientificName());
+            fields.put("functions", doc.getFunctions());
+            fields.put("taxonomy", doc.getTaxonomy());
+            fields.put("md5", doc.getMd5());
+            fields.put("location_contig", doc.getLocationContig());
+            fields.put("location_begin", doc.getLocationBegin().toString());
+            fields.put("location_end", doc.getLocationEnd().toString());
+            fields.put("protein_translation_length", doc.getProteinTranslationLength().toString());
+            fields.put("save_date", doc.getSaveDate());
+            docData.add(fields);
+        }
+        return new IndexInSolrParams()
+                .withSolrCore("GenomeFeatures_prod")
+                .withDocData(docData)
+                .withCommitPolicy("none");
+    }
+
+    /** @return count search_solr calls, one per genome, as a genome-by-genome walk makes them. */
+    public static List<SearchSolrParams> searchParams(int count) {
+        List<SearchSolrParams> params = new ArrayList<SearchSolrParams>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, String> query = new HashMap<String, String>();
+            query.put("genome_id", "GCF_" + String.format("%09d", i) + ".1");
+            Map<String, String> param = new HashMap<String, String>();
+            param.put("fl", "genome_feature_id,feature_id,functions,location_begin,location_end");
+            param.put("rows", "1000");
+            param.put("sort", "genome_feature_id asc");
+            params.add(new SearchSolrParams()
+                    .withSearchCore("GenomeFeatures_prod")
+                    .withSearchQuery(query)
+                    .withSearchParam(param)
+                    .withResultFormat("json")
+                    .withGroupOption(""));
+        }
+        return params;
+    }
+}
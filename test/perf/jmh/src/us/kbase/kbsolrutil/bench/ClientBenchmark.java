@@ -0,0 +1,139 @@
+package us.kbase.kbsolrutil.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import us.kbase.auth.AuthToken;
+import us.kbase.common.service.JsonClientException;
+import us.kbase.common.service.UObject;
+import us.kbase.kbsolrutil.IndexInSolrParams;
+import us.kbase.kbsolrutil.KBSolrUtilClient;
+import us.kbase.kbsolrutil.PooledJsonClientCaller;
+import us.kbase.kbsolrutil.SearchSolrParams;
+import us.kbase.kbsolrutil.SolrGenomeFeatureData;
+import us.kbase.kbsolrutil.SolrSearchResponse;
+
+/**
+ * <p>End-to-end cost of KBSolrUtilClient calls against a local {@link StubServer}.</p>
+ * <pre>
+ *     indexInSolr - an index_in_solr call of batchSize genome feature docs: encoding the
+ *                   request and sending it
+ *     searchSolr  - a typed search_solr call returning batchSize genome feature docs:
+ *                   decoding the response into SolrGenomeFeatureData
+ * transport is 'plain' for the per-call JsonClientCaller, 'pooled' for the keep-alive
+ * PooledJsonClientCaller, or 'pooled-gzip' for the pooled transport gzipping the request
+ * bodies of at least GZIP_MIN_BYTES bytes.
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ClientBenchmark {
+
+    public static final int GZIP_MIN_BYTES = 8192;
+
+    @Param({"plain", "pooled", "pooled-gzip"})
+    public String transport;
+
+    @Param({"1", "1000", "100000"})
+    public int batchSize;
+
+    private StubServer indexServer;
+    private StubServer searchServer;
+    private KBSolrUtilClient indexClient;
+    private KBSolrUtilClient searchClient;
+    private IndexInSolrParams indexParams;
+    private SearchSolrParams searchParams;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper mapper = UObject.getMapper();
+        indexServer = new StubServer(mapper.writeValueAsBytes(rpcResult(1L)));
+        searchServer = new StubServer(mapper.writeValueAsBytes(rpcResult(searchResult(batchSize))));
+        indexClient = client(indexServer);
+        searchClient = client(searchServer);
+        indexParams = BenchData.indexParams(batchSize);
+        searchParams = BenchData.searchParams(1).get(0);
+
+        if (searchSolr().getDocs().size() != batchSize || indexInSolr() != 1L) {
+            throw new IllegalStateException("The stub server responses were not decoded");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        indexClient.closePooledConnections();
+        searchClient.closePooledConnections();
+        indexServer.close();
+        searchServer.close();
+    }
+
+    @Benchmark
+    public Long indexInSolr() throws IOException, JsonClientException {
+        return indexClient.indexInSolr(indexParams);
+    }
+
+    @Benchmark
+    public SolrSearchResponse<SolrGenomeFeatureData> searchSolr()
+            throws IOException, JsonClientException {
+        return searchClient.searchSolr(searchParams, SolrGenomeFeatureData.class);
+    }
+
+    private KBSolrUtilClient client(StubServer server) throws Exception {
+        KBSolrUtilClient client = new KBSolrUtilClient(server.getURL(),
+                new AuthToken("benchmark-token", "benchmark"));
+        client.setIsInsecureHttpConnectionAllowed(true);
+        if (transport.startsWith("pooled")) {
+            client.setGzipMinBytes(transport.equals("pooled-gzip") ?
+                    GZIP_MIN_BYTES : PooledJsonClientCaller.GZIP_DISABLED);
+            client.usePooledConnections();
+        }
+        return client;
+    }
+
+    private static Map<String, Object> rpcResult(Object result) {
+        Map<String, Object> rpc = new LinkedHashMap<String, Object>();
+        rpc.put("version", "1.1");
+        rpc.put("result", Arrays.asList(result));
+        return rpc;
+    }
+
+    // the search_solr envelope around a Solr response of count docs
+    private static Map<String, Object> searchResult(int count) {
+        Map<String, Object> header = new LinkedHashMap<String, Object>();
+        header.put("status", 0);
+        header.put("QTime", 12);
+        Map<String, Object> docs = new LinkedHashMap<String, Object>();
+        List<SolrGenomeFeatureData> features = BenchData.genomeFeatures(count);
+        docs.put("numFound", count);
+        docs.put("start", 0);
+        docs.put("docs", features);
+        Map<String, Object> solr = new LinkedHashMap<String, Object>();
+        solr.put("responseHeader", header);
+        solr.put("response", docs);
+        Map<String, Object> out = new LinkedHashMap<String, Object>();
+        out.put("responsecode", 200);
+        out.put("url", "http://localhost:8983/solr/GenomeFeatures_prod/select");
+        out.put("response", solr);
+        return out;
+    }
+}
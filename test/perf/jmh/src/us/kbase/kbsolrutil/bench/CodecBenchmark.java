@@ -0,0 +1,78 @@
+package us.kbase.kbsolrutil.bench;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import us.kbase.common.service.UObject;
+
+/**
+ * <p>Jackson serialization and deserialization throughput of the us.kbase.kbsolrutil data
+ * classes, with the ObjectMapper the client sends its calls with.</p>
+ * <pre>
+ * Each invocation encodes (or decodes) a whole batch of batchSize documents as a JSON array,
+ * the way a list of documents travels in a call; for IndexInSolrParams the batch is a single
+ * index_in_solr call with batchSize doc_data entries.
+ * Run with -prof gc for the allocation rate; gc.alloc.rate.norm is the bytes allocated per batch.
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CodecBenchmark {
+
+    @Param({BenchData.GENOME_FEATURE, BenchData.COMPACT_GENOME_FEATURE, BenchData.TAXON,
+            BenchData.REFERENCE_TAXON, BenchData.INDEX_PARAMS, BenchData.SEARCH_PARAMS})
+    public String docType;
+
+    @Param({"1", "1000", "100000"})
+    public int batchSize;
+
+    private List<?> docs;
+    private byte[] encoded;
+    private ObjectWriter writer;
+    private ObjectReader reader;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = UObject.getMapper();
+        JavaType listType = mapper.getTypeFactory().constructCollectionType(List.class,
+                BenchData.documentClass(docType));
+        docs = BenchData.documents(docType, batchSize);
+        writer = mapper.writerWithType(listType);
+        reader = mapper.reader(listType);
+        encoded = writer.writeValueAsBytes(docs);
+        // a codec that drops or renames a field shows up here rather than as a fast benchmark
+        List<?> decoded = reader.readValue(encoded);
+        if (!new String(encoded, "UTF-8").equals(writer.writeValueAsString(decoded))) {
+            throw new IllegalStateException(docType + " does not survive a JSON round trip");
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return writer.writeValueAsBytes(docs);
+    }
+
+    @Benchmark
+    public List<?> deserialize() throws IOException {
+        return reader.readValue(encoded);
+    }
+}
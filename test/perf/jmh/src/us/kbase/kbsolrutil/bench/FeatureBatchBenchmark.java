@@ -0,0 +1,86 @@
+package us.kbase.kbsolrutil.bench;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import us.kbase.common.service.UObject;
+import us.kbase.kbsolrutil.FeatureBatch;
+import us.kbase.kbsolrutil.SolrGenomeFeatureData;
+
+/**
+ * <p>Cost of building the /update/json body of a batch of genome features, from a list of
+ * SolrGenomeFeatureData and from a FeatureBatch.</p>
+ * <pre>
+ * listJson encodes the list with Jackson, as add_json_2solr callers did before FeatureBatch;
+ * batchJson streams the same features from the columns of a FeatureBatch; fillBatch is the cost
+ * of copying the list into a (reused) batch. Both encodings give the same documents.
+ * Run with -prof gc for the bytes allocated per batch.
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class FeatureBatchBenchmark {
+
+    @Param({"1000", "100000"})
+    public int batchSize;
+
+    private List<SolrGenomeFeatureData> docs;
+    private FeatureBatch batch;
+    private FeatureBatch reused;
+    private ObjectWriter writer;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setUp() throws IOException {
+        docs = BenchData.genomeFeatures(batchSize);
+        batch = new FeatureBatch(batchSize);
+        for (SolrGenomeFeatureData doc : docs) {
+            batch.add(doc);
+        }
+        reused = new FeatureBatch(batchSize);
+        writer = UObject.getMapper().writer();
+        out = new ByteArrayOutputStream(batchSize * 1024);
+        batchJson();
+        if (!UObject.getMapper().readTree(listJson()).equals(UObject.getMapper().readTree(out.toByteArray()))) {
+            throw new IllegalStateException("FeatureBatch JSON differs from the documents' JSON");
+        }
+    }
+
+    @Benchmark
+    public byte[] listJson() throws IOException {
+        return writer.writeValueAsBytes(docs);
+    }
+
+    @Benchmark
+    public int batchJson() throws IOException {
+        out.reset();
+        batch.writeJson(out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int fillBatch() {
+        reused.clear();
+        for (SolrGenomeFeatureData doc : docs) {
+            reused.add(doc);
+        }
+        return reused.size();
+    }
+}
@@ -0,0 +1,77 @@
+package us.kbase.kbsolrutil.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * <p>A local HTTP server standing in for the KBSolrUtil service in the client benchmarks.</p>
+ * <pre>
+ * Every call gets the same canned JSON-RPC response, so the time measured is the client's:
+ * encoding the request, the loopback round trip and decoding the response. The request body
+ * is read to the end (inflated if it was gzipped) so the client pays the full write.
+ * </pre>
+ */
+public class StubServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong requestBytes = new AtomicLong();
+
+    /** Starts a stub server on a free loopback port.
+     * @param response the JSON-RPC response sent to every call.
+     * @throws IOException if the server cannot be started.
+     */
+    public StubServer(final byte[] response) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newFixedThreadPool(4);
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream in = exchange.getRequestBody();
+                if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                    in = new GZIPInputStream(in);
+                }
+                byte[] buffer = new byte[65536];
+                long total = 0;
+                for (int n; (n = in.read(buffer)) > 0; ) {
+                    total += n;
+                }
+                requestBytes.addAndGet(total);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            }
+        });
+        server.start();
+    }
+
+    /** @return the URL of the stub service. */
+    public URL getURL() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+    }
+
+    /** @return the number of (uncompressed) request body bytes received so far. */
+    public long getRequestBytes() {
+        return requestBytes.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
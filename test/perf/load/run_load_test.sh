@@ -0,0 +1,51 @@
+#!/bin/bash
+#
+# Load test of the KBSolrUtil service against the local Solr stand-in.
+#
+# Starts FakeSolr, then the service (plackup of lib/KBSolrUtil.psgi, as in production) with a
+# deployment config pointing both solr-url and auth-service-url at it, runs LoadTest and stops
+# both servers.
+# Arguments are passed on to LoadTest, e.g.
+#     test/perf/load/run_load_test.sh --docs 500000 --index-threads 8 --pooled --gzip 8192
+# Run from the module directory, with the classes built as described in test/perf/README.md
+# and CLASSPATH set to build/load plus the client's jars.
+#
+set -e
+
+module_dir=$(cd "$(dirname "$0")/../../.." && pwd)
+solr_port=${SOLR_PORT:-18983}
+service_port=${SERVICE_PORT:-15000}
+work=$(mktemp -d)
+
+cleanup() {
+    [ -n "$service_pid" ] && kill $service_pid 2>/dev/null
+    [ -n "$solr_pid" ] && kill $solr_pid 2>/dev/null
+    rm -rf "$work"
+}
+trap cleanup EXIT
+
+java -Xmx4g us.kbase.kbsolrutil.load.FakeSolr $solr_port > "$work/solr.log" 2>&1 &
+solr_pid=$!
+
+cat > "$work/deploy.cfg" <<EOF
+[KBSolrUtil]
+solr-url = http://localhost:$solr_port/solr
+auth-service-url = http://localhost:$solr_port/auth/api/legacy/KBase/Sessions/Login
+auth-service-url-allow-insecure = true
+workspace-url = http://localhost:$solr_port/ws
+shock-url = http://localhost:$solr_port/shock-api
+handle-service-url = http://localhost:$solr_port/handle_service
+scratch = $work
+EOF
+
+KB_DEPLOYMENT_CONFIG="$work/deploy.cfg" KB_SERVICE_NAME=KBSolrUtil \
+    plackup -I"$module_dir/lib" --port $service_port \
+    "$module_dir/lib/KBSolrUtil.psgi" > "$work/service.log" 2>&1 &
+service_pid=$!
+
+for i in $(seq 1 30); do
+    curl -s -o /dev/null "http://localhost:$service_port" && break
+    sleep 1
+done
+
+java us.kbase.kbsolrutil.load.LoadTest --url "http://localhost:$service_port" --token loadtest "$@"
@@ -0,0 +1,515 @@
+package us.kbase.kbsolrutil.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * <p>A local stand-in for the KBase Solr server, for running the KBSolrUtil service and
+ * {@link LoadTest} offline.</p>
+ * <pre>
+ * It speaks the subset of the Solr HTTP API the service uses, under /solr:
+ *     /solr/{core}/select        q, fq, fl, rows, start, sort, cursorMark, facet.query,
+ *                                facet.field, group.field; GET or form POST
+ *     /solr/{core}/update/json   a JSON array of documents, or add/delete/commit commands
+ *     /solr/{core}/update        XML add/delete/commit/rollback, also as stream.body
+ *     /solr/{core}/schema/uniquekey  the uniqueKey field of the core
+ *     /solr/select               the service's ping
+ * Cores are created on first use, with the schema of {@link FakeSolrCore}. Responses are
+ * always written as wt=json and gzipped when the request accepts it. Gzipped request bodies
+ * are inflated. Errors are returned the way Solr does, with the status in the responseHeader.
+ * Any request under /auth is answered as a valid token of the user 'loadtest', so the service
+ * can be pointed at this server as its auth-service-url too.
+ * Start it with:
+ *     java us.kbase.kbsolrutil.load.FakeSolr [port]
+ * </pre>
+ */
+public class FakeSolr implements AutoCloseable {
+
+    public static final int DEFAULT_PORT = 8983;
+    private static final int GZIP_MIN_BYTES = 1024;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Map<String, FakeSolrCore> cores = new ConcurrentHashMap<String, FakeSolrCore>();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /** Starts the stand-in.
+     * @param port the port to listen on, 0 for a free port.
+     * @param threads the number of request threads.
+     * @throws IOException if the server cannot be started.
+     */
+    public FakeSolr(int port, int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext("/solr", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleSolr(exchange);
+            }
+        });
+        server.createContext("/auth", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                drain(exchange);
+                Map<String, Object> user = new LinkedHashMap<String, Object>();
+                user.put("user_id", "loadtest");
+                user.put("name", "Load Test");
+                respond(exchange, 200, user);
+            }
+        });
+        server.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        FakeSolr solr = new FakeSolr(port, Runtime.getRuntime().availableProcessors() * 2);
+        System.out.println("Fake Solr listening on " + solr.getBaseURL());
+    }
+
+    /** @return the Solr base URL to set as the service's solr-url. */
+    public String getBaseURL() {
+        return "http://localhost:" + server.getAddress().getPort() + "/solr";
+    }
+
+    /** @return the core, created if it does not exist yet. */
+    public FakeSolrCore core(String name) {
+        FakeSolrCore core = cores.get(name);
+        if (core == null) {
+            cores.putIfAbsent(name, new FakeSolrCore(name));
+            core = cores.get(name);
+        }
+        return core;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleSolr(HttpExchange exchange) throws IOException {
+        long started = System.nanoTime();
+        try {
+            String path = exchange.getRequestURI().getPath().substring("/solr".length());
+            byte[] body = drain(exchange);
+            Map<String, List<String>> params = new HashMap<String, List<String>>();
+            parseParams(exchange.getRequestURI().getRawQuery(), params);
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+                parseParams(new String(body, StandardCharsets.UTF_8), params);
+                body = new byte[0];
+            }
+            String[] parts = path.replaceAll("^/+", "").split("/");
+            Map<String, Object> out;
+            if (parts.length == 1 && parts[0].equals("select")) {
+                out = new LinkedHashMap<String, Object>();
+            } else if (parts.length >= 2 && parts[1].equals("select")) {
+                out = select(core(parts[0]), params);
+            } else if (parts.length == 3 && parts[1].equals("update") && parts[2].equals("json")) {
+                out = updateJson(core(parts[0]), body, params);
+            } else if (parts.length == 2 && parts[1].equals("update")) {
+                String stream = first(params, "stream.body", null);
+                out = updateXml(core(parts[0]),
+                        stream != null ? stream.getBytes(StandardCharsets.UTF_8) : body, params);
+            } else if (parts.length == 3 && parts[1].equals("schema") && parts[2].equals("uniquekey")) {
+                out = new LinkedHashMap<String, Object>();
+                out.put("uniqueKey", core(parts[0]).getUniqueKey());
+            } else {
+                error(exchange, 404, "Unknown path " + path, started);
+                return;
+            }
+            Map<String, Object> response = new LinkedHashMap<String, Object>();
+            response.put("responseHeader", header(0, started));
+            response.putAll(out);
+            respond(exchange, 200, response);
+        } catch (IllegalArgumentException e) {
+            error(exchange, 400, e.getMessage(), started);
+        } catch (Exception e) {
+            error(exchange, 500, e.toString(), started);
+        }
+    }
+
+    private Map<String, Object> select(FakeSolrCore core, Map<String, List<String>> params) {
+        List<String> queries = new ArrayList<String>();
+        queries.add(first(params, "q", "*:*"));
+        queries.addAll(all(params, "fq"));
+        List<Map<String, Object>> found = core.find(queries);
+        int rows = Integer.parseInt(first(params, "rows", "10"));
+        int start = Integer.parseInt(first(params, "start", "0"));
+        String sort = first(params, "sort", null);
+        String cursorMark = first(params, "cursorMark", null);
+        if (cursorMark != null) {
+            if (sort == null || !sort.contains(core.getUniqueKey())) {
+                throw new IllegalArgumentException("Cursor functionality requires a sort " +
+                        "containing a uniqueKey field tie breaker");
+            }
+            start = cursorMark.equals("*") ? 0 : decodeCursor(cursorMark);
+        }
+        if (sort != null && !sort.trim().isEmpty()) {
+            Collections.sort(found, FakeSolrCore.sortOrder(sort));
+        }
+        String[] fl = first(params, "fl", "*").split("[,\\s]+");
+
+        Map<String, Object> out = new LinkedHashMap<String, Object>();
+        String groupField = first(params, "group.field", null);
+        if ("true".equals(first(params, "group", "false")) && groupField != null) {
+            out.put("grouped", group(found, groupField, start, rows,
+                    Integer.parseInt(first(params, "group.limit", "1")), fl));
+        } else {
+            List<Map<String, Object>> page = new ArrayList<Map<String, Object>>();
+            for (int i = start; i < found.size() && i < start + rows; i++) {
+                page.add(project(found.get(i), fl));
+            }
+            Map<String, Object> result = new LinkedHashMap<String, Object>();
+            result.put("numFound", found.size());
+            result.put("start", start);
+            result.put("docs", page);
+            out.put("response", result);
+            if (cursorMark != null) {
+                out.put("nextCursorMark", page.isEmpty() ? cursorMark : encodeCursor(start + page.size()));
+            }
+        }
+        if ("true".equals(first(params, "facet", "false"))) {
+            out.put("facet_counts", facets(found, params));
+        }
+        return out;
+    }
+
+    private Map<String, Object> group(List<Map<String, Object>> found, String field, int start,
+            int rows, int limit, String[] fl) {
+        Map<String, List<Map<String, Object>>> groups = new LinkedHashMap<String, List<Map<String, Object>>>();
+        for (Map<String, Object> doc : found) {
+            Object v = doc.get(field);
+            String key = v == null ? null : v.toString();
+            List<Map<String, Object>> members = groups.get(key);
+            if (members == null) {
+                members = new ArrayList<Map<String, Object>>();
+                groups.put(key, members);
+            }
+            members.add(doc);
+        }
+        List<Object> list = new ArrayList<Object>();
+        int i = 0;
+        for (Map.Entry<String, List<Map<String, Object>>> g : groups.entrySet()) {
+            if (i++ < start) {
+                continue;
+            }
+            if (list.size() >= rows) {
+                break;
+            }
+            List<Map<String, Object>> docs = new ArrayList<Map<String, Object>>();
+            for (int j = 0; j < g.getValue().size() && j < limit; j++) {
+                docs.add(project(g.getValue().get(j), fl));
+            }
+            Map<String, Object> doclist = new LinkedHashMap<String, Object>();
+            doclist.put("numFound", g.getValue().size());
+            doclist.put("start", 0);
+            doclist.put("docs", docs);
+            Map<String, Object> group = new LinkedHashMap<String, Object>();
+            group.put("groupValue", g.getKey());
+            group.put("doclist", doclist);
+            list.add(group);
+        }
+        Map<String, Object> grouping = new LinkedHashMap<String, Object>();
+        grouping.put("matches", found.size());
+        grouping.put("ngroups", groups.size());
+        grouping.put("groups", list);
+        return Collections.<String, Object>singletonMap(field, grouping);
+    }
+
+    private Map<String, Object> facets(List<Map<String, Object>> found, Map<String, List<String>> params) {
+        String nl = first(params, "json.nl", "flat");
+        // like Solr, facet_queries is always an object; json.nl only shapes the facet_fields counts
+        Map<String, Object> queries = new LinkedHashMap<String, Object>();
+        for (String q : all(params, "facet.query")) {
+            queries.put(q, FakeSolrCore.count(found, q));
+        }
+        int limit = Integer.parseInt(first(params, "facet.limit", "100"));
+        int minCount = Integer.parseInt(first(params, "facet.mincount", "0"));
+        Map<String, Object> fields = new LinkedHashMap<String, Object>();
+        for (String field : all(params, "facet.field")) {
+            Map<String, Long> counts = new TreeMap<String, Long>();
+            for (Map<String, Object> doc : found) {
+                Object v = doc.get(field);
+                for (Object value : v instanceof List ? (List<?>) v : Collections.singletonList(v)) {
+                    if (value != null) {
+                        Long c = counts.get(value.toString());
+                        counts.put(value.toString(), c == null ? 1 : c + 1);
+                    }
+                }
+            }
+            List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>();
+            for (Map.Entry<String, Long> e : counts.entrySet()) {
+                if (e.getValue() >= minCount) {
+                    entries.add(e);
+                }
+            }
+            Collections.sort(entries, (a, b) -> Long.compare(b.getValue(), a.getValue()));
+            if (limit >= 0 && entries.size() > limit) {
+                entries = entries.subList(0, limit);
+            }
+            fields.put(field, namedList(entries, nl));
+        }
+        Map<String, Object> out = new LinkedHashMap<String, Object>();
+        out.put("facet_queries", queries);
+        out.put("facet_fields", fields);
+        return out;
+    }
+
+    private static Object namedList(List<Map.Entry<String, Long>> entries, String nl) {
+        if (nl.equals("map")) {
+            Map<String, Long> map = new LinkedHashMap<String, Long>();
+            for (Map.Entry<String, Long> e : entries) {
+                map.put(e.getKey(), e.getValue());
+            }
+            return map;
+        }
+        List<Object> list = new ArrayList<Object>();
+        for (Map.Entry<String, Long> e : entries) {
+            if (nl.equals("arrarr")) {
+                list.add(new Object[] {e.getKey(), e.getValue()});
+            } else {
+                list.add(e.getKey());
+                list.add(e.getValue());
+            }
+        }
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> updateJson(FakeSolrCore core, byte[] body,
+            Map<String, List<String>> params) throws IOException {
+        if (body.length > 0) {
+            Object update = mapper.readValue(body, Object.class);
+            if (update instanceof List) {
+                for (Object doc : (List<Object>) update) {
+                    core.add((Map<String, Object>) doc);
+                }
+            } else if (update instanceof Map) {
+                Map<String, Object> commands = (Map<String, Object>) update;
+                Object add = commands.get("add");
+                for (Object a : add instanceof List ? (List<Object>) add :
+                        add == null ? Collections.emptyList() : Collections.singletonList(add)) {
+                    core.add((Map<String, Object>) ((Map<String, Object>) a).get("doc"));
+                }
+                Object delete = commands.get("delete");
+                if (delete instanceof Map) {
+                    Map<String, Object> d = (Map<String, Object>) delete;
+                    if (d.get("id") != null) {
+                        core.deleteById(d.get("id").toString());
+                    }
+                    if (d.get("query") != null) {
+                        core.deleteByQuery(d.get("query").toString());
+                    }
+                }
+                if (commands.containsKey("commit")) {
+                    core.commit();
+                }
+            }
+        }
+        commitIfAsked(core, params);
+        return Collections.emptyMap();
+    }
+
+    private Map<String, Object> updateXml(FakeSolrCore core, byte[] body,
+            Map<String, List<String>> params) throws Exception {
+        if (body.length > 0) {
+            Element root = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                    .parse(new ByteArrayInputStream(body)).getDocumentElement();
+            switch (root.getTagName()) {
+            case "add":
+                for (Element doc : children(root, "doc")) {
+                    Map<String, Object> fields = new LinkedHashMap<String, Object>();
+                    for (Element field : children(doc, "field")) {
+                        String name = field.getAttribute("name");
+                        Object prev = fields.get(name);
+                        if (prev == null) {
+                            fields.put(name, field.getTextContent());
+                        } else {
+                            List<Object> values = new ArrayList<Object>();
+                            if (prev instanceof List) {
+                                values.addAll((List<?>) prev);
+                            } else {
+                                values.add(prev);
+                            }
+                            values.add(field.getTextContent());
+                            fields.put(name, values);
+                        }
+                    }
+                    core.add(fields);
+                }
+                break;
+            case "delete":
+                for (Element id : children(root, "id")) {
+                    core.deleteById(id.getTextContent());
+                }
+                for (Element query : children(root, "query")) {
+                    core.deleteByQuery(URLDecoder.decode(query.getTextContent(), "UTF-8"));
+                }
+                break;
+            case "commit":
+            case "optimize":
+                core.commit();
+                break;
+            case "rollback":
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown update command " + root.getTagName());
+            }
+        }
+        commitIfAsked(core, params);
+        return Collections.emptyMap();
+    }
+
+    private static void commitIfAsked(FakeSolrCore core, Map<String, List<String>> params) {
+        if ("true".equals(first(params, "commit", "false")) ||
+                "true".equals(first(params, "softCommit", "false"))) {
+            core.commit();
+        }
+    }
+
+    private static List<Element> children(Element parent, String tag) {
+        List<Element> out = new ArrayList<Element>();
+        NodeList nodes = parent.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node n = nodes.item(i);
+            if (n instanceof Element && ((Element) n).getTagName().equals(tag)) {
+                out.add((Element) n);
+            }
+        }
+        return out;
+    }
+
+    private static Map<String, Object> project(Map<String, Object> doc, String[] fl) {
+        if (fl.length == 0 || (fl.length == 1 && fl[0].equals("*"))) {
+            return doc;
+        }
+        Map<String, Object> out = new LinkedHashMap<String, Object>();
+        for (String f : fl) {
+            if (f.equals("*")) {
+                out.putAll(doc);
+            } else if (doc.containsKey(f)) {
+                out.put(f, doc.get(f));
+            }
+        }
+        return out;
+    }
+
+    private static Map<String, Object> header(int status, long started) {
+        Map<String, Object> header = new LinkedHashMap<String, Object>();
+        header.put("status", status);
+        header.put("QTime", (System.nanoTime() - started) / 1000000);
+        return header;
+    }
+
+    private void error(HttpExchange exchange, int code, String msg, long started) throws IOException {
+        Map<String, Object> error = new LinkedHashMap<String, Object>();
+        error.put("msg", msg);
+        error.put("code", code);
+        Map<String, Object> response = new LinkedHashMap<String, Object>();
+        response.put("responseHeader", header(code, started));
+        response.put("error", error);
+        respond(exchange, code, response);
+    }
+
+    private void respond(HttpExchange exchange, int code, Object response) throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(response);
+        String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        exchange.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+        if (accept != null && accept.contains("gzip") && bytes.length >= GZIP_MIN_BYTES) {
+            ByteArrayOutputStream gz = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(gz)) {
+                out.write(bytes);
+            }
+            bytes = gz.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] drain(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            in = new GZIPInputStream(in);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[65536];
+        for (int n; (n = in.read(buffer)) > 0; ) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static void parseParams(String query, Map<String, List<String>> params)
+            throws IOException {
+        if (query == null || query.isEmpty()) {
+            return;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), "UTF-8");
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+            List<String> values = params.get(key);
+            if (values == null) {
+                values = new ArrayList<String>();
+                params.put(key, values);
+            }
+            values.add(value);
+        }
+    }
+
+    private static String first(Map<String, List<String>> params, String key, String def) {
+        List<String> values = params.get(key);
+        return values == null || values.isEmpty() ? def : values.get(0);
+    }
+
+    private static List<String> all(Map<String, List<String>> params, String key) {
+        List<String> values = params.get(key);
+        return values == null ? Collections.<String>emptyList() : values;
+    }
+
+    private static String encodeCursor(int offset) {
+        return Base64.getEncoder().encodeToString(("offset:" + offset).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int decodeCursor(String mark) {
+        try {
+            String s = new String(Base64.getDecoder().decode(mark), StandardCharsets.UTF_8);
+            return Integer.parseInt(s.substring("offset:".length()));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Unable to parse 'cursorMark' after totem: value " +
+                    "must either be '*' or the 'nextCursorMark' returned by a previous search: " + mark);
+        }
+    }
+}
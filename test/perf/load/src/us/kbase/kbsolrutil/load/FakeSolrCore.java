@@ -0,0 +1,382 @@
+package us.kbase.kbsolrutil.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * <p>An in-memory core of the {@link FakeSolr} stand-in.</p>
+ * <pre>
+ * The schema of a core follows its name, as on the KBase Solr servers:
+ *     GenomeFeatures*  - unique key genome_feature_id
+ *     taxonomy*        - unique key taxonomy_id, aliases multi-valued
+ *     anything else    - unique key id
+ * The free-text fields (functions, aliases, scientific names and lineages, ontology names)
+ * match a quoted value anywhere in the text, ignoring case; the other fields match the whole
+ * value. Documents are visible to searches as soon as they are added; commits are counted only.
+ * The query syntax understood is the one the service sends:
+ *     *:*   field:"value"   field:val*ue   field:*   field:(a OR b OR c)
+ * with clauses joined by AND (all must match) or OR (any must match), and - to negate a clause.
+ * </pre>
+ */
+public class FakeSolrCore {
+
+    private static final Set<String> TEXT_FIELDS = new HashSet<String>(Arrays.asList(
+            "functions", "aliases", "scientific_name", "scientific_lineage", "taxonomy",
+            "go_ontology_description", "ontology_names", "ontology_lineages"));
+
+    private final String name;
+    private final String uniqueKey;
+    private final Set<String> multiValued;
+    private final ConcurrentSkipListMap<String, Map<String, Object>> docs =
+            new ConcurrentSkipListMap<String, Map<String, Object>>();
+    private final AtomicLong commits = new AtomicLong();
+
+    public FakeSolrCore(String name) {
+        this.name = name;
+        if (name.startsWith("GenomeFeatures")) {
+            uniqueKey = "genome_feature_id";
+            multiValued = Collections.emptySet();
+        } else if (name.startsWith("taxonomy")) {
+            uniqueKey = "taxonomy_id";
+            multiValued = Collections.singleton("aliases");
+        } else {
+            uniqueKey = "id";
+            multiValued = Collections.emptySet();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUniqueKey() {
+        return uniqueKey;
+    }
+
+    public int size() {
+        return docs.size();
+    }
+
+    public long getCommits() {
+        return commits.get();
+    }
+
+    public void commit() {
+        commits.incrementAndGet();
+    }
+
+    /** Adds or replaces a document.
+     * @throws IllegalArgumentException if the document has no unique key value.
+     */
+    public void add(Map<String, Object> doc) {
+        Object key = doc.get(uniqueKey);
+        if (key == null) {
+            throw new IllegalArgumentException("Document is missing mandatory uniqueKey field: " +
+                    uniqueKey);
+        }
+        Map<String, Object> stored = new LinkedHashMap<String, Object>();
+        for (Map.Entry<String, Object> e : doc.entrySet()) {
+            Object value = e.getValue();
+            if (multiValued.contains(e.getKey()) && !(value instanceof List)) {
+                value = new ArrayList<Object>(Collections.singletonList(value));
+            } else if (!multiValued.contains(e.getKey()) && value instanceof List &&
+                    ((List<?>) value).size() == 1) {
+                value = ((List<?>) value).get(0);
+            }
+            stored.put(e.getKey(), value);
+        }
+        docs.put(key.toString(), stored);
+    }
+
+    public void deleteById(String id) {
+        docs.remove(id);
+    }
+
+    public int deleteByQuery(String query) {
+        Query q = Query.parse(query);
+        int count = 0;
+        for (Map.Entry<String, Map<String, Object>> e : docs.entrySet()) {
+            if (q.matches(e.getValue()) && docs.remove(e.getKey()) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** @return the documents matching all the queries, in unique key order. */
+    public List<Map<String, Object>> find(List<String> queries) {
+        List<Query> parsed = new ArrayList<Query>();
+        for (String q : queries) {
+            parsed.add(Query.parse(q));
+        }
+        List<Map<String, Object>> out = new ArrayList<Map<String, Object>>();
+        for (Map<String, Object> doc : docs.values()) {
+            boolean match = true;
+            for (Query q : parsed) {
+                if (!q.matches(doc)) {
+                    match = false;
+                    break;
+                }
+            }
+            if (match) {
+                out.add(doc);
+            }
+        }
+        return out;
+    }
+
+    /** @return the number of documents of the list matching the query. */
+    public static long count(Collection<Map<String, Object>> docs, String query) {
+        Query q = Query.parse(query);
+        long count = 0;
+        for (Map<String, Object> doc : docs) {
+            if (q.matches(doc)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** @return the comparator of a Solr sort, e.g. 'genome_id asc,genome_feature_id asc'. */
+    public static Comparator<Map<String, Object>> sortOrder(String sort) {
+        Comparator<Map<String, Object>> order = null;
+        for (String clause : sort.split(",")) {
+            String[] parts = clause.trim().split("\\s+");
+            if (parts[0].isEmpty()) {
+                continue;
+            }
+            final String field = parts[0];
+            final boolean desc = parts.length > 1 && parts[1].equalsIgnoreCase("desc");
+            Comparator<Map<String, Object>> c = new Comparator<Map<String, Object>>() {
+                @Override
+                public int compare(Map<String, Object> a, Map<String, Object> b) {
+                    int r = compareValues(a.get(field), b.get(field));
+                    return desc ? -r : r;
+                }
+            };
+            order = order == null ? c : order.thenComparing(c);
+        }
+        return order;
+    }
+
+    private static int compareValues(Object a, Object b) {
+        if (a == null || b == null) {
+            // missing values sort last
+            return a == null ? (b == null ? 0 : 1) : -1;
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    /** A parsed query: clauses joined by AND or OR. */
+    static class Query {
+        private final List<Clause> clauses = new ArrayList<Clause>();
+        private boolean any = false;
+
+        static Query parse(String q) {
+            Query query = new Query();
+            String s = q == null ? "" : q.trim();
+            if (s.isEmpty() || s.equals("*:*") || s.equals("*")) {
+                return query;
+            }
+            boolean sawAnd = false;
+            for (String token : tokens(s)) {
+                if (token.equals("AND") || token.equals("&&")) {
+                    sawAnd = true;
+                } else if (token.equals("OR") || token.equals("||")) {
+                    query.any = true;
+                } else {
+                    query.clauses.add(Clause.parse(token));
+                }
+            }
+            query.any = query.any && !sawAnd;
+            return query;
+        }
+
+        boolean matches(Map<String, Object> doc) {
+            if (clauses.isEmpty()) {
+                return true;
+            }
+            for (Clause c : clauses) {
+                boolean m = c.matches(doc);
+                if (any && m) {
+                    return true;
+                }
+                if (!any && !m) {
+                    return false;
+                }
+            }
+            return !any;
+        }
+
+        // splits on whitespace outside quotes and parentheses, keeping escapes
+        private static List<String> tokens(String s) {
+            List<String> out = new ArrayList<String>();
+            StringBuilder cur = new StringBuilder();
+            boolean quoted = false;
+            int depth = 0;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '\\' && i + 1 < s.length()) {
+                    cur.append(c).append(s.charAt(++i));
+                    continue;
+                }
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (!quoted && c == '(') {
+                    depth++;
+                } else if (!quoted && c == ')') {
+                    depth--;
+                } else if (!quoted && depth == 0 && Character.isWhitespace(c)) {
+                    if (cur.length() > 0) {
+                        out.add(cur.toString());
+                        cur.setLength(0);
+                    }
+                    continue;
+                }
+                cur.append(c);
+            }
+            if (cur.length() > 0) {
+                out.add(cur.toString());
+            }
+            return out;
+        }
+    }
+
+    /** A single field:value clause. */
+    static class Clause {
+        private String field;
+        private boolean negated = false;
+        private boolean exists = false;
+        private boolean phrase = false;
+        private Pattern wildcard = null;
+        private final Set<String> values = new HashSet<String>();
+
+        static Clause parse(String token) {
+            Clause c = new Clause();
+            String t = token;
+            if (t.startsWith("+")) {
+                t = t.substring(1);
+            } else if (t.startsWith("-")) {
+                c.negated = true;
+                t = t.substring(1);
+            }
+            int colon = unescapedIndexOf(t, ':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("undefined field in query clause " + token);
+            }
+            c.field = t.substring(0, colon);
+            String v = t.substring(colon + 1);
+            if (v.equals("*")) {
+                c.exists = true;
+            } else if (v.startsWith("(") && v.endsWith(")")) {
+                for (String term : v.substring(1, v.length() - 1).trim().split("\\s+(?:OR|\\|\\|)\\s+")) {
+                    c.values.add(unquote(term.trim()));
+                }
+            } else if (v.startsWith("\"") && v.endsWith("\"") && v.length() > 1) {
+                c.phrase = true;
+                c.values.add(unescape(v.substring(1, v.length() - 1)));
+            } else if (unescapedIndexOf(v, '*') >= 0 || unescapedIndexOf(v, '?') >= 0) {
+                StringBuilder re = new StringBuilder();
+                for (int i = 0; i < v.length(); i++) {
+                    char ch = v.charAt(i);
+                    if (ch == '\\' && i + 1 < v.length()) {
+                        re.append(Pattern.quote(String.valueOf(v.charAt(++i))));
+                    } else if (ch == '*') {
+                        re.append(".*");
+                    } else if (ch == '?') {
+                        re.append('.');
+                    } else {
+                        re.append(Pattern.quote(String.valueOf(ch)));
+                    }
+                }
+                c.wildcard = Pattern.compile(re.toString(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+            } else {
+                c.values.add(unescape(v));
+            }
+            return c;
+        }
+
+        boolean matches(Map<String, Object> doc) {
+            return negated != matchesValue(doc.get(field));
+        }
+
+        private boolean matchesValue(Object value) {
+            if (value == null) {
+                return false;
+            }
+            if (value instanceof List) {
+                for (Object v : (List<?>) value) {
+                    if (matchesValue(v)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (exists) {
+                return true;
+            }
+            String s = value instanceof Double && ((Double) value) == Math.rint((Double) value) ?
+                    Long.toString(((Double) value).longValue()) : value.toString();
+            if (wildcard != null) {
+                return wildcard.matcher(s).matches();
+            }
+            if (values.contains(s)) {
+                return true;
+            }
+            if (phrase && TEXT_FIELDS.contains(field)) {
+                String lower = s.toLowerCase();
+                for (String v : values) {
+                    if (lower.contains(v.toLowerCase())) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static String unquote(String term) {
+            if (term.startsWith("\"") && term.endsWith("\"") && term.length() > 1) {
+                term = term.substring(1, term.length() - 1);
+            }
+            return unescape(term);
+        }
+
+        private static String unescape(String s) {
+            StringBuilder out = new StringBuilder(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '\\' && i + 1 < s.length()) {
+                    c = s.charAt(++i);
+                }
+                out.append(c);
+            }
+            return out.toString();
+        }
+
+        private static int unescapedIndexOf(String s, char target) {
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '\\') {
+                    i++;
+                } else if (c == target) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
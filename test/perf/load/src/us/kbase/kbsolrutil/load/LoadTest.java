@@ -0,0 +1,296 @@
+package us.kbase.kbsolrutil.load;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import us.kbase.auth.AuthToken;
+import us.kbase.kbsolrutil.IndexInSolrParams;
+import us.kbase.kbsolrutil.KBSolrUtilClient;
+import us.kbase.kbsolrutil.PooledJsonClientCaller;
+import us.kbase.kbsolrutil.SearchSolrParams;
+import us.kbase.kbsolrutil.SolrGenomeFeatureData;
+import us.kbase.kbsolrutil.SolrSearchResponse;
+
+/**
+ * <p>A load test of a running KBSolrUtil service: concurrent index_in_solr and search_solr
+ * calls through KBSolrUtilClient, reporting the latency percentiles and throughput.</p>
+ * <pre>
+ * The index workers send --docs genome feature docs in index_in_solr batches of --batch, while
+ * the search workers make typed search_solr calls for the genomes indexed so far, until the
+ * index workers are done or --duration seconds have passed. Options:
+ *     --url URL              the service URL (default http://localhost:5000)
+ *     --token TOKEN          the auth token (default $KB_AUTH_TOKEN, else 'loadtest')
+ *     --core NAME            the Solr core (default GenomeFeatures_loadtest)
+ *     --index-threads N      index workers (default 4)
+ *     --search-threads N     search workers (default 4)
+ *     --docs N               docs to index (default 200000)
+ *     --batch N              docs per index_in_solr call (default 1000)
+ *     --duration S           stop after S seconds (default 300)
+ *     --commit-policy P      commit_policy of the index calls (default none)
+ *     --pooled               use the pooled keep-alive transport
+ *     --gzip BYTES           with --pooled, gzip request bodies of at least BYTES
+ * The service must be able to reach a Solr server, e.g. the {@link FakeSolr} stand-in started
+ * by run_load_test.sh.
+ * </pre>
+ */
+public class LoadTest {
+
+    private final KBSolrUtilClient client;
+    private final String core;
+    private final int docs;
+    private final int batch;
+    private final String commitPolicy;
+    private final AtomicInteger nextBatch = new AtomicInteger();
+    private final AtomicInteger indexedGenomes = new AtomicInteger();
+    private final AtomicBoolean stop = new AtomicBoolean(false);
+
+    public LoadTest(KBSolrUtilClient client, String core, int docs, int batch, String commitPolicy) {
+        this.client = client;
+        this.core = core;
+        this.docs = docs;
+        this.batch = batch;
+        this.commitPolicy = commitPolicy;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<String, String>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            }
+            String name = args[i].substring(2);
+            opts.put(name, name.equals("pooled") ? "true" : args[++i]);
+        }
+        String token = opts.containsKey("token") ? opts.get("token") :
+                System.getenv("KB_AUTH_TOKEN") != null ? System.getenv("KB_AUTH_TOKEN") : "loadtest";
+        KBSolrUtilClient client = new KBSolrUtilClient(
+                new URL(option(opts, "url", "http://localhost:5000")), new AuthToken(token, "loadtest"));
+        client.setIsInsecureHttpConnectionAllowed(true);
+        if (opts.containsKey("pooled")) {
+            client.setGzipMinBytes(Integer.parseInt(
+                    option(opts, "gzip", String.valueOf(PooledJsonClientCaller.GZIP_DISABLED))));
+            client.usePooledConnections();
+        }
+        LoadTest test = new LoadTest(client, option(opts, "core", "GenomeFeatures_loadtest"),
+                Integer.parseInt(option(opts, "docs", "200000")),
+                Integer.parseInt(option(opts, "batch", "1000")),
+                option(opts, "commit-policy", "none"));
+        try {
+            test.run(Integer.parseInt(option(opts, "index-threads", "4")),
+                    Integer.parseInt(option(opts, "search-threads", "4")),
+                    Integer.parseInt(option(opts, "duration", "300")));
+        } finally {
+            client.closePooledConnections();
+        }
+    }
+
+    /** Runs the index and search workers and prints the report. */
+    public void run(int indexThreads, int searchThreads, int durationSeconds) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(indexThreads + searchThreads);
+        List<Future<Stats>> indexers = new ArrayList<Future<Stats>>();
+        List<Future<Stats>> searchers = new ArrayList<Future<Stats>>();
+        long started = System.nanoTime();
+        for (int i = 0; i < indexThreads; i++) {
+            indexers.add(pool.submit(new Callable<Stats>() {
+                @Override
+                public Stats call() {
+                    return index();
+                }
+            }));
+        }
+        for (int i = 0; i < searchThreads; i++) {
+            final long seed = i;
+            searchers.add(pool.submit(new Callable<Stats>() {
+                @Override
+                public Stats call() {
+                    return search(new Random(seed));
+                }
+            }));
+        }
+        pool.shutdown();
+        long deadline = started + TimeUnit.SECONDS.toNanos(durationSeconds);
+        Stats index = new Stats("index_in_solr");
+        for (Future<Stats> f : indexers) {
+            try {
+                index.merge(f.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                stop.set(true);
+                index.merge(f.get());
+            }
+        }
+        stop.set(true);
+        Stats search = new Stats("search_solr");
+        for (Future<Stats> f : searchers) {
+            search.merge(f.get());
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        System.out.printf("%d index workers, %d search workers, %d docs in batches of %d, %.1f s%n",
+                indexThreads, searchThreads, docs, batch, seconds);
+        System.out.println(Stats.HEADER);
+        System.out.println(index.report(seconds));
+        System.out.println(search.report(seconds));
+        System.out.printf("indexed %d docs, %.0f docs/sec%n", index.docs, index.docs / seconds);
+    }
+
+    private Stats index() {
+        Stats stats = new Stats("index_in_solr");
+        int batches = (docs + batch - 1) / batch;
+        for (int b; !stop.get() && (b = nextBatch.getAndIncrement()) < batches; ) {
+            int count = Math.min(batch, docs - b * batch);
+            IndexInSolrParams params = new IndexInSolrParams()
+                    .withSolrCore(core)
+                    .withDocData(batch(b, count))
+                    .withCommitPolicy(commitPolicy);
+            long start = System.nanoTime();
+            try {
+                client.indexInSolr(params);
+                stats.add(System.nanoTime() - start, count);
+                indexedGenomes.accumulateAndGet(b + 1, Math::max);
+            } catch (Exception e) {
+                stats.error(e);
+            }
+        }
+        return stats;
+    }
+
+    private Stats search(Random random) {
+        Stats stats = new Stats("search_solr");
+        Map<String, String> param = new HashMap<String, String>();
+        param.put("fl", "genome_feature_id,feature_id,functions,location_begin,location_end");
+        param.put("rows", String.valueOf(batch));
+        param.put("sort", "genome_feature_id asc");
+        while (!stop.get()) {
+            int genomes = indexedGenomes.get();
+            if (genomes == 0) {
+                Thread.yield();
+                continue;
+            }
+            Map<String, String> query = new HashMap<String, String>();
+            query.put("genome_id", genomeId(random.nextInt(genomes)));
+            SearchSolrParams params = new SearchSolrParams()
+                    .withSearchCore(core)
+                    .withSearchQuery(query)
+                    .withSearchParam(param)
+                    .withResultFormat("json")
+                    .withGroupOption("");
+            long start = System.nanoTime();
+            try {
+                SolrSearchResponse<SolrGenomeFeatureData> response =
+                        client.searchSolr(params, SolrGenomeFeatureData.class);
+                stats.add(System.nanoTime() - start, response.getDocs().size());
+            } catch (Exception e) {
+                stats.error(e);
+            }
+        }
+        return stats;
+    }
+
+    // one batch is one genome, so a search by genome_id returns a whole batch
+    private static List<Map<String, String>> batch(int genome, int count) {
+        Random random = new Random(genome);
+        String genomeId = genomeId(genome);
+        List<Map<String, String>> out = new ArrayList<Map<String, String>>(count);
+        for (int i = 0; i < count; i++) {
+            String featureId = String.format("LT%06d_%05d", genome, i);
+            int begin = 1 + random.nextInt(5000000);
+            Map<String, String> doc = new HashMap<String, String>();
+            doc.put("genome_feature_id", genomeId + "|feature--" + featureId);
+            doc.put("genome_id", genomeId);
+            doc.put("feature_id", featureId);
+            doc.put("ws_ref", "19217/" + (genome + 1) + "/1");
+            doc.put("feature_type", "gene");
+            doc.put("aliases", featureId + " locus_" + i);
+            doc.put("scientific_name", "Loadtestia genome " + genome);
+            doc.put("functions", "hypothetical protein " + random.nextInt(10000));
+            doc.put("taxonomy", "Bacteria; Proteobacteria; Loadtestia");
+            doc.put("md5", Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()));
+            doc.put("location_contig", genomeId + "_contig_1");
+            doc.put("location_begin", String.valueOf(begin));
+            doc.put("location_end", String.valueOf(begin + 300 + random.nextInt(3000)));
+            doc.put("protein_translation_length", String.valueOf(100 + random.nextInt(1000)));
+            doc.put("save_date", "2017-06-01T12:00:00+0000");
+            out.add(doc);
+        }
+        return out;
+    }
+
+    private static String genomeId(int genome) {
+        return String.format("GCF_LT%07d.1", genome);
+    }
+
+    private static String option(Map<String, String> opts, String name, String def) {
+        return opts.containsKey(name) ? opts.get(name) : def;
+    }
+
+    /** The latencies of one worker's calls, merged into the totals at the end. */
+    static class Stats {
+        static final String HEADER = String.format("%-14s %8s %7s %9s %9s %9s %9s %10s",
+                "call", "calls", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms", "calls/sec");
+
+        private final String name;
+        private long[] latencies = new long[1024];
+        private int calls = 0;
+        private int errors = 0;
+        private long docs = 0;
+        private String firstError = null;
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        void add(long nanos, int docCount) {
+            if (calls == latencies.length) {
+                latencies = Arrays.copyOf(latencies, calls * 2);
+            }
+            latencies[calls++] = nanos;
+            docs += docCount;
+        }
+
+        void error(Exception e) {
+            if (errors++ == 0) {
+                firstError = e.toString();
+            }
+        }
+
+        void merge(Stats other) {
+            for (int i = 0; i < other.calls; i++) {
+                add(other.latencies[i], 0);
+            }
+            docs += other.docs;
+            if (firstError == null) {
+                firstError = other.firstError;
+            }
+            errors += other.errors;
+        }
+
+        String report(double seconds) {
+            long[] sorted = Arrays.copyOf(latencies, calls);
+            Arrays.sort(sorted);
+            String line = String.format("%-14s %8d %7d %9.1f %9.1f %9.1f %9.1f %10.1f", name,
+                    calls, errors, percentile(sorted, 50), percentile(sorted, 90),
+                    percentile(sorted, 99), percentile(sorted, 100), calls / seconds);
+            return firstError == null ? line : line + String.format("%n  first error: %s", firstError);
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(p / 100 * sorted.length);
+            return sorted[Math.max(0, rank - 1)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+#
+# Benchmark of the Solr response checks made by KBSolrUtilImpl.
+#
+# Compares, per call and for responses of a growing number of docs, the CPU cost of
+#   xml_simple : the former _parseResponse/_exists path, XML::Simple::XMLin of a wt=xml response
+#                (made twice by _exists, once for the status and once for numFound)
+#   json_full  : decoding a whole wt=json response with JSON::from_json
+#   header_scan: the current _parseResponse/_exists path, _responseValue on a wt=json response
+#
+# Usage (from the module directory, inside the module's docker image):
+#   perl -Ilib test/perf/parse_response_bench.pl [--docs 10,1000,10000] [--seconds 3]
+#
+use strict;
+use Getopt::Long;
+use Benchmark qw(timethese cmpthese);
+use JSON;
+use XML::Simple;
+use KBSolrUtil::KBSolrUtilImpl;
+
+my $docCounts = "10,1000,10000";
+my $seconds = 3;
+GetOptions("docs=s" => \$docCounts, "seconds=i" => \$seconds)
+    or die "Usage: $0 [--docs 10,1000,10000] [--seconds 3]\n";
+
+# _parseResponse and _responseValue only use the error fields of the object
+my $impl = bless {}, "KBSolrUtil::KBSolrUtilImpl";
+
+foreach my $n (split(/,/, $docCounts)) {
+    my ($json, $xml) = make_responses($n);
+    printf("\n== %d docs: wt=json %d bytes, wt=xml %d bytes ==\n", $n, length($json), length($xml));
+
+    my $jsonResponse = {responsecode => 200, response => $json};
+    my $xmlResponse = {responsecode => 200, response => $xml};
+
+    # the three paths must agree before they are timed
+    die "header_scan found no docs\n"
+        unless $impl->_parseResponse($jsonResponse, "json")
+            && $impl->_responseValue($json, "numFound") == $n;
+    die "json_full found no docs\n"
+        unless JSON::from_json($json)->{response}->{numFound} == $n;
+    die "xml_simple found no docs\n"
+        unless XML::Simple->new()->XMLin($xml)->{result}->{numFound} == $n;
+
+    my $results = timethese(-$seconds, {
+        xml_simple => sub {
+            my $xs = XML::Simple->new();
+            my $ref = $xs->XMLin($xmlResponse->{response});
+            return 0 unless $ref->{lst}->{'int'}->{status}->{content} == 0;
+            $ref = $xs->XMLin($xmlResponse->{response});
+            return $ref->{result}->{numFound} > 0;
+        },
+        json_full => sub {
+            my $ref = JSON::from_json($jsonResponse->{response});
+            return 0 unless $ref->{responseHeader}->{status} == 0;
+            return $ref->{response}->{numFound} > 0;
+        },
+        header_scan => sub {
+            return 0 unless $impl->_parseResponse($jsonResponse, "json");
+            return $impl->_responseValue($jsonResponse->{response}, "numFound") > 0;
+        }
+    }, "none");
+    cmpthese($results);
+}
+
+#
+# Builds a wt=json and a wt=xml search response of $n GenomeFeatures-like docs.
+#
+sub make_responses
+{
+    my ($n) = @_;
+    my @docs;
+    for my $i (1 .. $n) {
+        push(@docs, {
+            genome_feature_id => "GCF_000518705.1|feature$i",
+            genome_id => "GCF_000518705.1",
+            feature_id => "feature$i",
+            feature_type => "CDS",
+            functions => "hypothetical protein $i",
+            aliases => "locus$i gene$i",
+            location_contig => "NZ_KI911391.1",
+            location_begin => $i * 1000,
+            location_end => $i * 1000 + 900,
+            location_strand => "+",
+            protein_translation_length => 300
+        });
+    }
+    my $header = {status => 0, QTime => 5, params => {q => "genome_id:GCF_000518705.1", wt => "json"}};
+    # assembled by hand so that responseHeader comes before response, as Solr writes it;
+    # canonical ordering would put it last
+    my $encoder = JSON->new->canonical(1);
+    my $json = '{"responseHeader":' . $encoder->encode($header)
+        . qq(,"response":{"numFound":$n,"start":0,"docs":) . $encoder->encode(\@docs) . "}}";
+
+    my $xml = qq(<?xml version="1.0" encoding="UTF-8"?>\n<response>\n)
+        . qq(<lst name="responseHeader"><int name="status">0</int><int name="QTime">5</int></lst>\n)
+        . qq(<result name="response" numFound="$n" start="0">\n);
+    foreach my $doc (@docs) {
+        $xml .= "<doc>";
+        foreach my $field (sort keys %$doc) {
+            my $type = $doc->{$field} =~ /^\d+$/ ? "long" : "str";
+            $xml .= qq(<$type name="$field">$doc->{$field}</$type>);
+        }
+        $xml .= "</doc>\n";
+    }
+    $xml .= "</result>\n</response>\n";
+    return ($json, $xml);
+}
@@ -0,0 +1,235 @@
+package us.kbase.kbsolrutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import us.kbase.common.service.JsonClientException;
+import us.kbase.common.service.RpcContext;
+
+public class BulkIndexerTest {
+
+    // records the index_in_solr calls; batches complete at once unless held
+    private static class FakeClient extends KBSolrUtilClient {
+        private final List<IndexInSolrParams> batches = new CopyOnWriteArrayList<IndexInSolrParams>();
+        private final List<IndexInSolrParams> commits = new CopyOnWriteArrayList<IndexInSolrParams>();
+        private final List<CompletableFuture<Long>> held = new CopyOnWriteArrayList<CompletableFuture<Long>>();
+        private volatile boolean hold = false;
+        private volatile int failBatch = 0;
+
+        private FakeClient() throws IOException {
+            super(new URL("http://localhost:1/"));
+        }
+
+        @Override
+        public CompletableFuture<Long> indexInSolrAsync(IndexInSolrParams params,
+                RpcContext... jsonRpcContext) {
+            batches.add(params);
+            CompletableFuture<Long> out = new CompletableFuture<Long>();
+            if (batches.size() == failBatch) {
+                out.completeExceptionally(new IOException("Solr is down"));
+            } else if (hold) {
+                held.add(out);
+            } else {
+                out.complete(1L);
+            }
+            return out;
+        }
+
+        @Override
+        public Long indexInSolr(IndexInSolrParams params, RpcContext... jsonRpcContext)
+                throws IOException, JsonClientException {
+            commits.add(params);
+            return 1L;
+        }
+
+        private void release() {
+            hold = false;
+            for (CompletableFuture<Long> f : held) {
+                f.complete(1L);
+            }
+        }
+    }
+
+    private FakeClient client;
+    private ExecutorService threads;
+
+    @Before
+    public void setUp() throws IOException {
+        client = new FakeClient();
+        threads = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        client.release();
+        threads.shutdownNow();
+    }
+
+    private static Map<String, String> doc(int i) {
+        Map<String, String> doc = new HashMap<String, String>();
+        doc.put("genome_feature_id", "g|f" + i);
+        return doc;
+    }
+
+    private static List<Integer> batchSizes(List<IndexInSolrParams> batches) {
+        List<Integer> sizes = new ArrayList<Integer>();
+        for (IndexInSolrParams p : batches) {
+            sizes.add(p.getDocData().size());
+        }
+        return sizes;
+    }
+
+    @Test
+    public void batchesByDocCount() throws Exception {
+        BulkIndexer indexer = new BulkIndexer(client, "Test_core").withMaxBatchDocs(3)
+                .withFlushIntervalMillis(0);
+        for (int i = 0; i < 7; i++) {
+            indexer.add(doc(i));
+        }
+        assertEquals(2, client.batches.size());
+        indexer.close();
+        assertEquals(Arrays.asList(3, 3, 1), batchSizes(client.batches));
+        assertEquals(7, indexer.getDocsIndexed());
+        assertEquals(3, indexer.getBatchesIndexed());
+        assertEquals(0, indexer.getBatchesFailed());
+        assertEquals("Test_core", client.batches.get(0).getSolrCore());
+        assertTrue(client.commits.isEmpty());
+    }
+
+    @Test
+    public void batchesByByteSize() throws Exception {
+        BulkIndexer indexer = new BulkIndexer(client, "Test_core").withMaxBatchBytes(70)
+                .withFlushIntervalMillis(0);
+        for (int i = 0; i < 4; i++) {
+            indexer.add(doc(i));
+        }
+        indexer.close();
+        // each doc is estimated at 2 + 17 + 6 + 5 bytes, so two fit in 70
+        assertEquals(Arrays.asList(2, 2), batchSizes(client.batches));
+    }
+
+    @Test
+    public void flushTimerSendsPartialBatch() throws Exception {
+        BulkIndexer indexer = new BulkIndexer(client, "Test_core").withFlushIntervalMillis(20);
+        indexer.add(doc(1));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (client.batches.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Collections.singletonList(1), batchSizes(client.batches));
+        indexer.close();
+        assertEquals(1, client.batches.size());
+    }
+
+    @Test
+    public void addWaitingForSlotDoesNotHoldLock() throws Exception {
+        client.hold = true;
+        final BulkIndexer indexer = new BulkIndexer(client, "Test_core").withMaxBatchDocs(1)
+                .withMaxConcurrentBatches(1).withFlushIntervalMillis(0);
+        indexer.add(doc(1));
+        Future<?> blocked = threads.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                indexer.add(doc(2));
+                return null;
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+        // a call that needs the indexer's lock must not wait for the blocked add
+        Future<?> configured = threads.submit(new Runnable() {
+            @Override
+            public void run() {
+                indexer.withCommitPolicy("none");
+            }
+        });
+        configured.get(5, TimeUnit.SECONDS);
+        client.release();
+        blocked.get(5, TimeUnit.SECONDS);
+        client.release();
+        indexer.close();
+        assertEquals(2, indexer.getBatchesIndexed());
+    }
+
+    @Test
+    public void finalCommitAfterAllBatches() throws Exception {
+        BulkIndexer indexer = new BulkIndexer(client, "Test_core").withMaxBatchDocs(2)
+                .withCommitPolicy("none").withFinalCommitPolicy("soft");
+        for (int i = 0; i < 3; i++) {
+            indexer.add(doc(i));
+        }
+        indexer.close();
+        assertEquals("none", client.batches.get(0).getCommitPolicy());
+        assertEquals(1, client.commits.size());
+        assertEquals("soft", client.commits.get(0).getCommitPolicy());
+        assertTrue(client.commits.get(0).getDocData().isEmpty());
+    }
+
+    @Test
+    public void noFinalCommitWithoutDocs() {
+        new BulkIndexer(client, "Test_core").withFinalCommitPolicy("commit").close();
+        assertTrue(client.commits.isEmpty());
+    }
+
+    @Test
+    public void failedBatchSkipsFinalCommit() throws Exception {
+        client.failBatch = 2;
+        final List<Long> failed = new CopyOnWriteArrayList<Long>();
+        BulkIndexer indexer = new BulkIndexer(client, "Test_core").withMaxBatchDocs(1)
+                .withFinalCommitPolicy("commit")
+                .withListener(new BulkIndexer.BatchListener() {
+                    @Override
+                    public void batchIndexed(BulkIndexer.BatchResult result) {
+                    }
+
+                    @Override
+                    public void batchFailed(BulkIndexer.BatchResult result, Throwable error) {
+                        failed.add(result.getBatchNumber());
+                    }
+                });
+        for (int i = 0; i < 3; i++) {
+            indexer.add(doc(i));
+        }
+        try {
+            indexer.close();
+            fail("expected the close to fail");
+        } catch (UncheckedIOException e) {
+            assertEquals("1 of 3 batches of core Test_core failed; the final commit was not made",
+                    e.getCause().getMessage());
+        }
+        assertTrue(client.commits.isEmpty());
+        assertEquals(Collections.singletonList(2L), failed);
+        assertEquals(2, indexer.getDocsIndexed());
+        assertEquals(1, indexer.getDocsFailed());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addAfterClose() throws Exception {
+        BulkIndexer indexer = new BulkIndexer(client, "Test_core");
+        indexer.close();
+        indexer.add(doc(1));
+    }
+}
@@ -0,0 +1,124 @@
+package us.kbase.kbsolrutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Map;
+
+import org.junit.Test;
+
+import us.kbase.common.service.UObject;
+
+public class CompactGenomeFeatureDataTest {
+
+    private static final ObjectMapper MAPPER = UObject.getMapper();
+
+    private static final String FEATURE_JSON = "{" +
+            "\"genome_feature_id\":\"GCF_000005845.2|b0001\"," +
+            "\"genome_id\":\"GCF_000005845.2\"," +
+            "\"feature_id\":\"b0001\"," +
+            "\"ws_ref\":\"19217/10/1\"," +
+            "\"feature_type\":\"CDS\"," +
+            "\"scientific_name\":\"Escherichia coli str. K-12 substr. MG1655\"," +
+            "\"domain\":\"Bacteria\"," +
+            "\"functions\":\"thr operon leader peptide\"," +
+            "\"location_strand\":\"+\"," +
+            "\"genetic_code\":\"11\"," +
+            "\"location_begin\":190," +
+            "\"location_end\":255," +
+            "\"protein_translation_length\":21," +
+            "\"gc_content\":0.5079," +
+            "\"complete\":1," +
+            "\"refseq_category\":\"reference genome\"," +
+            "\"ec_numbers\":\"2.7.2.4\"" +
+            "}";
+
+    @Test
+    public void jsonRoundTrip() throws Exception {
+        CompactGenomeFeatureData doc = MAPPER.readValue(FEATURE_JSON, CompactGenomeFeatureData.class);
+        assertEquals(MAPPER.readTree(FEATURE_JSON), MAPPER.readTree(MAPPER.writeValueAsString(doc)));
+        assertEquals("2.7.2.4", doc.getAdditionalProperties().get("ec_numbers"));
+    }
+
+    @Test
+    public void sameJsonAsSolrGenomeFeatureData() throws Exception {
+        SolrGenomeFeatureData full = MAPPER.readValue(FEATURE_JSON, SolrGenomeFeatureData.class);
+        CompactGenomeFeatureData compact = CompactGenomeFeatureData.fromSolrGenomeFeatureData(full);
+        JsonNode expected = MAPPER.readTree(MAPPER.writeValueAsString(full));
+        assertEquals(expected, MAPPER.readTree(MAPPER.writeValueAsString(compact)));
+        assertEquals(expected, MAPPER.readTree(MAPPER.writeValueAsString(
+                compact.toSolrGenomeFeatureData())));
+    }
+
+    @Test
+    public void missingNumbers() throws Exception {
+        CompactGenomeFeatureData doc = MAPPER.readValue("{\"feature_id\":\"b1\"}",
+                CompactGenomeFeatureData.class);
+        assertFalse(doc.hasLocationBegin());
+        assertEquals(CompactGenomeFeatureData.MISSING_LONG, doc.getLocationBegin());
+        assertFalse(doc.hasGcContent());
+        assertTrue(Double.isNaN(doc.getGcContent()));
+        assertNull(doc.getFeatureType());
+        assertTrue(doc.getAdditionalProperties().isEmpty());
+        assertEquals("{\"feature_id\":\"b1\"}", MAPPER.writeValueAsString(doc));
+        assertNull(doc.toSolrGenomeFeatureData().getLocationBegin());
+    }
+
+    @Test
+    public void docData() throws Exception {
+        Map<String, String> data = MAPPER.readValue(FEATURE_JSON, CompactGenomeFeatureData.class)
+                .toDocData();
+        assertEquals("190", data.get("location_begin"));
+        assertEquals("0.5079", data.get("gc_content"));
+        assertEquals("CDS", data.get("feature_type"));
+        assertEquals("2.7.2.4", data.get("ec_numbers"));
+        assertFalse(data.containsKey("num_cds"));
+        assertEquals(17, data.size());
+    }
+
+    @Test
+    public void genomeFieldsShared() throws Exception {
+        CompactGenomeFeatureData a = MAPPER.readValue(FEATURE_JSON, CompactGenomeFeatureData.class);
+        CompactGenomeFeatureData b = MAPPER.readValue(FEATURE_JSON, CompactGenomeFeatureData.class);
+        assertSame(a.getGenomeId(), b.getGenomeId());
+        assertSame(a.getScientificName(), b.getScientificName());
+        assertSame(a.getFeatureType(), b.getFeatureType());
+    }
+
+    @Test
+    public void valueDictionaryCodes() {
+        ValueDictionary dict = new ValueDictionary("strand");
+        assertEquals(ValueDictionary.NULL, dict.encode(null));
+        short plus = dict.encode("+");
+        short minus = dict.encode("-");
+        assertEquals(plus, dict.encode("+"));
+        assertFalse(plus == minus);
+        assertEquals("+", dict.decode(plus));
+        assertNull(dict.decode(ValueDictionary.NULL));
+        assertEquals(2, dict.size());
+    }
+
+    @Test
+    public void valueDictionaryFull() {
+        ValueDictionary dict = new ValueDictionary("id");
+        for (int i = 0; i < ValueDictionary.MAX_VALUES; i++) {
+            dict.encode("v" + i);
+        }
+        assertEquals(ValueDictionary.MAX_VALUES, dict.size());
+        assertEquals("v" + (ValueDictionary.MAX_VALUES - 1),
+                dict.decode((short) ValueDictionary.MAX_VALUES));
+        try {
+            dict.encode("one more");
+            fail("expected the dictionary to be full");
+        } catch (IllegalStateException e) {
+            assertEquals("More than 32767 distinct values of id", e.getMessage());
+        }
+        assertEquals(1, dict.encode("v0"));
+    }
+}
@@ -0,0 +1,160 @@
+package us.kbase.kbsolrutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import us.kbase.common.service.UObject;
+import us.kbase.kbsolrutil.FeatureBatch.Field;
+
+public class FeatureBatchTest {
+
+    private static final ObjectMapper MAPPER = UObject.getMapper();
+
+    private static SolrGenomeFeatureData feature(int i) {
+        SolrGenomeFeatureData doc = new SolrGenomeFeatureData()
+                .withGenomeFeatureId("GCF_000005845.2|b" + i)
+                .withGenomeId("GCF_000005845.2")
+                .withFeatureId("b" + i)
+                .withFeatureType(i % 2 == 0 ? "CDS" : "gene")
+                .withScientificName("Escherichia coli str. K-12 substr. MG1655")
+                .withFunctions("hypothetical protein")
+                .withLocationBegin(100L * i)
+                .withLocationEnd(100L * i + 99)
+                .withGcContent(0.5 + i / 100.0)
+                .withComplete(1L);
+        doc.setAdditionalProperties("ec_numbers", "1.1.1." + i);
+        return doc;
+    }
+
+    @Test
+    public void rowRoundTrip() {
+        FeatureBatch batch = new FeatureBatch();
+        SolrGenomeFeatureData doc = feature(3);
+        assertEquals(0, batch.add(doc));
+        JsonNode expected = MAPPER.valueToTree(doc);
+        assertEquals(expected, MAPPER.valueToTree(batch.row(0).toSolrGenomeFeatureData()));
+    }
+
+    @Test
+    public void compactRoundTrip() {
+        FeatureBatch batch = new FeatureBatch();
+        SolrGenomeFeatureData doc = feature(4);
+        batch.add(CompactGenomeFeatureData.fromSolrGenomeFeatureData(doc));
+        assertEquals(MAPPER.valueToTree(doc),
+                MAPPER.valueToTree(batch.row(0).toSolrGenomeFeatureData()));
+    }
+
+    @Test
+    public void jsonLeavesOutMissingFields() throws Exception {
+        FeatureBatch batch = new FeatureBatch();
+        List<SolrGenomeFeatureData> docs = new ArrayList<SolrGenomeFeatureData>();
+        for (int i = 0; i < 3; i++) {
+            docs.add(feature(i));
+            batch.add(docs.get(i));
+        }
+        int row = batch.addRow();
+        batch.setString(row, Field.GENOME_FEATURE_ID, "x|y");
+        JsonNode json = MAPPER.readTree(batch.toJson());
+        assertEquals(4, json.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(MAPPER.readTree(MAPPER.writeValueAsString(docs.get(i))), json.get(i));
+        }
+        assertEquals(MAPPER.readTree("{\"genome_feature_id\":\"x|y\"}"), json.get(3));
+    }
+
+    @Test
+    public void dictionaryColumns() {
+        FeatureBatch batch = new FeatureBatch();
+        for (int i = 0; i < 5; i++) {
+            batch.add(feature(i));
+        }
+        int[] types = batch.codeColumn(Field.FEATURE_TYPE);
+        assertEquals(2, batch.cardinality(Field.FEATURE_TYPE));
+        assertEquals(1, batch.cardinality(Field.GENOME_ID));
+        assertEquals(types[0], types[2]);
+        assertFalse(types[0] == types[1]);
+        assertEquals("CDS", batch.decode(Field.FEATURE_TYPE, types[4]));
+        assertEquals(0, batch.cardinality(Field.DOMAIN));
+        assertFalse(batch.row(0).has(Field.DOMAIN));
+        assertNull(batch.row(0).getString(Field.DOMAIN));
+    }
+
+    @Test
+    public void columnsGrowPastCapacity() {
+        FeatureBatch batch = new FeatureBatch(2);
+        for (int i = 0; i < 50; i++) {
+            batch.add(feature(i));
+        }
+        assertEquals(50, batch.size());
+        long[] begins = batch.longColumn(Field.LOCATION_BEGIN);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(100L * i, begins[i]);
+        }
+        assertEquals("b49", batch.row(49).getFeatureId());
+    }
+
+    @Test
+    public void missingNumbers() {
+        FeatureBatch batch = new FeatureBatch();
+        int row = batch.addRow();
+        assertEquals(FeatureBatch.MISSING_LONG, batch.row(row).getLocationBegin());
+        assertTrue(Double.isNaN(batch.row(row).getGcContent()));
+        batch.setLong(row, Field.LOCATION_BEGIN, 7);
+        assertTrue(batch.row(row).has(Field.LOCATION_BEGIN));
+        batch.setLong(row, Field.LOCATION_BEGIN, FeatureBatch.MISSING_LONG);
+        assertFalse(batch.row(row).has(Field.LOCATION_BEGIN));
+    }
+
+    @Test
+    public void iteratorMovesOneView() {
+        FeatureBatch batch = new FeatureBatch();
+        for (int i = 0; i < 3; i++) {
+            batch.add(feature(i));
+        }
+        FeatureBatch.Row first = null;
+        int count = 0;
+        for (FeatureBatch.Row row : batch) {
+            if (first == null) {
+                first = row;
+            }
+            assertSame(first, row);
+            assertEquals("b" + count, row.getFeatureId());
+            count++;
+        }
+        assertEquals(3, count);
+    }
+
+    @Test
+    public void clearForReuse() throws Exception {
+        FeatureBatch batch = new FeatureBatch();
+        batch.add(feature(1));
+        batch.clear();
+        assertEquals(0, batch.size());
+        assertEquals(0, batch.cardinality(Field.GENOME_ID));
+        assertEquals("[]", batch.toJson());
+        batch.add(feature(2));
+        assertEquals(MAPPER.valueToTree(feature(2)),
+                MAPPER.valueToTree(batch.row(0).toSolrGenomeFeatureData()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongKind() {
+        FeatureBatch batch = new FeatureBatch();
+        batch.setLong(batch.addRow(), Field.GENOME_ID, 1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rowOutOfRange() {
+        new FeatureBatch().row(0);
+    }
+}
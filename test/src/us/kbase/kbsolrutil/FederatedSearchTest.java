@@ -0,0 +1,187 @@
+package us.kbase.kbsolrutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import us.kbase.common.service.RpcContext;
+import us.kbase.common.service.UObject;
+
+public class FederatedSearchTest {
+
+    private static final ObjectMapper MAPPER = UObject.getMapper();
+
+    // answers searchSolrAsync with a fixed outcome and keeps the parameters it was called with
+    private static class FakeClient extends KBSolrUtilClient {
+        private final CompletableFuture<SolrSearchResponse<SolrGenomeFeatureData>> result;
+        private SearchSolrParams params;
+
+        private FakeClient(CompletableFuture<SolrSearchResponse<SolrGenomeFeatureData>> result)
+                throws IOException {
+            super(new URL("http://localhost:1/"));
+            this.result = result;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> CompletableFuture<SolrSearchResponse<T>> searchSolrAsync(SearchSolrParams params,
+                Class<T> docType, RpcContext... jsonRpcContext) {
+            this.params = params;
+            return (CompletableFuture<SolrSearchResponse<T>>) (Object) result;
+        }
+    }
+
+    // a core answering with docs of the given feature ids and location_begin values
+    private static FakeClient core(long numFound, Object... idsAndBegins) throws IOException {
+        StringBuilder docs = new StringBuilder();
+        for (int i = 0; i < idsAndBegins.length; i += 2) {
+            docs.append(i == 0 ? "" : ",").append("{\"feature_id\":\"").append(idsAndBegins[i])
+                    .append("\",\"location_begin\":").append(idsAndBegins[i + 1]).append("}");
+        }
+        String json = "[{\"responsecode\":200,\"response\":{\"responseHeader\":{\"status\":0," +
+                "\"QTime\":4},\"response\":{\"numFound\":" + numFound + ",\"start\":0,\"docs\":[" +
+                docs + "]}}}]";
+        List<SolrSearchResponse<SolrGenomeFeatureData>> response = MAPPER.readValue(json,
+                SolrSearchResponse.resultListType(SolrGenomeFeatureData.class));
+        return new FakeClient(CompletableFuture.completedFuture(response.get(0)));
+    }
+
+    private static List<String> ids(FederatedSearch.Result<SolrGenomeFeatureData> result) {
+        List<String> ids = new ArrayList<String>();
+        for (FederatedSearch.Hit<SolrGenomeFeatureData> hit : result.getHits()) {
+            ids.add(hit.getCore() + ":" + hit.getDoc().getFeatureId());
+        }
+        return ids;
+    }
+
+    private static Map<String, String> query() {
+        return Collections.singletonMap("q", "*:*");
+    }
+
+    @Test
+    public void mergeSortedAscending() throws Exception {
+        FederatedSearch.Result<SolrGenomeFeatureData> result =
+                new FederatedSearch<SolrGenomeFeatureData>(SolrGenomeFeatureData.class)
+                        .withCore("ci", core(10, "a", 1, "b", 5, "c", 9), "GenomeFeatures_ci")
+                        .withCore("prod", core(20, "x", 2, "y", 5, "z", 7), "GenomeFeatures_prod")
+                        .withSort("location_begin", true)
+                        .withRows(5)
+                        .search(query());
+        assertEquals(Arrays.asList("ci:a", "prod:x", "ci:b", "prod:y", "prod:z"), ids(result));
+        assertEquals(30, result.getNumFound());
+        assertFalse(result.isPartial());
+        assertEquals(3, result.getCores().get(0).getDocCount());
+        assertEquals(Long.valueOf(4), result.getCores().get(1).getQTime());
+    }
+
+    @Test
+    public void mergeSortedDescending() throws Exception {
+        FederatedSearch.Result<SolrGenomeFeatureData> result =
+                new FederatedSearch<SolrGenomeFeatureData>(SolrGenomeFeatureData.class)
+                        .withCore("ci", core(2, "b", 8, "a", 3), "GenomeFeatures_ci")
+                        .withCore("prod", core(2, "y", 10, "x", 1), "GenomeFeatures_prod")
+                        .withSort("location_begin", false)
+                        .search(query());
+        assertEquals(Arrays.asList("prod:y", "ci:b", "ci:a", "prod:x"), ids(result));
+    }
+
+    @Test
+    public void concatenateWithoutSort() throws Exception {
+        FederatedSearch.Result<SolrGenomeFeatureData> result =
+                new FederatedSearch<SolrGenomeFeatureData>(SolrGenomeFeatureData.class)
+                        .withCore("ci", core(2, "a", 9, "b", 1), "GenomeFeatures_ci")
+                        .withCore("prod", core(2, "x", 0, "y", 0), "GenomeFeatures_prod")
+                        .withRows(3)
+                        .search(query());
+        assertEquals(Arrays.asList("ci:a", "ci:b", "prod:x"), ids(result));
+    }
+
+    @Test
+    public void failedAndTimedOutCores() throws Exception {
+        CompletableFuture<SolrSearchResponse<SolrGenomeFeatureData>> failed =
+                new CompletableFuture<SolrSearchResponse<SolrGenomeFeatureData>>();
+        failed.completeExceptionally(new IOException("Solr is down"));
+        CompletableFuture<SolrSearchResponse<SolrGenomeFeatureData>> never =
+                new CompletableFuture<SolrSearchResponse<SolrGenomeFeatureData>>();
+        FederatedSearch.Result<SolrGenomeFeatureData> result =
+                new FederatedSearch<SolrGenomeFeatureData>(SolrGenomeFeatureData.class)
+                        .withCore("ok", core(1, "a", 1), "GenomeFeatures_ci")
+                        .withCore("down", new FakeClient(failed), "GenomeFeatures_prod")
+                        .withCore("slow", new FakeClient(never), "GenomeFeatures_test")
+                        .withDeadline(50)
+                        .search(query());
+        assertTrue(result.isPartial());
+        assertEquals(Arrays.asList("ok:a"), ids(result));
+        assertEquals(1, result.getNumFound());
+        List<FederatedSearch.CoreResult> cores = result.getCores();
+        assertEquals(FederatedSearch.Status.OK, cores.get(0).getStatus());
+        assertEquals(FederatedSearch.Status.FAILED, cores.get(1).getStatus());
+        assertEquals("Solr is down", cores.get(1).getError().getMessage());
+        assertNull(cores.get(1).getNumFound());
+        assertEquals(FederatedSearch.Status.TIMED_OUT, cores.get(2).getStatus());
+        assertTrue(cores.get(2).getElapsedMillis() >= 50);
+        assertTrue(never.isCancelled());
+    }
+
+    @Test
+    public void searchParams() throws Exception {
+        FakeClient ci = core(0);
+        new FederatedSearch<SolrGenomeFeatureData>(SolrGenomeFeatureData.class)
+                .withCore(ci, "GenomeFeatures_ci")
+                .withSort("location_begin", true)
+                .withFields("feature_id,genome_id")
+                .withRows(20)
+                .withFilterQueries(Arrays.asList("domain:\"Bacteria\""))
+                .search(new SolrQueryBuilder().should("functions", "kinase")
+                        .filter("feature_type", "CDS"));
+        SearchSolrParams params = ci.params;
+        assertEquals("GenomeFeatures_ci", params.getSearchCore());
+        assertEquals("json", params.getResultFormat());
+        assertEquals("20", params.getSearchParam().get("rows"));
+        assertEquals("location_begin asc", params.getSearchParam().get("sort"));
+        assertEquals("feature_id,genome_id,location_begin", params.getSearchParam().get("fl"));
+        assertEquals("functions:\"kinase\"", params.getSearchQuery().get("q"));
+        assertEquals(Arrays.asList("domain:\"Bacteria\"", "feature_type:\"CDS\""),
+                params.getFilterQueries());
+    }
+
+    @Test
+    public void compareKeys() throws Exception {
+        JsonNode two = MAPPER.readTree("2");
+        JsonNode ten = MAPPER.readTree("10");
+        assertTrue(FederatedSearch.compareKeys(two, ten, 1) < 0);
+        assertTrue(FederatedSearch.compareKeys(two, ten, -1) > 0);
+        assertTrue(FederatedSearch.compareKeys(MAPPER.readTree("\"2\""),
+                MAPPER.readTree("\"10\""), 1) > 0);
+        assertTrue(FederatedSearch.compareKeys(MAPPER.readTree("[2, 99]"), ten, 1) < 0);
+        // a missing key comes last in either direction
+        assertTrue(FederatedSearch.compareKeys(null, two, 1) > 0);
+        assertTrue(FederatedSearch.compareKeys(null, two, -1) > 0);
+        assertEquals(0, FederatedSearch.compareKeys(null, MAPPER.readTree("null"), 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateCoreName() throws Exception {
+        new FederatedSearch<SolrGenomeFeatureData>(SolrGenomeFeatureData.class)
+                .withCore("prod", core(0), "a").withCore("prod", core(0), "b");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noCores() throws Exception {
+        new FederatedSearch<SolrGenomeFeatureData>(SolrGenomeFeatureData.class).search(query());
+    }
+}
@@ -0,0 +1,148 @@
+package us.kbase.kbsolrutil;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SolrQueryBuilderTest {
+
+    private static List<String> ids(int count) {
+        List<String> ids = new ArrayList<String>();
+        for (int i = count - 1; i >= 0; i--) {
+            ids.add(String.format("g%03d", i));
+        }
+        return ids;
+    }
+
+    private static String join(List<String> values, String separator) {
+        StringBuilder out = new StringBuilder();
+        for (String v : values) {
+            out.append(out.length() == 0 ? "" : separator).append(v);
+        }
+        return out.toString();
+    }
+
+    @Test
+    public void termSetBelowThresholdIsBooleanQuery() {
+        List<String> ids = ids(SolrQueryBuilder.TERMS_PARSER_MIN_VALUES - 1);
+        String fq = new SolrQueryBuilder().filterAnyOf("genome_id", ids)
+                .getFilterQueries().get(0);
+        assertTrue(fq, fq.startsWith("genome_id:(\"g000\" OR \"g001\" OR "));
+        assertTrue(fq, fq.endsWith(" OR \"g062\")"));
+    }
+
+    @Test
+    public void termSetAtThresholdUsesTermsParser() {
+        List<String> ids = ids(SolrQueryBuilder.TERMS_PARSER_MIN_VALUES);
+        String fq = new SolrQueryBuilder().filterAnyOf("genome_id", ids)
+                .getFilterQueries().get(0);
+        List<String> sorted = new ArrayList<String>(ids);
+        Collections.sort(sorted);
+        assertEquals("{!terms f=genome_id}" + join(sorted, ","), fq);
+    }
+
+    @Test
+    public void termsParserSeparatorAvoidsValues() {
+        List<String> ids = ids(SolrQueryBuilder.TERMS_PARSER_MIN_VALUES);
+        ids.set(0, "a,b");
+        String fq = new SolrQueryBuilder().filterAnyOf("alias", ids).getFilterQueries().get(0);
+        assertTrue(fq, fq.startsWith("{!terms f=alias separator=\"|\"}a,b|g000|"));
+    }
+
+    @Test
+    public void termSetIsSortedAndDeduplicated() {
+        SolrQueryBuilder a = new SolrQueryBuilder().filterAnyOf("domain",
+                Arrays.asList("Bacteria", "Archaea", "Bacteria"));
+        SolrQueryBuilder b = new SolrQueryBuilder().filterAnyOf("domain",
+                Arrays.asList("Archaea", "Bacteria"));
+        assertEquals(Arrays.asList("domain:(\"Archaea\" OR \"Bacteria\")"), a.getFilterQueries());
+        assertEquals(a.getFilterQueries(), b.getFilterQueries());
+        assertEquals(Arrays.asList("domain:\"Bacteria\""), new SolrQueryBuilder()
+                .filterAnyOf("domain", Arrays.asList("Bacteria", "Bacteria")).getFilterQueries());
+    }
+
+    @Test
+    public void emptyTermSetMatchesNothing() {
+        assertEquals(Arrays.asList("-*:*"), new SolrQueryBuilder()
+                .filterAnyOf("genome_id", Collections.<String>emptyList()).getFilterQueries());
+    }
+
+    @Test
+    public void emptyExcludeSetExcludesNothing() {
+        assertEquals(Collections.<String>emptyList(), new SolrQueryBuilder()
+                .excludeAnyOf("genome_id", Collections.<String>emptyList()).getFilterQueries());
+    }
+
+    @Test
+    public void excludeBooleanSetIsNegated() {
+        assertEquals(Arrays.asList("-object_type:(\"A\" OR \"B\")"), new SolrQueryBuilder()
+                .excludeAnyOf("object_type", Arrays.asList("B", "A")).getFilterQueries());
+    }
+
+    @Test
+    public void excludeTermsSetIsWrappedInQuery() {
+        List<String> ids = ids(SolrQueryBuilder.TERMS_PARSER_MIN_VALUES);
+        ids.set(0, "say \"hi\"");
+        String fq = new SolrQueryBuilder().excludeAnyOf("alias", ids).getFilterQueries().get(0);
+        assertTrue(fq, fq.startsWith("-_query_:\"{!terms f=alias}g000,"));
+        assertTrue(fq, fq.endsWith(",g062,say \\\"hi\\\"\""));
+    }
+
+    @Test
+    public void valuesAreQuotedAndEscaped() {
+        SolrQueryBuilder query = new SolrQueryBuilder()
+                .filter("function", "a \"quoted\" back\\slash")
+                .filter("num_cds", 12)
+                .filter("complete", true);
+        assertEquals(Arrays.asList("function:\"a \\\"quoted\\\" back\\\\slash\"", "num_cds:12",
+                "complete:true"), query.getFilterQueries());
+    }
+
+    @Test
+    public void prefixIsEscaped() {
+        assertEquals(Arrays.asList("scientific_name:Escherichia\\ coli\\ \\(K\\-12\\)*"),
+                new SolrQueryBuilder().filterPrefix("scientific_name", "Escherichia coli (K-12)")
+                        .getFilterQueries());
+        assertEquals("a\\:b\\/c\\*", SolrQueryBuilder.escapeTerm("a:b/c*"));
+    }
+
+    @Test
+    public void rangeBounds() {
+        assertEquals(Arrays.asList("location_begin:[1000 TO *]", "gc_content:{0.5 TO 0.6]"),
+                new SolrQueryBuilder()
+                        .filterRange("location_begin", 1000, null)
+                        .filterRange("gc_content", 0.5, false, 0.6, true)
+                        .getFilterQueries());
+    }
+
+    @Test
+    public void queryWithoutScoringClauses() {
+        assertEquals("*:*", new SolrQueryBuilder().filter("domain", "Bacteria").getQuery());
+        assertEquals("*:* -domain:\"Archaea\"",
+                new SolrQueryBuilder().mustNot("domain", "Archaea").getQuery());
+        assertEquals("+domain:\"Bacteria\" -feature_type:\"gene\"", new SolrQueryBuilder()
+                .must("domain", "Bacteria").mustNot("feature_type", "gene").getQuery());
+    }
+
+    @Test
+    public void repeatedFilterIsSentOnce() {
+        assertEquals(Arrays.asList("domain:\"Bacteria\""), new SolrQueryBuilder()
+                .filter("domain", "Bacteria").filter("domain", "Bacteria").getFilterQueries());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidFieldName() {
+        new SolrQueryBuilder().filter("domain:x", "Bacteria");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullValue() {
+        new SolrQueryBuilder().filterAnyOf("domain", Arrays.asList("Bacteria", null));
+    }
+}
@@ -0,0 +1,116 @@
+package us.kbase.kbsolrutil;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TaxonomyIndexTest {
+
+    private static SolrTaxonData taxon(long id, String name, String rank, String wsRef,
+            String parentRef) {
+        return new SolrTaxonData().withTaxonomyId(id).withScientificName(name).withRank(rank)
+                .withWsRef(wsRef).withParentTaxonRef(parentRef);
+    }
+
+    // root 1 > Bacteria 2 > Proteobacteria 1224 > E. coli 562, and Archaea 2157 under the root
+    private static TaxonomyIndex tree() {
+        TaxonomyIndex index = new TaxonomyIndex();
+        // children come before their parents, as they may in a cursor page
+        index.putAll(Arrays.asList(
+                taxon(562, "Escherichia coli", "species", "1779/562/1", "1779/1224/1"),
+                taxon(1224, "Proteobacteria", "phylum", "1779/1224/1", "1779/2/1"),
+                taxon(2157, "Archaea", "superkingdom", "1779/2157/1", "1779/1/1"),
+                taxon(2, "Bacteria", "superkingdom", "1779/2/1", "1779/1/1"),
+                taxon(1, "root", "no rank", "1779/1/1", null)));
+        return index;
+    }
+
+    @Test
+    public void parentsResolvedOutOfOrder() {
+        TaxonomyIndex index = tree();
+        assertEquals(5, index.size());
+        assertEquals(0, index.getUnresolvedCount());
+        assertEquals(1224, index.getParent(562));
+        assertEquals(TaxonomyIndex.NO_PARENT, index.getParent(1));
+        assertEquals("Escherichia coli", index.getScientificName(562));
+        assertEquals("phylum", index.getRank(1224));
+    }
+
+    @Test
+    public void lineage() {
+        TaxonomyIndex index = tree();
+        assertArrayEquals(new long[] {1, 2, 1224, 562}, index.getLineage(562));
+        assertEquals(Arrays.asList("root", "Bacteria", "Proteobacteria", "Escherichia coli"),
+                index.getLineageNames(562));
+        assertTrue(index.isAncestor(2, 562));
+        assertFalse(index.isAncestor(2157, 562));
+        assertFalse(index.isAncestor(562, 562));
+        assertArrayEquals(new long[0], index.getLineage(9999));
+    }
+
+    @Test
+    public void childrenAndDescendants() {
+        TaxonomyIndex index = tree();
+        long[] children = index.getChildren(1);
+        Arrays.sort(children);
+        assertArrayEquals(new long[] {2, 2157}, children);
+        long[] descendants = index.getDescendants(2);
+        assertArrayEquals(new long[] {1224, 562}, descendants);
+        assertArrayEquals(new long[0], index.getChildren(562));
+    }
+
+    @Test
+    public void wsRefOfAnyVersion() {
+        TaxonomyIndex index = tree();
+        assertEquals(1224, index.findByWsRef("1779/1224/1"));
+        assertEquals(1224, index.findByWsRef("1779/1224/7"));
+        assertEquals(1224, index.findByWsRef("1779/1224"));
+        assertEquals(TaxonomyIndex.NO_PARENT, index.findByWsRef("1779/9999/1"));
+        assertEquals(TaxonomyIndex.NO_PARENT, index.findByWsRef("not a ref"));
+        assertEquals(0, TaxonomyIndex.refKey("0/1/1"));
+        assertEquals(TaxonomyIndex.refKey("5/6/1"), TaxonomyIndex.refKey("5/6/2"));
+    }
+
+    @Test
+    public void removeAndPutBack() {
+        TaxonomyIndex index = tree();
+        assertTrue(index.remove(1224));
+        assertFalse(index.remove(1224));
+        assertEquals(4, index.size());
+        assertFalse(index.exists(1224));
+        assertEquals(1, index.getUnresolvedCount());
+        assertEquals(TaxonomyIndex.NO_PARENT, index.getParent(562));
+        assertArrayEquals(new long[] {562}, index.getLineage(562));
+        index.put(taxon(1224, "Pseudomonadota", "phylum", "1779/1224/2", "1779/2/1"));
+        assertEquals(0, index.getUnresolvedCount());
+        assertArrayEquals(new long[] {1, 2, 1224, 562}, index.getLineage(562));
+        assertEquals("Pseudomonadota", index.getScientificName(1224));
+    }
+
+    @Test
+    public void updateKeepsOtherTaxa() {
+        TaxonomyIndex index = tree();
+        index.put(taxon(562, "Escherichia coli K-12", "strain", "1779/562/2", "1779/1224/1"));
+        assertEquals(5, index.size());
+        assertEquals("Escherichia coli K-12", index.getScientificName(562));
+        assertEquals("strain", index.getRank(562));
+        assertEquals("Proteobacteria", index.getScientificName(1224));
+        assertArrayEquals(new long[] {1, 2, 1224, 562}, index.getLineage(562));
+    }
+
+    @Test
+    public void taxaWithoutIdIgnored() {
+        TaxonomyIndex index = new TaxonomyIndex();
+        assertEquals(1, index.putAll(Arrays.asList(new SolrTaxonData().withScientificName("x"),
+                taxon(7, "seven", null, null, null))));
+        assertEquals(1, index.size());
+        assertNull(index.getRank(7));
+        assertNull(index.getScientificName(8));
+    }
+}